@@ -0,0 +1,454 @@
+/**
+ * Skeleton of multimaps holding all their values in one array, grouped by key.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The storage and operations shared by {@link SmallMultimap} and
+ * {@link SmallListMultimap}: multimaps with a small memory footprint, which
+ * hold no collection object per key.
+ * <p>
+ * Keys are held in an array, each with the end offset of its group of values
+ * in an <code>int[]</code>, and the values of all the keys in one further
+ * array, grouped by key, in key order. Adding or removing a value shifts the
+ * values of the later keys along and adjusts their offsets; like
+ * {@link SmallMap}, these multimaps are meant for a few keys and values, and
+ * are <em>unsynchronised</em>. The arrays are not allocated until the first
+ * value is added, and grow as {@link CapacityPolicy#DEFAULT} decides.
+ * </p>
+ * <p>
+ * The collections returned by <code>get</code> are views, which reflect and
+ * write through to the multimap; a key is present only while it has at least
+ * one value.
+ * </p>
+ *
+ * @author Zteve
+ */
+public abstract class AbstractSmallMultimap<K, V> {
+
+    Object[] keyArray = null;
+    int[] ends = null;
+    Object[] valueArray = null;
+    int keyCount = 0;
+    int size = 0;
+
+    AbstractSmallMultimap() {
+    }
+
+    /** Whether a key's values are distinct, as in a set. */
+    abstract boolean distinctValues();
+
+    int indexOfKey(Object key) {
+        Object[] ka = this.keyArray;
+        if (key == null) {
+            for (int i = 0; i < this.keyCount; i++)
+                if (ka[i] == null)
+                    return i;
+        } else {
+            for (int i = 0; i < this.keyCount; i++)
+                if (key.equals(ka[i]))
+                    return i;
+        }
+        return -1;
+    }
+
+    int start(int ind) {
+        return (ind == 0) ? 0 : this.ends[ind - 1];
+    }
+
+    int end(int ind) {
+        return this.ends[ind];
+    }
+
+    /** The position of <code>value</code> in the group of key <code>ind</code>, or -1. */
+    int indexOfValue(int ind, Object value) {
+        Object[] va = this.valueArray;
+        int end = this.ends[ind];
+        for (int i = start(ind); i < end; i++)
+            if (value == va[i] || (value != null && value.equals(va[i])))
+                return i;
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    K keyAt(int ind) {
+        return (K) this.keyArray[ind];
+    }
+
+    @SuppressWarnings("unchecked")
+    V valueAt(int pos) {
+        return (V) this.valueArray[pos];
+    }
+
+    /** Adds a key with no values yet, returning its index. */
+    int addKey(Object key) {
+        int capacity = (this.keyArray == null) ? 0 : this.keyArray.length;
+        if (this.keyCount == capacity) {
+            capacity = CapacityPolicy.DEFAULT.grow(capacity, capacity + 1);
+            this.keyArray = (this.keyArray == null) ? new Object[capacity]
+                    : Arrays.copyOf(this.keyArray, capacity);
+            this.ends = (this.ends == null) ? new int[capacity] : Arrays
+                    .copyOf(this.ends, capacity);
+        }
+        this.keyArray[this.keyCount] = key;
+        this.ends[this.keyCount] = this.size;
+        return this.keyCount++;
+    }
+
+    /**
+     * Inserts <code>value</code> at position <code>pos</code> (within or at
+     * the end of the group of key <code>ind</code>).
+     */
+    void insertValue(int ind, int pos, Object value) {
+        int capacity = (this.valueArray == null) ? 0 : this.valueArray.length;
+        if (this.size == capacity) {
+            capacity = CapacityPolicy.DEFAULT.grow(capacity, capacity + 1);
+            this.valueArray = (this.valueArray == null) ? new Object[capacity]
+                    : Arrays.copyOf(this.valueArray, capacity);
+        }
+        System.arraycopy(this.valueArray, pos, this.valueArray, pos + 1,
+                this.size - pos);
+        this.valueArray[pos] = value;
+        this.size++;
+        for (int i = ind; i < this.keyCount; i++)
+            this.ends[i]++;
+    }
+
+    /**
+     * Removes the value at position <code>pos</code>, in the group of key
+     * <code>ind</code>, and the key too if that was its last value.
+     *
+     * @return whether the key was removed
+     */
+    boolean removeValueAt(int ind, int pos) {
+        removeRange(ind, pos, pos + 1);
+        if (start(ind) != this.ends[ind])
+            return false;
+        removeKeyAt(ind);
+        return true;
+    }
+
+    private void removeRange(int ind, int from, int to) {
+        int n = to - from;
+        System.arraycopy(this.valueArray, to, this.valueArray, from, this.size
+                - to);
+        Arrays.fill(this.valueArray, this.size - n, this.size, null);
+        this.size -= n;
+        for (int i = ind; i < this.keyCount; i++)
+            this.ends[i] -= n;
+    }
+
+    /** Removes key <code>ind</code>, and its values. */
+    void removeKeyAt(int ind) {
+        int start = start(ind);
+        if (this.ends[ind] != start)
+            removeRange(ind, start, this.ends[ind]);
+        int numMoved = this.keyCount - ind - 1;
+        System.arraycopy(this.keyArray, ind + 1, this.keyArray, ind, numMoved);
+        System.arraycopy(this.ends, ind + 1, this.ends, ind, numMoved);
+        this.keyArray[--this.keyCount] = null;
+        if (this.keyCount == 0) {
+            this.keyArray = null;
+            this.ends = null;
+            this.valueArray = null;
+        }
+    }
+
+    /**
+     * @return the number of key-value pairs in this multimap
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the number of distinct keys in this multimap
+     */
+    public int keyCount() {
+        return this.keyCount;
+    }
+
+    /**
+     * @return whether this multimap is empty
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @param key
+     *            the key
+     * @return whether this multimap has any values for <code>key</code>
+     */
+    public boolean containsKey(Object key) {
+        return indexOfKey(key) != -1;
+    }
+
+    /**
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @return whether <code>value</code> is one of the values of
+     *         <code>key</code>
+     */
+    public boolean containsEntry(Object key, Object value) {
+        int ind = indexOfKey(key);
+        return ind != -1 && indexOfValue(ind, value) != -1;
+    }
+
+    /**
+     * Adds a value for a key.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @return whether this multimap changed
+     */
+    public boolean put(K key, V value) {
+        int ind = indexOfKey(key);
+        if (ind == -1)
+            ind = addKey(key);
+        else if (distinctValues() && indexOfValue(ind, value) != -1)
+            return false;
+        insertValue(ind, this.ends[ind], value);
+        return true;
+    }
+
+    /**
+     * Removes one value for a key.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @return whether this multimap changed
+     */
+    public boolean remove(Object key, Object value) {
+        int ind = indexOfKey(key);
+        if (ind == -1)
+            return false;
+        int pos = indexOfValue(ind, value);
+        if (pos == -1)
+            return false;
+        removeValueAt(ind, pos);
+        return true;
+    }
+
+    /**
+     * Removes a key and all its values.
+     *
+     * @param key
+     *            the key
+     * @return the number of values removed
+     */
+    public int removeAll(Object key) {
+        int ind = indexOfKey(key);
+        if (ind == -1)
+            return 0;
+        int n = this.ends[ind] - start(ind);
+        removeKeyAt(ind);
+        return n;
+    }
+
+    /**
+     * Removes all the keys and values, releasing the arrays.
+     */
+    public void clear() {
+        this.keyArray = null;
+        this.ends = null;
+        this.valueArray = null;
+        this.keyCount = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Trims the backing arrays of this multimap to its current size.
+     */
+    public void trimToSize() {
+        if (this.keyArray != null && this.keyArray.length != this.keyCount) {
+            this.keyArray = Arrays.copyOf(this.keyArray, this.keyCount);
+            this.ends = Arrays.copyOf(this.ends, this.keyCount);
+        }
+        if (this.valueArray != null && this.valueArray.length != this.size)
+            this.valueArray = Arrays.copyOf(this.valueArray, this.size);
+    }
+
+    /**
+     * Returns a view of the values of a key, which is empty if the key is not
+     * present. Adding a value to the view puts it in this multimap.
+     *
+     * @param key
+     *            the key
+     * @return the values of <code>key</code>
+     */
+    public abstract Collection<V> get(K key);
+
+    /**
+     * Returns a view of the keys. Removing a key removes all its values.
+     *
+     * @return the keys of this multimap
+     */
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+
+            @Override
+            public Iterator<K> iterator() {
+                return new Iterator<K>() {
+
+                    private int indNext = 0;
+                    private int indLast = -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.indNext < AbstractSmallMultimap.this.keyCount;
+                    }
+
+                    @Override
+                    public K next() {
+                        if (this.indNext >= AbstractSmallMultimap.this.keyCount)
+                            throw new NoSuchElementException();
+                        this.indLast = this.indNext++;
+                        return AbstractSmallMultimap.this.keyAt(this.indLast);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (this.indLast == -1)
+                            throw new IllegalStateException();
+                        AbstractSmallMultimap.this.removeKeyAt(this.indLast);
+                        this.indNext = this.indLast;
+                        this.indLast = -1;
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return AbstractSmallMultimap.this.removeAll(o) != 0;
+            }
+
+            @Override
+            public int size() {
+                return AbstractSmallMultimap.this.keyCount;
+            }
+        };
+    }
+
+    /**
+     * Iterates over the values of one key, finding the key afresh at each
+     * step, so that changes to other keys do not disturb it.
+     */
+    final class GroupIterator implements Iterator<V> {
+
+        private final Object key;
+        private int offsetNext = 0;
+        private boolean canRemove = false;
+
+        GroupIterator(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public boolean hasNext() {
+            int ind = indexOfKey(this.key);
+            return ind != -1 && start(ind) + this.offsetNext < end(ind);
+        }
+
+        @Override
+        public V next() {
+            int ind = indexOfKey(this.key);
+            if (ind == -1 || start(ind) + this.offsetNext >= end(ind))
+                throw new NoSuchElementException();
+            this.canRemove = true;
+            return valueAt(start(ind) + this.offsetNext++);
+        }
+
+        @Override
+        public void remove() {
+            int ind = indexOfKey(this.key);
+            if (ind == -1 || !this.canRemove)
+                throw new IllegalStateException();
+            this.canRemove = false;
+            removeValueAt(ind, start(ind) + --this.offsetNext);
+        }
+    }
+
+    /** The number of values of <code>key</code>. */
+    int groupSize(Object key) {
+        int ind = indexOfKey(key);
+        return (ind == -1) ? 0 : this.ends[ind] - start(ind);
+    }
+
+    /**
+     * Multimaps are equal if they are of the same kind (set- or
+     * list-valued) and have the same keys, with equal collections of values.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof AbstractSmallMultimap))
+            return false;
+        AbstractSmallMultimap<Object, ?> other = (AbstractSmallMultimap<Object, ?>) o;
+        if (other.distinctValues() != distinctValues()
+                || other.size != this.size || other.keyCount != this.keyCount)
+            return false;
+        for (int i = 0; i < this.keyCount; i++)
+            if (!get(keyAt(i)).equals(other.get(this.keyArray[i])))
+                return false;
+        return true;
+    }
+
+    /**
+     * The hash code of the map from each key to its collection of values.
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (int i = 0; i < this.keyCount; i++) {
+            Object key = this.keyArray[i];
+            h += ((key == null) ? 0 : key.hashCode()) ^ get(keyAt(i)).hashCode();
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder().append('{');
+        for (int i = 0; i < this.keyCount; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(this.keyArray[i]).append('=').append(get(keyAt(i)));
+        }
+        return sb.append('}').toString();
+    }
+}
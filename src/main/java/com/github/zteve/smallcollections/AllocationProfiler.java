@@ -0,0 +1,332 @@
+/**
+ * Profiles the use of maps and sets by allocation site.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The profiler behind {@link SmallCollections}. Every
+ * <code>sampleInterval</code>-th collection it makes wraps a
+ * <code>HashMap</code> or <code>HashSet</code> with a {@link Usage} record,
+ * filed under the site which asked for it.
+ * <p>
+ * The report's estimates use {@link Footprint} for bytes, at each sampled
+ * collection's peak size, and a simple model of lookup time, rounded from
+ * <code>MapTimeTable.csv</code>: {@value #HASH_LOOKUP_NANOS}ns per hashed
+ * lookup, and {@value #SCAN_LOOKUP_NANOS}ns plus
+ * {@value #SCAN_SLOT_NANOS}ns per slot compared for a scan. A hit is assumed
+ * to compare half the slots in use, and a miss all of them. A small
+ * collection is recommended only for a site that would save both bytes and
+ * time.
+ * </p>
+ *
+ * @author Zteve
+ */
+final class AllocationProfiler {
+
+    static final int HASH_LOOKUP_NANOS = 10;
+    static final int SCAN_LOOKUP_NANOS = 4;
+    static final int SCAN_SLOT_NANOS = 2;
+
+    /** Sites whose largest peak size is above this stay hashed. */
+    static final int MAX_SMALL_SIZE = 16;
+
+    /** Collections tracked per site; further ones are not sampled. */
+    private static final int MAX_USAGES_PER_SITE = 10000;
+
+    private final int sampleInterval;
+    private final AtomicLong made = new AtomicLong();
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+
+    AllocationProfiler(int sampleInterval) {
+        if (sampleInterval < 1)
+            throw new IllegalArgumentException("Sample interval: "
+                    + sampleInterval);
+        this.sampleInterval = sampleInterval;
+    }
+
+    <K, V> Map<K, V> newMap() {
+        Usage usage = sample(true);
+        return (usage == null) ? new HashMap<K, V>() : new ProfiledMap<K, V>(
+                usage);
+    }
+
+    <E> Set<E> newSet() {
+        Usage usage = sample(false);
+        return (usage == null) ? new HashSet<E>() : new ProfiledSet<E>(usage);
+    }
+
+    /** A usage record for a sampled collection, or null if not sampled. */
+    private Usage sample(boolean isMap) {
+        if (this.made.getAndIncrement() % this.sampleInterval != 0)
+            return null;
+        String name = (isMap ? "Map " : "Set ") + callerOutside();
+        Site site = this.sites.computeIfAbsent(name, n -> new Site(isMap));
+        return site.track();
+    }
+
+    /** The first stack frame outside this library's factories. */
+    private static String callerOutside() {
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String cls = frame.getClassName();
+            if (!cls.equals(AllocationProfiler.class.getName())
+                    && !cls.equals(SmallCollections.class.getName()))
+                return frame.toString();
+        }
+        return "unknown";
+    }
+
+    /**
+     * The use of one sampled collection. Not thread-safe, as its collection
+     * is not.
+     */
+    static final class Usage {
+        int peakSize = 0;
+        long lookups = 0;
+        long misses = 0;
+        long slots = 0; // that a scan would have compared
+        long updates = 0;
+        long removes = 0;
+        long iterations = 0;
+
+        void lookedUp(boolean hit, int size) {
+            ++this.lookups;
+            if (hit) {
+                this.slots += (size + 1) / 2;
+            } else {
+                ++this.misses;
+                this.slots += size;
+            }
+        }
+
+        void updated(int size) {
+            ++this.updates;
+            if (size > this.peakSize)
+                this.peakSize = size;
+        }
+    }
+
+    /** The sampled collections made at one site. */
+    private static final class Site {
+        final boolean isMap;
+        final List<Usage> usages = new ArrayList<>();
+
+        Site(boolean isMap) {
+            this.isMap = isMap;
+        }
+
+        synchronized Usage track() {
+            if (this.usages.size() == MAX_USAGES_PER_SITE)
+                return null;
+            Usage usage = new Usage();
+            this.usages.add(usage);
+            return usage;
+        }
+
+        synchronized List<Usage> snapshot() {
+            return new ArrayList<>(this.usages);
+        }
+    }
+
+    /**
+     * Appends a csv row for each site to <code>file</code>, in the format of
+     * the tables in <code>build/output</code>.
+     */
+    void writeReport(File file) throws IOException {
+        StringBuilder sb = new StringBuilder(
+                "\"Site\",\"Sampled\",\"MeanPeakSize\",\"MaxPeakSize\","
+                        + "\"Lookups\",\"MissRate\",\"Updates\",\"Removes\","
+                        + "\"Iterations\",\"Recommendation\",\"BytesSaved\","
+                        + "\"NanosSaved\"\n");
+        for (Map.Entry<String, Site> e : new TreeMap<>(this.sites).entrySet())
+            appendRow(sb, e.getKey(), e.getValue());
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null)
+            dir.mkdirs();
+        try (FileOutputStream fos = new FileOutputStream(file, true /* append */)) {
+            fos.write(sb.toString().getBytes("UTF-8"));
+        }
+    }
+
+    private void appendRow(StringBuilder sb, String name, Site site) {
+        List<Usage> usages = site.snapshot();
+        long peakTotal = 0, lookups = 0, misses = 0;
+        long updates = 0, removes = 0, iterations = 0;
+        long bytesSaved = 0, nanosSaved = 0;
+        int maxPeak = 0;
+        for (Usage u : usages) {
+            peakTotal += u.peakSize;
+            maxPeak = Math.max(maxPeak, u.peakSize);
+            lookups += u.lookups;
+            misses += u.misses;
+            updates += u.updates;
+            removes += u.removes;
+            iterations += u.iterations;
+            bytesSaved += site.isMap ? Footprint.hashMap(u.peakSize)
+                    - Footprint.smallMap(u.peakSize) : Footprint
+                    .hashSet(u.peakSize) - Footprint.smallSet(u.peakSize);
+            nanosSaved += u.lookups * (HASH_LOOKUP_NANOS - SCAN_LOOKUP_NANOS)
+                    - u.slots * SCAN_SLOT_NANOS;
+        }
+        boolean small = maxPeak <= MAX_SMALL_SIZE && bytesSaved > 0
+                && nanosSaved >= 0;
+        String recommendation = site.isMap ? (small ? "SmallMap" : "HashMap")
+                : (small ? "SmallSet" : "HashSet");
+        int n = usages.size();
+        double meanPeak = (n == 0) ? 0.0 : (double) peakTotal / n;
+        double missRate = (lookups == 0) ? 0.0 : (double) misses / lookups;
+        sb.append('\"').append(name.replace('\"', '\'')).append('\"');
+        sb.append(',').append(n).append(',').append(meanPeak);
+        sb.append(',').append(maxPeak).append(',').append(lookups);
+        sb.append(',').append(missRate).append(',').append(updates);
+        sb.append(',').append(removes).append(',').append(iterations);
+        sb.append(',').append('\"').append(recommendation).append('\"');
+        sb.append(',').append(small ? bytesSaved * this.sampleInterval : 0);
+        sb.append(',').append(small ? nanosSaved * this.sampleInterval : 0);
+        sb.append('\n');
+    }
+
+    /** A <code>HashMap</code> recording its use. */
+    static final class ProfiledMap<K, V> extends AbstractMap<K, V> {
+
+        private final HashMap<K, V> map = new HashMap<>();
+        private final Usage usage;
+
+        ProfiledMap(Usage usage) {
+            this.usage = usage;
+        }
+
+        @Override
+        public int size() {
+            return this.map.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            boolean hit = this.map.containsKey(key);
+            this.usage.lookedUp(hit, this.map.size());
+            return hit;
+        }
+
+        @Override
+        public V get(Object key) {
+            V value = this.map.get(key);
+            this.usage.lookedUp(value != null || this.map.containsKey(key),
+                    this.map.size());
+            return value;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            V oldValue = this.map.put(key, value);
+            this.usage.updated(this.map.size());
+            return oldValue;
+        }
+
+        @Override
+        public V remove(Object key) {
+            ++this.usage.removes;
+            return this.map.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            ++this.usage.removes;
+            this.map.clear();
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<Entry<K, V>>() {
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    ++ProfiledMap.this.usage.iterations;
+                    return ProfiledMap.this.map.entrySet().iterator();
+                }
+
+                @Override
+                public int size() {
+                    return ProfiledMap.this.map.size();
+                }
+            };
+        }
+    }
+
+    /** A <code>HashSet</code> recording its use. */
+    static final class ProfiledSet<E> extends AbstractSet<E> {
+
+        private final HashSet<E> set = new HashSet<>();
+        private final Usage usage;
+
+        ProfiledSet(Usage usage) {
+            this.usage = usage;
+        }
+
+        @Override
+        public int size() {
+            return this.set.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            boolean hit = this.set.contains(o);
+            this.usage.lookedUp(hit, this.set.size());
+            return hit;
+        }
+
+        @Override
+        public boolean add(E e) {
+            boolean added = this.set.add(e);
+            this.usage.updated(this.set.size());
+            return added;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            ++this.usage.removes;
+            return this.set.remove(o);
+        }
+
+        @Override
+        public void clear() {
+            ++this.usage.removes;
+            this.set.clear();
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            ++this.usage.iterations;
+            return this.set.iterator();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Bit operations over a first word and a lazily allocated array of further words.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.Arrays;
+
+/**
+ * Static helpers for bit sets held as a single <code>long</code> word for
+ * indexes <code>0..63</code>, and a lazily allocated <code>long[]</code> for
+ * the rest. Element <code>i</code> of the array holds indexes
+ * <code>64*(i+1)</code> to <code>64*(i+2)-1</code>; the array is
+ * <code>null</code> until an index of 64 or more is set.
+ *
+ * @author Zteve
+ */
+final class BitWords {
+
+    static final int WORD_BITS = 64;
+
+    private BitWords() {
+    }
+
+    static boolean get(long word, long[] words, int index) {
+        if (index < WORD_BITS)
+            return index >= 0 && (word & (1L << index)) != 0;
+        int w = (index >>> 6) - 1;
+        return words != null && w < words.length
+                && (words[w] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns <code>words</code>, or a longer copy of it, with room for
+     * <code>index</code>, which must be at least 64.
+     */
+    static long[] ensure(long[] words, int index) {
+        int needed = index >>> 6;
+        if (words == null)
+            return new long[needed];
+        return (needed <= words.length) ? words : Arrays.copyOf(words, needed);
+    }
+
+    /**
+     * Returns <code>words</code> without trailing zero words, or
+     * <code>null</code> if every word is zero.
+     */
+    static long[] trim(long[] words) {
+        if (words == null)
+            return null;
+        int len = words.length;
+        while (len > 0 && words[len - 1] == 0)
+            --len;
+        return (len == 0) ? null : (len == words.length) ? words : Arrays
+                .copyOf(words, len);
+    }
+
+    static int count(long word, long[] words) {
+        int count = Long.bitCount(word);
+        if (words != null)
+            for (long w : words)
+                count += Long.bitCount(w);
+        return count;
+    }
+
+    /** The number of set bits below <code>index</code>. */
+    static int rank(long word, long[] words, int index) {
+        if (index < WORD_BITS)
+            return Long.bitCount(word & ((1L << index) - 1));
+        int rank = Long.bitCount(word);
+        if (words == null)
+            return rank;
+        int w = (index >>> 6) - 1;
+        for (int i = 0; i < w && i < words.length; i++)
+            rank += Long.bitCount(words[i]);
+        if (w < words.length)
+            rank += Long.bitCount(words[w] & ((1L << index) - 1));
+        return rank;
+    }
+
+    /** The first set bit at or after <code>from</code>, or -1 if none. */
+    static int nextSetBit(long word, long[] words, int from) {
+        if (from < WORD_BITS) {
+            long bits = word & (-1L << from);
+            if (bits != 0)
+                return Long.numberOfTrailingZeros(bits);
+            from = WORD_BITS;
+        }
+        if (words == null)
+            return -1;
+        int w = (from >>> 6) - 1;
+        if (w >= words.length)
+            return -1;
+        long bits = words[w] & (-1L << from);
+        while (true) {
+            if (bits != 0)
+                return (w + 1) * WORD_BITS + Long.numberOfTrailingZeros(bits);
+            if (++w == words.length)
+                return -1;
+            bits = words[w];
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Byte comparisons, with the fastest implementation for the running JVM.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compares runs of bytes, for the decoders which match input against bytes
+ * they have kept. The implementation is chosen once, when this class is
+ * initialised: on Java 11 or later it is <code>Java11ByteKernels</code>,
+ * from the Java 11 part of the multi-release jar, which compares eight bytes
+ * at a time with <code>VarHandle</code>s and uses the vectorised range form
+ * of <code>Arrays.equals</code>; elsewhere, or with
+ * <code>smallcollections.kernels=portable</code>, it is {@link Portable}.
+ * Since the choice is a <code>static final</code> constant, the JIT calls
+ * the implementation directly.
+ *
+ * @author Zteve
+ */
+final class ByteKernels {
+
+    /** The operations; each implementation must give the same results. */
+    interface Impl {
+
+        /**
+         * Whether the <code>b.length</code> bytes of <code>buf</code> from
+         * absolute position <code>start</code> are those of <code>b</code>.
+         */
+        boolean equals(byte[] b, ByteBuffer buf, int start);
+    }
+
+    private static final String JAVA11_CLASS = "com.github.zteve.smallcollections.Java11ByteKernels";
+
+    /** The implementation in use; fixed when this class is initialised. */
+    static final Impl IMPL = load();
+
+    private ByteKernels() {
+    }
+
+    private static Impl load() {
+        if ("portable".equals(System.getProperty("smallcollections.kernels")))
+            return new Portable();
+        try {
+            return (Impl) Class.forName(JAVA11_CLASS).getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new Portable(); // before Java 11
+        }
+    }
+
+    /** See {@link Impl#equals(byte[], ByteBuffer, int)}. */
+    static boolean equals(byte[] b, ByteBuffer buf, int start) {
+        return IMPL.equals(b, buf, start);
+    }
+
+    /** The Java 8 implementation, a byte at a time. */
+    static final class Portable implements Impl {
+
+        @Override
+        public boolean equals(byte[] b, ByteBuffer buf, int start) {
+            if (buf.hasArray()) {
+                byte[] a = buf.array();
+                int offset = buf.arrayOffset() + start;
+                for (int i = 0; i < b.length; i++)
+                    if (b[i] != a[offset + i])
+                        return false;
+                return true;
+            }
+            for (int i = 0; i < b.length; i++)
+                if (b[i] != buf.get(start + i))
+                    return false;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Growth and shrink policy for the backing arrays of the small collections.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides how large the backing arrays of a {@link SmallMap} or
+ * {@link SmallSet} are allowed to become, and when they are given back.
+ * <p>
+ * A policy grows the arrays either to <em>exactly</em> the size needed, to
+ * the size needed plus a fixed number of spare slots, or by half as much again
+ * (which is what <code>ArrayList</code> does, and is the default). A policy
+ * may also shrink the arrays after a removal, once more than a threshold
+ * number of slots are unused. Arrays of an empty collection are always
+ * released when shrinking, restoring the zero-allocation empty state.
+ * </p>
+ * <p>
+ * Collections with the default policy do not store it, so choosing a policy
+ * is done through the factory methods {@link #newMap()} and
+ * {@link #newSet()}, which return instances carrying one extra reference.
+ * </p>
+ *
+ * @author Zteve
+ */
+public final class CapacityPolicy {
+
+    private static final int ONE_AND_A_HALF_TIMES = -1;
+    private static final int NEVER = Integer.MAX_VALUE;
+
+    /** Grow to exactly the number of slots needed. */
+    public static final CapacityPolicy EXACT_FIT = new CapacityPolicy(0, NEVER);
+    /** Grow to the number of slots needed plus one spare. */
+    public static final CapacityPolicy PLUS_ONE = new CapacityPolicy(1, NEVER);
+    /** Grow to the number of slots needed plus two spare. */
+    public static final CapacityPolicy PLUS_TWO = new CapacityPolicy(2, NEVER);
+    /** Grow by half the current capacity, as <code>ArrayList</code> does. */
+    public static final CapacityPolicy ONE_AND_A_HALF = new CapacityPolicy(
+            ONE_AND_A_HALF_TIMES, NEVER);
+    /** The policy used by collections created with their constructors. */
+    public static final CapacityPolicy DEFAULT = ONE_AND_A_HALF;
+
+    private final int headroom;
+    private final int shrinkThreshold;
+
+    private CapacityPolicy(int headroom, int shrinkThreshold) {
+        this.headroom = headroom;
+        this.shrinkThreshold = shrinkThreshold;
+    }
+
+    /**
+     * Returns a policy which grows like this one, and which trims the arrays
+     * to size after a removal leaves more than <code>unusedSlots</code> slots
+     * unused.
+     *
+     * @param unusedSlots
+     *            the number of unused slots tolerated after a removal
+     * @return the shrinking policy
+     * @throws IllegalArgumentException
+     *             if <code>unusedSlots</code> is negative
+     */
+    public CapacityPolicy shrinkWhenUnused(int unusedSlots) {
+        if (unusedSlots < 0)
+            throw new IllegalArgumentException("Negative threshold: "
+                    + unusedSlots);
+        return new CapacityPolicy(this.headroom, unusedSlots);
+    }
+
+    /**
+     * Constructs a new, empty, <code>SmallMap</code> governed by this policy.
+     *
+     * @return the new map
+     */
+    public <K, V> SmallMap<K, V> newMap() {
+        return (this == DEFAULT) ? new SmallMap<K, V>()
+                : new SmallMap.WithPolicy<K, V>(this);
+    }
+
+    /**
+     * Constructs a new <code>SmallMap</code> governed by this policy, with
+     * the same mappings as the specified <code>Map</code>.
+     *
+     * @param m
+     *            the map whose mappings are to be placed in the new map
+     * @return the new map
+     * @throws NullPointerException
+     *             if the specified map is null
+     */
+    public <K, V> SmallMap<K, V> newMap(Map<? extends K, ? extends V> m) {
+        SmallMap<K, V> sm = newMap();
+        sm.putAll(m);
+        return sm;
+    }
+
+    /**
+     * Constructs a new, empty, <code>SmallSet</code> governed by this policy.
+     *
+     * @return the new set
+     */
+    public <E> SmallSet<E> newSet() {
+        return (this == DEFAULT) ? new SmallSet<E>()
+                : new SmallSet.WithPolicy<E>(this);
+    }
+
+    /**
+     * Constructs a new <code>SmallSet</code> governed by this policy, with the
+     * same elements as the specified <code>Set</code>.
+     *
+     * @param s
+     *            the set whose elements are to be placed in the new set
+     * @return the new set
+     * @throws NullPointerException
+     *             if the specified set is null
+     */
+    public <E> SmallSet<E> newSet(Set<? extends E> s) {
+        SmallSet<E> ss = newSet();
+        ss.addAll(s);
+        return ss;
+    }
+
+    /**
+     * The capacity to grow to, given the current capacity and the number of
+     * slots that must fit.
+     */
+    int grow(int capacity, int minCapacity) {
+        if (this.headroom == ONE_AND_A_HALF_TIMES)
+            return Math.max(capacity + (capacity >> 1), minCapacity);
+        return minCapacity + this.headroom;
+    }
+
+    /**
+     * Whether arrays of <code>capacity</code> slots holding <code>size</code>
+     * elements should be trimmed after a removal.
+     */
+    boolean shouldShrink(int capacity, int size) {
+        return capacity - size > this.shrinkThreshold;
+    }
+
+    @Override
+    public String toString() {
+        String growth = (this.headroom == ONE_AND_A_HALF_TIMES) ? "OneAndAHalf"
+                : (this.headroom == 0) ? "ExactFit" : "Plus" + this.headroom;
+        return (this.shrinkThreshold == NEVER) ? growth : growth + "Shrink"
+                + this.shrinkThreshold;
+    }
+}
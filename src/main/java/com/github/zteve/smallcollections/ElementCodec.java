@@ -0,0 +1,190 @@
+/**
+ * Binary encoding of the elements, keys and values of small collections.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes and reads single elements (or keys, or values) for
+ * {@link SmallCollectionCodec}. The built-in codecs do not accept
+ * <code>null</code>; wrap them with {@link #nullable(ElementCodec)} if needed.
+ *
+ * @author Zteve
+ */
+public interface ElementCodec<T> {
+
+    /**
+     * Writes <code>value</code> to <code>out</code>.
+     *
+     * @param out
+     *            the output to write to
+     * @param value
+     *            the value to write
+     * @throws IOException
+     *             if <code>out</code> fails
+     */
+    void write(DataOutput out, T value) throws IOException;
+
+    /**
+     * Reads a value written by {@link #write(DataOutput, Object)}.
+     *
+     * @param in
+     *            the input to read from
+     * @return the value read
+     * @throws IOException
+     *             if <code>in</code> fails, or is malformed
+     */
+    T read(DataInput in) throws IOException;
+
+    /**
+     * Skips over a value written by {@link #write(DataOutput, Object)},
+     * without constructing it if possible.
+     *
+     * @param in
+     *            the input to read from
+     * @throws IOException
+     *             if <code>in</code> fails, or is malformed
+     */
+    default void skip(DataInput in) throws IOException {
+        read(in);
+    }
+
+    /** <code>String</code>s as a varint byte length and UTF-8 bytes. */
+    ElementCodec<String> STRING = new ElementCodec<String>() {
+        @Override
+        public void write(DataOutput out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            SmallCollectionCodec.writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            byte[] bytes = SmallCollectionCodec.readBytes(in,
+                    SmallCollectionCodec.readSize(in));
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void skip(DataInput in) throws IOException {
+            int len = SmallCollectionCodec.readSize(in);
+            if (in.skipBytes(len) != len)
+                throw new EOFException();
+        }
+    };
+
+    /** <code>Integer</code>s as zig-zag varints, so small values are short. */
+    ElementCodec<Integer> INTEGER = new ElementCodec<Integer>() {
+        @Override
+        public void write(DataOutput out, Integer value) throws IOException {
+            int v = value.intValue();
+            SmallCollectionCodec.writeVarInt(out, (v << 1) ^ (v >> 31));
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            int v = SmallCollectionCodec.readVarInt(in);
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        @Override
+        public void skip(DataInput in) throws IOException {
+            SmallCollectionCodec.readVarInt(in);
+        }
+    };
+
+    /** <code>Long</code>s as zig-zag varints, so small values are short. */
+    ElementCodec<Long> LONG = new ElementCodec<Long>() {
+        @Override
+        public void write(DataOutput out, Long value) throws IOException {
+            long v = value.longValue();
+            SmallCollectionCodec.writeVarLong(out, (v << 1) ^ (v >> 63));
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+            long v = SmallCollectionCodec.readVarLong(in);
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        @Override
+        public void skip(DataInput in) throws IOException {
+            SmallCollectionCodec.readVarLong(in);
+        }
+    };
+
+    /** <code>Double</code>s as eight bytes. */
+    ElementCodec<Double> DOUBLE = new ElementCodec<Double>() {
+        @Override
+        public void write(DataOutput out, Double value) throws IOException {
+            out.writeDouble(value.doubleValue());
+        }
+
+        @Override
+        public Double read(DataInput in) throws IOException {
+            return in.readDouble();
+        }
+    };
+
+    /** <code>Boolean</code>s as one byte. */
+    ElementCodec<Boolean> BOOLEAN = new ElementCodec<Boolean>() {
+        @Override
+        public void write(DataOutput out, Boolean value) throws IOException {
+            out.writeBoolean(value.booleanValue());
+        }
+
+        @Override
+        public Boolean read(DataInput in) throws IOException {
+            return in.readBoolean();
+        }
+    };
+
+    /**
+     * Returns a codec which also accepts <code>null</code>, by writing a
+     * presence byte before each value.
+     *
+     * @param codec
+     *            the codec for non-null values
+     * @return the null-accepting codec
+     */
+    static <T> ElementCodec<T> nullable(final ElementCodec<T> codec) {
+        return new ElementCodec<T>() {
+            @Override
+            public void write(DataOutput out, T value) throws IOException {
+                out.writeBoolean(value != null);
+                if (value != null)
+                    codec.write(out, value);
+            }
+
+            @Override
+            public T read(DataInput in) throws IOException {
+                return in.readBoolean() ? codec.read(in) : null;
+            }
+
+            @Override
+            public void skip(DataInput in) throws IOException {
+                if (in.readBoolean())
+                    codec.skip(in);
+            }
+        };
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Decoding of delimited text fields straight from bytes.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes one field of a row of delimited text, for
+ * {@link SmallMapCsvReader}, straight from the bytes of the buffer holding it.
+ * The built-in number decoders create no <code>String</code>, and
+ * {@link #interned(int)} returns the same <code>String</code> for the same
+ * bytes without creating another.
+ *
+ * @author Zteve
+ */
+public interface FieldDecoder<T> {
+
+    /**
+     * Decodes the bytes of <code>buf</code> from <code>start</code> to
+     * <code>end</code>, by absolute index, without changing its position.
+     *
+     * @param buf
+     *            the buffer
+     * @param start
+     *            the index of the first byte of the field
+     * @param end
+     *            the index after the last byte of the field
+     * @return the value decoded
+     * @throws IOException
+     *             if the field is malformed
+     */
+    T decode(ByteBuffer buf, int start, int end) throws IOException;
+
+    /** Decimal <code>Integer</code>s, optionally signed. */
+    FieldDecoder<Integer> INTEGER = new FieldDecoder<Integer>() {
+        @Override
+        public Integer decode(ByteBuffer buf, int start, int end)
+                throws IOException {
+            long value = parseLong(buf, start, end);
+            if (value != (int) value)
+                throw new StreamCorruptedException("Integer out of range: "
+                        + value);
+            return (int) value;
+        }
+    };
+
+    /** Decimal <code>Long</code>s, optionally signed. */
+    FieldDecoder<Long> LONG = new FieldDecoder<Long>() {
+        @Override
+        public Long decode(ByteBuffer buf, int start, int end)
+                throws IOException {
+            return parseLong(buf, start, end);
+        }
+    };
+
+    /**
+     * UTF-8 <code>String</code>s, a new one for each field; for fields which
+     * are seldom repeated.
+     */
+    FieldDecoder<String> STRING = new FieldDecoder<String>() {
+        @Override
+        public String decode(ByteBuffer buf, int start, int end) {
+            return decodeUtf8(buf, start, end);
+        }
+    };
+
+    /**
+     * Returns a decoder of UTF-8 <code>String</code>s which keeps the first
+     * <code>maxStrings</code> distinct strings it decodes, with their bytes,
+     * and returns the kept <code>String</code> whenever the same bytes recur,
+     * comparing bytes rather than creating a <code>String</code> to look up.
+     * Strings beyond the first <code>maxStrings</code> are decoded afresh each
+     * time, so the decoder's memory is bounded. It is
+     * <em>unsynchronised</em>.
+     *
+     * @param maxStrings
+     *            the most strings to keep
+     * @return the decoder
+     * @throws IllegalArgumentException
+     *             if <code>maxStrings</code> is negative
+     */
+    static FieldDecoder<String> interned(int maxStrings) {
+        return new InterningDecoder(maxStrings);
+    }
+
+    /** Parses an optionally signed decimal <code>long</code>. */
+    static long parseLong(ByteBuffer buf, int start, int end)
+            throws IOException {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf.get(i) == '-' || buf.get(i) == '+'))
+            negative = buf.get(i++) == '-';
+        if (i == end || end - i > 19)
+            throw malformedNumber(buf, start, end);
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buf.get(i) - '0';
+            if (digit < 0 || digit > 9)
+                throw malformedNumber(buf, start, end);
+            if (value < (Long.MIN_VALUE + digit) / 10)
+                throw malformedNumber(buf, start, end);
+            value = value * 10 - digit; // negative, to reach Long.MIN_VALUE
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE)
+                throw malformedNumber(buf, start, end);
+            value = -value;
+        }
+        return value;
+    }
+
+    /** An exception for a field that is not a number. */
+    static StreamCorruptedException malformedNumber(ByteBuffer buf,
+            int start, int end) {
+        return new StreamCorruptedException("Malformed number: \""
+                + decodeUtf8(buf, start, end) + "\"");
+    }
+
+    /** Decodes UTF-8 bytes into a new <code>String</code>. */
+    static String decodeUtf8(ByteBuffer buf, int start, int end) {
+        if (buf.hasArray())
+            return new String(buf.array(), buf.arrayOffset() + start, end
+                    - start, StandardCharsets.UTF_8);
+        byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++)
+            bytes[i - start] = buf.get(i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Estimated memory footprints of small and standard collections.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+/**
+ * Estimates of the heap bytes used by collections of a given size, not
+ * counting their keys, values or elements. The estimates assume a 64-bit JVM
+ * with compressed references (12-byte object headers, 4-byte references and
+ * 8-byte alignment), which is where the figures measured by the
+ * <code>Table*MemTests</code> come from.
+ *
+ * @author Zteve
+ */
+final class Footprint {
+
+    private static final int HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REF = 4;
+
+    private Footprint() {
+    }
+
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    static long refArray(int length) {
+        return align(ARRAY_HEADER + (long) REF * length);
+    }
+
+    /** A <code>SmallSet</code> with the default capacity policy. */
+    static long smallSet(int size) {
+        return align(HEADER + REF + 4) + ((size == 0) ? 0
+                : refArray(defaultCapacity(size)));
+    }
+
+    /** A <code>SmallMap</code> with the default capacity policy. */
+    static long smallMap(int size) {
+        return align(HEADER + 2 * REF + 2 * REF + 4) + ((size == 0) ? 0
+                : 2 * refArray(defaultCapacity(size)));
+    }
+
+    /** A <code>SmallSet</code> trimmed to size, with a cached hash code. */
+    static long frozenSmallSet(int size) {
+        return align(HEADER + REF + 4 + 4) + ((size == 0) ? 0
+                : refArray(size));
+    }
+
+    /** A <code>SmallMap</code> trimmed to size, with a cached hash code. */
+    static long frozenSmallMap(int size) {
+        return align(HEADER + 2 * REF + 2 * REF + 4 + 4) + ((size == 0) ? 0
+                : 2 * refArray(size));
+    }
+
+    /** A <code>HashMap</code> with the default load factor. */
+    static long hashMap(int size) {
+        return align(HEADER + 4 * REF + 4 * 4) + hashTable(size, 3 * REF);
+    }
+
+    /** A <code>HashSet</code>, which is a <code>HashMap</code> underneath. */
+    static long hashSet(int size) {
+        return align(HEADER + REF) + hashMap(size);
+    }
+
+    /** A <code>LinkedHashMap</code>, whose nodes are doubly linked. */
+    static long linkedHashMap(int size) {
+        return align(HEADER + 6 * REF + 4 * 4 + 1)
+                + hashTable(size, 5 * REF);
+    }
+
+    /** A <code>TreeMap</code>, with one node per mapping. */
+    static long treeMap(int size) {
+        return align(HEADER + 7 * REF + 2 * 4) + size
+                * align(HEADER + 5 * REF + 1);
+    }
+
+    /** A <code>LinkedHashSet</code>, over a <code>LinkedHashMap</code>. */
+    static long linkedHashSet(int size) {
+        return align(HEADER + REF) + linkedHashMap(size);
+    }
+
+    /** A <code>TreeSet</code>, which is a <code>TreeMap</code> underneath. */
+    static long treeSet(int size) {
+        return align(HEADER + REF) + treeMap(size);
+    }
+
+    /** The table and nodes, of <code>nodeRefs</code> bytes of references each. */
+    private static long hashTable(int size, int nodeRefs) {
+        return (size == 0) ? 0 : refArray(hashTableLength(size)) + size
+                * align(HEADER + 4 + nodeRefs);
+    }
+
+    /** The table length of a <code>HashMap</code> filled one by one. */
+    static int hashTableLength(int size) {
+        int length = 16;
+        while (size > length * 3 / 4)
+            length <<= 1;
+        return length;
+    }
+
+    /** The capacity reached by adding <code>size</code> elements one by one. */
+    static int defaultCapacity(int size) {
+        int capacity = 0;
+        while (capacity < size)
+            capacity = CapacityPolicy.DEFAULT.grow(capacity, capacity + 1);
+        return capacity;
+    }
+}
@@ -0,0 +1,649 @@
+/**
+ * Command-line tool sizing the savings from small collections in a heap dump.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads an HPROF heap dump (as written by <code>jmap -dump</code> or
+ * <code>HotSpotDiagnosticMXBean.dumpHeap</code>) and histograms the sizes of
+ * the <code>HashMap</code>, <code>HashSet</code>, <code>LinkedHashMap</code>,
+ * <code>TreeMap</code>, <code>LinkedHashSet</code> and <code>TreeSet</code>
+ * instances in it, with their estimated footprint and the footprint they
+ * would have as {@link SmallMap}s and {@link SmallSet}s.
+ * <p>
+ * The dump is streamed twice, first for the layout of the collection classes
+ * and then for their instances, so it is never held in memory; the
+ * identities and sizes of the maps are, to tell the maps inside sets from the
+ * rest. Footprints are estimated by
+ * {@link Footprint}, which agrees with the sizes measured by
+ * <code>TableSmallMapMemTests</code> and <code>TableSmallSetMemTests</code>
+ * and assumes compressed references. The projection converts only
+ * collections of at most {@value #MAX_SMALL_SIZE} elements; note that a
+ * <code>SmallMap</code> keeps insertion order, like a
+ * <code>LinkedHashMap</code>, but not the key order of a
+ * <code>TreeMap</code>.
+ * </p>
+ * <p>
+ * Usage: <code>java com.github.zteve.smallcollections.HeapDumpAnalyzer
+ * dump.hprof [histogram.csv]</code>. A summary is printed; the histogram, a
+ * row per size with a column per collection class, is appended to the csv
+ * file if one is named.
+ * </p>
+ *
+ * @author Zteve
+ */
+public final class HeapDumpAnalyzer {
+
+    /** Collections larger than this are counted in the last histogram row. */
+    public static final int MAX_HISTOGRAM_SIZE = 64;
+
+    /** Only collections of at most this size are projected as small ones. */
+    public static final int MAX_SMALL_SIZE = AllocationProfiler.MAX_SMALL_SIZE;
+
+    private static final String[] KINDS = { "HashMap", "HashSet",
+            "LinkedHashMap", "TreeMap", "LinkedHashSet", "TreeSet" };
+    private static final String[] CLASS_NAMES = { "java/util/HashMap",
+            "java/util/HashSet", "java/util/LinkedHashMap", "java/util/TreeMap",
+            "java/util/LinkedHashSet", "java/util/TreeSet" };
+    private static final int HASH_MAP = 0;
+    private static final int HASH_SET = 1;
+    private static final int LINKED_HASH_MAP = 2;
+    private static final int TREE_MAP = 3;
+    private static final int LINKED_HASH_SET = 4;
+    private static final int TREE_SET = 5;
+
+    // HPROF record and heap dump sub-record tags
+    private static final int UTF8 = 0x01;
+    private static final int LOAD_CLASS = 0x02;
+    private static final int HEAP_DUMP = 0x0C;
+    private static final int HEAP_DUMP_SEGMENT = 0x1C;
+    private static final int CLASS_DUMP = 0x20;
+    private static final int INSTANCE_DUMP = 0x21;
+    private static final int OBJ_ARRAY_DUMP = 0x22;
+    private static final int PRIM_ARRAY_DUMP = 0x23;
+    private static final int OBJECT_TYPE = 2;
+
+    private final long[][] histogram = new long[KINDS.length][MAX_HISTOGRAM_SIZE + 2];
+    private final long[] bytes = new long[KINDS.length];
+    private final long[] projectedBytes = new long[KINDS.length];
+
+    // found in the first pass
+    private int idSize = 0;
+    private final Map<Long, String> names = new HashMap<>();
+    private final Map<Long, Integer> kindOfClass = new HashMap<>();
+    private final int[] sizeOffset = new int[KINDS.length];
+    private final int[] ownFieldBytes = new int[KINDS.length];
+    private final int[] mapOffset = new int[KINDS.length];
+
+    // found in the second pass
+    private final LongIntTable[] mapSizes = new LongIntTable[KINDS.length];
+    private long[] setMaps = new long[16];
+    private int[] setKinds = new int[16];
+    private int numSetMaps = 0;
+
+    private HeapDumpAnalyzer() {
+        Arrays.fill(this.sizeOffset, -1);
+        Arrays.fill(this.mapOffset, -1);
+        for (int kind : new int[] { HASH_MAP, LINKED_HASH_MAP, TREE_MAP })
+            this.mapSizes[kind] = new LongIntTable();
+    }
+
+    /**
+     * Analyses a heap dump.
+     *
+     * @param file
+     *            the HPROF file
+     * @return the analysis
+     * @throws IOException
+     *             if the file cannot be read, or is not an HPROF heap dump
+     */
+    public static HeapDumpAnalyzer analyze(Path file) throws IOException {
+        HeapDumpAnalyzer analyzer = new HeapDumpAnalyzer();
+        analyzer.pass(file, false);
+        analyzer.pass(file, true);
+        analyzer.resolveSets();
+        return analyzer;
+    }
+
+    /**
+     * Runs the analyzer from the command line.
+     *
+     * @param args
+     *            the HPROF file, and optionally a csv file for the histogram
+     * @throws IOException
+     *             if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: HeapDumpAnalyzer dump.hprof [histogram.csv]");
+            System.exit(2);
+        }
+        HeapDumpAnalyzer analyzer = analyze(Paths.get(args[0]));
+        System.out.print(analyzer.summary());
+        if (args.length == 2)
+            analyzer.writeCsv(new File(args[1]));
+    }
+
+    /**
+     * The number of instances of a collection class with a given size.
+     *
+     * @param className
+     *            <code>HashMap</code>, <code>HashSet</code>,
+     *            <code>LinkedHashMap</code>, <code>TreeMap</code>,
+     *            <code>LinkedHashSet</code> or <code>TreeSet</code>
+     * @param size
+     *            the size, where sizes above {@link #MAX_HISTOGRAM_SIZE} count
+     *            as <code>MAX_HISTOGRAM_SIZE + 1</code>
+     * @return the number of instances
+     */
+    public long count(String className, int size) {
+        return this.histogram[kind(className)][bucket(size)];
+    }
+
+    /**
+     * The estimated bytes used by the instances of a collection class.
+     *
+     * @param className
+     *            as for {@link #count(String, int)}
+     * @return the estimated bytes
+     */
+    public long bytes(String className) {
+        return this.bytes[kind(className)];
+    }
+
+    /**
+     * The estimated bytes the instances of a collection class would use with
+     * those of at most {@link #MAX_SMALL_SIZE} elements replaced by a
+     * <code>SmallMap</code> or <code>SmallSet</code>.
+     *
+     * @param className
+     *            as for {@link #count(String, int)}
+     * @return the projected bytes
+     */
+    public long projectedBytes(String className) {
+        return this.projectedBytes[kind(className)];
+    }
+
+    private static int kind(String className) {
+        int kind = Arrays.asList(KINDS).indexOf(className);
+        if (kind == -1)
+            throw new IllegalArgumentException("Not analysed: " + className);
+        return kind;
+    }
+
+    private static int bucket(int size) {
+        return Math.min(size, MAX_HISTOGRAM_SIZE + 1);
+    }
+
+    /**
+     * A line per collection class: the number of instances, their estimated
+     * bytes, and the projected bytes and saving.
+     *
+     * @return the summary
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        long total = 0, totalProjected = 0;
+        for (int k = 0; k < KINDS.length; k++) {
+            long n = 0;
+            for (long c : this.histogram[k])
+                n += c;
+            sb.append(String.format("%-14s %10d instances %14d bytes -> %14d bytes%n",
+                    KINDS[k], n, this.bytes[k], this.projectedBytes[k]));
+            total += this.bytes[k];
+            totalProjected += this.projectedBytes[k];
+        }
+        sb.append(String.format("%-14s %20s %14d bytes -> %14d bytes (%d saved)%n",
+                "Total", "", total, totalProjected, total - totalProjected));
+        return sb.toString();
+    }
+
+    /**
+     * Appends the size histogram to a csv file, in the format of the tables
+     * in <code>build/output</code>.
+     *
+     * @param file
+     *            the file to write
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void writeCsv(File file) throws IOException {
+        StringBuilder sb = new StringBuilder("\"Size\"");
+        for (String kind : KINDS)
+            sb.append(",\"").append(kind).append('\"');
+        sb.append('\n');
+        for (int size = 0; size <= MAX_HISTOGRAM_SIZE + 1; size++) {
+            sb.append(size);
+            for (long[] counts : this.histogram)
+                sb.append(',').append(counts[size]);
+            sb.append('\n');
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null)
+            dir.mkdirs();
+        try (FileOutputStream fos = new FileOutputStream(file, true /* append */)) {
+            fos.write(sb.toString().getBytes("US-ASCII"));
+        }
+    }
+
+    private void tally(int kind, int size, int sign) {
+        this.histogram[kind][bucket(size)] += sign;
+        long current;
+        long small;
+        switch (kind) {
+        case HASH_MAP:
+            current = Footprint.hashMap(size);
+            small = Footprint.smallMap(size);
+            break;
+        case HASH_SET:
+            current = Footprint.hashSet(size);
+            small = Footprint.smallSet(size);
+            break;
+        case LINKED_HASH_MAP:
+            current = Footprint.linkedHashMap(size);
+            small = Footprint.smallMap(size);
+            break;
+        case TREE_MAP:
+            current = Footprint.treeMap(size);
+            small = Footprint.smallMap(size);
+            break;
+        case LINKED_HASH_SET:
+            current = Footprint.linkedHashSet(size);
+            small = Footprint.smallSet(size);
+            break;
+        default:
+            current = Footprint.treeSet(size);
+            small = Footprint.smallSet(size);
+            break;
+        }
+        this.bytes[kind] += sign * current;
+        this.projectedBytes[kind] += sign
+                * ((size <= MAX_SMALL_SIZE) ? small : current);
+    }
+
+    /**
+     * Moves the maps inside sets to the sets. A set over a map of another
+     * class, such as a <code>TreeSet</code>'s descending view, is not counted.
+     */
+    private void resolveSets() {
+        for (int i = 0; i < this.numSetMaps; i++) {
+            int mapKind = backingMapKind(this.setKinds[i]);
+            int size = this.mapSizes[mapKind].get(this.setMaps[i]);
+            if (size >= 0) {
+                tally(mapKind, size, -1);
+                tally(this.setKinds[i], size, 1);
+            }
+        }
+    }
+
+    private static boolean isSet(int kind) {
+        return kind == HASH_SET || kind == LINKED_HASH_SET || kind == TREE_SET;
+    }
+
+    private static int backingMapKind(int setKind) {
+        switch (setKind) {
+        case HASH_SET:
+            return HASH_MAP;
+        case LINKED_HASH_SET:
+            return LINKED_HASH_MAP;
+        default:
+            return TREE_MAP;
+        }
+    }
+
+    /** The kind declaring the fields analysed, for the linked subclasses. */
+    private static int declaringKind(int kind) {
+        switch (kind) {
+        case LINKED_HASH_MAP:
+            return HASH_MAP;
+        case LINKED_HASH_SET:
+            return HASH_SET;
+        default:
+            return kind;
+        }
+    }
+
+    /**
+     * The offset in an instance's fields of a field declared by
+     * <code>declaringKind(kind)</code>, whose own fields come after those of
+     * any subclass.
+     */
+    private int fieldOffset(int kind, int[] offsets, String field)
+            throws IOException {
+        int declaring = declaringKind(kind);
+        if (offsets[declaring] == -1)
+            throw new IOException("No " + KINDS[declaring] + "." + field
+                    + " field in dump");
+        return offsets[declaring]
+                + ((declaring != kind) ? this.ownFieldBytes[kind] : 0);
+    }
+
+    private void pass(Path file, boolean instances) throws IOException {
+        try (CountingInputStream counter = new CountingInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            DataInputStream in = new DataInputStream(counter);
+            readHeader(in);
+            int tag;
+            while ((tag = in.read()) != -1) {
+                in.readInt(); // microseconds since the header's time stamp
+                long length = in.readInt() & 0xFFFFFFFFL;
+                if (tag == UTF8 && !instances) {
+                    readUtf8(in, length);
+                } else if (tag == LOAD_CLASS && !instances) {
+                    in.readInt(); // class serial number
+                    long classId = readId(in);
+                    in.readInt(); // stack trace serial number
+                    String name = this.names.get(readId(in));
+                    int kind = Arrays.asList(CLASS_NAMES).indexOf(name);
+                    if (kind != -1)
+                        this.kindOfClass.put(classId, kind);
+                } else if (tag == HEAP_DUMP || tag == HEAP_DUMP_SEGMENT) {
+                    long end = counter.count + length;
+                    while (counter.count < end)
+                        readSubRecord(in, instances);
+                } else {
+                    skip(in, length);
+                }
+            }
+        }
+    }
+
+    private void readHeader(DataInputStream in) throws IOException {
+        StringBuilder format = new StringBuilder();
+        int c;
+        while ((c = in.read()) > 0 && format.length() < 32)
+            format.append((char) c);
+        if (c != 0 || !format.toString().startsWith("JAVA PROFILE "))
+            throw new IOException("Not an HPROF file");
+        this.idSize = in.readInt();
+        if (this.idSize != 4 && this.idSize != 8)
+            throw new IOException("Unsupported identifier size " + this.idSize);
+        in.readLong(); // time stamp
+    }
+
+    private void readUtf8(DataInputStream in, long length) throws IOException {
+        long id = readId(in);
+        long n = length - this.idSize;
+        if (n > 32) { // longer than any name looked for
+            skip(in, n);
+            return;
+        }
+        byte[] b = new byte[(int) n];
+        in.readFully(b);
+        String s = new String(b, StandardCharsets.UTF_8);
+        if (s.equals("size") || s.equals("map") || s.equals("m")
+                || Arrays.asList(CLASS_NAMES).contains(s))
+            this.names.put(id, s);
+    }
+
+    private void readSubRecord(DataInputStream in, boolean instances)
+            throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+        case 0xFF: // root unknown
+        case 0x05: // root sticky class
+        case 0x07: // root monitor used
+            skip(in, this.idSize);
+            break;
+        case 0x01: // root JNI global
+            skip(in, 2L * this.idSize);
+            break;
+        case 0x04: // root native stack
+        case 0x06: // root thread block
+            skip(in, this.idSize + 4L);
+            break;
+        case 0x02: // root JNI local
+        case 0x03: // root Java frame
+        case 0x08: // root thread object
+            skip(in, this.idSize + 8L);
+            break;
+        case CLASS_DUMP:
+            readClassDump(in);
+            break;
+        case INSTANCE_DUMP:
+            readInstanceDump(in, instances);
+            break;
+        case OBJ_ARRAY_DUMP: {
+            skip(in, this.idSize + 4L);
+            long n = in.readInt() & 0xFFFFFFFFL;
+            skip(in, this.idSize + n * this.idSize);
+            break;
+        }
+        case PRIM_ARRAY_DUMP: {
+            skip(in, this.idSize + 4L);
+            long n = in.readInt() & 0xFFFFFFFFL;
+            skip(in, n * typeSize(in.readUnsignedByte()));
+            break;
+        }
+        default:
+            throw new IOException("Unknown heap dump record 0x"
+                    + Integer.toHexString(tag));
+        }
+    }
+
+    private void readClassDump(DataInputStream in) throws IOException {
+        long classId = readId(in);
+        skip(in, 4 + 6L * this.idSize + 4); // up to the instance size
+        for (int i = in.readUnsignedShort(); i > 0; i--) { // constant pool
+            in.readUnsignedShort();
+            skip(in, typeSize(in.readUnsignedByte()));
+        }
+        for (int i = in.readUnsignedShort(); i > 0; i--) { // static fields
+            readId(in);
+            skip(in, typeSize(in.readUnsignedByte()));
+        }
+        Integer kind = this.kindOfClass.get(classId);
+        int offset = 0;
+        for (int i = in.readUnsignedShort(); i > 0; i--) { // instance fields
+            String name = this.names.get(readId(in));
+            int type = in.readUnsignedByte();
+            if (kind != null && "size".equals(name) && type == 10)
+                this.sizeOffset[kind] = offset;
+            if (kind != null && type == OBJECT_TYPE
+                    && (kind == HASH_SET && "map".equals(name)
+                    || kind == TREE_SET && "m".equals(name)))
+                this.mapOffset[kind] = offset;
+            offset += typeSize(type);
+        }
+        if (kind != null)
+            this.ownFieldBytes[kind] = offset;
+    }
+
+    private void readInstanceDump(DataInputStream in, boolean instances)
+            throws IOException {
+        long objectId = readId(in);
+        in.readInt(); // stack trace serial number
+        long classId = readId(in);
+        Integer kind = instances ? this.kindOfClass.get(classId) : null;
+        int n = in.readInt();
+        if (kind == null) {
+            skip(in, n & 0xFFFFFFFFL);
+            return;
+        }
+        byte[] fields = new byte[n];
+        in.readFully(fields);
+        if (isSet(kind)) {
+            int offset = fieldOffset(kind, this.mapOffset,
+                    (kind == TREE_SET) ? "m" : "map");
+            if (this.numSetMaps == this.setMaps.length) {
+                this.setMaps = Arrays.copyOf(this.setMaps,
+                        2 * this.numSetMaps);
+                this.setKinds = Arrays.copyOf(this.setKinds,
+                        2 * this.numSetMaps);
+            }
+            this.setMaps[this.numSetMaps] = id(fields, offset);
+            this.setKinds[this.numSetMaps++] = kind;
+            return;
+        }
+        int offset = fieldOffset(kind, this.sizeOffset, "size");
+        int size = ((fields[offset] & 0xFF) << 24)
+                | ((fields[offset + 1] & 0xFF) << 16)
+                | ((fields[offset + 2] & 0xFF) << 8)
+                | (fields[offset + 3] & 0xFF);
+        tally(kind, size, 1);
+        this.mapSizes[kind].put(objectId, size);
+    }
+
+    private long id(byte[] b, int offset) {
+        long id = 0;
+        for (int i = 0; i < this.idSize; i++)
+            id = (id << 8) | (b[offset + i] & 0xFF);
+        return id;
+    }
+
+    private long readId(DataInputStream in) throws IOException {
+        return (this.idSize == 4) ? in.readInt() & 0xFFFFFFFFL : in
+                .readLong();
+    }
+
+    private int typeSize(int type) throws IOException {
+        switch (type) {
+        case OBJECT_TYPE:
+            return this.idSize;
+        case 4: // boolean
+        case 8: // byte
+            return 1;
+        case 5: // char
+        case 9: // short
+            return 2;
+        case 6: // float
+        case 10: // int
+            return 4;
+        case 7: // double
+        case 11: // long
+            return 8;
+        default:
+            throw new IOException("Unknown basic type " + type);
+        }
+    }
+
+    private static void skip(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() == -1)
+                    throw new EOFException();
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    /** Counts the bytes read, to find the end of heap dump segments. */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1)
+                ++this.count;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                this.count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            this.count += skipped;
+            return skipped;
+        }
+    }
+
+    /** An open-addressed table of <code>int</code>s keyed by <code>long</code> ids. */
+    private static final class LongIntTable {
+
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private boolean[] used = new boolean[1024];
+        private int size = 0;
+
+        private int slot(long key, long[] keys, boolean[] used) {
+            int mask = keys.length - 1;
+            // the top log2(length) bits of the product, so any slot is reached
+            int shift = 64 - Integer.numberOfTrailingZeros(keys.length);
+            int i = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+            while (used[i] && keys[i] != key)
+                i = (i + 1) & mask;
+            return i;
+        }
+
+        void put(long key, int value) {
+            if (2 * (this.size + 1) > this.keys.length)
+                rehash();
+            int i = slot(key, this.keys, this.used);
+            if (!this.used[i]) {
+                this.used[i] = true;
+                this.keys[i] = key;
+                ++this.size;
+            }
+            this.values[i] = value;
+        }
+
+        /** The value for <code>key</code>, or -1 if it has none. */
+        int get(long key) {
+            int i = slot(key, this.keys, this.used);
+            return this.used[i] ? this.values[i] : -1;
+        }
+
+        private void rehash() {
+            int length = 2 * this.keys.length;
+            long[] k = new long[length];
+            int[] v = new int[length];
+            boolean[] u = new boolean[length];
+            for (int j = 0; j < this.keys.length; j++) {
+                if (this.used[j]) {
+                    int i = slot(this.keys[j], k, u);
+                    u[i] = true;
+                    k[i] = this.keys[j];
+                    v[i] = this.values[j];
+                }
+            }
+            this.keys = k;
+            this.values = v;
+            this.used = u;
+        }
+    }
+}
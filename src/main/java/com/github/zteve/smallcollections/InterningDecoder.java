@@ -0,0 +1,83 @@
+/**
+ * Field decoder returning one String for each distinct byte sequence.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The decoder returned by {@link FieldDecoder#interned(int)}: an
+ * open-addressing table of the strings kept, each with the hash and a copy of
+ * the bytes it was decoded from.
+ *
+ * @author Zteve
+ */
+final class InterningDecoder implements FieldDecoder<String> {
+
+    private final int maxStrings;
+    private final String[] strings;
+    private final byte[][] bytes;
+    private final int[] hashes;
+    private int count = 0;
+
+    InterningDecoder(int maxStrings) {
+        if (maxStrings < 0)
+            throw new IllegalArgumentException("Negative maximum: "
+                    + maxStrings);
+        this.maxStrings = maxStrings;
+        int capacity = Integer.highestOneBit(Math.max(2 * maxStrings, 1)) << 1;
+        this.strings = new String[capacity];
+        this.bytes = new byte[capacity][];
+        this.hashes = new int[capacity];
+    }
+
+    /** The number of strings kept. */
+    int size() {
+        return this.count;
+    }
+
+    @Override
+    public String decode(ByteBuffer buf, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++)
+            hash = 31 * hash + buf.get(i);
+        int mask = this.strings.length - 1;
+        int ind = (hash ^ (hash >>> 16)) & mask;
+        while (this.strings[ind] != null) {
+            if (this.hashes[ind] == hash
+                    && sameBytes(this.bytes[ind], buf, start, end))
+                return this.strings[ind];
+            ind = (ind + 1) & mask;
+        }
+        String s = FieldDecoder.decodeUtf8(buf, start, end);
+        if (this.count < this.maxStrings) {
+            byte[] b = new byte[end - start];
+            for (int i = start; i < end; i++)
+                b[i - start] = buf.get(i);
+            this.strings[ind] = s;
+            this.bytes[ind] = b;
+            this.hashes[ind] = hash;
+            this.count++;
+        }
+        return s;
+    }
+
+    private static boolean sameBytes(byte[] b, ByteBuffer buf, int start,
+            int end) {
+        return b.length == end - start && ByteKernels.equals(b, buf, start);
+    }
+}
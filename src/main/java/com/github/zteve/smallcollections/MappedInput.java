@@ -0,0 +1,187 @@
+/**
+ * Random-access input over the chunks of a memory-mapped file.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link DataInput} reading from a position in a file mapped as a sequence
+ * of equal-sized chunks (a single <code>MappedByteBuffer</code> cannot exceed
+ * 2GB). Reads use absolute buffer access, so any number of inputs may share
+ * the chunks. Multi-byte values are big-endian, as for
+ * <code>DataInput</code>, and may straddle chunks.
+ *
+ * @author Zteve
+ */
+final class MappedInput implements DataInput {
+
+    private final ByteBuffer[] chunks;
+    private final int chunkShift;
+    private final long limit;
+    private long position;
+
+    MappedInput(ByteBuffer[] chunks, int chunkShift, long limit, long position) {
+        this.chunks = chunks;
+        this.chunkShift = chunkShift;
+        this.limit = limit;
+        this.position = position;
+    }
+
+    private int chunkOffset(long pos) {
+        return (int) (pos & ((1L << this.chunkShift) - 1));
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        if (this.position >= this.limit)
+            throw new EOFException();
+        long pos = this.position++;
+        return this.chunks[(int) (pos >>> this.chunkShift)].get(chunkOffset(pos));
+    }
+
+    /**
+     * The chunk holding the next <code>n</code> bytes, or <code>null</code> if
+     * they straddle two chunks.
+     */
+    private ByteBuffer within(int n) throws IOException {
+        if (this.position + n > this.limit)
+            throw new EOFException();
+        int off = chunkOffset(this.position);
+        return (off + n <= (1 << this.chunkShift)) ? this.chunks[(int) (this.position >>> this.chunkShift)]
+                : null;
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        if (this.position + len > this.limit)
+            throw new EOFException();
+        while (len > 0) {
+            ByteBuffer chunk = this.chunks[(int) (this.position >>> this.chunkShift)];
+            int chunkOff = chunkOffset(this.position);
+            int n = Math.min(len, (1 << this.chunkShift) - chunkOff);
+            ByteBuffer view = chunk.duplicate();
+            view.position(chunkOff);
+            view.get(b, off, n);
+            this.position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        if (n <= 0)
+            return 0;
+        int skipped = (int) Math.min(n, this.limit - this.position);
+        this.position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        ByteBuffer chunk = within(2);
+        if (chunk == null)
+            return (short) ((readUnsignedByte() << 8) | readUnsignedByte());
+        short v = chunk.getShort(chunkOffset(this.position));
+        this.position += 2;
+        return v;
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return (char) readShort();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        ByteBuffer chunk = within(4);
+        if (chunk == null)
+            return (readUnsignedShort() << 16) | readUnsignedShort();
+        int v = chunk.getInt(chunkOffset(this.position));
+        this.position += 4;
+        return v;
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        ByteBuffer chunk = within(8);
+        if (chunk == null)
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        long v = chunk.getLong(chunkOffset(this.position));
+        this.position += 8;
+        return v;
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        if (this.position >= this.limit)
+            return null;
+        StringBuilder sb = new StringBuilder();
+        while (this.position < this.limit) {
+            char c = (char) readUnsignedByte();
+            if (c == '\n')
+                break;
+            if (c == '\r') {
+                if (this.position < this.limit && readByte() != '\n')
+                    this.position--;
+                break;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+}
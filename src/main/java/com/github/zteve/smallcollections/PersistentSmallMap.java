@@ -0,0 +1,546 @@
+/**
+ * Immutable map whose updates return new versions sharing structure with the old.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable {@link Map} whose &quot;updates&quot; return new versions,
+ * leaving the old version unchanged. Keeping many versions of a map (for undo,
+ * say, or snapshots) is cheap, because each version shares as much as it can
+ * with the version it was made from.
+ * <p>
+ * A map of up to {@link #MAX_FLAT_SIZE} mappings is one array of keys and
+ * values, interleaved, exactly the size needed; {@link #with(Object, Object)}
+ * and {@link #without(Object)} copy the array, which for so few mappings costs
+ * less than any shared structure. Larger maps are hash array mapped tries:
+ * nodes indexed by five bits of the key's hash code at a time, each holding a
+ * bitmap of the slots in use, the key-value pairs stored at this level and the
+ * child nodes, in one exact-size array. An update copies only the nodes on the
+ * path to the key, so a new version of a map of <em>n</em> mappings costs
+ * about <em>log<sub>32</sub> n</em> small arrays.
+ * </p>
+ * <p>
+ * The <code>Map</code> mutators throw <code>UnsupportedOperationException</code>.
+ * Null keys and values are permitted.
+ * </p>
+ *
+ * @author Zteve
+ */
+public final class PersistentSmallMap<K, V> extends AbstractMap<K, V> {
+
+    /**
+     * The largest map held as one array of keys and values, rather than as a
+     * trie.
+     */
+    public static final int MAX_FLAT_SIZE = 8;
+
+    private static final Object[] NO_PAIRS = new Object[0];
+
+    private static final PersistentSmallMap<?, ?> EMPTY = new PersistentSmallMap<>(
+            NO_PAIRS, 0);
+
+    private static final Object NOT_FOUND = new Object();
+
+    private static final int BITS = 5;
+
+    private static final int MASK = (1 << BITS) - 1;
+
+    /** Deepest possible path: seven trie levels and a collision node. */
+    private static final int MAX_DEPTH = 8;
+
+    /** An <code>Object[]</code> of pairs, or a {@link Node}. */
+    private final Object root;
+    private final int size;
+
+    private PersistentSmallMap(Object root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @return the empty <code>PersistentSmallMap</code>
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentSmallMap<K, V> empty() {
+        return (PersistentSmallMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Returns a <code>PersistentSmallMap</code> with the same mappings as the
+     * specified <code>Map</code>.
+     *
+     * @param m
+     *            the map whose mappings are to be copied
+     * @return the map, which is <code>m</code> itself if it is already a
+     *         <code>PersistentSmallMap</code>
+     * @throws NullPointerException
+     *             if the specified map is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentSmallMap<K, V> copyOf(
+            Map<? extends K, ? extends V> m) {
+        if (m instanceof PersistentSmallMap)
+            return (PersistentSmallMap<K, V>) m;
+        PersistentSmallMap<K, V> result = empty();
+        for (Entry<? extends K, ? extends V> e : m.entrySet())
+            result = result.with(e.getKey(), e.getValue());
+        return result;
+    }
+
+    private static int hash(Object key) {
+        return (key == null) ? 0 : key.hashCode();
+    }
+
+    private static boolean eq(Object a, Object b) {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    /**
+     * Returns a version of this map in which <code>key</code> maps to
+     * <code>value</code>.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @return the new version, or this map if <code>key</code> already maps
+     *         to this very <code>value</code>
+     */
+    public PersistentSmallMap<K, V> with(K key, V value) {
+        if (this.root instanceof Node) {
+            Change change = new Change();
+            Node newRoot = ((Node) this.root).with(key, hash(key), value, 0,
+                    change);
+            if (newRoot == this.root)
+                return this;
+            return new PersistentSmallMap<>(newRoot, this.size
+                    + (change.sizeChanged ? 1 : 0));
+        }
+        Object[] pairs = (Object[]) this.root;
+        int ind = indexOfFlat(pairs, key);
+        if (ind != -1) {
+            if (pairs[ind + 1] == value)
+                return this;
+            Object[] newPairs = pairs.clone();
+            newPairs[ind + 1] = value;
+            return new PersistentSmallMap<>(newPairs, this.size);
+        }
+        if (this.size < MAX_FLAT_SIZE) {
+            Object[] newPairs = Arrays.copyOf(pairs, pairs.length + 2);
+            newPairs[pairs.length] = key;
+            newPairs[pairs.length + 1] = value;
+            return new PersistentSmallMap<>(newPairs, this.size + 1);
+        }
+        Change change = new Change();
+        Node newRoot = Node.EMPTY;
+        for (int i = 0; i < pairs.length; i += 2)
+            newRoot = newRoot.with(pairs[i], hash(pairs[i]), pairs[i + 1], 0,
+                    change);
+        newRoot = newRoot.with(key, hash(key), value, 0, change);
+        return new PersistentSmallMap<>(newRoot, this.size + 1);
+    }
+
+    /**
+     * Returns a version of this map without a mapping for <code>key</code>.
+     *
+     * @param key
+     *            the key
+     * @return the new version, or this map if there is no mapping for
+     *         <code>key</code>
+     */
+    public PersistentSmallMap<K, V> without(Object key) {
+        if (this.root instanceof Node) {
+            Change change = new Change();
+            Node newRoot = ((Node) this.root).without(key, hash(key), 0,
+                    change);
+            if (newRoot == this.root)
+                return this;
+            if (this.size - 1 > MAX_FLAT_SIZE)
+                return new PersistentSmallMap<>(newRoot, this.size - 1);
+            Object[] pairs = new Object[2 * (this.size - 1)];
+            int pos = 0;
+            for (EntryIterator it = new EntryIterator(newRoot); it.hasNext(); pos += 2) {
+                it.advance();
+                pairs[pos] = it.key;
+                pairs[pos + 1] = it.value;
+            }
+            return new PersistentSmallMap<>(pairs, this.size - 1);
+        }
+        Object[] pairs = (Object[]) this.root;
+        int ind = indexOfFlat(pairs, key);
+        if (ind == -1)
+            return this;
+        if (pairs.length == 2)
+            return empty();
+        Object[] newPairs = new Object[pairs.length - 2];
+        System.arraycopy(pairs, 0, newPairs, 0, ind);
+        System.arraycopy(pairs, ind + 2, newPairs, ind, newPairs.length - ind);
+        return new PersistentSmallMap<>(newPairs, this.size - 1);
+    }
+
+    private static int indexOfFlat(Object[] pairs, Object key) {
+        for (int i = 0; i < pairs.length; i += 2)
+            if (eq(key, pairs[i]))
+                return i;
+        return -1;
+    }
+
+    private Object find(Object key) {
+        if (this.root instanceof Node)
+            return ((Node) this.root).find(key, hash(key), 0);
+        Object[] pairs = (Object[]) this.root;
+        int ind = indexOfFlat(pairs, key);
+        return (ind == -1) ? NOT_FOUND : pairs[ind + 1];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Object value = find(key);
+        return (value == NOT_FOUND) ? null : (V) value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != NOT_FOUND;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                final EntryIterator it = new EntryIterator(
+                        PersistentSmallMap.this.root);
+                return new Iterator<Entry<K, V>>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Entry<K, V> next() {
+                        it.advance();
+                        return new SimpleImmutableEntry<>((K) it.key,
+                                (V) it.value);
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Entry))
+                    return false;
+                Entry<?, ?> e = (Entry<?, ?>) o;
+                Object value = find(e.getKey());
+                return value != NOT_FOUND && eq(value, e.getValue());
+            }
+
+            @Override
+            public int size() {
+                return PersistentSmallMap.this.size;
+            }
+        };
+    }
+
+    /** Whether an update added or removed a mapping, or only replaced a value. */
+    private static final class Change {
+        boolean sizeChanged = false;
+    }
+
+    /**
+     * A trie node. <code>content</code> holds the key-value pairs stored in
+     * this node, interleaved, followed by the child nodes; the bitmaps say
+     * which five-bit hash slots hold a pair and which a child. A node at the
+     * bottom of the trie, where the hash codes are used up, holds colliding
+     * keys as pairs only, with zero bitmaps, and is searched linearly.
+     */
+    static final class Node {
+
+        static final Node EMPTY = new Node(0, 0, NO_PAIRS);
+
+        final int dataMap;
+        final int nodeMap;
+        final Object[] content;
+
+        Node(int dataMap, int nodeMap, Object[] content) {
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.content = content;
+        }
+
+        /** The length of the pairs at the start of <code>content</code>. */
+        int pairsLength() {
+            return (this.nodeMap == 0) ? this.content.length : 2 * Integer
+                    .bitCount(this.dataMap);
+        }
+
+        private int pairIndex(int bit) {
+            return 2 * Integer.bitCount(this.dataMap & (bit - 1));
+        }
+
+        private int nodeIndex(int bit) {
+            return this.content.length - 1
+                    - Integer.bitCount(this.nodeMap & (bit - 1));
+        }
+
+        Object find(Object key, int hash, int shift) {
+            Node node = this;
+            while (shift < 32) {
+                int bit = 1 << ((hash >>> shift) & MASK);
+                if ((node.dataMap & bit) != 0) {
+                    int ind = node.pairIndex(bit);
+                    return eq(key, node.content[ind]) ? node.content[ind + 1]
+                            : NOT_FOUND;
+                }
+                if ((node.nodeMap & bit) == 0)
+                    return NOT_FOUND;
+                node = (Node) node.content[node.nodeIndex(bit)];
+                shift += BITS;
+            }
+            int ind = indexOfFlat(node.content, key);
+            return (ind == -1) ? NOT_FOUND : node.content[ind + 1];
+        }
+
+        Node with(Object key, int hash, Object value, int shift, Change change) {
+            if (shift >= 32)
+                return collisionWith(key, value, change);
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((this.dataMap & bit) != 0) {
+                int ind = pairIndex(bit);
+                Object k = this.content[ind];
+                if (eq(key, k)) {
+                    if (this.content[ind + 1] == value)
+                        return this;
+                    Object[] newContent = this.content.clone();
+                    newContent[ind + 1] = value;
+                    return new Node(this.dataMap, this.nodeMap, newContent);
+                }
+                change.sizeChanged = true;
+                Node child = merge(k, hash(k), this.content[ind + 1], key,
+                        hash, value, shift + BITS);
+                return pairToNode(bit, ind, child);
+            }
+            if ((this.nodeMap & bit) != 0) {
+                int ind = nodeIndex(bit);
+                Node child = (Node) this.content[ind];
+                Node newChild = child.with(key, hash, value, shift + BITS,
+                        change);
+                if (newChild == child)
+                    return this;
+                Object[] newContent = this.content.clone();
+                newContent[ind] = newChild;
+                return new Node(this.dataMap, this.nodeMap, newContent);
+            }
+            change.sizeChanged = true;
+            int ind = pairIndex(bit);
+            Object[] newContent = new Object[this.content.length + 2];
+            System.arraycopy(this.content, 0, newContent, 0, ind);
+            newContent[ind] = key;
+            newContent[ind + 1] = value;
+            System.arraycopy(this.content, ind, newContent, ind + 2,
+                    this.content.length - ind);
+            return new Node(this.dataMap | bit, this.nodeMap, newContent);
+        }
+
+        private Node collisionWith(Object key, Object value, Change change) {
+            int ind = indexOfFlat(this.content, key);
+            if (ind != -1) {
+                if (this.content[ind + 1] == value)
+                    return this;
+                Object[] newContent = this.content.clone();
+                newContent[ind + 1] = value;
+                return new Node(0, 0, newContent);
+            }
+            change.sizeChanged = true;
+            Object[] newContent = Arrays.copyOf(this.content,
+                    this.content.length + 2);
+            newContent[this.content.length] = key;
+            newContent[this.content.length + 1] = value;
+            return new Node(0, 0, newContent);
+        }
+
+        private static Node merge(Object k1, int h1, Object v1, Object k2,
+                int h2, Object v2, int shift) {
+            if (shift >= 32)
+                return new Node(0, 0, new Object[] { k1, v1, k2, v2 });
+            int b1 = (h1 >>> shift) & MASK;
+            int b2 = (h2 >>> shift) & MASK;
+            if (b1 == b2)
+                return new Node(0, 1 << b1, new Object[] { merge(k1, h1, v1,
+                        k2, h2, v2, shift + BITS) });
+            return (b1 < b2) ? new Node((1 << b1) | (1 << b2), 0,
+                    new Object[] { k1, v1, k2, v2 }) : new Node((1 << b1)
+                    | (1 << b2), 0, new Object[] { k2, v2, k1, v1 });
+        }
+
+        /** Replaces the pair at <code>ind</code>, in slot <code>bit</code>, by a child. */
+        private Node pairToNode(int bit, int ind, Node child) {
+            Object[] newContent = new Object[this.content.length - 1];
+            int newNodeInd = newContent.length - 1
+                    - Integer.bitCount(this.nodeMap & (bit - 1));
+            System.arraycopy(this.content, 0, newContent, 0, ind);
+            System.arraycopy(this.content, ind + 2, newContent, ind,
+                    newNodeInd - ind);
+            newContent[newNodeInd] = child;
+            System.arraycopy(this.content, newNodeInd + 2, newContent,
+                    newNodeInd + 1, newContent.length - newNodeInd - 1);
+            return new Node(this.dataMap ^ bit, this.nodeMap | bit, newContent);
+        }
+
+        /** Replaces the child in slot <code>bit</code> by its single pair. */
+        private Node nodeToPair(int bit, Node child) {
+            int nodeInd = nodeIndex(bit);
+            int ind = 2 * Integer.bitCount(this.dataMap & (bit - 1));
+            Object[] newContent = new Object[this.content.length + 1];
+            System.arraycopy(this.content, 0, newContent, 0, ind);
+            newContent[ind] = child.content[0];
+            newContent[ind + 1] = child.content[1];
+            System.arraycopy(this.content, ind, newContent, ind + 2, nodeInd
+                    - ind);
+            System.arraycopy(this.content, nodeInd + 1, newContent,
+                    nodeInd + 2, this.content.length - nodeInd - 1);
+            return new Node(this.dataMap | bit, this.nodeMap ^ bit, newContent);
+        }
+
+        /** Whether this node holds one pair and no children. */
+        private boolean isSinglePair() {
+            return this.nodeMap == 0 && this.content.length == 2;
+        }
+
+        Node without(Object key, int hash, int shift, Change change) {
+            if (shift >= 32) {
+                int ind = indexOfFlat(this.content, key);
+                if (ind == -1)
+                    return this;
+                change.sizeChanged = true;
+                return new Node(0, 0, removePair(ind));
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((this.dataMap & bit) != 0) {
+                int ind = pairIndex(bit);
+                if (!eq(key, this.content[ind]))
+                    return this;
+                change.sizeChanged = true;
+                return new Node(this.dataMap ^ bit, this.nodeMap,
+                        removePair(ind));
+            }
+            if ((this.nodeMap & bit) == 0)
+                return this;
+            int ind = nodeIndex(bit);
+            Node child = (Node) this.content[ind];
+            Node newChild = child.without(key, hash, shift + BITS, change);
+            if (newChild == child)
+                return this;
+            if (newChild.isSinglePair())
+                return (this.dataMap == 0 && this.content.length == 1) ? newChild
+                        : nodeToPair(bit, newChild);
+            Object[] newContent = this.content.clone();
+            newContent[ind] = newChild;
+            return new Node(this.dataMap, this.nodeMap, newContent);
+        }
+
+        private Object[] removePair(int ind) {
+            if (this.content.length == 2)
+                return NO_PAIRS;
+            Object[] newContent = new Object[this.content.length - 2];
+            System.arraycopy(this.content, 0, newContent, 0, ind);
+            System.arraycopy(this.content, ind + 2, newContent, ind,
+                    newContent.length - ind);
+            return newContent;
+        }
+    }
+
+    /**
+     * Walks the pairs of a flat array or a trie, depth first, with a stack of
+     * nodes and their positions.
+     */
+    private static final class EntryIterator {
+
+        private final Object[][] contents = new Object[MAX_DEPTH + 1][];
+        private final int[] pairsEnds = new int[MAX_DEPTH + 1];
+        private final int[] positions = new int[MAX_DEPTH + 1];
+        private int depth = 0;
+        private boolean ready = false;
+
+        Object key;
+        Object value;
+
+        EntryIterator(Object root) {
+            if (root instanceof Node)
+                push((Node) root);
+            else {
+                this.contents[0] = (Object[]) root;
+                this.pairsEnds[0] = ((Object[]) root).length;
+                this.depth = 1;
+            }
+        }
+
+        private void push(Node node) {
+            this.contents[this.depth] = node.content;
+            this.pairsEnds[this.depth] = node.pairsLength();
+            this.positions[this.depth] = 0;
+            this.depth++;
+        }
+
+        boolean hasNext() {
+            while (!this.ready && this.depth > 0) {
+                int d = this.depth - 1;
+                Object[] content = this.contents[d];
+                int pos = this.positions[d];
+                if (pos < this.pairsEnds[d]) {
+                    this.key = content[pos];
+                    this.value = content[pos + 1];
+                    this.positions[d] = pos + 2;
+                    this.ready = true;
+                } else if (pos < content.length) {
+                    this.positions[d] = pos + 1;
+                    push((Node) content[pos]);
+                } else {
+                    this.contents[d] = null;
+                    this.depth--;
+                }
+            }
+            return this.ready;
+        }
+
+        /** Moves to the next pair, setting <code>key</code> and <code>value</code>. */
+        void advance() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            this.ready = false;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * A lookup key with its hash code computed once, for probing many collections.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+/**
+ * A key (or element) prepared for looking up in many {@link SmallMap}s or
+ * {@link SmallSet}s, with its hash code computed once. A lookup with a
+ * prepared key calls <code>equals</code> only on keys with the same hash
+ * code, which for keys that cache their hash codes, as <code>String</code>s
+ * do, turns most comparisons into comparisons of two <code>int</code>s.
+ * <p>
+ * Since equal objects have equal hash codes, a prepared lookup finds exactly
+ * what <code>get</code> or <code>contains</code> would; the key must not be
+ * changed while prepared. Identity collections compare the key itself with
+ * <code>==</code>, as usual.
+ * </p>
+ *
+ * @author Zteve
+ */
+public final class PreparedKey<T> {
+
+    final T key;
+    final int hash;
+
+    private PreparedKey(T key) {
+        this.key = key;
+        this.hash = (key == null) ? 0 : key.hashCode();
+    }
+
+    /**
+     * Prepares a key.
+     *
+     * @param key
+     *            the key, which may be null
+     * @return the prepared key
+     */
+    public static <T> PreparedKey<T> of(T key) {
+        return new PreparedKey<>(key);
+    }
+
+    /**
+     * @return the key
+     */
+    public T get() {
+        return this.key;
+    }
+
+    /**
+     * The index of the first of the first <code>size</code> elements of
+     * <code>array</code> equal to this key, or -1 if none is.
+     */
+    int indexIn(Object[] array, int size) {
+        Object key = this.key;
+        if (key == null) {
+            for (int i = 0; i < size; i++)
+                if (array[i] == null)
+                    return i;
+            return -1;
+        }
+        int hash = this.hash;
+        for (int i = 0; i < size; i++) {
+            Object k = array[i];
+            if (k == key || (k != null && k.hashCode() == hash && key
+                    .equals(k)))
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return "PreparedKey(" + this.key + ")";
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Linear scan loops shared by the small collections.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+/**
+ * Static linear-scan loops over the backing arrays of the small collections.
+ * <p>
+ * A scan that stops at the first match is not a counted loop the JIT will
+ * unroll, so each iteration pays for its own bounds, exit and branch checks.
+ * The loops here test four slots per iteration, and finish with a plain loop
+ * over the last few slots. This costs nothing measurable on short arrays and
+ * roughly halves the cost of a miss on arrays of a hundred or more (see
+ * <code>TableScanTimeTests</code>).
+ * </p>
+ *
+ * @author Zteve
+ */
+final class ScanKernels {
+
+    private ScanKernels() {
+    }
+
+    /**
+     * The index of the first of the first <code>size</code> elements of
+     * <code>array</code> which is <code>key</code> (by <code>==</code>), or
+     * -1 if none is.
+     */
+    static int indexOfIdentity(Object[] array, int size, Object key) {
+        int i = 0;
+        for (int end = size - 3; i < end; i += 4) {
+            if (array[i] == key)
+                return i;
+            if (array[i + 1] == key)
+                return i + 1;
+            if (array[i + 2] == key)
+                return i + 2;
+            if (array[i + 3] == key)
+                return i + 3;
+        }
+        for (; i < size; i++)
+            if (array[i] == key)
+                return i;
+        return -1;
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Lightweight set of small non-negative integers, held as bits.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Set} of non-negative <code>Integer</code>s that has a small memory
+ * footprint. Values below 64 are held as bits of a single <code>long</code>
+ * word; an array of further words is only allocated if a larger value is
+ * added. Membership is tested in constant time, and the <code>int</code>
+ * methods do not box.
+ * <p>
+ * Like {@link SmallSet} it is <em>unsynchronised</em>. Iteration is in
+ * increasing order.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class SmallBitSet extends AbstractSet<Integer> {
+
+    private long word = 0L;
+    private long[] words = null;
+
+    /**
+     * Constructs a new, empty, <code>SmallBitSet</code>.
+     */
+    public SmallBitSet() {
+    }
+
+    /**
+     * Constructs a new <code>SmallBitSet</code> with the same elements as the
+     * specified <code>Set</code>.
+     *
+     * @param s
+     *            the set whose elements are to be placed in this set
+     * @throws NullPointerException
+     *             if the specified set is null, or contains null
+     * @throws IllegalArgumentException
+     *             if the specified set contains a negative value
+     */
+    public SmallBitSet(Set<Integer> s) {
+        for (Integer value : s)
+            add(value.intValue());
+    }
+
+    /**
+     * Adds <code>value</code> to this set, if not already present.
+     *
+     * @param value
+     *            the value to add
+     * @return <code>true</code> if the set changed
+     * @throws IllegalArgumentException
+     *             if <code>value</code> is negative
+     */
+    public boolean add(int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Negative value: " + value);
+        if (BitWords.get(this.word, this.words, value))
+            return false;
+        if (value < BitWords.WORD_BITS) {
+            this.word |= 1L << value;
+        } else {
+            this.words = BitWords.ensure(this.words, value);
+            this.words[(value >>> 6) - 1] |= 1L << value;
+        }
+        return true;
+    }
+
+    /**
+     * Tests whether <code>value</code> is in this set.
+     *
+     * @param value
+     *            the value to look for
+     * @return <code>true</code> if present
+     */
+    public boolean contains(int value) {
+        return BitWords.get(this.word, this.words, value);
+    }
+
+    /**
+     * Removes <code>value</code> from this set, if present.
+     *
+     * @param value
+     *            the value to remove
+     * @return <code>true</code> if the set changed
+     */
+    public boolean remove(int value) {
+        if (!BitWords.get(this.word, this.words, value))
+            return false;
+        if (value < BitWords.WORD_BITS) {
+            this.word &= ~(1L << value);
+        } else {
+            this.words[(value >>> 6) - 1] &= ~(1L << value);
+            this.words = BitWords.trim(this.words);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return add(value.intValue());
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return (value instanceof Integer) && contains(((Integer) value).intValue());
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        return (value instanceof Integer) && remove(((Integer) value).intValue());
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        if (c instanceof SmallBitSet) {
+            SmallBitSet other = (SmallBitSet) c;
+            if ((other.word & ~this.word) != 0)
+                return false;
+            if (other.words == null)
+                return true;
+            if (this.words == null || this.words.length < other.words.length)
+                return false;
+            for (int i = 0; i < other.words.length; i++)
+                if ((other.words[i] & ~this.words[i]) != 0)
+                    return false;
+            return true;
+        }
+        return super.containsAll(c);
+    }
+
+    @Override
+    public void clear() {
+        this.word = 0L;
+        this.words = null;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+
+            private int next = BitWords.nextSetBit(SmallBitSet.this.word,
+                    SmallBitSet.this.words, 0);
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return this.next != -1;
+            }
+
+            @Override
+            public Integer next() {
+                if (this.next == -1)
+                    throw new NoSuchElementException();
+                this.last = this.next;
+                this.next = BitWords.nextSetBit(SmallBitSet.this.word,
+                        SmallBitSet.this.words, this.last + 1);
+                return this.last;
+            }
+
+            @Override
+            public void remove() {
+                if (this.last == -1)
+                    throw new IllegalStateException();
+                SmallBitSet.this.remove(this.last);
+                this.last = -1;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return BitWords.count(this.word, this.words);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.word == 0L && this.words == null;
+    }
+
+}
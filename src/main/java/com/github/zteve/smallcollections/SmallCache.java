@@ -0,0 +1,267 @@
+/**
+ * Bounded map with small memory footprint, evicting when full.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Map} holding at most a fixed number of mappings, in the
+ * {@link SmallMap} layout of parallel key and value arrays. When a new key is
+ * put into a full cache a mapping is evicted to make room; subclasses decide
+ * which, without any per-mapping node objects.
+ * <p>
+ * Each cache counts the hits and misses of {@link #get(Object)} and the
+ * evictions made by {@link #put(Object, Object)}. Only <code>get</code> and
+ * <code>put</code> count as accesses: <code>containsKey</code> and iteration
+ * leave the eviction order unchanged. Like {@link SmallMap} it is
+ * <em>unsynchronised</em>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public abstract class SmallCache<K, V> extends AbstractMap<K, V> {
+
+    Object[] keyArray = null;
+    Object[] valueArray = null;
+    int size = 0;
+    final int maxSize;
+
+    private int hits = 0;
+    private int misses = 0;
+    private int evictions = 0;
+
+    SmallCache(int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("Cache size must be positive: "
+                    + maxSize);
+        this.maxSize = maxSize;
+    }
+
+    /** Records an access to the mapping at <code>pos</code>. */
+    abstract void accessed(int pos);
+
+    /**
+     * Evicts a mapping from this full cache.
+     *
+     * @return the slot freed for the new mapping
+     */
+    abstract int evict();
+
+    /** Notes that the mapping at <code>pos</code> has been removed. */
+    abstract void removed(int pos);
+
+    @SuppressWarnings("unchecked")
+    final V valueAt(int pos) {
+        return (V) this.valueArray[pos];
+    }
+
+    final int indexOfKey(Object key) {
+        Object[] ka = this.keyArray;
+        if (key == null) {
+            for (int i = 0; i < this.size; i++)
+                if (ka[i] == null)
+                    return i;
+        } else {
+            for (int i = 0; i < this.size; i++)
+                if (key.equals(ka[i]))
+                    return i;
+        }
+        return -1;
+    }
+
+    /** Removes the slot at <code>pos</code>, moving later slots down. */
+    final void shiftOut(int pos) {
+        int numMoved = this.size - pos - 1;
+        if (numMoved > 0) {
+            System.arraycopy(this.keyArray, pos + 1, this.keyArray, pos,
+                    numMoved);
+            System.arraycopy(this.valueArray, pos + 1, this.valueArray, pos,
+                    numMoved);
+        }
+        --this.size;
+        this.keyArray[this.size] = null;
+        this.valueArray[this.size] = null;
+    }
+
+    private V removeAt(int pos) {
+        V oldValue = valueAt(pos);
+        shiftOut(pos);
+        removed(pos);
+        return oldValue;
+    }
+
+    /**
+     * The maximum number of mappings this cache holds.
+     *
+     * @return the maximum size
+     */
+    public int maxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * The number of calls of {@link #get(Object)} that found their key.
+     *
+     * @return the hit count
+     */
+    public int hitCount() {
+        return this.hits;
+    }
+
+    /**
+     * The number of calls of {@link #get(Object)} that did not find their
+     * key.
+     *
+     * @return the miss count
+     */
+    public int missCount() {
+        return this.misses;
+    }
+
+    /**
+     * The number of mappings evicted to make room for new ones.
+     *
+     * @return the eviction count
+     */
+    public int evictionCount() {
+        return this.evictions;
+    }
+
+    /**
+     * Sets the hit, miss and eviction counts back to zero.
+     */
+    public void resetCounts() {
+        this.hits = 0;
+        this.misses = 0;
+        this.evictions = 0;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOfKey(key) != -1;
+    }
+
+    @Override
+    public V get(Object key) {
+        int ind = indexOfKey(key);
+        if (-1 == ind) {
+            ++this.misses;
+            return null;
+        }
+        ++this.hits;
+        V value = valueAt(ind);
+        accessed(ind);
+        return value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int ind = indexOfKey(key);
+        if (-1 != ind) {
+            V oldValue = valueAt(ind);
+            this.valueArray[ind] = value;
+            accessed(ind);
+            return oldValue;
+        }
+        int pos;
+        if (this.size < this.maxSize) {
+            int capacity = (this.keyArray == null) ? 0 : this.keyArray.length;
+            if (this.size == capacity) {
+                int newCapacity = Math.min(this.maxSize,
+                        CapacityPolicy.DEFAULT.grow(capacity, this.size + 1));
+                this.keyArray = (this.keyArray == null) ? new Object[newCapacity]
+                        : Arrays.copyOf(this.keyArray, newCapacity);
+                this.valueArray = (this.valueArray == null) ? new Object[newCapacity]
+                        : Arrays.copyOf(this.valueArray, newCapacity);
+            }
+            pos = this.size++;
+        } else {
+            ++this.evictions;
+            pos = evict();
+        }
+        this.keyArray[pos] = key;
+        this.valueArray[pos] = value;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int ind = indexOfKey(key);
+        return (-1 == ind) ? null : removeAt(ind);
+    }
+
+    @Override
+    public void clear() {
+        while (this.size > 0)
+            removeAt(this.size - 1);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<Entry<K, V>>() {
+
+                    private int posNext = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.posNext < SmallCache.this.size;
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Entry<K, V> next() {
+                        if (this.posNext >= SmallCache.this.size)
+                            throw new NoSuchElementException();
+                        int pos = this.posNext++;
+                        return new SimpleEntry<>(
+                                (K) SmallCache.this.keyArray[pos],
+                                SmallCache.this.valueAt(pos));
+                    }
+
+                    @Override
+                    public void remove() {
+                        int pos = --this.posNext;
+                        SmallCache.this.removeAt(pos);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return SmallCache.this.size;
+            }
+
+        };
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Bounded CLOCK cache with small memory footprint.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+/**
+ * A {@link SmallCache} which approximates least-recently-used eviction with
+ * the CLOCK algorithm. Each slot has a bit in a single <code>long</code> word,
+ * set when the slot is accessed; to evict, a hand sweeps the slots, clearing
+ * set bits, until it finds a clear one, and the new mapping takes that slot.
+ * Accesses therefore move nothing, at the cost of a cache size of at most 64.
+ *
+ * @author Zteve
+ */
+public class SmallClockCache<K, V> extends SmallCache<K, V> {
+
+    private long accessBits = 0L;
+    private int hand = 0;
+
+    /**
+     * Constructs a new, empty, <code>SmallClockCache</code>.
+     *
+     * @param maxSize
+     *            the maximum number of mappings held, at most 64
+     * @throws IllegalArgumentException
+     *             if <code>maxSize</code> is not positive, or more than 64
+     */
+    public SmallClockCache(int maxSize) {
+        super(maxSize);
+        if (maxSize > BitWords.WORD_BITS)
+            throw new IllegalArgumentException("Cache size more than "
+                    + BitWords.WORD_BITS + ": " + maxSize);
+    }
+
+    @Override
+    void accessed(int pos) {
+        this.accessBits |= 1L << pos;
+    }
+
+    @Override
+    int evict() {
+        while ((this.accessBits & (1L << this.hand)) != 0) {
+            this.accessBits &= ~(1L << this.hand);
+            this.hand = (this.hand + 1) % this.size;
+        }
+        int pos = this.hand;
+        this.hand = (this.hand + 1) % this.size;
+        return pos;
+    }
+
+    @Override
+    void removed(int pos) {
+        long below = (1L << pos) - 1;
+        this.accessBits = (this.accessBits & below)
+                | ((this.accessBits >>> 1) & ~below);
+        if (this.hand > pos)
+            --this.hand;
+        if (this.hand >= this.size)
+            this.hand = 0;
+    }
+
+}
@@ -0,0 +1,240 @@
+/**
+ * Compact binary encoding of small sets and maps.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Writes and reads sets and maps in a compact binary form: the size as a
+ * varint, followed by the elements (or alternating keys and values) in
+ * iteration order, each written by an {@link ElementCodec}. Sets and maps read
+ * back are {@link SmallSet}s and {@link SmallMap}s sized exactly for their
+ * contents.
+ * <p>
+ * The varints are unsigned LEB128: seven bits per byte, least significant
+ * first, with the top bit set on all but the last byte, so sizes below 128
+ * take one byte.
+ * </p>
+ *
+ * @author Zteve
+ */
+public final class SmallCollectionCodec {
+
+    /**
+     * The most slots allocated for a collection before its elements are read,
+     * or bytes for a string before its bytes are read.
+     */
+    static final int MAX_PRESIZE = 1024;
+
+    private SmallCollectionCodec() {
+    }
+
+    /**
+     * Writes <code>s</code> to <code>out</code>.
+     *
+     * @param out
+     *            the output to write to
+     * @param s
+     *            the set to write
+     * @param codec
+     *            the codec for the elements
+     * @throws IOException
+     *             if <code>out</code> fails
+     */
+    public static <E> void writeSet(DataOutput out, Set<? extends E> s,
+            ElementCodec<? super E> codec) throws IOException {
+        writeVarInt(out, s.size());
+        for (E value : s)
+            codec.write(out, value);
+    }
+
+    /**
+     * Reads a set written by {@link #writeSet}.
+     *
+     * @param in
+     *            the input to read from
+     * @param codec
+     *            the codec for the elements
+     * @return the set read
+     * @throws IOException
+     *             if <code>in</code> fails, or is malformed
+     */
+    public static <E> SmallSet<E> readSet(DataInput in, ElementCodec<E> codec)
+            throws IOException {
+        int size = readSize(in);
+        SmallSet<E> s = new SmallSet<>();
+        s.ensureCapacity(presize(size));
+        for (int i = 0; i < size; i++)
+            s.add(codec.read(in));
+        return s;
+    }
+
+    /**
+     * Writes <code>m</code> to <code>out</code>.
+     *
+     * @param out
+     *            the output to write to
+     * @param m
+     *            the map to write
+     * @param keyCodec
+     *            the codec for the keys
+     * @param valueCodec
+     *            the codec for the values
+     * @throws IOException
+     *             if <code>out</code> fails
+     */
+    public static <K, V> void writeMap(DataOutput out,
+            Map<? extends K, ? extends V> m, ElementCodec<? super K> keyCodec,
+            ElementCodec<? super V> valueCodec) throws IOException {
+        writeVarInt(out, m.size());
+        for (Entry<? extends K, ? extends V> e : m.entrySet()) {
+            keyCodec.write(out, e.getKey());
+            valueCodec.write(out, e.getValue());
+        }
+    }
+
+    /**
+     * Reads a map written by {@link #writeMap}.
+     *
+     * @param in
+     *            the input to read from
+     * @param keyCodec
+     *            the codec for the keys
+     * @param valueCodec
+     *            the codec for the values
+     * @return the map read
+     * @throws IOException
+     *             if <code>in</code> fails, or is malformed
+     */
+    public static <K, V> SmallMap<K, V> readMap(DataInput in,
+            ElementCodec<K> keyCodec, ElementCodec<V> valueCodec)
+            throws IOException {
+        int size = readSize(in);
+        SmallMap<K, V> m = new SmallMap<>();
+        m.ensureCapacity(presize(size));
+        for (int i = 0; i < size; i++) {
+            K key = keyCodec.read(in);
+            m.put(key, valueCodec.read(in));
+        }
+        return m;
+    }
+
+    /**
+     * Reads the size of a collection, as written by {@link #writeVarInt}.
+     *
+     * @throws StreamCorruptedException
+     *             if the size is negative
+     */
+    static int readSize(DataInput in) throws IOException {
+        int size = readVarInt(in);
+        if (size < 0)
+            throw new StreamCorruptedException("Negative size: " + size);
+        return size;
+    }
+
+    /**
+     * The capacity to allocate for a collection of <code>size</code> elements
+     * before reading them: at most {@link #MAX_PRESIZE}, so a corrupt size
+     * cannot exhaust the heap before the input runs out.
+     */
+    static int presize(int size) {
+        return Math.min(size, MAX_PRESIZE);
+    }
+
+    /**
+     * Reads <code>len</code> bytes. The array is allocated at most
+     * {@link #MAX_PRESIZE} bytes at a time, doubling as the bytes arrive, so a
+     * corrupt length runs out of input before it can exhaust the heap.
+     */
+    static byte[] readBytes(DataInput in, int len) throws IOException {
+        byte[] bytes = new byte[presize(len)];
+        int n = 0;
+        while (true) {
+            in.readFully(bytes, n, bytes.length - n);
+            n = bytes.length;
+            if (n == len)
+                return bytes;
+            bytes = Arrays.copyOf(bytes, (int) Math.min(len, 2L * n));
+        }
+    }
+
+    /**
+     * Writes a non-negative <code>int</code> as an unsigned varint.
+     *
+     * @param out
+     *            the output to write to
+     * @param value
+     *            the value to write
+     * @throws IOException
+     *             if <code>out</code> fails
+     */
+    public static void writeVarInt(DataOutput out, int value)
+            throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads an unsigned varint written by {@link #writeVarInt}.
+     *
+     * @param in
+     *            the input to read from
+     * @return the value read
+     * @throws IOException
+     *             if <code>in</code> fails, or the varint is too long
+     */
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+}
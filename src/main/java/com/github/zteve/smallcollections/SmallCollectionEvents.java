@@ -0,0 +1,101 @@
+/**
+ * Flight Recorder events for misused small collections.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+/**
+ * Emits Java Flight Recorder events when a {@link SmallMap} or
+ * {@link SmallSet} (or a variant) grows past a size, or a single lookup
+ * compares more than a number of slots, to find the call sites which use
+ * small collections for large jobs. Each event carries the collection's
+ * class and size, the class of the key (or element) involved and, as JFR
+ * events do by default, the stack trace.
+ * <p>
+ * The limits are set by the system properties
+ * <code>smallcollections.jfr.maxSize</code> and
+ * <code>smallcollections.jfr.maxScan</code> (both 64 by default); the events
+ * are named <code>com.github.zteve.smallcollections.Oversized</code> and
+ * <code>com.github.zteve.smallcollections.SlowScan</code>, and are enabled
+ * and disabled in JFR settings like any other. An event is offered to JFR
+ * only when a limit is crossed, so the cost on every insert and lookup is a
+ * comparison with a constant.
+ * </p>
+ * <p>
+ * The events are defined in the Java 11 part of the multi-release jar, and
+ * are loaded only when this class is initialised on a JVM which has JFR.
+ * Elsewhere, or with <code>smallcollections.jfr=false</code>, nothing is
+ * emitted and the JIT removes the checks altogether.
+ * </p>
+ *
+ * @author Zteve
+ */
+final class SmallCollectionEvents {
+
+    /** Receives the events; implemented over <code>jdk.jfr</code>. */
+    interface Sink {
+
+        void oversized(Object collection, int size, Object key);
+
+        void slowScan(Object collection, int size, int scanned, Object key);
+    }
+
+    private static final String SINK_CLASS = "com.github.zteve.smallcollections.JfrEventSink";
+
+    private static final Sink SINK = loadSink();
+
+    /** Whether events can be emitted; fixed when this class is initialised. */
+    static final boolean ENABLED = (SINK != null);
+
+    /** Size which, when reached by an insert, emits an oversized event. */
+    static final int OVERSIZE = Integer.getInteger(
+            "smallcollections.jfr.maxSize", 64) + 1;
+
+    /** Lookups comparing more than this many slots emit a slow scan event. */
+    static final int MAX_SCAN = Integer.getInteger(
+            "smallcollections.jfr.maxScan", 64);
+
+    private SmallCollectionEvents() {
+    }
+
+    private static Sink loadSink() {
+        if (!Boolean.parseBoolean(System.getProperty("smallcollections.jfr",
+                "true")))
+            return null;
+        try {
+            return (Sink) Class.forName(SINK_CLASS).getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null; // before Java 11, or no jdk.jfr module
+        }
+    }
+
+    /** Called after an insert has made a collection <code>size</code> elements. */
+    static void inserted(Object collection, int size, Object key) {
+        if (size == OVERSIZE)
+            SINK.oversized(collection, size, key);
+    }
+
+    /**
+     * Called after a lookup in a collection of <code>size</code> elements
+     * found <code>key</code> at <code>index</code>, or -1 for a miss.
+     */
+    static void lookedUp(Object collection, int index, int size, Object key) {
+        int scanned = (index == -1) ? size : index + 1;
+        if (scanned > MAX_SCAN)
+            SINK.slowScan(collection, size, scanned, key);
+    }
+}
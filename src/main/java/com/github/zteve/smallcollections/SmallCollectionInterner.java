@@ -0,0 +1,162 @@
+/**
+ * Canonicalising interner for unmodifiable small sets and maps.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Hash-consing for small collections: returns one shared, unmodifiable
+ * {@link SmallSet} or {@link SmallMap} for each distinct content, so that
+ * many equal collections cost the memory of one.
+ * <p>
+ * Interned collections are trimmed to size, cache their hash codes, and throw
+ * <code>UnsupportedOperationException</code> if modified. The canonical table
+ * holds them weakly, so a canonical instance is dropped once nothing else
+ * refers to it. The interner is thread-safe (it synchronises on itself); the
+ * collections it returns may be shared freely, since they cannot change.
+ * </p>
+ * <p>
+ * The interner counts its requests and hits, and estimates the bytes saved by
+ * each hit as the footprint of the copy that was not made.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class SmallCollectionInterner {
+
+    private final WeakHashMap<Object, WeakReference<Object>> canonical = new WeakHashMap<>();
+
+    private long requests = 0;
+    private long hits = 0;
+    private long bytesSaved = 0;
+
+    /**
+     * Constructs a new, empty, <code>SmallCollectionInterner</code>.
+     */
+    public SmallCollectionInterner() {
+    }
+
+    /**
+     * Returns the canonical unmodifiable set equal to <code>s</code>. If
+     * <code>s</code> was itself returned by this interner, it is returned
+     * unchanged.
+     *
+     * @param s
+     *            the set to intern
+     * @return the canonical set with the same elements as <code>s</code>
+     * @throws NullPointerException
+     *             if the specified set is null
+     */
+    public synchronized <E> SmallSet<E> intern(Set<? extends E> s) {
+        Object c = lookUp(s, Footprint.frozenSmallSet(s.size()));
+        if (c != null)
+            return cast(c);
+        SmallSet<E> frozen = new SmallSet.Frozen<E>(s);
+        this.canonical.put(frozen, new WeakReference<Object>(frozen));
+        return frozen;
+    }
+
+    /**
+     * Returns the canonical unmodifiable map equal to <code>m</code>. If
+     * <code>m</code> was itself returned by this interner, it is returned
+     * unchanged.
+     *
+     * @param m
+     *            the map to intern
+     * @return the canonical map with the same mappings as <code>m</code>
+     * @throws NullPointerException
+     *             if the specified map is null
+     */
+    public synchronized <K, V> SmallMap<K, V> intern(
+            Map<? extends K, ? extends V> m) {
+        Object c = lookUp(m, Footprint.frozenSmallMap(m.size()));
+        if (c != null)
+            return cast(c);
+        SmallMap<K, V> frozen = new SmallMap.Frozen<K, V>(m);
+        this.canonical.put(frozen, new WeakReference<Object>(frozen));
+        return frozen;
+    }
+
+    private Object lookUp(Object collection, long footprint) {
+        ++this.requests;
+        WeakReference<Object> ref = this.canonical.get(collection);
+        Object c = (ref == null) ? null : ref.get();
+        if (c != null && c != collection) {
+            ++this.hits;
+            this.bytesSaved += footprint;
+        }
+        return c;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object c) {
+        return (T) c;
+    }
+
+    /**
+     * The number of calls of <code>intern</code>.
+     *
+     * @return the request count
+     */
+    public synchronized long requestCount() {
+        return this.requests;
+    }
+
+    /**
+     * The number of calls of <code>intern</code> which returned an existing
+     * canonical collection in place of a new copy.
+     *
+     * @return the hit count
+     */
+    public synchronized long hitCount() {
+        return this.hits;
+    }
+
+    /**
+     * The number of canonical collections still in use.
+     *
+     * @return the canonical count
+     */
+    public synchronized int canonicalCount() {
+        return this.canonical.size();
+    }
+
+    /**
+     * The proportion of requests which were answered by an existing canonical
+     * collection.
+     *
+     * @return the deduplication ratio, between 0 and 1
+     */
+    public synchronized double dedupRatio() {
+        return (this.requests == 0) ? 0.0 : (double) this.hits / this.requests;
+    }
+
+    /**
+     * An estimate of the bytes saved by hits: the footprint of the
+     * unmodifiable copies that were not made.
+     *
+     * @return the estimated bytes saved
+     */
+    public synchronized long bytesSaved() {
+        return this.bytesSaved;
+    }
+
+}
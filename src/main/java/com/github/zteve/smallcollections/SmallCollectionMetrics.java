@@ -0,0 +1,291 @@
+/**
+ * Optional usage metrics for the small collections.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records how {@link SmallMap}s and {@link SmallSet}s (and their variants) are
+ * used, to check that small collections really are small: the size reached
+ * by every insert, the number of slots compared by every <code>get</code>,
+ * <code>containsKey</code> or <code>contains</code>, how many lookups miss,
+ * and how many elements are removed through iterators.
+ * <p>
+ * Recording is off unless the JVM is started with the system property
+ * <code>smallcollections.metrics=true</code>. The switch is a
+ * <code>static final</code> constant, so when it is off the JIT removes the
+ * recording calls altogether. When it is on, counts are kept in shared
+ * atomic counters, at the cost of some contention between threads.
+ * </p>
+ * <p>
+ * The counts are available from the static methods here, through JMX once
+ * {@link #registerMBean()} has been called, and as a csv table written by
+ * {@link #writeCsv(File)}, in the same format as the tables in
+ * <code>build/output</code>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public final class SmallCollectionMetrics implements
+        SmallCollectionMetricsMBean {
+
+    /** Whether metrics are recorded; fixed when this class is initialised. */
+    public static final boolean ENABLED = Boolean
+            .getBoolean("smallcollections.metrics");
+
+    /** The name under which {@link #registerMBean()} registers the MBean. */
+    public static final String OBJECT_NAME = "com.github.zteve.smallcollections:type=SmallCollectionMetrics";
+
+    /** Sizes and probe lengths of this or more share the last bucket. */
+    static final int NUM_BUCKETS = 65;
+
+    private static final AtomicLongArray sizes = new AtomicLongArray(
+            NUM_BUCKETS);
+    private static final AtomicLongArray probes = new AtomicLongArray(
+            NUM_BUCKETS);
+    private static final LongAdder lookups = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder slotsCompared = new LongAdder();
+    private static final LongAdder inserts = new LongAdder();
+    private static final LongAdder iteratorRemovals = new LongAdder();
+
+    private static final SmallCollectionMetrics INSTANCE = new SmallCollectionMetrics();
+
+    private SmallCollectionMetrics() {
+    }
+
+    private static int bucket(int n) {
+        return Math.min(n, NUM_BUCKETS - 1);
+    }
+
+    /**
+     * Records a lookup in a collection of <code>size</code> elements which
+     * found the element at <code>index</code>, or -1 for a miss.
+     */
+    static void recordLookup(int index, int size) {
+        int probeLength = (index == -1) ? size : index + 1;
+        probes.incrementAndGet(bucket(probeLength));
+        slotsCompared.add(probeLength);
+        lookups.increment();
+        if (index == -1)
+            misses.increment();
+    }
+
+    /** Records an insert which made a collection <code>size</code> elements. */
+    static void recordInsert(int size) {
+        sizes.incrementAndGet(bucket(size));
+        inserts.increment();
+    }
+
+    static void recordIteratorRemoval() {
+        iteratorRemovals.increment();
+    }
+
+    /**
+     * Registers the metrics MBean with the platform MBean server under
+     * {@link #OBJECT_NAME}, if it is not registered already.
+     *
+     * @throws JMException
+     *             if the MBean cannot be registered
+     */
+    public static synchronized void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(name))
+            server.registerMBean(INSTANCE, name);
+    }
+
+    /**
+     * @return whether metrics are being recorded
+     */
+    public static boolean enabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @return the number of lookups recorded
+     */
+    public static long lookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return the number of lookups which found nothing
+     */
+    public static long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return misses as a fraction of lookups, or zero if there were none
+     */
+    public static double missRate() {
+        long n = lookups.sum();
+        return (n == 0) ? 0.0 : (double) misses.sum() / n;
+    }
+
+    /**
+     * @return the mean number of slots compared per lookup, or zero if there
+     *         were none
+     */
+    public static double meanProbeLength() {
+        long n = lookups.sum();
+        return (n == 0) ? 0.0 : (double) slotsCompared.sum() / n;
+    }
+
+    /**
+     * @return the number of elements (or mappings) added
+     */
+    public static long insertCount() {
+        return inserts.sum();
+    }
+
+    /**
+     * @return the number of elements (or mappings) removed through iterators
+     */
+    public static long iteratorRemovalCount() {
+        return iteratorRemovals.sum();
+    }
+
+    /**
+     * @return the number of inserts by the size of the collection after the
+     *         insert; the last bucket counts all larger sizes too
+     */
+    public static long[] sizeHistogram() {
+        return snapshot(sizes);
+    }
+
+    /**
+     * @return the number of lookups by the number of slots compared; the last
+     *         bucket counts all longer probes too
+     */
+    public static long[] probeLengthHistogram() {
+        return snapshot(probes);
+    }
+
+    private static long[] snapshot(AtomicLongArray counts) {
+        long[] result = new long[counts.length()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = counts.get(i);
+        return result;
+    }
+
+    /**
+     * Sets every count to zero. Counts recorded while resetting may be lost.
+     */
+    public static void resetCounts() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            sizes.set(i, 0);
+            probes.set(i, 0);
+        }
+        lookups.reset();
+        misses.reset();
+        slotsCompared.reset();
+        inserts.reset();
+        iteratorRemovals.reset();
+    }
+
+    /**
+     * Appends the histograms to a csv file: a row for each size or probe
+     * length, with columns for the inserts and lookups counted.
+     *
+     * @param file
+     *            the file to write
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public static void writeCsv(File file) throws IOException {
+        long[] sizeCounts = sizeHistogram();
+        long[] probeCounts = probeLengthHistogram();
+        StringBuilder sb = new StringBuilder(
+                "\"Size or probe length\",\"Inserts\",\"Lookups\"\n");
+        for (int i = 0; i < NUM_BUCKETS; i++)
+            sb.append(i).append(',').append(sizeCounts[i]).append(',')
+                    .append(probeCounts[i]).append('\n');
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null)
+            dir.mkdirs();
+        try (FileOutputStream fos = new FileOutputStream(file, true /* append */)) {
+            fos.write(sb.toString().getBytes("US-ASCII"));
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled();
+    }
+
+    @Override
+    public long getLookupCount() {
+        return lookupCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount();
+    }
+
+    @Override
+    public double getMissRate() {
+        return missRate();
+    }
+
+    @Override
+    public double getMeanProbeLength() {
+        return meanProbeLength();
+    }
+
+    @Override
+    public long getInsertCount() {
+        return insertCount();
+    }
+
+    @Override
+    public long getIteratorRemovalCount() {
+        return iteratorRemovalCount();
+    }
+
+    @Override
+    public long[] getSizeHistogram() {
+        return sizeHistogram();
+    }
+
+    @Override
+    public long[] getProbeLengthHistogram() {
+        return probeLengthHistogram();
+    }
+
+    @Override
+    public void reset() {
+        resetCounts();
+    }
+
+    @Override
+    public void dumpCsv(String path) throws IOException {
+        writeCsv(new File(path));
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * JMX management interface of SmallCollectionMetrics.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.IOException;
+
+/**
+ * The JMX view of {@link SmallCollectionMetrics}, registered by
+ * {@link SmallCollectionMetrics#registerMBean()}.
+ *
+ * @author Zteve
+ */
+public interface SmallCollectionMetricsMBean {
+
+    /** @return whether metrics are being recorded */
+    boolean isEnabled();
+
+    /** @return the number of <code>get</code>, <code>containsKey</code> and <code>contains</code> calls */
+    long getLookupCount();
+
+    /** @return the number of lookups which found nothing */
+    long getMissCount();
+
+    /** @return misses as a fraction of lookups */
+    double getMissRate();
+
+    /** @return the mean number of slots compared per lookup */
+    double getMeanProbeLength();
+
+    /** @return the number of elements added */
+    long getInsertCount();
+
+    /** @return the number of elements removed through iterators */
+    long getIteratorRemovalCount();
+
+    /** @return inserts by collection size after the insert, the last bucket holding all larger sizes */
+    long[] getSizeHistogram();
+
+    /** @return lookups by number of slots compared, the last bucket holding all longer probes */
+    long[] getProbeLengthHistogram();
+
+    /** Sets every count to zero. */
+    void reset();
+
+    /**
+     * Writes the histograms to a csv file.
+     *
+     * @param path
+     *            the file to write
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    void dumpCsv(String path) throws IOException;
+}
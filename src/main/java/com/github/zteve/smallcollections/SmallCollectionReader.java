@@ -0,0 +1,242 @@
+/**
+ * Buffered channel input for streams of encoded small collections.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A {@link DataInput} which reads from a <code>ReadableByteChannel</code>
+ * through a single reused buffer, for restoring very many small collections
+ * written by a {@link SmallCollectionWriter}. Closing the reader closes the
+ * channel. It is <em>unsynchronised</em>.
+ *
+ * @author Zteve
+ */
+public class SmallCollectionReader implements DataInput, Closeable {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructs a reader with a buffer of
+     * {@link SmallCollectionWriter#DEFAULT_BUFFER_SIZE} bytes.
+     *
+     * @param channel
+     *            the channel to read from
+     */
+    public SmallCollectionReader(ReadableByteChannel channel) {
+        this(channel, SmallCollectionWriter.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a reader with a buffer of <code>bufferSize</code> bytes.
+     *
+     * @param channel
+     *            the channel to read from
+     * @param bufferSize
+     *            the size of the buffer, at least 8
+     * @throws IllegalArgumentException
+     *             if <code>bufferSize</code> is less than 8
+     */
+    public SmallCollectionReader(ReadableByteChannel channel, int bufferSize) {
+        if (bufferSize < 8)
+            throw new IllegalArgumentException("Buffer too small: "
+                    + bufferSize);
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.flip(); // start empty
+    }
+
+    /**
+     * Reads a set in the {@link SmallCollectionCodec} format.
+     *
+     * @param codec
+     *            the codec for the elements
+     * @return the set read
+     * @throws IOException
+     *             if the channel fails, or the input is malformed
+     */
+    public <E> SmallSet<E> readSet(ElementCodec<E> codec) throws IOException {
+        return SmallCollectionCodec.readSet(this, codec);
+    }
+
+    /**
+     * Reads a map in the {@link SmallCollectionCodec} format.
+     *
+     * @param keyCodec
+     *            the codec for the keys
+     * @param valueCodec
+     *            the codec for the values
+     * @return the map read
+     * @throws IOException
+     *             if the channel fails, or the input is malformed
+     */
+    public <K, V> SmallMap<K, V> readMap(ElementCodec<K> keyCodec,
+            ElementCodec<V> valueCodec) throws IOException {
+        return SmallCollectionCodec.readMap(this, keyCodec, valueCodec);
+    }
+
+    /**
+     * Tests whether the channel is exhausted, reading more of it if needed.
+     *
+     * @return <code>true</code> if there is nothing more to read
+     * @throws IOException
+     *             if the channel fails
+     */
+    public boolean atEnd() throws IOException {
+        return !this.buffer.hasRemaining() && !fill(1);
+    }
+
+    /**
+     * Tries to have at least <code>n</code> bytes, at most the buffer size,
+     * in the buffer.
+     */
+    private boolean fill(int n) throws IOException {
+        if (this.buffer.remaining() >= n)
+            return true;
+        this.buffer.compact();
+        try {
+            while (this.buffer.position() < n) {
+                if (this.channel.read(this.buffer) < 0)
+                    return false;
+            }
+            return true;
+        } finally {
+            this.buffer.flip();
+        }
+    }
+
+    /** Ensures <code>n</code> bytes, which is at most 8, can be read. */
+    private ByteBuffer need(int n) throws IOException {
+        if (!fill(n))
+            throw new EOFException();
+        return this.buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            need(1);
+            int n = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        int skipped = 0;
+        while (skipped < n && fill(1)) {
+            int k = Math.min(n - skipped, this.buffer.remaining());
+            this.buffer.position(this.buffer.position() + k);
+            skipped += k;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return need(1).get() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        return need(1).get();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return need(1).get() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        return need(2).getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return need(2).getShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return need(2).getChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        return need(4).getInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        return need(8).getLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return need(4).getFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return need(8).getDouble();
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        if (atEnd())
+            return null;
+        StringBuilder sb = new StringBuilder();
+        while (!atEnd()) {
+            char c = (char) readUnsignedByte();
+            if (c == '\n')
+                break;
+            if (c == '\r') {
+                if (!atEnd() && this.buffer.get(this.buffer.position()) == '\n')
+                    this.buffer.get();
+                break;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * Buffered channel output for streams of encoded small collections.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link DataOutput} which writes to a <code>WritableByteChannel</code>
+ * through a single reused buffer, for streaming very many small collections
+ * in the {@link SmallCollectionCodec} format. Nothing is allocated per
+ * collection written, beyond what the element codecs allocate.
+ * <p>
+ * The writer must be flushed (or closed) to write out the last buffer.
+ * Closing it closes the channel. It is <em>unsynchronised</em>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class SmallCollectionWriter implements DataOutput, Flushable,
+        Closeable {
+
+    /** The buffer size used unless one is given. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private long drained = 0;
+
+    /**
+     * Constructs a writer with a buffer of {@link #DEFAULT_BUFFER_SIZE} bytes.
+     *
+     * @param channel
+     *            the channel to write to
+     */
+    public SmallCollectionWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a writer with a buffer of <code>bufferSize</code> bytes.
+     *
+     * @param channel
+     *            the channel to write to
+     * @param bufferSize
+     *            the size of the buffer, at least 8
+     * @throws IllegalArgumentException
+     *             if <code>bufferSize</code> is less than 8
+     */
+    public SmallCollectionWriter(WritableByteChannel channel, int bufferSize) {
+        if (bufferSize < 8)
+            throw new IllegalArgumentException("Buffer too small: "
+                    + bufferSize);
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Writes <code>s</code> in the {@link SmallCollectionCodec} format.
+     *
+     * @param s
+     *            the set to write
+     * @param codec
+     *            the codec for the elements
+     * @throws IOException
+     *             if the channel fails
+     */
+    public <E> void writeSet(Set<? extends E> s, ElementCodec<? super E> codec)
+            throws IOException {
+        SmallCollectionCodec.writeSet(this, s, codec);
+    }
+
+    /**
+     * Writes <code>m</code> in the {@link SmallCollectionCodec} format.
+     *
+     * @param m
+     *            the map to write
+     * @param keyCodec
+     *            the codec for the keys
+     * @param valueCodec
+     *            the codec for the values
+     * @throws IOException
+     *             if the channel fails
+     */
+    public <K, V> void writeMap(Map<? extends K, ? extends V> m,
+            ElementCodec<? super K> keyCodec, ElementCodec<? super V> valueCodec)
+            throws IOException {
+        SmallCollectionCodec.writeMap(this, m, keyCodec, valueCodec);
+    }
+
+    /** Makes room for <code>n</code> bytes, which is at most 8. */
+    private ByteBuffer room(int n) throws IOException {
+        if (this.buffer.remaining() < n)
+            drain();
+        return this.buffer;
+    }
+
+    /**
+     * The number of bytes written so far, including those still buffered.
+     *
+     * @return the position in the output
+     */
+    public long position() {
+        return this.drained + this.buffer.position();
+    }
+
+    private void drain() throws IOException {
+        this.drained += this.buffer.position();
+        this.buffer.flip();
+        while (this.buffer.hasRemaining())
+            this.channel.write(this.buffer);
+        this.buffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        room(1).put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!this.buffer.hasRemaining())
+                drain();
+            int n = Math.min(len, this.buffer.remaining());
+            this.buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean v) throws IOException {
+        room(1).put((byte) (v ? 1 : 0));
+    }
+
+    @Override
+    public void writeByte(int v) throws IOException {
+        room(1).put((byte) v);
+    }
+
+    @Override
+    public void writeShort(int v) throws IOException {
+        room(2).putShort((short) v);
+    }
+
+    @Override
+    public void writeChar(int v) throws IOException {
+        room(2).putChar((char) v);
+    }
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        room(4).putInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        room(8).putLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) throws IOException {
+        room(4).putFloat(v);
+    }
+
+    @Override
+    public void writeDouble(double v) throws IOException {
+        room(8).putDouble(v);
+    }
+
+    @Override
+    public void writeBytes(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++)
+            writeByte(s.charAt(i));
+    }
+
+    @Override
+    public void writeChars(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++)
+            writeChar(s.charAt(i));
+    }
+
+    @Override
+    public void writeUTF(String s) throws IOException {
+        int utfLength = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            utfLength += (c >= 0x0001 && c <= 0x007F) ? 1 : (c <= 0x07FF) ? 2
+                    : 3;
+        }
+        if (utfLength > 0xFFFF)
+            throw new UTFDataFormatException("String too long: " + utfLength);
+        writeShort(utfLength);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                writeByte(c);
+            } else if (c <= 0x07FF) {
+                writeByte(0xC0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3F));
+            } else {
+                writeByte(0xE0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3F));
+                writeByte(0x80 | (c & 0x3F));
+            }
+        }
+    }
+}
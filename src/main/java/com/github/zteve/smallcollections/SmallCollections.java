@@ -0,0 +1,130 @@
+/**
+ * Factories for maps and sets whose use can be profiled by allocation site.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Factories for the maps and sets of code being considered for
+ * {@link SmallMap} and {@link SmallSet}. Replace <code>new HashMap&lt;&gt;()</code>
+ * with {@link #newMap()} (and <code>new HashSet&lt;&gt;()</code> with
+ * {@link #newSet()}); the factories return the same <code>HashMap</code>s
+ * and <code>HashSet</code>s as before, so behaviour is unchanged.
+ * <p>
+ * When the JVM is started with <code>smallcollections.profile=true</code>,
+ * one in every <code>smallcollections.profile.sampleInterval</code> (default
+ * 16) of the collections made is instead a wrapper which records where it was
+ * made (the first stack frame outside this library), its peak size, and how
+ * often it is looked up, updated and iterated. {@link #writeReport(File)}
+ * then recommends an implementation for each allocation site, with estimates
+ * of the bytes and nanoseconds it would save, scaled up from the sample.
+ * Replace the factory call with the recommended constructor once decided.
+ * </p>
+ * <p>
+ * Sampled collections, and the records of their use, cost far more than
+ * their <code>HashMap</code>s; profiling is for test and staging runs. With
+ * profiling off the switch is a constant and the factories cost nothing over
+ * the constructors they call.
+ * </p>
+ *
+ * @author Zteve
+ */
+public final class SmallCollections {
+
+    /** Whether collections are profiled; fixed when this class is initialised. */
+    public static final boolean PROFILING = Boolean
+            .getBoolean("smallcollections.profile");
+
+    private static final AllocationProfiler profiler = PROFILING
+            ? new AllocationProfiler(Integer.getInteger(
+                    "smallcollections.profile.sampleInterval", 16))
+            : null;
+
+    private SmallCollections() {
+    }
+
+    /**
+     * Constructs a new, empty, map, profiled if profiling is on.
+     *
+     * @return a <code>HashMap</code>, or a profiled map
+     */
+    public static <K, V> Map<K, V> newMap() {
+        return PROFILING ? profiler.<K, V> newMap() : new HashMap<K, V>();
+    }
+
+    /**
+     * Constructs a new map with the same mappings as the specified
+     * <code>Map</code>, profiled if profiling is on.
+     *
+     * @param m
+     *            the map whose mappings are to be placed in the new map
+     * @return a <code>HashMap</code>, or a profiled map
+     * @throws NullPointerException
+     *             if the specified map is null
+     */
+    public static <K, V> Map<K, V> newMap(Map<? extends K, ? extends V> m) {
+        Map<K, V> map = newMap();
+        map.putAll(m);
+        return map;
+    }
+
+    /**
+     * Constructs a new, empty, set, profiled if profiling is on.
+     *
+     * @return a <code>HashSet</code>, or a profiled set
+     */
+    public static <E> Set<E> newSet() {
+        return PROFILING ? profiler.<E> newSet() : new HashSet<E>();
+    }
+
+    /**
+     * Constructs a new set with the same elements as the specified
+     * <code>Set</code>, profiled if profiling is on.
+     *
+     * @param s
+     *            the set whose elements are to be placed in the new set
+     * @return a <code>HashSet</code>, or a profiled set
+     * @throws NullPointerException
+     *             if the specified set is null
+     */
+    public static <E> Set<E> newSet(Set<? extends E> s) {
+        Set<E> set = newSet();
+        set.addAll(s);
+        return set;
+    }
+
+    /**
+     * Appends the profile report to a csv file: a row for each allocation
+     * site, with the sampled use, the recommended implementation, and the
+     * estimated bytes and nanoseconds it saves over <code>HashMap</code> or
+     * <code>HashSet</code>. Writes only the header if profiling is off.
+     *
+     * @param file
+     *            the file to write
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public static void writeReport(File file) throws IOException {
+        (PROFILING ? profiler : new AllocationProfiler(1)).writeReport(file);
+    }
+}
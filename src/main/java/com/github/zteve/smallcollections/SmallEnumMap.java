@@ -0,0 +1,215 @@
+/**
+ * Lightweight map keyed by enum constants, with a dense value array.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Map} keyed by enum constants that has a small memory footprint.
+ * The keys present are bits, indexed by ordinal, of a <code>long</code> word
+ * (with further words only for enums of more than 64 constants), and the
+ * values are held in an array with one slot per key present, in ordinal
+ * order. A value's slot is the number of keys present with smaller ordinals,
+ * so lookups take constant time.
+ * <p>
+ * Unlike <code>EnumMap</code>, which allocates a slot for every constant of
+ * the enum, an empty <code>SmallEnumMap</code> has no array at all, and the
+ * key type is taken from the first key added. Like {@link SmallMap} it is
+ * <em>unsynchronised</em>. Null keys are not permitted; null values are.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class SmallEnumMap<K extends Enum<K>, V> extends AbstractMap<K, V> {
+
+    private Class<K> keyType = null;
+    private long word = 0L;
+    private long[] words = null;
+    private Object[] valueArray = null;
+
+    /**
+     * Constructs a new, empty, <code>SmallEnumMap</code>.
+     */
+    public SmallEnumMap() {
+    }
+
+    /**
+     * Constructs a new <code>SmallEnumMap</code> with the same mappings as the
+     * specified <code>Map</code>.
+     *
+     * @param m
+     *            the map whose mappings are to be placed in this map
+     * @throws NullPointerException
+     *             if the specified map is null, or has a null key
+     */
+    public SmallEnumMap(Map<? extends K, ? extends V> m) {
+        for (Entry<? extends K, ? extends V> e : m.entrySet())
+            put(e.getKey(), e.getValue());
+    }
+
+    /** The ordinal of <code>key</code>, or -1 if it cannot be a key. */
+    private int ordinalOf(Object key) {
+        if (!(key instanceof Enum) || this.keyType == null
+                || ((Enum<?>) key).getDeclaringClass() != this.keyType)
+            return -1;
+        int ord = ((Enum<?>) key).ordinal();
+        return BitWords.get(this.word, this.words, ord) ? ord : -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int pos) {
+        return (V) this.valueArray[pos];
+    }
+
+    @Override
+    public int size() {
+        return (this.valueArray == null) ? 0 : this.valueArray.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return ordinalOf(key) != -1;
+    }
+
+    @Override
+    public V get(Object key) {
+        int ord = ordinalOf(key);
+        return (-1 == ord) ? null : valueAt(BitWords.rank(this.word,
+                this.words, ord));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Class<K> type = key.getDeclaringClass();
+        if (this.keyType == null)
+            this.keyType = type;
+        else if (type != this.keyType)
+            throw new ClassCastException(type + " != " + this.keyType);
+        int ord = key.ordinal();
+        int pos = BitWords.rank(this.word, this.words, ord);
+        if (BitWords.get(this.word, this.words, ord)) {
+            V oldValue = valueAt(pos);
+            this.valueArray[pos] = value;
+            return oldValue;
+        }
+        if (ord < BitWords.WORD_BITS) {
+            this.word |= 1L << ord;
+        } else {
+            this.words = BitWords.ensure(this.words, ord);
+            this.words[(ord >>> 6) - 1] |= 1L << ord;
+        }
+        int size = size();
+        Object[] va = new Object[size + 1];
+        if (size > 0) {
+            System.arraycopy(this.valueArray, 0, va, 0, pos);
+            System.arraycopy(this.valueArray, pos, va, pos + 1, size - pos);
+        }
+        va[pos] = value;
+        this.valueArray = va;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int ord = ordinalOf(key);
+        return (-1 == ord) ? null : removeOrdinal(ord);
+    }
+
+    private V removeOrdinal(int ord) {
+        int pos = BitWords.rank(this.word, this.words, ord);
+        V oldValue = valueAt(pos);
+        if (ord < BitWords.WORD_BITS) {
+            this.word &= ~(1L << ord);
+        } else {
+            this.words[(ord >>> 6) - 1] &= ~(1L << ord);
+            this.words = BitWords.trim(this.words);
+        }
+        int size = this.valueArray.length - 1;
+        if (size == 0) {
+            this.valueArray = null;
+        } else {
+            Object[] va = new Object[size];
+            System.arraycopy(this.valueArray, 0, va, 0, pos);
+            System.arraycopy(this.valueArray, pos + 1, va, pos, size - pos);
+            this.valueArray = va;
+        }
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        this.word = 0L;
+        this.words = null;
+        this.valueArray = null;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<Entry<K, V>>() {
+
+                    private int next = BitWords.nextSetBit(
+                            SmallEnumMap.this.word, SmallEnumMap.this.words, 0);
+                    private int posNext = 0;
+                    private int last = -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.next != -1;
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        if (this.next == -1)
+                            throw new NoSuchElementException();
+                        this.last = this.next;
+                        this.next = BitWords.nextSetBit(SmallEnumMap.this.word,
+                                SmallEnumMap.this.words, this.last + 1);
+                        return new SimpleEntry<>(SmallEnumSet.universe(
+                                SmallEnumMap.this.keyType)[this.last],
+                                SmallEnumMap.this.valueAt(this.posNext++));
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (this.last == -1)
+                            throw new IllegalStateException();
+                        SmallEnumMap.this.removeOrdinal(this.last);
+                        --this.posNext;
+                        this.last = -1;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return SmallEnumMap.this.size();
+            }
+
+        };
+    }
+
+}
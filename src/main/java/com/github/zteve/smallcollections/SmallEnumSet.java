@@ -0,0 +1,174 @@
+/**
+ * Lightweight set of enum constants, held as bits.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Set} of enum constants that has a small memory footprint. Each
+ * constant is a bit, indexed by its ordinal, of a single <code>long</code>
+ * word, with an array of further words allocated only for enums of more than
+ * 64 constants. Membership is tested in constant time.
+ * <p>
+ * Unlike <code>EnumSet</code> the element type need not be given up front: it
+ * is taken from the first element added. Like {@link SmallSet} it is
+ * <em>unsynchronised</em>, and nulls are not permitted. Iteration is in
+ * ordinal order.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class SmallEnumSet<E extends Enum<E>> extends AbstractSet<E> {
+
+    private static final ClassValue<Enum<?>[]> universes = new ClassValue<Enum<?>[]>() {
+        @Override
+        protected Enum<?>[] computeValue(Class<?> type) {
+            return (Enum<?>[]) type.getEnumConstants();
+        }
+    };
+
+    /** The constants of <code>type</code>, shared rather than cloned. */
+    @SuppressWarnings("unchecked")
+    static <E extends Enum<E>> E[] universe(Class<E> type) {
+        return (E[]) universes.get(type);
+    }
+
+    private Class<E> elementType = null;
+    private long word = 0L;
+    private long[] words = null;
+
+    /**
+     * Constructs a new, empty, <code>SmallEnumSet</code>.
+     */
+    public SmallEnumSet() {
+    }
+
+    /**
+     * Constructs a new <code>SmallEnumSet</code> with the same elements as the
+     * specified <code>Set</code>.
+     *
+     * @param s
+     *            the set whose elements are to be placed in this set
+     * @throws NullPointerException
+     *             if the specified set is null, or contains null
+     */
+    public SmallEnumSet(Set<? extends E> s) {
+        for (E value : s)
+            add(value);
+    }
+
+    private boolean isMember(Object value) {
+        return value != null && this.elementType != null
+                && ((Enum<?>) value).getDeclaringClass() == this.elementType;
+    }
+
+    @Override
+    public boolean add(E value) {
+        Class<E> type = value.getDeclaringClass();
+        if (this.elementType == null)
+            this.elementType = type;
+        else if (type != this.elementType)
+            throw new ClassCastException(type + " != " + this.elementType);
+        int ord = value.ordinal();
+        if (BitWords.get(this.word, this.words, ord))
+            return false;
+        if (ord < BitWords.WORD_BITS) {
+            this.word |= 1L << ord;
+        } else {
+            this.words = BitWords.ensure(this.words, ord);
+            this.words[(ord >>> 6) - 1] |= 1L << ord;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return (value instanceof Enum) && isMember(value)
+                && BitWords.get(this.word, this.words, ((Enum<?>) value).ordinal());
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        if (!contains(value))
+            return false;
+        removeOrdinal(((Enum<?>) value).ordinal());
+        return true;
+    }
+
+    private void removeOrdinal(int ord) {
+        if (ord < BitWords.WORD_BITS) {
+            this.word &= ~(1L << ord);
+        } else {
+            this.words[(ord >>> 6) - 1] &= ~(1L << ord);
+            this.words = BitWords.trim(this.words);
+        }
+    }
+
+    @Override
+    public void clear() {
+        this.word = 0L;
+        this.words = null;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+
+            private int next = BitWords.nextSetBit(SmallEnumSet.this.word,
+                    SmallEnumSet.this.words, 0);
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return this.next != -1;
+            }
+
+            @Override
+            public E next() {
+                if (this.next == -1)
+                    throw new NoSuchElementException();
+                this.last = this.next;
+                this.next = BitWords.nextSetBit(SmallEnumSet.this.word,
+                        SmallEnumSet.this.words, this.last + 1);
+                return universe(SmallEnumSet.this.elementType)[this.last];
+            }
+
+            @Override
+            public void remove() {
+                if (this.last == -1)
+                    throw new IllegalStateException();
+                SmallEnumSet.this.removeOrdinal(this.last);
+                this.last = -1;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return BitWords.count(this.word, this.words);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.word == 0L && this.words == null;
+    }
+
+}
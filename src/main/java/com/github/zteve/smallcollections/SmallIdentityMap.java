@@ -0,0 +1,74 @@
+/**
+ * Lightweight map comparing keys by identity, with small memory footprint.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.Map;
+
+/**
+ * A {@link SmallMap} which compares keys with <code>==</code> rather than
+ * <code>equals()</code>, as <code>IdentityHashMap</code> does. Lookups are a
+ * plain scan of the key array with no virtual calls, for maps keyed by
+ * objects (graph nodes, for example) which are only ever equal to themselves.
+ * <p>
+ * <strong>This class is not a general-purpose <code>Map</code>
+ * implementation!</strong> Like <code>IdentityHashMap</code>, it deliberately
+ * violates the <code>Map</code> contract, which mandates the use of the
+ * <code>equals</code> method when comparing keys.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class SmallIdentityMap<K, V> extends SmallMap<K, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new, empty, <code>SmallIdentityMap</code>.
+     */
+    public SmallIdentityMap() {
+    }
+
+    /**
+     * Constructs a new <code>SmallIdentityMap</code> with the same mappings as
+     * the specified <code>Map</code>.
+     *
+     * @param m
+     *            the map whose mappings are to be placed in this map
+     * @throws NullPointerException
+     *             if the specified map is null
+     */
+    public SmallIdentityMap(Map<? extends K, ? extends V> m) {
+        super(m);
+    }
+
+    @Override
+    int indexOfKey(Object key) {
+        return ScanKernels.indexOfIdentity(this.keyArray, this.size, key);
+    }
+
+    @Override
+    int indexOfPrepared(PreparedKey<?> key) {
+        return indexOfKey(key.get());
+    }
+
+    @Override
+    boolean sameKey(Object probe, Object slotKey) {
+        return probe == slotKey;
+    }
+
+}
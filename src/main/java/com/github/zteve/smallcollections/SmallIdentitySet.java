@@ -0,0 +1,74 @@
+/**
+ * Lightweight set comparing elements by identity, with small memory footprint.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.Set;
+
+/**
+ * A {@link SmallSet} which compares elements with <code>==</code> rather than
+ * <code>equals()</code>. Lookups are a plain scan of the element array with
+ * no virtual calls.
+ * <p>
+ * <strong>This class is not a general-purpose <code>Set</code>
+ * implementation!</strong> Like the key set of an
+ * <code>IdentityHashMap</code>, it deliberately violates the <code>Set</code>
+ * contract, which mandates the use of the <code>equals</code> method when
+ * comparing elements.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class SmallIdentitySet<E> extends SmallSet<E> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new, empty, <code>SmallIdentitySet</code>.
+     */
+    public SmallIdentitySet() {
+    }
+
+    /**
+     * Constructs a new <code>SmallIdentitySet</code> with the same elements as
+     * the specified <code>Set</code>.
+     *
+     * @param s
+     *            the set whose elements are to be placed in this set
+     * @throws NullPointerException
+     *             if the specified set is null
+     */
+    public SmallIdentitySet(Set<? extends E> s) {
+        super(s);
+    }
+
+    @Override
+    int indexOf(Object value) {
+        return ScanKernels.indexOfIdentity(this.elementArray, this.size, value);
+    }
+
+    @Override
+    int indexOfPrepared(PreparedKey<?> value) {
+        return indexOf(value.get());
+    }
+
+    @Override
+    boolean sameElement(Object probe, Object element) {
+        return probe == element;
+    }
+
+}
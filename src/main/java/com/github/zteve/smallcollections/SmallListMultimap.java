@@ -0,0 +1,100 @@
+/**
+ * List-valued multimap with all its values in one array.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * A list-valued multimap that has a small memory footprint: each key has a
+ * list of values, in the order they were added and possibly repeated, but
+ * there is no <code>List</code> object per key. All the values are held in one
+ * array, grouped by key; see {@link AbstractSmallMultimap}. It takes the place
+ * of a <code>Map&lt;K, List&lt;V&gt;&gt;</code> of a few keys; for sets of
+ * values see {@link SmallMultimap}.
+ *
+ * @author Zteve
+ */
+public class SmallListMultimap<K, V> extends AbstractSmallMultimap<K, V> {
+
+    /**
+     * Constructs a new, empty, <code>SmallListMultimap</code>.
+     */
+    public SmallListMultimap() {
+    }
+
+    @Override
+    boolean distinctValues() {
+        return false;
+    }
+
+    @Override
+    public List<V> get(final K key) {
+        return new AbstractList<V>() {
+
+            private int checkedPos(int index, int ind, boolean forInsert) {
+                int n = (ind == -1) ? 0 : end(ind) - start(ind);
+                if (index < 0 || index > n || (index == n && !forInsert))
+                    throw new IndexOutOfBoundsException("Index: " + index
+                            + ", Size: " + n);
+                return (ind == -1) ? 0 : start(ind) + index;
+            }
+
+            @Override
+            public V get(int index) {
+                int ind = indexOfKey(key);
+                return valueAt(checkedPos(index, ind, false));
+            }
+
+            @Override
+            public int size() {
+                return groupSize(key);
+            }
+
+            @Override
+            public V set(int index, V value) {
+                int pos = checkedPos(index, indexOfKey(key), false);
+                V oldValue = valueAt(pos);
+                SmallListMultimap.this.valueArray[pos] = value;
+                return oldValue;
+            }
+
+            @Override
+            public void add(int index, V value) {
+                int ind = indexOfKey(key);
+                int pos = checkedPos(index, ind, true);
+                if (ind == -1) {
+                    ind = addKey(key);
+                    pos = end(ind);
+                }
+                insertValue(ind, pos, value);
+                this.modCount++;
+            }
+
+            @Override
+            public V remove(int index) {
+                int ind = indexOfKey(key);
+                int pos = checkedPos(index, ind, false);
+                V oldValue = valueAt(pos);
+                removeValueAt(ind, pos);
+                this.modCount++;
+                return oldValue;
+            }
+        };
+    }
+}
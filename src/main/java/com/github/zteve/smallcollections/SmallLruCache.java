@@ -0,0 +1,66 @@
+/**
+ * Bounded least-recently-used cache with small memory footprint.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+/**
+ * A {@link SmallCache} which evicts the least recently used mapping. Recency
+ * is kept by array order alone: the most recently used mapping is the last,
+ * and an access moves a mapping to the end, so iteration is from least to
+ * most recently used, as in an access-ordered <code>LinkedHashMap</code>.
+ *
+ * @author Zteve
+ */
+public class SmallLruCache<K, V> extends SmallCache<K, V> {
+
+    /**
+     * Constructs a new, empty, <code>SmallLruCache</code>.
+     *
+     * @param maxSize
+     *            the maximum number of mappings held
+     * @throws IllegalArgumentException
+     *             if <code>maxSize</code> is not positive
+     */
+    public SmallLruCache(int maxSize) {
+        super(maxSize);
+    }
+
+    @Override
+    void accessed(int pos) {
+        int last = this.size - 1;
+        if (pos == last)
+            return;
+        Object key = this.keyArray[pos];
+        Object value = this.valueArray[pos];
+        System.arraycopy(this.keyArray, pos + 1, this.keyArray, pos, last - pos);
+        System.arraycopy(this.valueArray, pos + 1, this.valueArray, pos, last
+                - pos);
+        this.keyArray[last] = key;
+        this.valueArray[last] = value;
+    }
+
+    @Override
+    int evict() {
+        shiftOut(0);
+        return this.size++;
+    }
+
+    @Override
+    void removed(int pos) {
+    }
+
+}
@@ -18,35 +18,45 @@
  */
 package com.github.zteve.smallcollections;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
  * A {@link Map} implementation that has a small memory footprint. It is slow,
  * <em>unsynchronised</em>, and unoptimised, but if you want a lot of small
  * maps, which individually have little use, this fits the bill.
+ * <p>
+ * Keys and values are held in two parallel arrays, which are not allocated
+ * until the first mapping is added. How the arrays grow and shrink is decided
+ * by a {@link CapacityPolicy}; maps constructed directly use
+ * {@link CapacityPolicy#DEFAULT}, and {@link CapacityPolicy#newMap()}
+ * constructs maps with any other policy.
+ * </p>
+ * <p>
+ * Maps are <code>Externalizable</code>, written as their size followed by
+ * their keys and values; see also {@link SmallCollectionCodec}.
+ * </p>
  *
  * @author Zteve
  */
-public class SmallMap<K, V> extends AbstractMap<K, V> {
+public class SmallMap<K, V> extends AbstractMap<K, V> implements
+        Externalizable {
 
-    private ArrayList<K> keyArray = null;
-    private ArrayList<V> valueArray = null;
+    private static final long serialVersionUID = 1L;
+
+    Object[] keyArray = null;
+    Object[] valueArray = null;
+    int size = 0;
 
-    private ArrayList<K> keyArray() {
-        if (this.keyArray == null)
-            this.keyArray = new ArrayList<>(0);
-        return this.keyArray;
-    }
-    private ArrayList<V> valueArray() {
-        if (this.valueArray == null)
-            this.valueArray = new ArrayList<>(0);
-        return this.valueArray;
-    }
     /**
      * Constructs a new, empty, <code>SmallMap</code>.
      */
@@ -63,30 +73,352 @@ public class SmallMap<K, V> extends AbstractMap<K, V> {
      *             if the specified map is null
      */
     public SmallMap(Map<? extends K, ? extends V> m) {
-        putAllInternal(this.keyArray(), this.valueArray(), m);
+        putAllInternal(m);
+    }
+
+    CapacityPolicy capacityPolicy() {
+        return CapacityPolicy.DEFAULT;
+    }
+
+    int capacity() {
+        return (this.keyArray == null) ? 0 : this.keyArray.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    K keyAt(int pos) {
+        return (K) this.keyArray[pos];
+    }
+
+    @SuppressWarnings("unchecked")
+    V valueAt(int pos) {
+        return (V) this.valueArray[pos];
     }
 
-    private static <K, V> void putAllInternal(ArrayList<K> ka, ArrayList<V> va,
-            Map<? extends K, ? extends V> m) {
+    int indexOfKey(Object key) {
+        Object[] ka = this.keyArray;
+        if (key == null) {
+            for (int i = 0; i < this.size; i++)
+                if (ka[i] == null)
+                    return i;
+        } else {
+            for (int i = 0; i < this.size; i++)
+                if (key.equals(ka[i]))
+                    return i;
+        }
+        return -1;
+    }
+
+    /** Whether <code>probe</code> finds the key <code>slotKey</code>. */
+    boolean sameKey(Object probe, Object slotKey) {
+        return probe == slotKey || (probe != null && probe.equals(slotKey));
+    }
+
+    int indexOfPrepared(PreparedKey<?> key) {
+        return key.indexIn(this.keyArray, this.size);
+    }
+
+    private void putAllInternal(Map<? extends K, ? extends V> m) {
+        if (this.size == 0)
+            ensureCapacity(m.size());
         for (Entry<? extends K, ? extends V> e : m.entrySet())
-            putInternal(ka, va, e.getKey(), e.getValue());
+            putInternal(e.getKey(), e.getValue());
     }
 
-    private static <K, V> V putInternal(ArrayList<K> ka, ArrayList<V> va,
-            K key, V value) {
-        int ind = ka.indexOf(key);
+    private V putInternal(K key, V value) {
+        int ind = indexOfKey(key);
         if (-1 == ind) {
-            ka.add(key);
-            va.add(value);
+            ensureCapacity(this.size + 1);
+            this.keyArray[this.size] = key;
+            setValueAt(this.size, value);
+            this.size++;
+            inserted(key);
             return null;
         } else {
-            return va.set(ind, value);
+            V oldValue = valueAt(ind);
+            setValueAt(ind, value);
+            return oldValue;
+        }
+    }
+
+    /**
+     * Reports an insert to the metrics and events, if enabled. Called after
+     * each insert, with <code>size</code> already counting it.
+     */
+    void inserted(Object key) {
+        if (SmallCollectionMetrics.ENABLED)
+            SmallCollectionMetrics.recordInsert(this.size);
+        if (SmallCollectionEvents.ENABLED)
+            SmallCollectionEvents.inserted(this, this.size, key);
+    }
+
+    /** Reports a lookup to the metrics and events, if enabled. */
+    private void lookedUp(int ind, Object key) {
+        if (SmallCollectionMetrics.ENABLED)
+            SmallCollectionMetrics.recordLookup(ind, this.size);
+        if (SmallCollectionEvents.ENABLED)
+            SmallCollectionEvents.lookedUp(this, ind, this.size, key);
+    }
+
+    /**
+     * Called after keys have been written into the key array other than by
+     * an insert or removal, so that subclasses may refresh any state they
+     * derive from the keys.
+     */
+    void keysReplaced() {
+    }
+
+    void setValueAt(int pos, V value) {
+        this.valueArray[pos] = value;
+    }
+
+    V removeAt(int pos) {
+        V oldValue = valueAt(pos);
+        int numMoved = this.size - pos - 1;
+        if (numMoved > 0)
+            System.arraycopy(this.keyArray, pos + 1, this.keyArray, pos,
+                    numMoved);
+        removeValueAt(pos);
+        --this.size;
+        this.keyArray[this.size] = null;
+        if (capacityPolicy().shouldShrink(capacity(), this.size))
+            resize(this.size);
+        return oldValue;
+    }
+
+    void ensureCapacity(int minCapacity) {
+        int capacity = capacity();
+        if (minCapacity > capacity)
+            resize(capacityPolicy().grow(capacity, minCapacity));
+    }
+
+    /**
+     * Shifts the values after <code>pos</code> down one slot, clearing the
+     * last slot in use. Called before <code>size</code> is decremented.
+     */
+    void removeValueAt(int pos) {
+        int numMoved = this.size - pos - 1;
+        if (numMoved > 0)
+            System.arraycopy(this.valueArray, pos + 1, this.valueArray, pos,
+                    numMoved);
+        this.valueArray[this.size - 1] = null;
+    }
+
+    private void resize(int capacity) {
+        if (capacity == 0)
+            this.keyArray = null;
+        else if (this.keyArray == null)
+            this.keyArray = new Object[capacity];
+        else
+            this.keyArray = Arrays.copyOf(this.keyArray, capacity);
+        resizeValues(capacity);
+    }
+
+    void resizeValues(int capacity) {
+        if (capacity == 0)
+            this.valueArray = null;
+        else if (this.valueArray == null)
+            this.valueArray = new Object[capacity];
+        else
+            this.valueArray = Arrays.copyOf(this.valueArray, capacity);
+    }
+
+    /** Clears the values in use. Called before <code>size</code> is reset. */
+    void clearValues() {
+        Arrays.fill(this.valueArray, 0, this.size, null);
+    }
+
+    /**
+     * Trims the backing arrays of this <code>SmallMap</code> to its current
+     * size. An empty map releases its arrays altogether.
+     */
+    public void trimToSize() {
+        if (capacity() != this.size)
+            resize(this.size);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int ind = indexOfKey(key);
+        lookedUp(ind, key);
+        return ind != -1;
+    }
+
+    @Override
+    public V get(Object key) {
+        int ind = indexOfKey(key);
+        lookedUp(ind, key);
+        return (-1 == ind) ? null : valueAt(ind);
+    }
+
+    /**
+     * Returns the value to which the prepared key is mapped, as
+     * {@link #get(Object)} does for the key itself.
+     *
+     * @param key
+     *            the prepared key
+     * @return the value, or null if there is no mapping for the key
+     */
+    public V getPrepared(PreparedKey<?> key) {
+        int ind = indexOfPrepared(key);
+        lookedUp(ind, key.key);
+        return (-1 == ind) ? null : valueAt(ind);
+    }
+
+    /**
+     * Returns whether this map contains a mapping for the prepared key, as
+     * {@link #containsKey(Object)} does for the key itself.
+     *
+     * @param key
+     *            the prepared key
+     * @return whether there is a mapping for the key
+     */
+    public boolean containsPrepared(PreparedKey<?> key) {
+        int ind = indexOfPrepared(key);
+        lookedUp(ind, key.key);
+        return ind != -1;
+    }
+
+    /**
+     * Looks up several keys in one pass over this map, setting
+     * <code>out[i]</code> to the value of <code>keys[i]</code>, or to null if
+     * it has none.
+     *
+     * @param keys
+     *            the keys to look up
+     * @param out
+     *            the array for the values, at least as long as
+     *            <code>keys</code>
+     * @return the number of keys with mappings
+     * @throws IllegalArgumentException
+     *             if <code>out</code> is shorter than <code>keys</code>
+     */
+    public int getAll(K[] keys, V[] out) {
+        int n = keys.length;
+        if (out.length < n)
+            throw new IllegalArgumentException("Output array too short: "
+                    + out.length + " < " + n);
+        Arrays.fill(out, 0, n, null);
+        long[] done = new long[(n + 63) >>> 6];
+        int found = 0;
+        for (int i = 0; i < this.size && found < n; i++) {
+            Object slotKey = this.keyArray[i];
+            for (int j = 0; j < n; j++) {
+                if ((done[j >>> 6] & (1L << j)) == 0
+                        && sameKey(keys[j], slotKey)) {
+                    done[j >>> 6] |= 1L << j;
+                    out[j] = valueAt(i);
+                    ++found;
+                }
+            }
         }
+        return found;
     }
 
     @Override
     public V put(K key, V value) {
-        return putInternal(this.keyArray(), this.valueArray(), key, value);
+        return putInternal(key, value);
+    }
+
+    /**
+     * Puts the first <code>n</code> keys and values into this map, as
+     * <code>put(keys[i], values[i])</code> would in turn, but with one pass
+     * over the existing mappings.
+     *
+     * @param keys
+     *            the keys
+     * @param values
+     *            the values, in the same order
+     * @param n
+     *            the number of mappings to put
+     * @throws IndexOutOfBoundsException
+     *             if either array has fewer than <code>n</code> elements
+     */
+    public void putAll(K[] keys, V[] values, int n) {
+        if (n < 0 || keys.length < n || values.length < n)
+            throw new IndexOutOfBoundsException("Cannot put " + n
+                    + " mappings from arrays of " + keys.length + " and "
+                    + values.length);
+        if (this.size == 0)
+            ensureCapacity(n);
+        int oldSize = this.size;
+        long[] done = new long[(n + 63) >>> 6];
+        for (int i = 0; i < oldSize; i++) {
+            Object slotKey = this.keyArray[i];
+            for (int j = 0; j < n; j++) {
+                if (sameKey(keys[j], slotKey)) {
+                    done[j >>> 6] |= 1L << j;
+                    setValueAt(i, values[j]);
+                }
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            if ((done[j >>> 6] & (1L << j)) != 0)
+                continue;
+            int ind = -1;
+            for (int i = oldSize; i < this.size; i++) {
+                if (sameKey(keys[j], this.keyArray[i])) {
+                    ind = i;
+                    break;
+                }
+            }
+            if (ind != -1) {
+                setValueAt(ind, values[j]);
+            } else {
+                ensureCapacity(this.size + 1);
+                this.keyArray[this.size] = keys[j];
+                setValueAt(this.size, values[j]);
+                this.size++;
+                inserted(keys[j]);
+            }
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        putAllInternal(m);
+    }
+
+    @Override
+    public V remove(Object key) {
+        int ind = indexOfKey(key);
+        return (-1 == ind) ? null : removeAt(ind);
+    }
+
+    @Override
+    public void clear() {
+        if (this.size > 0) {
+            Arrays.fill(this.keyArray, 0, this.size, null);
+            clearValues();
+            this.size = 0;
+        }
+        if (capacityPolicy().shouldShrink(capacity(), 0))
+            resize(0);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        SmallCollectionCodec.writeVarInt(out, this.size);
+        for (int i = 0; i < this.size; i++) {
+            out.writeObject(this.keyArray[i]);
+            out.writeObject(valueAt(i));
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void readExternal(ObjectInput in) throws IOException,
+            ClassNotFoundException {
+        int size = SmallCollectionCodec.readSize(in);
+        ensureCapacity(this.size + SmallCollectionCodec.presize(size));
+        for (int i = 0; i < size; i++) {
+            K key = (K) in.readObject();
+            putInternal(key, (V) in.readObject());
+        }
     }
 
     @Override
@@ -101,32 +433,232 @@ public class SmallMap<K, V> extends AbstractMap<K, V> {
 
                     @Override
                     public boolean hasNext() {
-                        return this.posNext < SmallMap.this.size();
+                        return this.posNext < SmallMap.this.size;
                     }
 
                     @Override
                     public Entry<K, V> next() {
+                        if (this.posNext >= SmallMap.this.size)
+                            throw new NoSuchElementException();
                         int pos = this.posNext++;
-                        return new SimpleEntry<>(
-                                SmallMap.this.keyArray.get(pos),
-                                SmallMap.this.valueArray.get(pos));
+                        return new SimpleEntry<>(SmallMap.this.keyAt(pos),
+                                SmallMap.this.valueAt(pos));
                     }
 
                     @Override
                     public void remove() {
                         int pos = --this.posNext;
-                        SmallMap.this.keyArray.remove(pos);
-                        SmallMap.this.valueArray.remove(pos);
+                        SmallMap.this.removeAt(pos);
+                        if (SmallCollectionMetrics.ENABLED)
+                            SmallCollectionMetrics.recordIteratorRemoval();
                     }
                 };
             }
 
             @Override
             public int size() {
-                return (SmallMap.this.keyArray == null) ? 0 : SmallMap.this.keyArray.size();
+                return SmallMap.this.size;
             }
 
         };
     }
 
+    /**
+     * An unmodifiable <code>SmallMap</code>, trimmed to size, which caches its
+     * hash code. See {@link SmallCollectionInterner}.
+     */
+    static class Frozen<K, V> extends SmallMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int hash;
+
+        Frozen(Map<? extends K, ? extends V> m) {
+            super(m);
+            trimToSize();
+            this.hash = super.hashCode();
+        }
+
+        @Override
+        public V put(K key, V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putAll(Map<? extends K, ? extends V> m) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putAll(K[] keys, V[] values, int n) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public V remove(Object key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        V removeAt(int pos) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof Frozen && ((Frozen<?, ?>) o).hash != this.hash)
+                return false;
+            return super.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        Object writeReplace() {
+            return new SmallMap<K, V>(this);
+        }
+    }
+
+    /**
+     * A <code>SmallMap</code> which holds its values as codes from a
+     * {@link ValueDictionary} in a <code>byte[]</code>, rather than as
+     * references, until the dictionary is full; it then holds them directly
+     * in <code>valueArray</code>, as a <code>SmallMap</code> does, until it is
+     * next emptied, when it drops <code>valueArray</code> for codes again.
+     */
+    static class Coded<K, V> extends SmallMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ValueDictionary<V> dictionary;
+        private byte[] codes = null;
+
+        Coded(ValueDictionary<V> dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        /** Whether values are held as codes, rather than references. */
+        boolean isCoded() {
+            return this.valueArray == null;
+        }
+
+        @Override
+        V valueAt(int pos) {
+            if (this.valueArray != null)
+                return super.valueAt(pos);
+            return this.dictionary.valueOf(this.dictionary.readCode(
+                    this.codes, pos));
+        }
+
+        @Override
+        void setValueAt(int pos, V value) {
+            if (this.valueArray == null) {
+                int code = this.dictionary.codeOf(value);
+                if (code != -1) {
+                    this.dictionary.writeCode(this.codes, pos, code);
+                    return;
+                }
+                decodeAll();
+            }
+            super.setValueAt(pos, value);
+        }
+
+        /** Replaces the codes with the values they stand for. */
+        private void decodeAll() {
+            Object[] va = new Object[capacity()];
+            for (int i = 0; i < this.size; i++)
+                va[i] = valueAt(i);
+            this.valueArray = va;
+            this.codes = null;
+        }
+
+        /** Returns to holding codes, once the map is empty. */
+        private void encodeEmpty() {
+            int capacity = capacity();
+            this.valueArray = null;
+            this.codes = (capacity == 0) ? null : new byte[capacity
+                    * this.dictionary.codeBytes()];
+        }
+
+        @Override
+        void removeValueAt(int pos) {
+            if (this.valueArray != null) {
+                if (this.size == 1)
+                    encodeEmpty();
+                else
+                    super.removeValueAt(pos);
+                return;
+            }
+            int width = this.dictionary.codeBytes();
+            System.arraycopy(this.codes, (pos + 1) * width, this.codes, pos
+                    * width, (this.size - pos - 1) * width);
+            Arrays.fill(this.codes, (this.size - 1) * width, this.size
+                    * width, (byte) 0);
+        }
+
+        @Override
+        void resizeValues(int capacity) {
+            if (this.valueArray != null) {
+                super.resizeValues(capacity);
+                return;
+            }
+            int length = capacity * this.dictionary.codeBytes();
+            if (capacity == 0)
+                this.codes = null;
+            else if (this.codes == null)
+                this.codes = new byte[length];
+            else
+                this.codes = Arrays.copyOf(this.codes, length);
+        }
+
+        @Override
+        void clearValues() {
+            if (this.valueArray != null)
+                encodeEmpty();
+            else
+                Arrays.fill(this.codes, 0, this.size
+                        * this.dictionary.codeBytes(), (byte) 0);
+        }
+
+        Object writeReplace() {
+            return new SmallMap<K, V>(this);
+        }
+    }
+
+    /**
+     * A <code>SmallMap</code> carrying a {@link CapacityPolicy} other than
+     * the default.
+     */
+    static class WithPolicy<K, V> extends SmallMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CapacityPolicy policy;
+
+        WithPolicy(CapacityPolicy policy) {
+            this.policy = policy;
+        }
+
+        @Override
+        CapacityPolicy capacityPolicy() {
+            return this.policy;
+        }
+
+        Object writeReplace() {
+            return new SmallMap<K, V>(this);
+        }
+    }
+
 }
@@ -0,0 +1,361 @@
+/**
+ * Builds many SmallMaps at once, in parallel, from columnar rows.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Builds a {@link SmallMap} per entity from rows held in columns: an array of
+ * entity numbers, an array of keys and an array of values, where row
+ * <em>i</em> says that entity <code>entities[i]</code> maps
+ * <code>keys[i]</code> to <code>values[i]</code>. The maps are built in
+ * parallel on a <code>ForkJoinPool</code>, each allocated at exactly the size
+ * it needs, and no object is created per row.
+ * <p>
+ * If the rows are sorted by entity, each task takes a run of rows, split at
+ * entity boundaries, and builds the maps of its entities directly. Otherwise
+ * the rows are first counted and bucketed by entity, in parallel, into an
+ * <code>int[]</code> of row numbers, and each task then builds the maps of a
+ * range of entities. Either way, a key given more than once for an entity
+ * takes the value of its last row, as successive <code>put</code>s would.
+ * </p>
+ *
+ * @author Zteve
+ */
+public final class SmallMapBulkLoader {
+
+    /** The fewest rows (or entities) worth a task of their own. */
+    static final int MIN_TASK_SIZE = 1 << 13;
+
+    private SmallMapBulkLoader() {
+    }
+
+    /**
+     * Builds the maps of entities numbered from zero to
+     * <code>numEntities - 1</code> from the first <code>numRows</code> rows,
+     * on the common <code>ForkJoinPool</code>.
+     *
+     * @see #load(int[], Object[], Object[], int, int, ForkJoinPool)
+     */
+    public static <K, V> SmallMap<K, V>[] load(int[] entities, K[] keys,
+            V[] values, int numRows, int numEntities) {
+        return load(entities, keys, values, numRows, numEntities,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds the maps of entities numbered from zero to
+     * <code>numEntities - 1</code> from the first <code>numRows</code> rows.
+     *
+     * @param entities
+     *            the entity of each row
+     * @param keys
+     *            the key of each row
+     * @param values
+     *            the value of each row
+     * @param numRows
+     *            the number of rows
+     * @param numEntities
+     *            the number of entities
+     * @param pool
+     *            the pool to build the maps in
+     * @return the map of each entity, indexed by entity, or null for an
+     *         entity with no rows
+     * @throws IndexOutOfBoundsException
+     *             if a column has fewer than <code>numRows</code> rows, or an
+     *             entity is out of range
+     */
+    public static <K, V> SmallMap<K, V>[] load(int[] entities, K[] keys,
+            V[] values, int numRows, int numEntities, ForkJoinPool pool) {
+        return load(entities, keys, values, numRows, numEntities, pool,
+                MIN_TASK_SIZE);
+    }
+
+    static <K, V> SmallMap<K, V>[] load(int[] entities, K[] keys, V[] values,
+            int numRows, int numEntities, ForkJoinPool pool, int minTaskSize) {
+        if (numRows < 0 || entities.length < numRows || keys.length < numRows
+                || values.length < numRows)
+            throw new IndexOutOfBoundsException("Cannot load " + numRows
+                    + " rows from columns of " + entities.length + ", "
+                    + keys.length + " and " + values.length);
+        @SuppressWarnings("unchecked")
+        SmallMap<K, V>[] maps = (SmallMap<K, V>[]) new SmallMap<?, ?>[numEntities];
+        Rows rows = new Rows(entities, keys, values, maps, minTaskSize);
+        if (pool.invoke(new CheckSorted(rows, 0, numRows))) {
+            pool.invoke(new BuildSorted(rows, 0, numRows));
+            return maps;
+        }
+        AtomicIntegerArray cursors = new AtomicIntegerArray(numEntities);
+        pool.invoke(new Count(rows, cursors, 0, numRows));
+        int[] offsets = new int[numEntities + 1];
+        for (int e = 0; e < numEntities; e++) {
+            offsets[e + 1] = offsets[e] + cursors.get(e);
+            cursors.set(e, offsets[e]);
+        }
+        int[] order = new int[numRows];
+        pool.invoke(new Scatter(rows, cursors, order, 0, numRows));
+        pool.invoke(new BuildBucketed(rows, offsets, order, 0, numEntities));
+        return maps;
+    }
+
+    /** The columns and the maps being built, shared by the tasks. */
+    private static final class Rows {
+        final int[] entities;
+        final Object[] keys;
+        final Object[] values;
+        final SmallMap<Object, Object>[] maps;
+        final int minTaskSize;
+
+        @SuppressWarnings("unchecked")
+        Rows(int[] entities, Object[] keys, Object[] values,
+                SmallMap<?, ?>[] maps, int minTaskSize) {
+            this.entities = entities;
+            this.keys = keys;
+            this.values = values;
+            this.maps = (SmallMap<Object, Object>[]) maps;
+            this.minTaskSize = minTaskSize;
+        }
+
+        int entity(int row) {
+            int e = this.entities[row];
+            if (e < 0 || e >= this.maps.length)
+                throw new IndexOutOfBoundsException("Entity " + e
+                        + " of row " + row + " not below " + this.maps.length);
+            return e;
+        }
+
+        /** Builds the map of entity <code>e</code> from rows <code>from</code> to <code>to</code>. */
+        void build(int e, int from, int to) {
+            SmallMap<Object, Object> m = new SmallMap<>();
+            m.ensureCapacity(to - from);
+            for (int r = from; r < to; r++)
+                m.put(this.keys[r], this.values[r]);
+            if (m.size != to - from)
+                m.trimToSize();
+            this.maps[e] = m;
+        }
+
+        /** Builds the map of entity <code>e</code> from the rows numbered in <code>order</code>. */
+        void build(int e, int[] order, int from, int to) {
+            SmallMap<Object, Object> m = new SmallMap<>();
+            m.ensureCapacity(to - from);
+            for (int i = from; i < to; i++)
+                m.put(this.keys[order[i]], this.values[order[i]]);
+            if (m.size != to - from)
+                m.trimToSize();
+            this.maps[e] = m;
+        }
+    }
+
+    /** Whether rows are in entity order, checking every entity is in range. */
+    private static final class CheckSorted extends RecursiveTask<Boolean> {
+        private static final long serialVersionUID = 1L;
+
+        private final Rows rows;
+        private final int lo;
+        private final int hi;
+
+        CheckSorted(Rows rows, int lo, int hi) {
+            this.rows = rows;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (this.hi - this.lo > this.rows.minTaskSize) {
+                int mid = (this.lo + this.hi) >>> 1;
+                CheckSorted left = new CheckSorted(this.rows, this.lo, mid);
+                left.fork();
+                boolean right = new CheckSorted(this.rows, mid, this.hi)
+                        .compute();
+                return left.join() && right;
+            }
+            boolean sorted = true;
+            int previous = (this.lo == 0) ? 0 : this.rows.entities[this.lo - 1];
+            for (int r = this.lo; r < this.hi; r++) {
+                int e = this.rows.entity(r);
+                sorted &= previous <= e;
+                previous = e;
+            }
+            return sorted;
+        }
+    }
+
+    /** Builds the maps of sorted rows, splitting only between entities. */
+    private static final class BuildSorted extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Rows rows;
+        private final int lo;
+        private final int hi;
+
+        BuildSorted(Rows rows, int lo, int hi) {
+            this.rows = rows;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            int[] entities = this.rows.entities;
+            if (this.hi - this.lo > this.rows.minTaskSize) {
+                int mid = (this.lo + this.hi) >>> 1;
+                while (mid < this.hi && entities[mid] == entities[mid - 1])
+                    mid++;
+                if (mid < this.hi) {
+                    invokeAll(new BuildSorted(this.rows, this.lo, mid),
+                            new BuildSorted(this.rows, mid, this.hi));
+                    return;
+                }
+            }
+            int from = this.lo;
+            while (from < this.hi) {
+                int e = entities[from];
+                int to = from + 1;
+                while (to < this.hi && entities[to] == e)
+                    to++;
+                this.rows.build(e, from, to);
+                from = to;
+            }
+        }
+    }
+
+    /** Counts the rows of each entity. */
+    private static final class Count extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Rows rows;
+        private final AtomicIntegerArray counts;
+        private final int lo;
+        private final int hi;
+
+        Count(Rows rows, AtomicIntegerArray counts, int lo, int hi) {
+            this.rows = rows;
+            this.counts = counts;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.hi - this.lo > this.rows.minTaskSize) {
+                int mid = (this.lo + this.hi) >>> 1;
+                invokeAll(new Count(this.rows, this.counts, this.lo, mid),
+                        new Count(this.rows, this.counts, mid, this.hi));
+                return;
+            }
+            for (int r = this.lo; r < this.hi; r++)
+                this.counts.getAndIncrement(this.rows.entities[r]);
+        }
+    }
+
+    /** Puts each row number in the next free place of its entity's bucket. */
+    private static final class Scatter extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Rows rows;
+        private final AtomicIntegerArray cursors;
+        private final int[] order;
+        private final int lo;
+        private final int hi;
+
+        Scatter(Rows rows, AtomicIntegerArray cursors, int[] order, int lo,
+                int hi) {
+            this.rows = rows;
+            this.cursors = cursors;
+            this.order = order;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.hi - this.lo > this.rows.minTaskSize) {
+                int mid = (this.lo + this.hi) >>> 1;
+                invokeAll(new Scatter(this.rows, this.cursors, this.order,
+                        this.lo, mid), new Scatter(this.rows, this.cursors,
+                        this.order, mid, this.hi));
+                return;
+            }
+            for (int r = this.lo; r < this.hi; r++)
+                this.order[this.cursors.getAndIncrement(this.rows.entities[r])] = r;
+        }
+    }
+
+    /**
+     * Builds the maps of a range of entities from their buckets, first
+     * restoring each bucket to row order, which the parallel scatter loses.
+     */
+    private static final class BuildBucketed extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Rows rows;
+        private final int[] offsets;
+        private final int[] order;
+        private final int lo;
+        private final int hi;
+
+        BuildBucketed(Rows rows, int[] offsets, int[] order, int lo, int hi) {
+            this.rows = rows;
+            this.offsets = offsets;
+            this.order = order;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.hi - this.lo > this.rows.minTaskSize) {
+                int mid = (this.lo + this.hi) >>> 1;
+                invokeAll(new BuildBucketed(this.rows, this.offsets,
+                        this.order, this.lo, mid), new BuildBucketed(
+                        this.rows, this.offsets, this.order, mid, this.hi));
+                return;
+            }
+            for (int e = this.lo; e < this.hi; e++) {
+                int from = this.offsets[e];
+                int to = this.offsets[e + 1];
+                if (from == to)
+                    continue;
+                sortRange(this.order, from, to);
+                this.rows.build(e, this.order, from, to);
+            }
+        }
+
+        private static void sortRange(int[] a, int from, int to) {
+            if (to - from > 16) {
+                Arrays.sort(a, from, to);
+                return;
+            }
+            for (int i = from + 1; i < to; i++) {
+                int v = a[i];
+                int j = i - 1;
+                while (j >= from && a[j] > v) {
+                    a[j + 1] = a[j];
+                    j--;
+                }
+                a[j + 1] = v;
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/**
+ * Streams rows of delimited text into a SmallMap per entity.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Reads lines of delimited text, each an <code>entity,key,value</code> row,
+ * and builds a {@link SmallMap} for each run of rows with the same entity,
+ * handing it to a {@link GroupHandler} as soon as the run ends. Input sorted
+ * (or otherwise grouped) by entity gives one map per entity.
+ * <p>
+ * The text is parsed where it lies, in one reused buffer filled from a
+ * channel, or in windows of a memory-mapped file, so memory use does not grow
+ * with the size of the input. Fields are decoded straight from the bytes by
+ * {@link FieldDecoder}s; the entity field is compared with the current
+ * entity's bytes, and decoded only once per run. No <code>String</code> is
+ * created for a field unless its decoder creates one.
+ * </p>
+ * <p>
+ * Lines end with <code>\n</code> or <code>\r\n</code>, and empty lines are
+ * skipped. Fields are not quoted: the entity and key end at the first and
+ * second delimiters, and the value is the rest of the line. A reader is
+ * <em>unsynchronised</em>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class SmallMapCsvReader<E, K, V> {
+
+    /** The largest window of a file mapped at once by {@link #readMapped}. */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Receives the map of each run of rows with the same entity.
+     */
+    @FunctionalInterface
+    public interface GroupHandler<E, K, V> {
+
+        /**
+         * Handles one run of rows.
+         *
+         * @param entity
+         *            the entity of the rows
+         * @param map
+         *            the keys and values of the rows, trimmed to size, which
+         *            the handler may keep
+         * @throws IOException
+         *             to stop reading
+         */
+        void group(E entity, SmallMap<K, V> map) throws IOException;
+    }
+
+    private final byte delimiter;
+    private final FieldDecoder<E> entityDecoder;
+    private final FieldDecoder<K> keyDecoder;
+    private final FieldDecoder<V> valueDecoder;
+
+    private GroupHandler<? super E, K, V> handler = null;
+    private byte[] entityBytes = new byte[16];
+    private int entityLength = -1;
+    private E entity = null;
+    private SmallMap<K, V> map = null;
+    private long rows = 0;
+
+    /**
+     * Constructs a reader of comma-separated rows.
+     *
+     * @param entityDecoder
+     *            the decoder of the entity field
+     * @param keyDecoder
+     *            the decoder of the key field
+     * @param valueDecoder
+     *            the decoder of the value field
+     */
+    public SmallMapCsvReader(FieldDecoder<E> entityDecoder,
+            FieldDecoder<K> keyDecoder, FieldDecoder<V> valueDecoder) {
+        this(',', entityDecoder, keyDecoder, valueDecoder);
+    }
+
+    /**
+     * Constructs a reader of rows separated by <code>delimiter</code>.
+     *
+     * @param delimiter
+     *            the field delimiter, an ASCII character
+     * @param entityDecoder
+     *            the decoder of the entity field
+     * @param keyDecoder
+     *            the decoder of the key field
+     * @param valueDecoder
+     *            the decoder of the value field
+     * @throws IllegalArgumentException
+     *             if the delimiter is not ASCII, or ends lines
+     */
+    public SmallMapCsvReader(char delimiter, FieldDecoder<E> entityDecoder,
+            FieldDecoder<K> keyDecoder, FieldDecoder<V> valueDecoder) {
+        if (delimiter >= 0x80 || delimiter == '\n' || delimiter == '\r')
+            throw new IllegalArgumentException("Bad delimiter: "
+                    + (int) delimiter);
+        this.delimiter = (byte) delimiter;
+        this.entityDecoder = entityDecoder;
+        this.keyDecoder = keyDecoder;
+        this.valueDecoder = valueDecoder;
+    }
+
+    /**
+     * Reads rows from a channel, to its end, through a buffer of
+     * {@link SmallCollectionWriter#DEFAULT_BUFFER_SIZE} bytes.
+     *
+     * @see #read(ReadableByteChannel, int, GroupHandler)
+     */
+    public long read(ReadableByteChannel channel,
+            GroupHandler<? super E, K, V> handler)
+            throws IOException {
+        return read(channel, SmallCollectionWriter.DEFAULT_BUFFER_SIZE,
+                handler);
+    }
+
+    /**
+     * Reads rows from a channel, to its end, through one buffer of
+     * <code>bufferSize</code> bytes. The channel is not closed.
+     *
+     * @param channel
+     *            the channel to read from
+     * @param bufferSize
+     *            the size of the buffer, which must hold the longest line
+     * @param handler
+     *            the handler of each run's map
+     * @return the number of rows read
+     * @throws IOException
+     *             if the channel or handler fails, or a line is malformed or
+     *             longer than the buffer
+     */
+    public long read(ReadableByteChannel channel, int bufferSize,
+            GroupHandler<? super E, K, V> handler)
+            throws IOException {
+        start(handler);
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        boolean atEnd = false;
+        while (!atEnd) {
+            while (buffer.hasRemaining() && !atEnd)
+                atEnd = channel.read(buffer) < 0;
+            buffer.flip();
+            int consumed = parseLines(buffer, buffer.limit(), atEnd);
+            if (consumed == 0 && !atEnd && buffer.limit() == bufferSize)
+                throw new IOException("Line longer than buffer of "
+                        + bufferSize + " bytes");
+            buffer.position(consumed);
+            buffer.compact();
+        }
+        return finish();
+    }
+
+    /**
+     * Reads rows from a file, to its end, mapping windows of it of
+     * {@link #DEFAULT_WINDOW_SIZE} bytes at a time.
+     *
+     * @see #readMapped(FileChannel, int, GroupHandler)
+     */
+    public long readMapped(FileChannel channel,
+            GroupHandler<? super E, K, V> handler)
+            throws IOException {
+        return readMapped(channel, DEFAULT_WINDOW_SIZE, handler);
+    }
+
+    /**
+     * Reads rows from a file, from its start to its end, mapping windows of
+     * it of at most <code>windowSize</code> bytes at a time, each starting at
+     * the first line the previous window did not hold completely. The channel
+     * is not closed.
+     *
+     * @param channel
+     *            the file to read from
+     * @param windowSize
+     *            the most bytes to map at once, which must hold the longest
+     *            line
+     * @param handler
+     *            the handler of each run's map
+     * @return the number of rows read
+     * @throws IOException
+     *             if the file or handler fails, or a line is malformed or
+     *             longer than the window
+     */
+    public long readMapped(FileChannel channel, int windowSize,
+            GroupHandler<? super E, K, V> handler)
+            throws IOException {
+        start(handler);
+        long size = channel.size();
+        long pos = 0;
+        while (pos < size) {
+            int len = (int) Math.min(windowSize, size - pos);
+            boolean atEnd = pos + len == size;
+            ByteBuffer window = channel.map(MapMode.READ_ONLY, pos, len);
+            int consumed = parseLines(window, len, atEnd);
+            if (consumed == 0 && !atEnd)
+                throw new IOException("Line longer than window of "
+                        + windowSize + " bytes");
+            pos += consumed;
+        }
+        return finish();
+    }
+
+    private void start(GroupHandler<? super E, K, V> handler) {
+        this.handler = handler;
+        this.entityLength = -1;
+        this.entity = null;
+        this.map = null;
+        this.rows = 0;
+    }
+
+    private long finish() throws IOException {
+        endGroup();
+        this.handler = null;
+        return this.rows;
+    }
+
+    /**
+     * Parses the complete lines of <code>buf</code> up to <code>limit</code>,
+     * and the incomplete last line too if at the end of the input.
+     *
+     * @return the index after the last line parsed
+     */
+    private int parseLines(ByteBuffer buf, int limit, boolean atEnd)
+            throws IOException {
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buf.get(lineEnd) != '\n')
+                lineEnd++;
+            if (lineEnd == limit && !atEnd)
+                return lineStart;
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r')
+                lineEnd--;
+            if (lineEnd > lineStart)
+                parseRow(buf, lineStart, lineEnd);
+            lineStart = Math.min(next, limit);
+        }
+        return limit;
+    }
+
+    private void parseRow(ByteBuffer buf, int start, int end)
+            throws IOException {
+        int d1 = indexOfDelimiter(buf, start, end);
+        int d2 = (d1 < 0) ? -1 : indexOfDelimiter(buf, d1 + 1, end);
+        if (d2 < 0)
+            throw new StreamCorruptedException("Row " + (this.rows + 1)
+                    + " has fewer than three fields");
+        if (!isCurrentEntity(buf, start, d1)) {
+            endGroup();
+            startGroup(buf, start, d1);
+        }
+        K key = this.keyDecoder.decode(buf, d1 + 1, d2);
+        this.map.put(key, this.valueDecoder.decode(buf, d2 + 1, end));
+        this.rows++;
+    }
+
+    private int indexOfDelimiter(ByteBuffer buf, int start, int end) {
+        for (int i = start; i < end; i++)
+            if (buf.get(i) == this.delimiter)
+                return i;
+        return -1;
+    }
+
+    private boolean isCurrentEntity(ByteBuffer buf, int start, int end) {
+        if (end - start != this.entityLength)
+            return false;
+        for (int i = start; i < end; i++)
+            if (buf.get(i) != this.entityBytes[i - start])
+                return false;
+        return true;
+    }
+
+    private void startGroup(ByteBuffer buf, int start, int end)
+            throws IOException {
+        int len = end - start;
+        if (len > this.entityBytes.length)
+            this.entityBytes = Arrays.copyOf(this.entityBytes, Math.max(len,
+                    2 * this.entityBytes.length));
+        for (int i = start; i < end; i++)
+            this.entityBytes[i - start] = buf.get(i);
+        this.entityLength = len;
+        this.entity = this.entityDecoder.decode(buf, start, end);
+        this.map = new SmallMap<>();
+    }
+
+    private void endGroup() throws IOException {
+        if (this.map == null)
+            return;
+        SmallMap<K, V> m = this.map;
+        this.map = null;
+        this.entityLength = -1;
+        m.trimToSize();
+        this.handler.group(this.entity, m);
+    }
+}
@@ -0,0 +1,350 @@
+/**
+ * Memory-mapped file of many encoded small maps, with read-only views.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A file of very many small maps, each encoded in the
+ * {@link SmallCollectionCodec} format, which is memory-mapped on opening.
+ * {@link #get(int)} returns a read-only <code>Map</code> view of a stored map
+ * which decodes keys and values straight from the mapped file as they are
+ * needed, so opening a store costs a few <code>mmap</code>s however many
+ * maps it holds, and maps never looked at are never brought onto the heap.
+ * <p>
+ * Stores are written once, in order, with a {@link Writer}. The file starts
+ * with a header (magic number, version, map count and index position), then
+ * the encoded maps, then the index: the file position of each map as a
+ * <code>long</code>.
+ * </p>
+ * <p>
+ * A view scans its encoded map on every lookup, decoding keys and skipping
+ * values (see {@link ElementCodec#skip}) until it finds a match. Views are
+ * thread-safe, being read-only; an <code>IOException</code> while decoding
+ * (for instance if the file was truncated) is thrown as an
+ * <code>UncheckedIOException</code>. Java offers no portable way to unmap a
+ * file, so the mapping is released when the store is garbage collected.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class SmallMapStore<K, V> implements Closeable {
+
+    private static final int MAGIC = 0x534D4150; // "SMAP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int DEFAULT_CHUNK_SHIFT = 30;
+
+    private final FileChannel channel;
+    private final ByteBuffer[] chunks;
+    private final int chunkShift;
+    private final long fileSize;
+    private final int count;
+    private final long indexPosition;
+    private final ElementCodec<K> keyCodec;
+    private final ElementCodec<V> valueCodec;
+
+    private SmallMapStore(FileChannel channel, int chunkShift,
+            ElementCodec<K> keyCodec, ElementCodec<V> valueCodec)
+            throws IOException {
+        this.channel = channel;
+        this.chunkShift = chunkShift;
+        this.fileSize = channel.size();
+        long chunkSize = 1L << chunkShift;
+        this.chunks = new ByteBuffer[(int) ((this.fileSize + chunkSize - 1) >>> chunkShift)];
+        for (int i = 0; i < this.chunks.length; i++) {
+            long pos = i * chunkSize;
+            this.chunks[i] = channel.map(MapMode.READ_ONLY, pos,
+                    Math.min(chunkSize, this.fileSize - pos));
+        }
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        MappedInput in = input(0);
+        if (this.fileSize < HEADER_SIZE || in.readInt() != MAGIC)
+            throw new IOException("Not a SmallMapStore file");
+        if (in.readInt() != VERSION)
+            throw new IOException("Unsupported SmallMapStore version");
+        long count = in.readLong();
+        this.indexPosition = in.readLong();
+        if (count < 0 || count > Integer.MAX_VALUE
+                || this.indexPosition < HEADER_SIZE
+                || count * 8 > this.fileSize - this.indexPosition)
+            throw new StreamCorruptedException("Corrupt SmallMapStore header");
+        this.count = (int) count;
+    }
+
+    /**
+     * Opens and maps a store written by a {@link Writer}.
+     *
+     * @param path
+     *            the file to open
+     * @param keyCodec
+     *            the codec the keys were written with
+     * @param valueCodec
+     *            the codec the values were written with
+     * @return the store
+     * @throws IOException
+     *             if the file cannot be opened or mapped, or is not a store
+     */
+    public static <K, V> SmallMapStore<K, V> open(Path path,
+            ElementCodec<K> keyCodec, ElementCodec<V> valueCodec)
+            throws IOException {
+        return open(path, keyCodec, valueCodec, DEFAULT_CHUNK_SHIFT);
+    }
+
+    static <K, V> SmallMapStore<K, V> open(Path path,
+            ElementCodec<K> keyCodec, ElementCodec<V> valueCodec,
+            int chunkShift) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new SmallMapStore<>(channel, chunkShift, keyCodec,
+                    valueCodec);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private MappedInput input(long position) {
+        return new MappedInput(this.chunks, this.chunkShift, this.fileSize,
+                position);
+    }
+
+    /**
+     * The number of maps in this store.
+     *
+     * @return the map count
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Returns a read-only view of the map at <code>index</code>, decoding from
+     * the mapped file.
+     *
+     * @param index
+     *            the index of the map, in the order written
+     * @return the view
+     * @throws IndexOutOfBoundsException
+     *             if <code>index</code> is out of range
+     */
+    public Map<K, V> get(int index) {
+        if (index < 0 || index >= this.count)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + this.count);
+        try {
+            long position = input(this.indexPosition + 8L * index).readLong();
+            return new View(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Arrays.fill(this.chunks, null);
+        this.channel.close();
+    }
+
+    /** A read-only map decoded from the mapped file on demand. */
+    private final class View extends AbstractMap<K, V> {
+
+        private final long position;
+
+        View(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public int size() {
+            try {
+                return SmallCollectionCodec.readVarInt(input(this.position));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) != null;
+        }
+
+        @Override
+        public V get(Object key) {
+            MappedInput in = find(key);
+            try {
+                return (in == null) ? null : SmallMapStore.this.valueCodec
+                        .read(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /** Returns an input at the value for <code>key</code>, or null. */
+        private MappedInput find(Object key) {
+            MappedInput in = input(this.position);
+            try {
+                int size = SmallCollectionCodec.readVarInt(in);
+                for (int i = 0; i < size; i++) {
+                    K k = SmallMapStore.this.keyCodec.read(in);
+                    if ((key == null) ? k == null : key.equals(k))
+                        return in;
+                    SmallMapStore.this.valueCodec.skip(in);
+                }
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<Entry<K, V>>() {
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    final MappedInput in = input(View.this.position);
+                    final int size;
+                    try {
+                        size = SmallCollectionCodec.readVarInt(in);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return new Iterator<Entry<K, V>>() {
+
+                        private int posNext = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return this.posNext < size;
+                        }
+
+                        @Override
+                        public Entry<K, V> next() {
+                            if (this.posNext >= size)
+                                throw new NoSuchElementException();
+                            ++this.posNext;
+                            try {
+                                K key = SmallMapStore.this.keyCodec.read(in);
+                                return new SimpleImmutableEntry<>(key,
+                                        SmallMapStore.this.valueCodec.read(in));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return View.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Writes a new store, one map at a time. Closing the writer writes the
+     * index and header; a store is not valid until its writer is closed.
+     */
+    public static class Writer<K, V> implements Closeable {
+
+        private final FileChannel channel;
+        private final SmallCollectionWriter out;
+        private final ElementCodec<? super K> keyCodec;
+        private final ElementCodec<? super V> valueCodec;
+        private long[] positions = new long[16];
+        private int count = 0;
+
+        /**
+         * Creates (or truncates) <code>path</code> to hold a new store.
+         *
+         * @param path
+         *            the file to write
+         * @param keyCodec
+         *            the codec for the keys
+         * @param valueCodec
+         *            the codec for the values
+         * @throws IOException
+         *             if the file cannot be created
+         */
+        public Writer(Path path, ElementCodec<? super K> keyCodec,
+                ElementCodec<? super V> valueCodec) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.out = new SmallCollectionWriter(this.channel);
+            this.keyCodec = keyCodec;
+            this.valueCodec = valueCodec;
+            this.out.write(new byte[HEADER_SIZE]); // filled in on close
+        }
+
+        /**
+         * Writes <code>m</code> as the next map of the store.
+         *
+         * @param m
+         *            the map to write
+         * @return the index of the map in the store
+         * @throws IOException
+         *             if the file cannot be written
+         */
+        public int add(Map<? extends K, ? extends V> m) throws IOException {
+            if (this.count == Integer.MAX_VALUE)
+                throw new IOException("SmallMapStore full");
+            if (this.count == this.positions.length)
+                this.positions = Arrays.copyOf(this.positions,
+                        this.count + (this.count >> 1));
+            this.positions[this.count] = this.out.position();
+            this.out.writeMap(m, this.keyCodec, this.valueCodec);
+            return this.count++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                long indexPosition = this.out.position();
+                for (int i = 0; i < this.count; i++)
+                    this.out.writeLong(this.positions[i]);
+                this.out.flush();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putLong(this.count)
+                        .putLong(indexPosition).flip();
+                while (header.hasRemaining())
+                    this.channel.write(header, header.position());
+            } finally {
+                this.channel.close();
+            }
+        }
+    }
+}
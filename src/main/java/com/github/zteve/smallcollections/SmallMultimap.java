@@ -0,0 +1,82 @@
+/**
+ * Set-valued multimap with all its values in one array.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A set-valued multimap that has a small memory footprint: each key has a set
+ * of distinct values, but there is no <code>Set</code> object per key. All the
+ * values are held in one array, grouped by key; see
+ * {@link AbstractSmallMultimap}. It takes the place of a
+ * <code>Map&lt;K, Set&lt;V&gt;&gt;</code> of a few keys; for lists of values
+ * see {@link SmallListMultimap}.
+ *
+ * @author Zteve
+ */
+public class SmallMultimap<K, V> extends AbstractSmallMultimap<K, V> {
+
+    /**
+     * Constructs a new, empty, <code>SmallMultimap</code>.
+     */
+    public SmallMultimap() {
+    }
+
+    @Override
+    boolean distinctValues() {
+        return true;
+    }
+
+    @Override
+    public Set<V> get(final K key) {
+        return new AbstractSet<V>() {
+
+            @Override
+            public Iterator<V> iterator() {
+                return new GroupIterator(key);
+            }
+
+            @Override
+            public int size() {
+                return groupSize(key);
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsEntry(key, o);
+            }
+
+            @Override
+            public boolean add(V value) {
+                return put(key, value);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return SmallMultimap.this.remove(key, o);
+            }
+
+            @Override
+            public void clear() {
+                SmallMultimap.this.removeAll(key);
+            }
+        };
+    }
+}
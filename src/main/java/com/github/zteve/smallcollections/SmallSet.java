@@ -17,27 +17,42 @@
  */
 package com.github.zteve.smallcollections;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.AbstractSet;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
  * A {@link Set} implementation that has a small memory footprint. It is slow,
  * <em>unsynchronised</em>, and unoptimised, but if you want a lot of small
  * sets, which individually have little use, this fits the bill.
+ * <p>
+ * Elements are held in an array, which is not allocated until the first
+ * element is added. How the array grows and shrinks is decided by a
+ * {@link CapacityPolicy}; sets constructed directly use
+ * {@link CapacityPolicy#DEFAULT}, and {@link CapacityPolicy#newSet()}
+ * constructs sets with any other policy.
+ * </p>
+ * <p>
+ * Sets are <code>Externalizable</code>, written as their size followed by
+ * their elements; see also {@link SmallCollectionCodec}.
+ * </p>
  *
  * @author Zteve
  */
-public class SmallSet<E> extends AbstractSet<E> {
+public class SmallSet<E> extends AbstractSet<E> implements Externalizable {
 
-    private ArrayList<E> arrList = null;
+    private static final long serialVersionUID = 1L;
+
+    Object[] elementArray = null;
+    int size = 0;
 
-    private ArrayList<E> arrList() {
-        if (this.arrList == null)
-            this.arrList = new ArrayList<>(0);
-        return this.arrList;
-    }
     /**
      * Constructs a new, empty, <code>SmallSet</code>.
      */
@@ -54,23 +69,248 @@ public class SmallSet<E> extends AbstractSet<E> {
      *             if the specified set is null
      */
     public SmallSet(Set<? extends E> s) {
-        putAllInternal(this.arrList(), s);
+        putAllInternal(s);
+    }
+
+    CapacityPolicy capacityPolicy() {
+        return CapacityPolicy.DEFAULT;
+    }
+
+    int capacity() {
+        return (this.elementArray == null) ? 0 : this.elementArray.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    E elementAt(int pos) {
+        return (E) this.elementArray[pos];
+    }
+
+    int indexOf(Object value) {
+        Object[] ea = this.elementArray;
+        if (value == null) {
+            for (int i = 0; i < this.size; i++)
+                if (ea[i] == null)
+                    return i;
+        } else {
+            for (int i = 0; i < this.size; i++)
+                if (value.equals(ea[i]))
+                    return i;
+        }
+        return -1;
+    }
+
+    /** Whether <code>probe</code> finds the element <code>element</code>. */
+    boolean sameElement(Object probe, Object element) {
+        return probe == element || (probe != null && probe.equals(element));
     }
 
-    private static <E> void putAllInternal(ArrayList<E> al, Set<? extends E> s) {
-        for (E value : s) putInternal(al, value);
+    int indexOfPrepared(PreparedKey<?> value) {
+        return value.indexIn(this.elementArray, this.size);
     }
 
-    private static <E> boolean putInternal(ArrayList<E> al, E value) {
-        if (al.contains(value))
+    private boolean putAllInternal(Collection<? extends E> c) {
+        if (this.size == 0 && c instanceof Set)
+            ensureCapacity(c.size());
+        boolean modified = false;
+        for (E value : c)
+            modified |= putInternal(value);
+        return modified;
+    }
+
+    private boolean putInternal(E value) {
+        if (indexOf(value) != -1)
             return false;
-        al.add(value);
+        ensureCapacity(this.size + 1);
+        this.elementArray[this.size++] = value;
+        inserted(value);
         return true;
     }
 
+    /**
+     * Reports an insert to the metrics and events, if enabled. Called after
+     * each insert, with <code>size</code> already counting it.
+     */
+    void inserted(Object value) {
+        if (SmallCollectionMetrics.ENABLED)
+            SmallCollectionMetrics.recordInsert(this.size);
+        if (SmallCollectionEvents.ENABLED)
+            SmallCollectionEvents.inserted(this, this.size, value);
+    }
+
+    /** Reports a lookup to the metrics and events, if enabled. */
+    private void lookedUp(int ind, Object value) {
+        if (SmallCollectionMetrics.ENABLED)
+            SmallCollectionMetrics.recordLookup(ind, this.size);
+        if (SmallCollectionEvents.ENABLED)
+            SmallCollectionEvents.lookedUp(this, ind, this.size, value);
+    }
+
+    void removeAt(int pos) {
+        int numMoved = this.size - pos - 1;
+        if (numMoved > 0)
+            System.arraycopy(this.elementArray, pos + 1, this.elementArray,
+                    pos, numMoved);
+        this.elementArray[--this.size] = null;
+        if (capacityPolicy().shouldShrink(capacity(), this.size))
+            resize(this.size);
+    }
+
+    void ensureCapacity(int minCapacity) {
+        int capacity = capacity();
+        if (minCapacity > capacity)
+            resize(capacityPolicy().grow(capacity, minCapacity));
+    }
+
+    private void resize(int capacity) {
+        if (capacity == 0)
+            this.elementArray = null;
+        else if (this.elementArray == null)
+            this.elementArray = new Object[capacity];
+        else
+            this.elementArray = Arrays.copyOf(this.elementArray, capacity);
+    }
+
+    /**
+     * Trims the backing array of this <code>SmallSet</code> to its current
+     * size. An empty set releases its array altogether.
+     */
+    public void trimToSize() {
+        if (capacity() != this.size)
+            resize(this.size);
+    }
+
     @Override
     public boolean add(E value) {
-        return putInternal(this.arrList(), value);
+        return putInternal(value);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        return putAllInternal(c);
+    }
+
+    /**
+     * Adds the first <code>n</code> elements of an array to this set, as
+     * <code>add(elements[i])</code> would in turn, but with one pass over the
+     * existing elements.
+     *
+     * @param elements
+     *            the elements
+     * @param n
+     *            the number of elements to add
+     * @return whether this set changed
+     * @throws IndexOutOfBoundsException
+     *             if the array has fewer than <code>n</code> elements
+     */
+    public boolean addAll(E[] elements, int n) {
+        if (n < 0 || elements.length < n)
+            throw new IndexOutOfBoundsException("Cannot add " + n
+                    + " elements from an array of " + elements.length);
+        if (this.size == 0)
+            ensureCapacity(n);
+        int oldSize = this.size;
+        long[] present = new long[(n + 63) >>> 6];
+        for (int i = 0; i < oldSize; i++) {
+            Object element = this.elementArray[i];
+            for (int j = 0; j < n; j++)
+                if (sameElement(elements[j], element))
+                    present[j >>> 6] |= 1L << j;
+        }
+        for (int j = 0; j < n; j++) {
+            if ((present[j >>> 6] & (1L << j)) != 0)
+                continue;
+            boolean added = false;
+            for (int i = oldSize; i < this.size && !added; i++)
+                added = sameElement(elements[j], this.elementArray[i]);
+            if (!added) {
+                ensureCapacity(this.size + 1);
+                this.elementArray[this.size++] = elements[j];
+                inserted(elements[j]);
+            }
+        }
+        return this.size != oldSize;
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        int ind = indexOf(value);
+        lookedUp(ind, value);
+        return ind != -1;
+    }
+
+    /**
+     * Returns whether this set contains the prepared element, as
+     * {@link #contains(Object)} does for the element itself.
+     *
+     * @param value
+     *            the prepared element
+     * @return whether the element is in this set
+     */
+    public boolean containsPrepared(PreparedKey<?> value) {
+        int ind = indexOfPrepared(value);
+        lookedUp(ind, value.key);
+        return ind != -1;
+    }
+
+    /**
+     * Returns whether this set contains every element of an array, with one
+     * pass over this set.
+     *
+     * @param values
+     *            the elements to look for
+     * @return whether they are all in this set
+     */
+    public boolean containsAll(Object[] values) {
+        int n = values.length;
+        long[] found = new long[(n + 63) >>> 6];
+        int numFound = 0;
+        for (int i = 0; i < this.size && numFound < n; i++) {
+            Object element = this.elementArray[i];
+            for (int j = 0; j < n; j++) {
+                if ((found[j >>> 6] & (1L << j)) == 0
+                        && sameElement(values[j], element)) {
+                    found[j >>> 6] |= 1L << j;
+                    ++numFound;
+                }
+            }
+        }
+        return numFound == n;
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        int ind = indexOf(value);
+        if (-1 == ind)
+            return false;
+        removeAt(ind);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        if (this.size > 0) {
+            Arrays.fill(this.elementArray, 0, this.size, null);
+            this.size = 0;
+        }
+        if (capacityPolicy().shouldShrink(capacity(), 0))
+            resize(0);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        SmallCollectionCodec.writeVarInt(out, this.size);
+        for (int i = 0; i < this.size; i++)
+            out.writeObject(this.elementArray[i]);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void readExternal(ObjectInput in) throws IOException,
+            ClassNotFoundException {
+        int size = SmallCollectionCodec.readSize(in);
+        ensureCapacity(this.size + SmallCollectionCodec.presize(size));
+        for (int i = 0; i < size; i++)
+            putInternal((E) in.readObject());
     }
 
     @Override
@@ -81,26 +321,122 @@ public class SmallSet<E> extends AbstractSet<E> {
 
             @Override
             public boolean hasNext() {
-                return this.posNext < SmallSet.this.size();
+                return this.posNext < SmallSet.this.size;
             }
 
             @Override
             public E next() {
+                if (this.posNext >= SmallSet.this.size)
+                    throw new NoSuchElementException();
                 int pos = this.posNext++;
-                return SmallSet.this.arrList.get(pos);
+                return SmallSet.this.elementAt(pos);
             }
 
             @Override
             public void remove() {
                 int pos = --this.posNext;
-                SmallSet.this.arrList.remove(pos);
+                SmallSet.this.removeAt(pos);
+                if (SmallCollectionMetrics.ENABLED)
+                    SmallCollectionMetrics.recordIteratorRemoval();
             }
         };
     }
 
     @Override
     public int size() {
-        return (this.arrList == null) ? 0 : this.arrList.size();
+        return this.size;
+    }
+
+    /**
+     * An unmodifiable <code>SmallSet</code>, trimmed to size, which caches its
+     * hash code. See {@link SmallCollectionInterner}.
+     */
+    static class Frozen<E> extends SmallSet<E> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int hash;
+
+        Frozen(Set<? extends E> s) {
+            super(s);
+            trimToSize();
+            this.hash = super.hashCode();
+        }
+
+        @Override
+        public boolean add(E value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends E> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean addAll(E[] elements, int n) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean remove(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        void removeAt(int pos) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof Frozen && ((Frozen<?>) o).hash != this.hash)
+                return false;
+            return super.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        Object writeReplace() {
+            return new SmallSet<E>(this);
+        }
+    }
+
+    /**
+     * A <code>SmallSet</code> carrying a {@link CapacityPolicy} other than
+     * the default.
+     */
+    static class WithPolicy<E> extends SmallSet<E> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CapacityPolicy policy;
+
+        WithPolicy(CapacityPolicy policy) {
+            this.policy = policy;
+        }
+
+        @Override
+        CapacityPolicy capacityPolicy() {
+            return this.policy;
+        }
+
+        Object writeReplace() {
+            return new SmallSet<E>(this);
+        }
     }
 
 }
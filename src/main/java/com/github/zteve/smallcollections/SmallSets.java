@@ -0,0 +1,286 @@
+/**
+ * Set algebra on SmallSets, producing exactly-sized results.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.Arrays;
+
+/**
+ * Unions, intersections and differences of {@link SmallSet}s, each built
+ * into a new set whose array is exactly the size of the result, and
+ * allocation-free intersection counts, for similarity scores.
+ * <p>
+ * Rather than test each element of one set with a scan of the other, as
+ * <code>retainAll</code> and <code>addAll</code> do, these compute a 64-bit
+ * summary of the other set, one bit per element chosen by its hash code, and
+ * scan only for elements whose bit is set; most misses cost one test. When
+ * both sets are too large for the summary to be selective, the methods
+ * returning sets sort and merge the elements' hash codes instead; the
+ * counting methods, which allocate nothing, always use the summary.
+ * </p>
+ * <p>
+ * Elements are compared as the set being searched compares them, so
+ * identity sets compare with <code>==</code>; a result is a
+ * {@link SmallIdentitySet} if the first argument is one. Both arguments
+ * should compare elements the same way.
+ * </p>
+ *
+ * @author Zteve
+ */
+public final class SmallSets {
+
+    /**
+     * The largest product of the sizes for which a summary word is used; past
+     * this, sorted hash codes are merged.
+     */
+    static final int MAX_SUMMARY_PRODUCT = 32 * 32;
+
+    private SmallSets() {
+    }
+
+    /**
+     * Returns the elements in either set: those of <code>a</code>, then those
+     * of <code>b</code> not in <code>a</code>.
+     *
+     * @param a
+     *            a set
+     * @param b
+     *            another set
+     * @return a new set
+     */
+    public static <E> SmallSet<E> union(SmallSet<? extends E> a,
+            SmallSet<? extends E> b) {
+        long[] inA = membership(b, a);
+        int n = a.size + b.size - count(inA);
+        Object[] array = new Object[n];
+        if (a.size > 0)
+            System.arraycopy(a.elementArray, 0, array, 0, a.size);
+        copyUnmarked(b, inA, array, a.size);
+        return newSet(a, array);
+    }
+
+    /**
+     * Returns the elements of <code>a</code> also in <code>b</code>.
+     *
+     * @param a
+     *            a set
+     * @param b
+     *            another set
+     * @return a new set
+     */
+    public static <E> SmallSet<E> intersection(SmallSet<? extends E> a,
+            SmallSet<?> b) {
+        long[] inB = membership(a, b);
+        Object[] array = new Object[count(inB)];
+        int pos = 0;
+        for (int i = 0; i < a.size; i++)
+            if (isMarked(inB, i))
+                array[pos++] = a.elementArray[i];
+        return newSet(a, array);
+    }
+
+    /**
+     * Returns the elements of <code>a</code> not in <code>b</code>.
+     *
+     * @param a
+     *            a set
+     * @param b
+     *            another set
+     * @return a new set
+     */
+    public static <E> SmallSet<E> difference(SmallSet<? extends E> a,
+            SmallSet<?> b) {
+        long[] inB = membership(a, b);
+        Object[] array = new Object[a.size - count(inB)];
+        copyUnmarked(a, inB, array, 0);
+        return newSet(a, array);
+    }
+
+    /**
+     * Returns the elements in one set but not the other: those of
+     * <code>a</code> not in <code>b</code>, then those of <code>b</code> not
+     * in <code>a</code>.
+     *
+     * @param a
+     *            a set
+     * @param b
+     *            another set
+     * @return a new set
+     */
+    public static <E> SmallSet<E> symmetricDifference(SmallSet<? extends E> a,
+            SmallSet<? extends E> b) {
+        long[] inB = membership(a, b);
+        long[] inA = membership(b, a);
+        int onlyA = a.size - count(inB);
+        Object[] array = new Object[onlyA + b.size - count(inA)];
+        copyUnmarked(a, inB, array, 0);
+        copyUnmarked(b, inA, array, onlyA);
+        return newSet(a, array);
+    }
+
+    /**
+     * Returns the number of elements in both sets, allocating nothing. Each
+     * element of the smaller set is tested against a summary word of the
+     * larger, and only those that pass are looked for with a scan of it. For
+     * sets large enough to set most of the summary's 64 bits, nearly every
+     * element is scanned for, so the cost approaches the product of the
+     * sizes; {@link #intersection} merges sorted hash codes instead.
+     *
+     * @param a
+     *            a set
+     * @param b
+     *            another set
+     * @return the size of their intersection
+     */
+    public static int intersectionSize(SmallSet<?> a, SmallSet<?> b) {
+        SmallSet<?> small = (a.size <= b.size) ? a : b;
+        SmallSet<?> large = (small == a) ? b : a;
+        long summary = summary(large);
+        int n = 0;
+        for (int i = 0; i < small.size; i++) {
+            Object e = small.elementArray[i];
+            if ((summary & bit(e)) != 0 && large.indexOf(e) != -1)
+                n++;
+        }
+        return n;
+    }
+
+    /**
+     * Returns whether the sets have an element in common, allocating
+     * nothing. Elements are filtered and looked for as by
+     * {@link #intersectionSize}, stopping at the first found, so two large
+     * sets with nothing in common can cost the product of their sizes.
+     *
+     * @param a
+     *            a set
+     * @param b
+     *            another set
+     * @return whether their intersection is not empty
+     */
+    public static boolean intersects(SmallSet<?> a, SmallSet<?> b) {
+        SmallSet<?> small = (a.size <= b.size) ? a : b;
+        SmallSet<?> large = (small == a) ? b : a;
+        long summary = summary(large);
+        for (int i = 0; i < small.size; i++) {
+            Object e = small.elementArray[i];
+            if ((summary & bit(e)) != 0 && large.indexOf(e) != -1)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * The summary bit of <code>e</code>, from the top six bits of its mixed
+     * hash code.
+     */
+    static long bit(Object e) {
+        return hashBit((e == null) ? 0 : e.hashCode());
+    }
+
+    /** The summary bit of an element with hash code <code>hash</code>. */
+    static long hashBit(int hash) {
+        return 1L << ((hash * 0x9E3779B9) >>> 26);
+    }
+
+    /** The union of the summary bits of the elements of <code>s</code>. */
+    static long summary(SmallSet<?> s) {
+        long summary = 0L;
+        for (int i = 0; i < s.size; i++)
+            summary |= bit(s.elementArray[i]);
+        return summary;
+    }
+
+    /**
+     * A bit per element of <code>x</code>, in order, set if the element is
+     * in <code>y</code>.
+     */
+    private static long[] membership(SmallSet<?> x, SmallSet<?> y) {
+        long[] marks = new long[(x.size + 63) >>> 6];
+        if (x.size == 0 || y.size == 0)
+            return marks;
+        if ((long) x.size * y.size <= MAX_SUMMARY_PRODUCT) {
+            long summary = summary(y);
+            for (int i = 0; i < x.size; i++) {
+                Object e = x.elementArray[i];
+                if ((summary & bit(e)) != 0 && y.indexOf(e) != -1)
+                    marks[i >>> 6] |= 1L << i;
+            }
+            return marks;
+        }
+        long[] fx = fingerprints(x);
+        long[] fy = fingerprints(y);
+        int j = 0;
+        for (int i = 0; i < fx.length; i++) {
+            int hash = (int) (fx[i] >> 32);
+            while (j < fy.length && (int) (fy[j] >> 32) < hash)
+                j++;
+            Object e = x.elementArray[(int) fx[i]];
+            for (int k = j; k < fy.length
+                    && (int) (fy[k] >> 32) == hash; k++) {
+                if (y.sameElement(e, y.elementArray[(int) fy[k]])) {
+                    int ind = (int) fx[i];
+                    marks[ind >>> 6] |= 1L << ind;
+                    break;
+                }
+            }
+        }
+        return marks;
+    }
+
+    /** Each element's hash code, in the high word, and index, sorted. */
+    private static long[] fingerprints(SmallSet<?> s) {
+        long[] f = new long[s.size];
+        for (int i = 0; i < s.size; i++) {
+            Object e = s.elementArray[i];
+            f[i] = ((long) ((e == null) ? 0 : e.hashCode()) << 32) | i;
+        }
+        Arrays.sort(f);
+        return f;
+    }
+
+    private static boolean isMarked(long[] marks, int i) {
+        return (marks[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static int count(long[] marks) {
+        int n = 0;
+        for (long word : marks)
+            n += Long.bitCount(word);
+        return n;
+    }
+
+    /**
+     * Copies the unmarked elements of <code>s</code> into <code>array</code>
+     * from <code>pos</code>.
+     */
+    private static void copyUnmarked(SmallSet<?> s, long[] marks,
+            Object[] array, int pos) {
+        for (int i = 0; i < s.size; i++)
+            if (!isMarked(marks, i))
+                array[pos++] = s.elementArray[i];
+    }
+
+    private static <E> SmallSet<E> newSet(SmallSet<?> like, Object[] array) {
+        SmallSet<E> s = (like instanceof SmallIdentitySet)
+                ? new SmallIdentitySet<E>() : new SmallSet<E>();
+        if (array.length > 0) {
+            s.elementArray = array;
+            s.size = array.length;
+        }
+        return s;
+    }
+}
@@ -0,0 +1,300 @@
+/**
+ * Lightweight String-keyed map holding its keys packed in one byte array.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Map} with <code>String</code> keys that has a small memory
+ * footprint. Rather than holding a <code>String</code> (and its own character
+ * array) for each key, a <code>SmallStringMap</code> packs the characters of
+ * all its keys into one <code>byte[]</code>, encoded as UTF-8 (so ASCII keys
+ * take a byte per character), with an <code>int[]</code> of the end offset of
+ * each key. Values are held in an array in the same order.
+ * <p>
+ * Lookups compare the probe key's characters directly with the packed bytes,
+ * without creating any <code>String</code>s; keys are decoded into new
+ * <code>String</code>s only as the key and entry sets are iterated. All three
+ * arrays are exactly the size of the map, so adding or removing a key copies
+ * them; like {@link SmallMap}, this map is meant for a few entries.
+ * </p>
+ * <p>
+ * Characters outside the Basic Multilingual Plane are encoded a surrogate at a
+ * time, in three bytes each, so every <code>String</code> can be a key. Null
+ * keys are not permitted; null values are. Like {@link SmallMap} this map is
+ * <em>unsynchronised</em>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class SmallStringMap<V> extends AbstractMap<String, V> {
+
+    private byte[] keyBytes = null;
+    private int[] keyEnds = null;
+    private Object[] valueArray = null;
+
+    /**
+     * Constructs a new, empty, <code>SmallStringMap</code>.
+     */
+    public SmallStringMap() {
+    }
+
+    /**
+     * Constructs a new <code>SmallStringMap</code> with the same mappings as
+     * the specified <code>Map</code>.
+     *
+     * @param m
+     *            the map whose mappings are to be placed in this map
+     * @throws NullPointerException
+     *             if the specified map is null, or has a null key
+     */
+    public SmallStringMap(Map<String, ? extends V> m) {
+        for (Entry<String, ? extends V> e : m.entrySet())
+            put(e.getKey(), e.getValue());
+    }
+
+    private int keyStart(int pos) {
+        return (pos == 0) ? 0 : this.keyEnds[pos - 1];
+    }
+
+    int indexOfKey(Object key) {
+        if (!(key instanceof String) || this.keyEnds == null)
+            return -1;
+        String s = (String) key;
+        int start = 0;
+        for (int i = 0; i < this.keyEnds.length; i++) {
+            int end = this.keyEnds[i];
+            if (matches(start, end, s))
+                return i;
+            start = end;
+        }
+        return -1;
+    }
+
+    /** Whether the bytes from <code>start</code> to <code>end</code> encode <code>s</code>. */
+    private boolean matches(int start, int end, String s) {
+        int len = s.length();
+        int byteLen = end - start;
+        if (len > byteLen || 3 * len < byteLen)
+            return false;
+        byte[] b = this.keyBytes;
+        int p = start;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (p >= end || b[p++] != c)
+                    return false;
+            } else if (c < 0x800) {
+                if (p + 2 > end || b[p++] != (byte) (0xC0 | (c >> 6))
+                        || b[p++] != (byte) (0x80 | (c & 0x3F)))
+                    return false;
+            } else {
+                if (p + 3 > end || b[p++] != (byte) (0xE0 | (c >> 12))
+                        || b[p++] != (byte) (0x80 | ((c >> 6) & 0x3F))
+                        || b[p++] != (byte) (0x80 | (c & 0x3F)))
+                    return false;
+            }
+        }
+        return p == end;
+    }
+
+    private static int encodedLength(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            n += (c < 0x80) ? 1 : (c < 0x800) ? 2 : 3;
+        }
+        return n;
+    }
+
+    private static void encode(String s, byte[] b, int p) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                b[p++] = (byte) c;
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xC0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                b[p++] = (byte) (0xE0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    String keyAt(int pos) {
+        byte[] b = this.keyBytes;
+        int p = keyStart(pos);
+        int end = this.keyEnds[pos];
+        char[] chars = new char[end - p];
+        int n = 0;
+        while (p < end) {
+            int b0 = b[p++];
+            if (b0 >= 0) {
+                chars[n++] = (char) b0;
+            } else if ((b0 & 0xE0) == 0xC0) {
+                chars[n++] = (char) (((b0 & 0x1F) << 6) | (b[p++] & 0x3F));
+            } else {
+                int b1 = b[p++];
+                chars[n++] = (char) (((b0 & 0x0F) << 12)
+                        | ((b1 & 0x3F) << 6) | (b[p++] & 0x3F));
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    @SuppressWarnings("unchecked")
+    V valueAt(int pos) {
+        return (V) this.valueArray[pos];
+    }
+
+    @Override
+    public int size() {
+        return (this.keyEnds == null) ? 0 : this.keyEnds.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOfKey(key) != -1;
+    }
+
+    @Override
+    public V get(Object key) {
+        int pos = indexOfKey(key);
+        return (-1 == pos) ? null : valueAt(pos);
+    }
+
+    @Override
+    public V put(String key, V value) {
+        int pos = indexOfKey(key);
+        if (pos != -1) {
+            V oldValue = valueAt(pos);
+            this.valueArray[pos] = value;
+            return oldValue;
+        }
+        int size = size();
+        int start = (size == 0) ? 0 : this.keyEnds[size - 1];
+        int end = start + encodedLength(key);
+        byte[] kb = new byte[end];
+        int[] ke = new int[size + 1];
+        Object[] va = new Object[size + 1];
+        if (size > 0) {
+            System.arraycopy(this.keyBytes, 0, kb, 0, start);
+            System.arraycopy(this.keyEnds, 0, ke, 0, size);
+            System.arraycopy(this.valueArray, 0, va, 0, size);
+        }
+        encode(key, kb, start);
+        ke[size] = end;
+        va[size] = value;
+        this.keyBytes = kb;
+        this.keyEnds = ke;
+        this.valueArray = va;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int pos = indexOfKey(key);
+        return (-1 == pos) ? null : removeAt(pos);
+    }
+
+    V removeAt(int pos) {
+        V oldValue = valueAt(pos);
+        int size = this.keyEnds.length - 1;
+        if (size == 0) {
+            clear();
+            return oldValue;
+        }
+        int start = keyStart(pos);
+        int end = this.keyEnds[pos];
+        int len = end - start;
+        byte[] kb = new byte[this.keyBytes.length - len];
+        System.arraycopy(this.keyBytes, 0, kb, 0, start);
+        System.arraycopy(this.keyBytes, end, kb, start, kb.length - start);
+        int[] ke = new int[size];
+        System.arraycopy(this.keyEnds, 0, ke, 0, pos);
+        for (int i = pos; i < size; i++)
+            ke[i] = this.keyEnds[i + 1] - len;
+        Object[] va = new Object[size];
+        System.arraycopy(this.valueArray, 0, va, 0, pos);
+        System.arraycopy(this.valueArray, pos + 1, va, pos, size - pos);
+        this.keyBytes = kb;
+        this.keyEnds = ke;
+        this.valueArray = va;
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        this.keyBytes = null;
+        this.keyEnds = null;
+        this.valueArray = null;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<Entry<String, V>>() {
+
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new Iterator<Entry<String, V>>() {
+
+                    private int posNext = 0;
+                    private int last = -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.posNext < SmallStringMap.this.size();
+                    }
+
+                    @Override
+                    public Entry<String, V> next() {
+                        if (this.posNext >= SmallStringMap.this.size())
+                            throw new NoSuchElementException();
+                        this.last = this.posNext++;
+                        return new SimpleEntry<>(
+                                SmallStringMap.this.keyAt(this.last),
+                                SmallStringMap.this.valueAt(this.last));
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (this.last == -1)
+                            throw new IllegalStateException();
+                        SmallStringMap.this.removeAt(this.last);
+                        this.posNext = this.last;
+                        this.last = -1;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return SmallStringMap.this.size();
+            }
+
+        };
+    }
+
+}
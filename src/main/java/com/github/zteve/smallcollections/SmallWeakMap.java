@@ -0,0 +1,303 @@
+/**
+ * Lightweight map with weakly referenced keys, with small memory footprint.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Map} with weakly referenced keys that has a small memory footprint,
+ * for attaching a few mappings to objects without keeping them alive. It has
+ * the same layout as {@link SmallMap}, except that each key slot holds a
+ * <code>WeakReference</code> to the key (or <code>null</code> for the null
+ * key). There is no table, no reference queue and no entry object per
+ * mapping, as there are in <code>WeakHashMap</code>.
+ * <p>
+ * Mappings whose keys have been collected are expunged lazily: each
+ * <code>put</code> and <code>remove</code> scans the whole key array anyway,
+ * and compacts the arrays as it goes. Lookups, <code>size()</code> and
+ * iteration skip such mappings without moving the others, so reading the map
+ * never disturbs an iterator. Values are strongly referenced, so a value
+ * which refers to its own key will keep it alive. Like {@link SmallMap} it is
+ * <em>unsynchronised</em>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class SmallWeakMap<K, V> extends AbstractMap<K, V> {
+
+    private static final Object NOT_A_KEY = new Object();
+
+    private Object[] keyArray = null;
+    private Object[] valueArray = null;
+    private int size = 0;
+
+    /**
+     * Constructs a new, empty, <code>SmallWeakMap</code>.
+     */
+    public SmallWeakMap() {
+    }
+
+    /**
+     * Constructs a new <code>SmallWeakMap</code> with the same mappings as
+     * the specified <code>Map</code>.
+     *
+     * @param m
+     *            the map whose mappings are to be placed in this map
+     * @throws NullPointerException
+     *             if the specified map is null
+     */
+    public SmallWeakMap(Map<? extends K, ? extends V> m) {
+        for (Entry<? extends K, ? extends V> e : m.entrySet())
+            put(e.getKey(), e.getValue());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> K referent(Object slot) {
+        return (slot == null) ? null : ((WeakReference<K>) slot).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int pos) {
+        return (V) this.valueArray[pos];
+    }
+
+    /** Whether the key slot <code>slot</code> holds <code>key</code>. */
+    private static boolean holds(Object slot, Object key) {
+        return (key == null) ? slot == null : key.equals(referent(slot));
+    }
+
+    /** Whether the key slot <code>slot</code> has had its key collected. */
+    private static boolean isStale(Object slot) {
+        return slot != null && referent(slot) == null;
+    }
+
+    /**
+     * Finds <code>key</code>, without moving any mapping.
+     *
+     * @return the index of <code>key</code>, or -1
+     */
+    private int lookUp(Object key) {
+        Object[] ka = this.keyArray;
+        for (int i = 0; i < this.size; i++)
+            if (holds(ka[i], key))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Finds <code>key</code>, expunging stale mappings on the way. Only
+     * mutators call this.
+     *
+     * @return the index of <code>key</code> in the compacted arrays, or -1
+     */
+    private int indexOfKey(Object key) {
+        Object[] ka = this.keyArray;
+        Object[] va = this.valueArray;
+        int found = -1;
+        int live = 0;
+        for (int i = 0; i < this.size; i++) {
+            Object slot = ka[i];
+            if (isStale(slot))
+                continue;
+            if (live != i) {
+                ka[live] = slot;
+                va[live] = va[i];
+            }
+            if (found == -1 && holds(slot, key))
+                found = live;
+            ++live;
+        }
+        if (live != this.size) {
+            Arrays.fill(ka, live, this.size, null);
+            Arrays.fill(va, live, this.size, null);
+            this.size = live;
+        }
+        return found;
+    }
+
+    private void expungeStaleEntries() {
+        indexOfKey(NOT_A_KEY);
+    }
+
+    private int capacity() {
+        return (this.keyArray == null) ? 0 : this.keyArray.length;
+    }
+
+    private void resize(int capacity) {
+        if (capacity == 0) {
+            this.keyArray = null;
+            this.valueArray = null;
+        } else if (this.keyArray == null) {
+            this.keyArray = new Object[capacity];
+            this.valueArray = new Object[capacity];
+        } else {
+            this.keyArray = Arrays.copyOf(this.keyArray, capacity);
+            this.valueArray = Arrays.copyOf(this.valueArray, capacity);
+        }
+    }
+
+    private V removeAt(int pos) {
+        V oldValue = valueAt(pos);
+        int numMoved = this.size - pos - 1;
+        if (numMoved > 0) {
+            System.arraycopy(this.keyArray, pos + 1, this.keyArray, pos,
+                    numMoved);
+            System.arraycopy(this.valueArray, pos + 1, this.valueArray, pos,
+                    numMoved);
+        }
+        --this.size;
+        this.keyArray[this.size] = null;
+        this.valueArray[this.size] = null;
+        return oldValue;
+    }
+
+    /**
+     * Expunges mappings whose keys have been collected, and trims the backing
+     * arrays of this <code>SmallWeakMap</code> to its current size.
+     */
+    public void trimToSize() {
+        expungeStaleEntries();
+        if (capacity() != this.size)
+            resize(this.size);
+    }
+
+    @Override
+    public int size() {
+        int live = 0;
+        for (int i = 0; i < this.size; i++)
+            if (!isStale(this.keyArray[i]))
+                ++live;
+        return live;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return lookUp(key) != -1;
+    }
+
+    @Override
+    public V get(Object key) {
+        int ind = lookUp(key);
+        return (-1 == ind) ? null : valueAt(ind);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int ind = indexOfKey(key);
+        if (-1 != ind) {
+            V oldValue = valueAt(ind);
+            this.valueArray[ind] = value;
+            return oldValue;
+        }
+        int capacity = capacity();
+        if (this.size == capacity)
+            resize(CapacityPolicy.DEFAULT.grow(capacity, this.size + 1));
+        this.keyArray[this.size] = (key == null) ? null
+                : new WeakReference<K>(key);
+        this.valueArray[this.size] = value;
+        this.size++;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int ind = indexOfKey(key);
+        return (-1 == ind) ? null : removeAt(ind);
+    }
+
+    @Override
+    public void clear() {
+        if (this.size > 0) {
+            Arrays.fill(this.keyArray, 0, this.size, null);
+            Arrays.fill(this.valueArray, 0, this.size, null);
+            this.size = 0;
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<Entry<K, V>>() {
+
+                    private int posNext = 0;
+                    private int lastReturned = -1;
+                    // strong reference to the next key, so it survives until
+                    // returned by next()
+                    private K nextKey = null;
+
+                    @Override
+                    public boolean hasNext() {
+                        Object[] ka = SmallWeakMap.this.keyArray;
+                        while (this.posNext < SmallWeakMap.this.size) {
+                            Object slot = ka[this.posNext];
+                            this.nextKey = referent(slot);
+                            if (slot == null || this.nextKey != null)
+                                return true;
+                            ++this.posNext;
+                        }
+                        return false;
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        int pos = this.posNext++;
+                        this.lastReturned = pos;
+                        K key = this.nextKey;
+                        this.nextKey = null;
+                        return new SimpleEntry<>(key,
+                                SmallWeakMap.this.valueAt(pos));
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (this.lastReturned == -1)
+                            throw new IllegalStateException();
+                        // hasNext() may have skipped stale slots since
+                        SmallWeakMap.this.removeAt(this.lastReturned);
+                        --this.posNext;
+                        this.lastReturned = -1;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return SmallWeakMap.this.size();
+            }
+
+        };
+    }
+
+}
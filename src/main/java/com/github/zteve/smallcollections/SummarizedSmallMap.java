@@ -0,0 +1,119 @@
+/**
+ * Lightweight map with a hash summary word, for fast misses.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.Map;
+
+/**
+ * A {@link SmallMap} which also keeps a 64-bit summary of its keys: one bit
+ * per key, chosen by the key's hash code. A lookup whose bit is clear is a
+ * miss without scanning the key array, so maps which are mostly probed for
+ * absent keys answer in about the same time whatever their size. Hits, and
+ * the misses whose bit another key shares, scan as before.
+ * <p>
+ * The summary costs eight bytes per map. Inserts add their key's bit;
+ * removals clear the whole summary, which is rebuilt from the keys at the next
+ * lookup. Past fifty or so keys most bits are set and the summary rarely
+ * helps.
+ * </p>
+ * <p>
+ * Keys must not change their hash codes while in the map (which
+ * <code>equals</code>-based maps require anyway).
+ * </p>
+ *
+ * @author Zteve
+ */
+public class SummarizedSmallMap<K, V> extends SmallMap<K, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The bits of the keys, or zero, in a non-empty map, if to be rebuilt.
+     * Not initialised, since the superclass constructor may have set it.
+     */
+    private long summary;
+
+    /**
+     * Constructs a new, empty, <code>SummarizedSmallMap</code>.
+     */
+    public SummarizedSmallMap() {
+    }
+
+    /**
+     * Constructs a new <code>SummarizedSmallMap</code> with the same mappings
+     * as the specified <code>Map</code>.
+     *
+     * @param m
+     *            the map whose mappings are to be placed in this map
+     * @throws NullPointerException
+     *             if the specified map is null
+     */
+    public SummarizedSmallMap(Map<? extends K, ? extends V> m) {
+        super(m);
+    }
+
+    /** The summary, rebuilt first if a removal cleared it. */
+    private long summary() {
+        long s = this.summary;
+        if (s == 0L && this.size > 0) {
+            for (int i = 0; i < this.size; i++)
+                s |= SmallSets.bit(this.keyArray[i]);
+            this.summary = s;
+        }
+        return s;
+    }
+
+    @Override
+    int indexOfKey(Object key) {
+        if ((summary() & SmallSets.bit(key)) == 0L)
+            return -1;
+        return super.indexOfKey(key);
+    }
+
+    @Override
+    int indexOfPrepared(PreparedKey<?> key) {
+        if ((summary() & SmallSets.hashBit(key.hash)) == 0L)
+            return -1;
+        return super.indexOfPrepared(key);
+    }
+
+    @Override
+    void inserted(Object key) {
+        super.inserted(key);
+        if (this.summary != 0L || this.size == 1)
+            this.summary |= SmallSets.bit(key);
+    }
+
+    @Override
+    V removeAt(int pos) {
+        V oldValue = super.removeAt(pos);
+        this.summary = 0L;
+        return oldValue;
+    }
+
+    @Override
+    void keysReplaced() {
+        this.summary = 0L;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        this.summary = 0L;
+    }
+}
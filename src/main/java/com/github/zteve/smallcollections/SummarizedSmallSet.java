@@ -0,0 +1,102 @@
+/**
+ * Lightweight set with a hash summary word, for fast misses.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.Set;
+
+/**
+ * A {@link SmallSet} which also keeps a 64-bit summary of its elements, as
+ * {@link SummarizedSmallMap} does of its keys: a <code>contains</code> whose
+ * bit is clear returns <code>false</code> without scanning the element array.
+ * The summary costs eight bytes per set, and is rebuilt at the next lookup
+ * after a removal.
+ *
+ * @author Zteve
+ */
+public class SummarizedSmallSet<E> extends SmallSet<E> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The bits of the elements, or zero, in a non-empty set, if to be rebuilt.
+     * Not initialised, since the superclass constructor may have set it.
+     */
+    private long summary;
+
+    /**
+     * Constructs a new, empty, <code>SummarizedSmallSet</code>.
+     */
+    public SummarizedSmallSet() {
+    }
+
+    /**
+     * Constructs a new <code>SummarizedSmallSet</code> with the same elements
+     * as the specified <code>Set</code>.
+     *
+     * @param s
+     *            the set whose elements are to be placed in this set
+     * @throws NullPointerException
+     *             if the specified set is null
+     */
+    public SummarizedSmallSet(Set<? extends E> s) {
+        super(s);
+    }
+
+    /** The summary, rebuilt first if a removal cleared it. */
+    private long summary() {
+        long s = this.summary;
+        if (s == 0L && this.size > 0) {
+            s = SmallSets.summary(this);
+            this.summary = s;
+        }
+        return s;
+    }
+
+    @Override
+    int indexOf(Object value) {
+        if ((summary() & SmallSets.bit(value)) == 0L)
+            return -1;
+        return super.indexOf(value);
+    }
+
+    @Override
+    int indexOfPrepared(PreparedKey<?> value) {
+        if ((summary() & SmallSets.hashBit(value.hash)) == 0L)
+            return -1;
+        return super.indexOfPrepared(value);
+    }
+
+    @Override
+    void inserted(Object value) {
+        super.inserted(value);
+        if (this.summary != 0L || this.size == 1)
+            this.summary |= SmallSets.bit(value);
+    }
+
+    @Override
+    void removeAt(int pos) {
+        super.removeAt(pos);
+        this.summary = 0L;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        this.summary = 0L;
+    }
+}
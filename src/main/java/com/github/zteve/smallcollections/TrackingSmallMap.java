@@ -0,0 +1,374 @@
+/**
+ * A SmallMap that records which slots change, for incremental replication.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A {@link SmallMap} that records which slots of its arrays have changed, so
+ * that a copy elsewhere can be kept up to date by sending only the changes.
+ * <p>
+ * Each write to a slot sets a bit in a mask (one <code>long</code> for the
+ * first 64 slots, and an array beyond that, allocated only if needed).
+ * {@link #drainChanges()} returns a {@link Delta} holding the map's new size
+ * and the key and value of every changed slot, by slot index, and clears the
+ * mask. Applying the deltas in order to a map that started empty, with
+ * {@link Delta#applyTo(SmallMap)}, keeps it slot-for-slot equal to this one.
+ * </p>
+ * <p>
+ * To keep deltas small, removing a mapping moves the last mapping into its
+ * slot rather than shifting all the later mappings down, so a removal changes
+ * at most one slot (and the size). Iteration order is therefore not insertion
+ * order once mappings have been removed.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class TrackingSmallMap<K, V> extends SmallMap<K, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    /*
+     * Not initialised, since the inserts of the superclass constructor mark
+     * their slots dirty before the fields of this class would be.
+     */
+    private long dirty;
+    private long[] moreDirty;
+    private int syncedSize;
+
+    /**
+     * Constructs a new, empty, <code>TrackingSmallMap</code>.
+     */
+    public TrackingSmallMap() {
+    }
+
+    /**
+     * Constructs a new <code>TrackingSmallMap</code> with the same mappings as
+     * the specified <code>Map</code>, all of them changed.
+     *
+     * @param m
+     *            the map whose mappings are to be placed in this map
+     * @throws NullPointerException
+     *             if the specified map is null
+     */
+    public TrackingSmallMap(Map<? extends K, ? extends V> m) {
+        super(m);
+    }
+
+    private void markDirty(int pos) {
+        if (pos < 64) {
+            this.dirty |= 1L << pos;
+            return;
+        }
+        int word = (pos >>> 6) - 1;
+        if (this.moreDirty == null)
+            this.moreDirty = new long[word + 1];
+        else if (word >= this.moreDirty.length)
+            this.moreDirty = Arrays.copyOf(this.moreDirty, word + 1);
+        this.moreDirty[word] |= 1L << pos;
+    }
+
+    private long dirtyWord(int word) {
+        if (word == 0)
+            return this.dirty;
+        return (this.moreDirty == null || word > this.moreDirty.length) ? 0L
+                : this.moreDirty[word - 1];
+    }
+
+    @Override
+    void setValueAt(int pos, V value) {
+        super.setValueAt(pos, value);
+        markDirty(pos);
+    }
+
+    @Override
+    V removeAt(int pos) {
+        V oldValue = valueAt(pos);
+        int last = this.size - 1;
+        if (pos != last) {
+            this.keyArray[pos] = this.keyArray[last];
+            setValueAt(pos, valueAt(last));
+        }
+        this.keyArray[last] = null;
+        super.setValueAt(last, null);
+        this.size = last;
+        if (capacityPolicy().shouldShrink(capacity(), this.size))
+            trimToSize();
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        this.dirty = 0L;
+        this.moreDirty = null;
+    }
+
+    /**
+     * Returns whether this map has changed since the last
+     * {@link #drainChanges()}.
+     *
+     * @return whether there are changes to drain
+     */
+    public boolean hasChanges() {
+        if (this.size != this.syncedSize)
+            return true;
+        for (int word = 0; word << 6 < this.size; word++)
+            if (dirtyWord(word) != 0L)
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the changes made to this map since the last call, and starts
+     * recording afresh.
+     *
+     * @return the changes, which are empty if there were none
+     */
+    public Delta<K, V> drainChanges() {
+        int count = 0;
+        for (int word = 0; word << 6 < this.size; word++)
+            count += Long.bitCount(maskedWord(word));
+        int[] slots = new int[count];
+        Object[] keys = new Object[count];
+        Object[] values = new Object[count];
+        int i = 0;
+        for (int word = 0; word << 6 < this.size; word++) {
+            long bits = maskedWord(word);
+            while (bits != 0L) {
+                int pos = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                slots[i] = pos;
+                keys[i] = this.keyArray[pos];
+                values[i] = valueAt(pos);
+                i++;
+            }
+        }
+        Delta<K, V> delta = new Delta<>(this.syncedSize, this.size, slots,
+                keys, values);
+        this.dirty = 0L;
+        this.moreDirty = null;
+        this.syncedSize = this.size;
+        return delta;
+    }
+
+    /** The dirty bits of <code>word</code> for slots in use. */
+    private long maskedWord(int word) {
+        long bits = dirtyWord(word);
+        int inUse = this.size - (word << 6);
+        return (inUse >= 64) ? bits : bits & ((1L << inUse) - 1);
+    }
+
+    /**
+     * The changes to a {@link TrackingSmallMap}: its size before and after,
+     * and the key and value now in each changed slot, in slot order.
+     */
+    public static final class Delta<K, V> {
+
+        private final int baseSize;
+        private final int size;
+        private final int[] slots;
+        private final Object[] keys;
+        private final Object[] values;
+
+        Delta(int baseSize, int size, int[] slots, Object[] keys,
+                Object[] values) {
+            this.baseSize = baseSize;
+            this.size = size;
+            this.slots = slots;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        /**
+         * @return the size of the map the delta applies to
+         */
+        public int baseSize() {
+            return this.baseSize;
+        }
+
+        /**
+         * @return the size of the map after the delta is applied
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * @return the number of changed slots
+         */
+        public int numChanged() {
+            return this.slots.length;
+        }
+
+        /**
+         * @return whether the delta changes nothing
+         */
+        public boolean isEmpty() {
+            return this.slots.length == 0 && this.baseSize == this.size;
+        }
+
+        /**
+         * @param i
+         *            the index of the change, below {@link #numChanged()}
+         * @return the slot changed
+         */
+        public int slot(int i) {
+            return this.slots[i];
+        }
+
+        /**
+         * @param i
+         *            the index of the change, below {@link #numChanged()}
+         * @return the key now in the slot
+         */
+        @SuppressWarnings("unchecked")
+        public K key(int i) {
+            return (K) this.keys[i];
+        }
+
+        /**
+         * @param i
+         *            the index of the change, below {@link #numChanged()}
+         * @return the value now in the slot
+         */
+        @SuppressWarnings("unchecked")
+        public V value(int i) {
+            return (V) this.values[i];
+        }
+
+        /**
+         * Applies this delta, in place, to a replica of the tracked map. The
+         * replica must hold the same mappings in the same slots as the
+         * tracked map did when the previous delta was drained; a replica
+         * that has only had the previous deltas applied, in order, does. A
+         * replica that is itself a <code>TrackingSmallMap</code> records the
+         * changes in turn.
+         *
+         * @param target
+         *            the replica
+         * @throws IllegalStateException
+         *             if the replica's size is not {@link #baseSize()}
+         * @throws UnsupportedOperationException
+         *             if the replica is unmodifiable
+         */
+        @SuppressWarnings("unchecked")
+        public void applyTo(SmallMap<K, V> target) {
+            if (target instanceof Frozen)
+                throw new UnsupportedOperationException();
+            if (target.size != this.baseSize)
+                throw new IllegalStateException("Delta from size "
+                        + this.baseSize + " applied to map of size "
+                        + target.size);
+            target.ensureCapacity(this.size);
+            for (int i = 0; i < this.slots.length; i++) {
+                int pos = this.slots[i];
+                target.keyArray[pos] = this.keys[i];
+                target.setValueAt(pos, (V) this.values[i]);
+            }
+            for (int pos = this.size; pos < target.size; pos++) {
+                target.keyArray[pos] = null;
+                target.setValueAt(pos, null);
+            }
+            target.size = this.size;
+            target.keysReplaced();
+        }
+
+        /**
+         * Writes this delta: the sizes, the number of changes, and for each
+         * change the gap from the previous slot, then the key and value.
+         *
+         * @param out
+         *            the output to write to
+         * @param keyCodec
+         *            the codec for the keys
+         * @param valueCodec
+         *            the codec for the values
+         * @throws IOException
+         *             if <code>out</code> fails
+         */
+        public void writeTo(DataOutput out, ElementCodec<? super K> keyCodec,
+                ElementCodec<? super V> valueCodec) throws IOException {
+            SmallCollectionCodec.writeVarInt(out, this.baseSize);
+            SmallCollectionCodec.writeVarInt(out, this.size);
+            SmallCollectionCodec.writeVarInt(out, this.slots.length);
+            int next = 0;
+            for (int i = 0; i < this.slots.length; i++) {
+                SmallCollectionCodec.writeVarInt(out, this.slots[i] - next);
+                next = this.slots[i] + 1;
+                keyCodec.write(out, key(i));
+                valueCodec.write(out, value(i));
+            }
+        }
+
+        /**
+         * Reads a delta written by {@link #writeTo}.
+         *
+         * @param in
+         *            the input to read from
+         * @param keyCodec
+         *            the codec for the keys
+         * @param valueCodec
+         *            the codec for the values
+         * @return the delta read
+         * @throws IOException
+         *             if <code>in</code> fails, or is malformed
+         */
+        public static <K, V> Delta<K, V> readFrom(DataInput in,
+                ElementCodec<K> keyCodec, ElementCodec<V> valueCodec)
+                throws IOException {
+            int baseSize = SmallCollectionCodec.readSize(in);
+            int size = SmallCollectionCodec.readSize(in);
+            int count = SmallCollectionCodec.readSize(in);
+            if (count > size)
+                throw new StreamCorruptedException("Delta of " + count
+                        + " changes to map of size " + size);
+            int capacity = SmallCollectionCodec.presize(count);
+            int[] slots = new int[capacity];
+            Object[] keys = new Object[capacity];
+            Object[] values = new Object[capacity];
+            int next = 0;
+            for (int i = 0; i < count; i++) {
+                if (i == slots.length) {
+                    capacity = (int) Math.min(count, 2L * capacity);
+                    slots = Arrays.copyOf(slots, capacity);
+                    keys = Arrays.copyOf(keys, capacity);
+                    values = Arrays.copyOf(values, capacity);
+                }
+                slots[i] = next + SmallCollectionCodec.readVarInt(in);
+                if (slots[i] < next || slots[i] >= size)
+                    throw new StreamCorruptedException("Delta slot out of range");
+                next = slots[i] + 1;
+                keys[i] = keyCodec.read(in);
+                values[i] = valueCodec.read(in);
+            }
+            return new Delta<>(baseSize, size, slots, keys, values);
+        }
+
+        @Override
+        public String toString() {
+            return "Delta(" + this.baseSize + "->" + this.size + ", slots "
+                    + Arrays.toString(this.slots) + ")";
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Shared dictionary of values coded as one or two bytes.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A dictionary, shared by many maps, which gives each distinct value a small
+ * integer code. Maps made by {@link #newMap()} hold one- or two-byte codes in
+ * place of references to their values, which both shrinks the value array and
+ * lets equal values in different maps share one instance: worthwhile when
+ * values come from a small domain, such as status codes or shared
+ * configuration objects.
+ * <p>
+ * A dictionary only grows; a value keeps its code for the life of the
+ * dictionary, and is held strongly by it. Once all the codes are taken, a map
+ * given a new value falls back to holding its values directly, like a plain
+ * {@link SmallMap}, until it is next emptied (by <code>clear()</code> or by
+ * removing its last mapping). Codes are compared with
+ * <code>equals()</code>, so values should be immutable.
+ * </p>
+ * <p>
+ * Dictionaries are thread-safe, so one may be shared by maps used on different
+ * threads; the maps themselves are, as ever, <em>unsynchronised</em>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public final class ValueDictionary<V> {
+
+    private static final int NULL_CODE = 0;
+
+    private final int codeBytes;
+    private final int maxCodes;
+    private final Map<Object, Integer> codes = new ConcurrentHashMap<>();
+    private volatile Object[] values = new Object[8];
+    private int count = 1; // code 0 is null
+
+    private ValueDictionary(int codeBytes) {
+        this.codeBytes = codeBytes;
+        this.maxCodes = 1 << (8 * codeBytes);
+    }
+
+    /**
+     * Constructs a dictionary of up to 255 non-null values, coded in one byte
+     * each.
+     *
+     * @return the new dictionary
+     */
+    public static <V> ValueDictionary<V> withByteCodes() {
+        return new ValueDictionary<>(1);
+    }
+
+    /**
+     * Constructs a dictionary of up to 65535 non-null values, coded in two
+     * bytes each.
+     *
+     * @return the new dictionary
+     */
+    public static <V> ValueDictionary<V> withShortCodes() {
+        return new ValueDictionary<>(2);
+    }
+
+    /**
+     * Constructs a new, empty, <code>SmallMap</code> whose values are coded by
+     * this dictionary.
+     *
+     * @return the new map
+     */
+    public <K> SmallMap<K, V> newMap() {
+        return new SmallMap.Coded<K, V>(this);
+    }
+
+    /**
+     * Constructs a new <code>SmallMap</code> whose values are coded by this
+     * dictionary, with the same mappings as the specified <code>Map</code>.
+     *
+     * @param m
+     *            the map whose mappings are to be placed in the new map
+     * @return the new map
+     * @throws NullPointerException
+     *             if the specified map is null
+     */
+    public <K> SmallMap<K, V> newMap(Map<? extends K, ? extends V> m) {
+        SmallMap<K, V> sm = newMap();
+        sm.putAll(m);
+        return sm;
+    }
+
+    /**
+     * The number of distinct non-null values coded so far.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return this.codes.size();
+    }
+
+    /**
+     * The number of distinct non-null values this dictionary can code.
+     *
+     * @return the maximum number of values
+     */
+    public int maxSize() {
+        return this.maxCodes - 1;
+    }
+
+    int codeBytes() {
+        return this.codeBytes;
+    }
+
+    /**
+     * The code for <code>value</code>, assigning the next free code if it has
+     * none, or -1 if the dictionary is full.
+     */
+    int codeOf(Object value) {
+        if (value == null)
+            return NULL_CODE;
+        Integer code = this.codes.get(value);
+        return (code != null) ? code : assign(value);
+    }
+
+    private synchronized int assign(Object value) {
+        Integer code = this.codes.get(value);
+        if (code != null)
+            return code;
+        if (this.count == this.maxCodes)
+            return -1;
+        Object[] vals = this.values;
+        if (this.count == vals.length)
+            vals = Arrays.copyOf(vals, Math.min(this.maxCodes, 2 * vals.length));
+        vals[this.count] = value;
+        this.values = vals; // publish before the code is used
+        this.codes.put(value, this.count);
+        return this.count++;
+    }
+
+    @SuppressWarnings("unchecked")
+    V valueOf(int code) {
+        return (V) this.values[code];
+    }
+
+    int readCode(byte[] codes, int pos) {
+        if (this.codeBytes == 1)
+            return codes[pos] & 0xFF;
+        return ((codes[2 * pos] & 0xFF) << 8) | (codes[2 * pos + 1] & 0xFF);
+    }
+
+    void writeCode(byte[] codes, int pos, int code) {
+        if (this.codeBytes == 1) {
+            codes[pos] = (byte) code;
+        } else {
+            codes[2 * pos] = (byte) (code >>> 8);
+            codes[2 * pos + 1] = (byte) code;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Byte comparisons using Java 11 APIs.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The {@link ByteKernels.Impl} for Java 11 and later. This class is only in
+ * the Java 11 part of the multi-release jar, and is loaded reflectively by
+ * {@link ByteKernels}.
+ * <p>
+ * Buffers backed by an accessible array are compared with the range form of
+ * <code>Arrays.equals</code>, which the JIT vectorises. Other buffers (direct,
+ * mapped or read-only) are compared eight bytes at a time through
+ * <code>VarHandle</code> views of the array and buffer as <code>long</code>s;
+ * both views use the same byte order, so any order will do.
+ * </p>
+ *
+ * @author Zteve
+ */
+final class Java11ByteKernels implements ByteKernels.Impl {
+
+    private static final VarHandle ARRAY_LONGS = MethodHandles
+            .byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final VarHandle BUFFER_LONGS = MethodHandles
+            .byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    @Override
+    public boolean equals(byte[] b, ByteBuffer buf, int start) {
+        int len = b.length;
+        if (buf.hasArray()) {
+            int from = buf.arrayOffset() + start;
+            return Arrays.equals(b, 0, len, buf.array(), from, from + len);
+        }
+        int i = 0;
+        for (int end = len - 7; i < end; i += 8) {
+            long word = (long) ARRAY_LONGS.get(b, i);
+            if (word != (long) BUFFER_LONGS.get(buf, start + i))
+                return false;
+        }
+        for (; i < len; i++)
+            if (b[i] != buf.get(start + i))
+                return false;
+        return true;
+    }
+}
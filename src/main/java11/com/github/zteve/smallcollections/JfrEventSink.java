@@ -0,0 +1,96 @@
+/**
+ * Flight Recorder events for misused small collections (Java 11 and later).
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The {@link SmallCollectionEvents.Sink} which commits JFR events. This class
+ * is only in the Java 11 part of the multi-release jar, and is loaded
+ * reflectively by {@link SmallCollectionEvents}.
+ *
+ * @author Zteve
+ */
+final class JfrEventSink implements SmallCollectionEvents.Sink {
+
+    private static Class<?> classOf(Object o) {
+        return (o == null) ? null : o.getClass();
+    }
+
+    @Override
+    public void oversized(Object collection, int size, Object key) {
+        Oversized event = new Oversized();
+        if (event.shouldCommit()) {
+            event.collectionClass = collection.getClass();
+            event.size = size;
+            event.keyClass = classOf(key);
+            event.commit();
+        }
+    }
+
+    @Override
+    public void slowScan(Object collection, int size, int scanned, Object key) {
+        SlowScan event = new SlowScan();
+        if (event.shouldCommit()) {
+            event.collectionClass = collection.getClass();
+            event.size = size;
+            event.scanned = scanned;
+            event.keyClass = classOf(key);
+            event.commit();
+        }
+    }
+
+    @Name("com.github.zteve.smallcollections.Oversized")
+    @Label("Oversized Small Collection")
+    @Category("Small Collections")
+    @Description("A small collection grew past smallcollections.jfr.maxSize")
+    static final class Oversized extends Event {
+
+        @Label("Collection Class")
+        Class<?> collectionClass;
+
+        @Label("Size")
+        int size;
+
+        @Label("Key Class")
+        Class<?> keyClass;
+    }
+
+    @Name("com.github.zteve.smallcollections.SlowScan")
+    @Label("Slow Small Collection Scan")
+    @Category("Small Collections")
+    @Description("A lookup compared more than smallcollections.jfr.maxScan slots")
+    static final class SlowScan extends Event {
+
+        @Label("Collection Class")
+        Class<?> collectionClass;
+
+        @Label("Size")
+        int size;
+
+        @Label("Slots Compared")
+        int scanned;
+
+        @Label("Key Class")
+        Class<?> keyClass;
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * JUnit tests for {@link AllocationProfiler}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit tests for {@link AllocationProfiler} and {@link SmallCollections}.
+ *
+ * @author Zteve
+ */
+public class AllocationProfilerTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void factoriesWithoutProfiling() throws Exception {
+        if (SmallCollections.PROFILING)
+            return;
+        assertSame("Not a HashMap", HashMap.class, SmallCollections
+                .newMap().getClass());
+        assertSame("Not a HashSet", HashSet.class, SmallCollections
+                .newSet().getClass());
+    }
+
+    @Test
+    public void profiledCollectionsBehave() throws Exception {
+        AllocationProfiler profiler = new AllocationProfiler(1);
+        Map<String, Integer> m = profiler.newMap();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            m.put("key" + i, i);
+            expected.put("key" + i, i);
+        }
+        m.put("nullValue", null);
+        expected.put("nullValue", null);
+        m.remove("key0");
+        expected.remove("key0");
+        assertEquals("Profiled map corrupted", expected, m);
+        assertTrue("Null-valued key lost", m.containsKey("nullValue"));
+        Set<String> s = profiler.newSet();
+        s.add("a");
+        s.add("b");
+        Iterator<String> it = s.iterator();
+        it.next();
+        it.remove();
+        assertEquals("Profiled set corrupted", 1, s.size());
+    }
+
+    @Test
+    public void sampling() throws Exception {
+        AllocationProfiler profiler = new AllocationProfiler(4);
+        int profiled = 0;
+        for (int i = 0; i < 20; i++) {
+            if (profiler.newMap() instanceof AllocationProfiler.ProfiledMap)
+                ++profiled;
+        }
+        assertEquals("Wrong number sampled", 5, profiled);
+    }
+
+    @Test
+    public void reportRecommendsPerSite() throws Exception {
+        AllocationProfiler profiler = new AllocationProfiler(2);
+        for (int i = 0; i < 10; i++) {
+            smallSite(profiler);
+        }
+        for (int i = 0; i < 10; i++) {
+            largeSite(profiler);
+        }
+        File csv = new File(this.folder.getRoot(), "Profile.csv");
+        profiler.writeReport(csv);
+        List<String> lines = Files.readAllLines(csv.toPath(),
+                StandardCharsets.UTF_8);
+        assertEquals("Wrong number of rows", 3, lines.size());
+        String small = row(lines, "smallSite");
+        String large = row(lines, "largeSite");
+        String[] fields = small.split(",");
+        assertEquals("Wrong sample count", "5", fields[1]);
+        assertEquals("Wrong peak size", "3", fields[3]);
+        assertEquals("Wrong lookups", "10", fields[4]);
+        assertEquals("Wrong miss rate", "0.5", fields[5]);
+        assertEquals("Wrong recommendation", "\"SmallMap\"", fields[9]);
+        long perMap = Footprint.hashMap(3) - Footprint.smallMap(3);
+        assertEquals("Wrong bytes saved", 10 * perMap,
+                Long.parseLong(fields[10]));
+        assertTrue("Large site recommended small",
+                large.contains("\"HashSet\""));
+    }
+
+    @Test
+    public void reportWeighsLookupTime() throws Exception {
+        AllocationProfiler profiler = new AllocationProfiler(1);
+        for (int i = 0; i < 10; i++) {
+            missingSite(profiler);
+        }
+        File csv = new File(this.folder.getRoot(), "Misses.csv");
+        profiler.writeReport(csv);
+        String[] fields = row(Files.readAllLines(csv.toPath(),
+                StandardCharsets.UTF_8), "missingSite").split(",");
+        assertEquals("Slower site recommended small", "\"HashMap\"",
+                fields[9]);
+        assertEquals("Savings reported", "0", fields[10]);
+        assertEquals("Savings reported", "0", fields[11]);
+    }
+
+    private static void smallSite(AllocationProfiler profiler) {
+        Map<String, String> m = profiler.newMap();
+        m.put("a", "1");
+        m.put("b", "2");
+        m.put("c", "3");
+        m.get("a");
+        m.get("z");
+    }
+
+    /** Saves bytes as a small map, but scans all its slots on each miss. */
+    private static void missingSite(AllocationProfiler profiler) {
+        Map<Integer, Integer> m = profiler.newMap();
+        for (int i = 0; i < AllocationProfiler.MAX_SMALL_SIZE; i++) {
+            m.put(i, i);
+        }
+        for (int i = 0; i < 100; i++) {
+            m.get(-1);
+        }
+    }
+
+    private static void largeSite(AllocationProfiler profiler) {
+        Set<Integer> s = profiler.newSet();
+        for (int i = 0; i < 100; i++) {
+            s.add(i);
+        }
+    }
+
+    private static String row(List<String> lines, String method) {
+        for (String line : lines) {
+            if (line.contains(method))
+                return line;
+        }
+        throw new AssertionError("No row for " + method);
+    }
+}
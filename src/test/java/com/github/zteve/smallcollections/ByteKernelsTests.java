@@ -0,0 +1,95 @@
+/**
+ * JUnit tests for {@link ByteKernels}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link ByteKernels}, run against the portable
+ * implementation and whichever the dispatcher chose for this JVM.
+ *
+ * @author Zteve
+ */
+public class ByteKernelsTests {
+
+    private static final int MAX_LENGTH = 40;
+    private static final int OFFSET = 3;
+
+    @Test
+    public void portable() throws Exception {
+        checkImpl(new ByteKernels.Portable());
+    }
+
+    @Test
+    public void dispatched() throws Exception {
+        checkImpl(ByteKernels.IMPL);
+    }
+
+    @Test
+    public void portableProperty() throws Exception {
+        if ("portable".equals(System.getProperty("smallcollections.kernels")))
+            assertEquals("Property not obeyed", ByteKernels.Portable.class,
+                    ByteKernels.IMPL.getClass());
+    }
+
+    /**
+     * Checks <code>impl</code> against every length up to
+     * <code>MAX_LENGTH</code>, with a difference at each position, in heap,
+     * offset, read-only and direct buffers.
+     */
+    static void checkImpl(ByteKernels.Impl impl) {
+        Random r = new Random(49);
+        for (int len = 0; len <= MAX_LENGTH; len++) {
+            byte[] b = new byte[len];
+            r.nextBytes(b);
+            byte[] padded = new byte[len + 2 * OFFSET];
+            System.arraycopy(b, 0, padded, OFFSET, len);
+            for (ByteBuffer buf : buffers(padded)) {
+                String kind = buf.getClass().getSimpleName() + " of " + len;
+                assertTrue("Equal bytes differ in " + kind,
+                        impl.equals(b, buf, OFFSET));
+                for (int i = 0; i < len; i++) {
+                    byte[] other = Arrays.copyOf(b, len);
+                    other[i] ^= 1 << r.nextInt(8);
+                    assertFalse("Byte " + i + " not compared in " + kind,
+                            impl.equals(other, buf, OFFSET));
+                }
+            }
+        }
+    }
+
+    /** Buffers holding <code>bytes</code>, of each kind. */
+    private static ByteBuffer[] buffers(byte[] bytes) {
+        byte[] shifted = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, shifted, 1, bytes.length);
+        ByteBuffer offset = ByteBuffer.wrap(shifted);
+        offset.position(1);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).clear();
+        return new ByteBuffer[] { ByteBuffer.wrap(bytes), offset.slice(),
+                ByteBuffer.wrap(bytes).asReadOnlyBuffer(), direct };
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * JUnit tests for {@link CapacityPolicy}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link CapacityPolicy}.
+ *
+ * @author Zteve
+ */
+public class CapacityPolicyTests {
+
+    @Test
+    public void emptyAllocatesNothing() throws Exception {
+        assertEquals("Empty SmallMap has arrays", 0,
+                new SmallMap<String, String>().capacity());
+        assertEquals("Empty SmallSet has array", 0,
+                new SmallSet<String>().capacity());
+        assertEquals("Empty policy SmallMap has arrays", 0,
+                CapacityPolicy.PLUS_TWO.<String, String> newMap().capacity());
+    }
+
+    @Test
+    public void defaultGrowsLikeArrayList() throws Exception {
+        SmallMap<String, String> sm = new SmallMap<>();
+        int[] expected = { 1, 2, 3, 4, 6, 6, 9 };
+        for (int i = 0; i < expected.length; i++) {
+            sm.put("key" + i, "value" + i);
+            assertEquals("Wrong capacity at size " + (i + 1), expected[i],
+                    sm.capacity());
+        }
+    }
+
+    @Test
+    public void exactFit() throws Exception {
+        SmallMap<String, String> sm = CapacityPolicy.EXACT_FIT.newMap();
+        for (int i = 1; i <= 10; i++) {
+            sm.put("key" + i, "value" + i);
+            assertEquals("Exact fit not exact", i, sm.capacity());
+        }
+    }
+
+    @Test
+    public void plusTwo() throws Exception {
+        SmallSet<String> ss = CapacityPolicy.PLUS_TWO.newSet();
+        ss.add("value1");
+        assertEquals("Wrong capacity after one add", 3, ss.capacity());
+        ss.add("value2");
+        ss.add("value3");
+        assertEquals("Grew before full", 3, ss.capacity());
+        ss.add("value4");
+        assertEquals("Wrong capacity after growth", 6, ss.capacity());
+    }
+
+    @Test
+    public void shrinkOnRemove() throws Exception {
+        SmallMap<String, String> sm = CapacityPolicy.ONE_AND_A_HALF
+                .shrinkWhenUnused(2).newMap(populate(9));
+        assertEquals("Wrong capacity after construction", 9, sm.capacity());
+        sm.remove("key0");
+        sm.remove("key1");
+        assertEquals("Shrunk within threshold", 9, sm.capacity());
+        sm.remove("key2");
+        assertEquals("Not shrunk beyond threshold", 6, sm.capacity());
+        assertEquals("Mappings lost in shrink", 6, sm.size());
+        assertEquals("Value corrupted in shrink", "value8", sm.get("key8"));
+    }
+
+    @Test
+    public void shrinkOnIteratorRemove() throws Exception {
+        SmallSet<String> ss = CapacityPolicy.EXACT_FIT.shrinkWhenUnused(0)
+                .newSet();
+        for (int i = 0; i < 5; i++)
+            ss.add("value" + i);
+        ss.removeIf(v -> !v.equals("value3"));
+        assertEquals("Not shrunk on iterator removal", 1, ss.capacity());
+        assertTrue("Element lost in shrink", ss.contains("value3"));
+        ss.clear();
+        assertEquals("Cleared set kept its array", 0, ss.capacity());
+    }
+
+    @Test
+    public void trimToSize() throws Exception {
+        SmallMap<String, String> sm = new SmallMap<>(populate(5));
+        sm.put("extra", "value");
+        assertEquals("Wrong capacity before trim", 7, sm.capacity());
+        sm.trimToSize();
+        assertEquals("Not trimmed", 6, sm.capacity());
+        sm.clear();
+        sm.trimToSize();
+        assertEquals("Empty map kept its arrays", 0, sm.capacity());
+        assertTrue("Trimmed map not empty", sm.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeThreshold() throws Exception {
+        CapacityPolicy.EXACT_FIT.shrinkWhenUnused(-1);
+    }
+
+    private static Map<String, String> populate(int num) {
+        Map<String, String> m = new HashMap<>();
+        for (int i = 0; i < num; i++)
+            m.put("key" + i, "value" + i);
+        return m;
+    }
+}
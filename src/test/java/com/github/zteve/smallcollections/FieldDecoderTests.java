@@ -0,0 +1,109 @@
+/**
+ * JUnit tests for {@link FieldDecoder}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link FieldDecoder}.
+ *
+ * @author Zteve
+ */
+public class FieldDecoderTests {
+
+    /** A direct buffer holding <code>s</code> after two bytes of padding. */
+    private static ByteBuffer buffer(String s) {
+        byte[] bytes = ("xx" + s).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length);
+        buf.put(bytes).flip();
+        return buf;
+    }
+
+    private static <T> T decode(FieldDecoder<T> decoder, String s)
+            throws Exception {
+        ByteBuffer buf = buffer(s);
+        return decoder.decode(buf, 2, buf.limit());
+    }
+
+    @Test
+    public void integers() throws Exception {
+        assertEquals("Wrong integer", Integer.valueOf(0),
+                decode(FieldDecoder.INTEGER, "0"));
+        assertEquals("Wrong integer", Integer.valueOf(-1234),
+                decode(FieldDecoder.INTEGER, "-1234"));
+        assertEquals("Wrong integer", Integer.valueOf(Integer.MAX_VALUE),
+                decode(FieldDecoder.INTEGER, "+" + Integer.MAX_VALUE));
+        assertEquals("Wrong long", Long.valueOf(Long.MIN_VALUE),
+                decode(FieldDecoder.LONG, Long.toString(Long.MIN_VALUE)));
+        assertEquals("Wrong long", Long.valueOf(Long.MAX_VALUE),
+                decode(FieldDecoder.LONG, Long.toString(Long.MAX_VALUE)));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void integerOutOfRange() throws Exception {
+        decode(FieldDecoder.INTEGER, "2147483648");
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void longOutOfRange() throws Exception {
+        decode(FieldDecoder.LONG, "9223372036854775808");
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void notANumber() throws Exception {
+        decode(FieldDecoder.INTEGER, "12a");
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void emptyNumber() throws Exception {
+        decode(FieldDecoder.INTEGER, "-");
+    }
+
+    @Test
+    public void strings() throws Exception {
+        assertEquals("Wrong string", "caf\u00e9",
+                decode(FieldDecoder.STRING, "caf\u00e9"));
+        ByteBuffer heap = ByteBuffer.wrap("a,b".getBytes(StandardCharsets.UTF_8));
+        assertEquals("Wrong string from heap buffer", "b",
+                FieldDecoder.STRING.decode(heap, 2, 3));
+    }
+
+    @Test
+    public void interned() throws Exception {
+        FieldDecoder<String> decoder = FieldDecoder.interned(2);
+        String a = decode(decoder, "alpha");
+        assertSame("Same bytes not interned", a, decode(decoder, "alpha"));
+        String b = decode(decoder, "\u00df");
+        assertEquals("Wrong string", "\u00df", b);
+        assertSame("Same bytes not interned", b, decode(decoder, "\u00df"));
+        String c = decode(decoder, "gamma");
+        assertEquals("Wrong string beyond maximum", "gamma", c);
+        assertNotSame("String beyond maximum kept", c, decode(decoder,
+                "gamma"));
+        assertEquals("Wrong number kept", 2,
+                ((InterningDecoder) decoder).size());
+    }
+}
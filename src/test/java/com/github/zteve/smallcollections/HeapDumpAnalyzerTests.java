@@ -0,0 +1,159 @@
+/**
+ * JUnit tests for {@link HeapDumpAnalyzer}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * JUnit tests for {@link HeapDumpAnalyzer}, analysing a dump of the test's
+ * own heap holding known numbers of collections of distinctive sizes.
+ *
+ * @author Zteve
+ */
+public class HeapDumpAnalyzerTests {
+
+    private static final int NUM_EACH = 1000;
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static Object[] live;
+    private static HeapDumpAnalyzer analyzer;
+
+    @BeforeClass
+    public static void dumpHeap() throws Exception {
+        Object[] collections = new Object[6 * NUM_EACH];
+        for (int i = 0; i < NUM_EACH; i++) {
+            collections[6 * i] = populate(new HashMap<>(), 37);
+            collections[6 * i + 1] = populate(new LinkedHashMap<>(), 41);
+            collections[6 * i + 2] = populate(new TreeMap<>(), 43);
+            collections[6 * i + 3] = populate(new HashSet<>(), 47);
+            collections[6 * i + 4] = populate(new LinkedHashSet<>(), 53);
+            collections[6 * i + 5] = populate(new TreeSet<>(), 59);
+        }
+        live = collections;
+        Path dump = folder.getRoot().toPath().resolve("test.hprof");
+        ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+                .dumpHeap(dump.toString(), true);
+        analyzer = HeapDumpAnalyzer.analyze(dump);
+        Files.delete(dump);
+    }
+
+    @AfterClass
+    public static void release() {
+        live = null;
+        analyzer = null;
+    }
+
+    private static Map<Integer, Integer> populate(Map<Integer, Integer> m,
+            int size) {
+        for (int i = 0; i < size; i++) {
+            m.put(i, i);
+        }
+        return m;
+    }
+
+    private static Set<Integer> populate(Set<Integer> s, int size) {
+        for (int i = 0; i < size; i++) {
+            s.add(i);
+        }
+        return s;
+    }
+
+    @Test
+    public void countsEachClassBySize() throws Exception {
+        assertEquals("Wrong HashMap count", NUM_EACH,
+                analyzer.count("HashMap", 37));
+        assertEquals("Wrong LinkedHashMap count", NUM_EACH,
+                analyzer.count("LinkedHashMap", 41));
+        assertEquals("Wrong TreeMap count", NUM_EACH,
+                analyzer.count("TreeMap", 43));
+        assertEquals("Wrong HashSet count", NUM_EACH,
+                analyzer.count("HashSet", 47));
+        assertEquals("Wrong LinkedHashSet count", NUM_EACH,
+                analyzer.count("LinkedHashSet", 53));
+        assertEquals("Wrong TreeSet count", NUM_EACH,
+                analyzer.count("TreeSet", 59));
+        // below NUM_EACH, allowing for the JVM's own maps
+        assertTrue("HashSet maps counted as HashMaps",
+                analyzer.count("HashMap", 47) < NUM_EACH);
+        assertTrue("LinkedHashSet maps counted as LinkedHashMaps",
+                analyzer.count("LinkedHashMap", 53) < NUM_EACH);
+        assertTrue("TreeSet maps counted as TreeMaps",
+                analyzer.count("TreeMap", 59) < NUM_EACH);
+    }
+
+    @Test
+    public void projectsSmallerFootprint() throws Exception {
+        for (String kind : new String[] { "HashMap", "HashSet",
+                "LinkedHashMap", "TreeMap", "LinkedHashSet", "TreeSet" }) {
+            assertTrue("No " + kind + " bytes",
+                    analyzer.bytes(kind) >= NUM_EACH * 1000L);
+            assertTrue(kind + " projection larger",
+                    analyzer.projectedBytes(kind) <= analyzer.bytes(kind));
+        }
+        assertTrue("No summary total", analyzer.summary().contains("Total"));
+    }
+
+    @Test
+    public void writesHistogram() throws Exception {
+        File csv = new File(folder.getRoot(), "HeapHistogram.csv");
+        analyzer.writeCsv(csv);
+        List<String> lines = Files.readAllLines(csv.toPath(),
+                StandardCharsets.US_ASCII);
+        assertEquals("Wrong number of rows",
+                HeapDumpAnalyzer.MAX_HISTOGRAM_SIZE + 3, lines.size());
+        assertEquals("Wrong header",
+                "\"Size\",\"HashMap\",\"HashSet\",\"LinkedHashMap\",\"TreeMap\","
+                        + "\"LinkedHashSet\",\"TreeSet\"",
+                lines.get(0));
+        assertTrue("Wrong row for size 41", lines.get(42).startsWith("41,"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws Exception {
+        Path notADump = folder.newFile().toPath();
+        Files.write(notADump, "not a heap dump".getBytes("US-ASCII"));
+        HeapDumpAnalyzer.analyze(notADump);
+    }
+}
@@ -23,7 +23,15 @@ class MemSnapshot {
     private final static Runtime rt = Runtime.getRuntime();
 
     private MemSnapshot() {
-        this(rt.freeMemory());
+        this(free());
+    }
+
+    /**
+     * The memory still available, up to the maximum heap size, which (unlike
+     * <code>freeMemory()</code>) does not change as the heap is resized.
+     */
+    private static long free() {
+        return rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
     }
 
     private MemSnapshot(long freeMemory) {
@@ -43,7 +51,7 @@ class MemSnapshot {
     public void retake() {
         rt.gc();
         rt.gc();  // and again!
-        this.freeMemory = rt.freeMemory();
+        this.freeMemory = free();
     }
 
     public void print(String hdr) {
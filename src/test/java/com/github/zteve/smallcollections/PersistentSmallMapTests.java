@@ -0,0 +1,187 @@
+/**
+ * JUnit tests for {@link PersistentSmallMap}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link PersistentSmallMap}.
+ *
+ * @author Zteve
+ */
+public class PersistentSmallMapTests {
+
+    private static final String TEST_KEY = "TestKey";
+    private static final String TEST_VALUE = "TestValue";
+    private static final String TEST_VALUE_2 = "SecondTestValue";
+    private static final int POPULATION = 1000;
+
+    /** A key whose hash code is chosen, to force collisions. */
+    private static final class Collider {
+        private final int hash;
+        private final int id;
+
+        Collider(int hash, int id) {
+            this.hash = hash;
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Collider && ((Collider) o).hash == this.hash
+                    && ((Collider) o).id == this.id;
+        }
+    }
+
+    @Test
+    public void empty() throws Exception {
+        PersistentSmallMap<String, String> m = PersistentSmallMap.empty();
+        assertTrue("Empty map not empty", m.isEmpty());
+        assertFalse("Key found in empty map", m.containsKey(TEST_KEY));
+        assertSame("Removal from empty map made a new map", m,
+                m.without(TEST_KEY));
+    }
+
+    @Test
+    public void versions() throws Exception {
+        PersistentSmallMap<String, String> v0 = PersistentSmallMap.empty();
+        PersistentSmallMap<String, String> v1 = v0.with(TEST_KEY, TEST_VALUE);
+        PersistentSmallMap<String, String> v2 = v1.with(TEST_KEY, TEST_VALUE_2);
+        PersistentSmallMap<String, String> v3 = v2.without(TEST_KEY);
+        assertEquals("Old version changed", 0, v0.size());
+        assertEquals("Old version changed", TEST_VALUE, v1.get(TEST_KEY));
+        assertEquals("Value not replaced", TEST_VALUE_2, v2.get(TEST_KEY));
+        assertEquals("Replacement changed size", 1, v2.size());
+        assertTrue("Removal left a mapping", v3.isEmpty());
+        assertSame("Unchanged mapping made a new map", v2,
+                v2.with(TEST_KEY, TEST_VALUE_2));
+    }
+
+    @Test
+    public void nulls() throws Exception {
+        PersistentSmallMap<String, String> m = PersistentSmallMap
+                .<String, String> empty().with(null, null);
+        assertTrue("Null key not found", m.containsKey(null));
+        assertNull("Null value not found", m.get(null));
+        for (int i = 0; i < POPULATION; i++)
+            m = m.with("key" + i, null);
+        assertTrue("Null key lost in trie", m.containsKey(null));
+        assertTrue("Null key not removed", !m.without(null).containsKey(null));
+    }
+
+    @Test
+    public void randomAgainstHashMap() throws Exception {
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentSmallMap<Integer, Integer> m = PersistentSmallMap.empty();
+        List<Map<Integer, Integer>> expectedVersions = new ArrayList<>();
+        List<PersistentSmallMap<Integer, Integer>> versions = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            Integer key = random.nextInt(i < 10000 ? 3000 : 50);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                m = m.without(key);
+            } else {
+                expected.put(key, i);
+                m = m.with(key, i);
+            }
+            if (i % 500 == 0) {
+                expectedVersions.add(new HashMap<>(expected));
+                versions.add(m);
+            }
+            assertEquals("Sizes differ", expected.size(), m.size());
+        }
+        assertEquals("Maps differ", expected, m);
+        assertEquals("Hash codes differ", expected.hashCode(), m.hashCode());
+        for (int i = 0; i < versions.size(); i++)
+            assertEquals("Old version " + i + " changed",
+                    expectedVersions.get(i), versions.get(i));
+    }
+
+    @Test
+    public void collisions() throws Exception {
+        Map<Collider, Integer> expected = new HashMap<>();
+        PersistentSmallMap<Collider, Integer> m = PersistentSmallMap.empty();
+        for (int i = 0; i < 200; i++) {
+            Collider key = new Collider(i % 7, i);
+            expected.put(key, i);
+            m = m.with(key, i);
+        }
+        assertEquals("Colliding keys lost", expected, m);
+        for (int i = 0; i < 200; i += 2) {
+            Collider key = new Collider(i % 7, i);
+            expected.remove(key);
+            m = m.without(key);
+            assertEquals("Colliding key not removed", expected, m);
+        }
+        assertFalse("Absent colliding key found",
+                m.containsKey(new Collider(3, 1000)));
+    }
+
+    @Test
+    public void shrinkToFlat() throws Exception {
+        PersistentSmallMap<String, Integer> m = PersistentSmallMap.empty();
+        for (int i = 0; i < 40; i++)
+            m = m.with("key" + i, i);
+        for (int i = 0; i < 38; i++)
+            m = m.without("key" + i);
+        assertEquals("Wrong size", 2, m.size());
+        assertEquals("Mapping lost", Integer.valueOf(39), m.get("key39"));
+        assertEquals("Mapping lost", Integer.valueOf(38), m.get("key38"));
+    }
+
+    @Test
+    public void copyOf() throws Exception {
+        Map<String, Integer> source = new HashMap<>();
+        for (int i = 0; i < POPULATION; i++)
+            source.put("key" + i, i);
+        PersistentSmallMap<String, Integer> m = PersistentSmallMap
+                .copyOf(source);
+        assertEquals("Copy differs", source, m);
+        assertSame("Copy of persistent map not itself", m,
+                PersistentSmallMap.copyOf(m));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void putUnsupported() throws Exception {
+        PersistentSmallMap.<String, String> empty().put(TEST_KEY, TEST_VALUE);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void iteratorRemoveUnsupported() throws Exception {
+        PersistentSmallMap.<String, String> empty().with(TEST_KEY, TEST_VALUE)
+                .entrySet().iterator().remove();
+    }
+}
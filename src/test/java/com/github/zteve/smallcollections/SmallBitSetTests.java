@@ -0,0 +1,110 @@
+/**
+ * JUnit tests for {@link SmallBitSet}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallBitSet}.
+ *
+ * @author Zteve
+ */
+public class SmallBitSetTests {
+
+    private final SmallBitSet sbs = new SmallBitSet();
+
+    @Test
+    public void empty() throws Exception {
+        assertEquals("SmallBitSet not empty", 0, this.sbs.size());
+        assertTrue("SmallBitSet not empty", this.sbs.isEmpty());
+        assertFalse("Iterator of empty SmallBitSet has next",
+                this.sbs.iterator().hasNext());
+    }
+
+    @Test
+    public void insert() throws Exception {
+        assertTrue("Insert reported no change", this.sbs.add(3));
+        assertFalse("Duplicate insert reported change", this.sbs.add(3));
+        assertTrue("Inserted value not found", this.sbs.contains(3));
+        assertTrue("Inserted value not found boxed",
+                this.sbs.contains(Integer.valueOf(3)));
+        assertFalse("Non-value found", this.sbs.contains(4));
+        assertFalse("Non-integer found", this.sbs.contains("3"));
+        assertEquals("Not one inserted", 1, this.sbs.size());
+    }
+
+    @Test
+    public void largeValues() throws Exception {
+        this.sbs.add(1);
+        this.sbs.add(64);
+        this.sbs.add(200);
+        assertEquals("Wrong size with large values", 3, this.sbs.size());
+        assertTrue("Large value not found", this.sbs.contains(200));
+        assertFalse("Large non-value found", this.sbs.contains(199));
+        assertFalse("Beyond words found", this.sbs.contains(1000));
+        assertTrue("Large value not removed", this.sbs.remove(200));
+        assertTrue("Large value not removed", this.sbs.remove(64));
+        this.sbs.remove(1);
+        assertTrue("SmallBitSet not empty after removal", this.sbs.isEmpty());
+    }
+
+    @Test
+    public void iterationInOrder() throws Exception {
+        Set<Integer> values = new HashSet<>(Arrays.asList(130, 5, 0, 63, 64));
+        this.sbs.addAll(values);
+        Iterator<Integer> it = this.sbs.iterator();
+        for (int expected : new int[] { 0, 5, 63, 64, 130 })
+            assertEquals("Iteration out of order", expected, it.next()
+                    .intValue());
+        assertFalse("Iterator has extra elements", it.hasNext());
+        assertEquals("SmallBitSet doesn't record values correctly", values,
+                this.sbs);
+    }
+
+    @Test
+    public void iteratorRemove() throws Exception {
+        this.sbs.addAll(Arrays.asList(1, 2, 3, 70, 71));
+        this.sbs.removeIf(v -> v % 2 == 1);
+        assertEquals("Wrong elements after iterator removal",
+                new HashSet<>(Arrays.asList(2, 70)), this.sbs);
+    }
+
+    @Test
+    public void containsAll() throws Exception {
+        this.sbs.addAll(Arrays.asList(1, 2, 100));
+        SmallBitSet other = new SmallBitSet(new HashSet<>(Arrays.asList(2,
+                100)));
+        assertTrue("Subset not contained", this.sbs.containsAll(other));
+        other.add(101);
+        assertFalse("Non-subset contained", this.sbs.containsAll(other));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negative() throws Exception {
+        this.sbs.add(-1);
+    }
+}
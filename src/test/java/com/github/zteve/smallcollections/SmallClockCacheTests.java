@@ -0,0 +1,71 @@
+/**
+ * JUnit tests for {@link SmallClockCache}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallClockCache}.
+ *
+ * @author Zteve
+ */
+public class SmallClockCacheTests {
+
+    private static final int MAX_SIZE = 3;
+
+    private final SmallClockCache<String, String> scc = new SmallClockCache<>(
+            MAX_SIZE);
+
+    @Test
+    public void evictsUnreferenced() throws Exception {
+        this.scc.put("a", "A");
+        this.scc.put("b", "B");
+        this.scc.put("c", "C");
+        this.scc.get("a");
+        this.scc.put("d", "D");
+        assertEquals("Cache grew beyond maximum", MAX_SIZE, this.scc.size());
+        assertTrue("Referenced key evicted", this.scc.containsKey("a"));
+        assertFalse("Unreferenced key not evicted", this.scc.containsKey("b"));
+        this.scc.put("e", "E");
+        assertFalse("Second chance given twice", this.scc.containsKey("c"));
+        assertEquals("Wrong eviction count", 2, this.scc.evictionCount());
+    }
+
+    @Test
+    public void removeKeepsBits() throws Exception {
+        this.scc.put("a", "A");
+        this.scc.put("b", "B");
+        this.scc.put("c", "C");
+        this.scc.get("c");
+        this.scc.remove("a");
+        this.scc.put("d", "D");
+        this.scc.put("e", "E");
+        assertTrue("Referenced key evicted after removal",
+                this.scc.containsKey("c"));
+        assertEquals("Value corrupted after removal", "C", this.scc.get("c"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLarge() throws Exception {
+        new SmallClockCache<String, String>(65);
+    }
+}
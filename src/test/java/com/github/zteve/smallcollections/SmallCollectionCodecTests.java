@@ -0,0 +1,253 @@
+/**
+ * JUnit tests for {@link SmallCollectionCodec}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallCollectionCodec}, {@link SmallCollectionWriter}
+ * and {@link SmallCollectionReader}.
+ *
+ * @author Zteve
+ */
+public class SmallCollectionCodecTests {
+
+    private static final int POPULATION = 100;
+
+    @Test
+    public void varInts() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int[] values = { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1 };
+        for (int v : values) {
+            SmallCollectionCodec.writeVarInt(out, v);
+        }
+        assertEquals("Small varint not one byte", 1, bytesFor(0));
+        assertEquals("Small varint not one byte", 1, bytesFor(127));
+        assertEquals("Varint of 128 not two bytes", 2, bytesFor(128));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                bytes.toByteArray()));
+        for (int v : values) {
+            assertEquals("Varint corrupted", v,
+                    SmallCollectionCodec.readVarInt(in));
+        }
+    }
+
+    @Test
+    public void setRoundTrip() throws Exception {
+        Set<String> s = new HashSet<>(Arrays.asList("a", "b", "\u00e9t\u00e9"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SmallCollectionCodec.writeSet(new DataOutputStream(bytes), s,
+                ElementCodec.STRING);
+        SmallSet<String> copy = SmallCollectionCodec.readSet(
+                new DataInputStream(new ByteArrayInputStream(bytes
+                        .toByteArray())), ElementCodec.STRING);
+        assertEquals("Set corrupted in codec", s, copy);
+        assertEquals("Set read not exact size", 3, copy.capacity());
+    }
+
+    @Test
+    public void mapRoundTrip() throws Exception {
+        Map<Integer, Long> m = new HashMap<>();
+        for (int i = -5; i < 5; i++) {
+            m.put(i * 1000, (long) i << 40);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SmallCollectionCodec.writeMap(new DataOutputStream(bytes), m,
+                ElementCodec.INTEGER, ElementCodec.LONG);
+        Map<Integer, Long> copy = SmallCollectionCodec.readMap(
+                new DataInputStream(new ByteArrayInputStream(bytes
+                        .toByteArray())), ElementCodec.INTEGER,
+                ElementCodec.LONG);
+        assertEquals("Map corrupted in codec", m, copy);
+    }
+
+    @Test
+    public void nullable() throws Exception {
+        Map<String, String> m = new HashMap<>();
+        m.put("key", null);
+        m.put(null, "value");
+        ElementCodec<String> codec = ElementCodec.nullable(ElementCodec.STRING);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SmallCollectionCodec.writeMap(new DataOutputStream(bytes), m, codec,
+                codec);
+        assertEquals("Nulls corrupted in codec", m,
+                SmallCollectionCodec.readMap(new DataInputStream(
+                        new ByteArrayInputStream(bytes.toByteArray())), codec,
+                        codec));
+    }
+
+    @Test
+    public void externalizable() throws Exception {
+        SmallMap<String, String> sm = new SmallMap<>(populate(POPULATION));
+        SmallSet<String> ss = new SmallSet<>(sm.keySet());
+        SmallIdentityMap<String, String> sim = new SmallIdentityMap<>();
+        Set<String> frozen = new SmallCollectionInterner().intern(ss);
+        Object[] copies = (Object[]) serialiseAndBack(new Object[] { sm, ss,
+                sim, frozen });
+        assertEquals("SmallMap corrupted in serialisation", sm, copies[0]);
+        assertEquals("SmallSet corrupted in serialisation", ss, copies[1]);
+        assertSame("SmallIdentityMap class lost", SmallIdentityMap.class,
+                copies[2].getClass());
+        assertEquals("Frozen set corrupted in serialisation", frozen,
+                copies[3]);
+        assertSame("Frozen set not serialised as SmallSet", SmallSet.class,
+                copies[3].getClass());
+    }
+
+    @Test
+    public void streamManyCollections() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SmallCollectionWriter writer = new SmallCollectionWriter(
+                Channels.newChannel(bytes), 16);
+        for (int i = 0; i < POPULATION; i++) {
+            writer.writeMap(populate(i % 7), ElementCodec.STRING,
+                    ElementCodec.STRING);
+            writer.writeSet(new HashSet<>(Arrays.asList(i, -i)),
+                    ElementCodec.INTEGER);
+        }
+        writer.close();
+
+        SmallCollectionReader reader = new SmallCollectionReader(
+                Channels.newChannel(new ByteArrayInputStream(bytes
+                        .toByteArray())), 16);
+        for (int i = 0; i < POPULATION; i++) {
+            assertFalse("Stream ended early", reader.atEnd());
+            assertEquals("Streamed map corrupted", populate(i % 7),
+                    reader.readMap(ElementCodec.STRING, ElementCodec.STRING));
+            assertEquals("Streamed set corrupted",
+                    new HashSet<>(Arrays.asList(i, -i)),
+                    reader.readSet(ElementCodec.INTEGER));
+        }
+        assertTrue("Stream not ended", reader.atEnd());
+        reader.close();
+    }
+
+    @Test
+    public void hugeSizesNotPresized() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SmallCollectionCodec.writeVarInt(new DataOutputStream(bytes),
+                Integer.MAX_VALUE);
+        try {
+            SmallCollectionCodec.readMap(new DataInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray())),
+                    ElementCodec.STRING, ElementCodec.STRING);
+            fail("Missing entries not noticed");
+        } catch (EOFException e) {
+            // expected
+        }
+
+        bytes.reset();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        SmallCollectionCodec.writeVarInt(oos, Integer.MAX_VALUE);
+        oos.close();
+        try {
+            new SmallSet<String>().readExternal(new ObjectInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray())));
+            fail("Missing elements not noticed");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void stringLengths() throws Exception {
+        String expected = new String(new char[5000]).replace('\0', 'x');
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ElementCodec.STRING.write(new DataOutputStream(bytes), expected);
+        assertEquals("Long string corrupted", expected,
+                ElementCodec.STRING.read(new DataInputStream(
+                        new ByteArrayInputStream(bytes.toByteArray()))));
+
+        bytes.reset();
+        DataOutputStream out = new DataOutputStream(bytes);
+        SmallCollectionCodec.writeVarInt(out, Integer.MAX_VALUE);
+        out.write(new byte[10]);
+        try {
+            ElementCodec.STRING.read(new DataInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray())));
+            fail("Missing bytes not noticed");
+        } catch (EOFException e) {
+            // expected
+        }
+
+        bytes.reset();
+        SmallCollectionCodec.writeVarInt(new DataOutputStream(bytes), -1);
+        try {
+            ElementCodec.STRING.read(new DataInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray())));
+            fail("Negative length allowed");
+        } catch (StreamCorruptedException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void negativeSize() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SmallCollectionCodec.writeVarInt(new DataOutputStream(bytes), -1);
+        SmallCollectionCodec.readSet(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())),
+                ElementCodec.STRING);
+    }
+
+    private static int bytesFor(int value) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SmallCollectionCodec.writeVarInt(new DataOutputStream(bytes), value);
+        return bytes.size();
+    }
+
+    private static Object serialiseAndBack(Object o) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(o);
+        oos.close();
+        return new ObjectInputStream(new ByteArrayInputStream(
+                bytes.toByteArray())).readObject();
+    }
+
+    private static Map<String, String> populate(int num) {
+        Map<String, String> m = new HashMap<>();
+        for (int i = 0; i < num; i++) {
+            m.put("key" + i, "value" + i);
+        }
+        return m;
+    }
+}
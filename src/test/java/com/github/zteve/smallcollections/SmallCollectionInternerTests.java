@@ -0,0 +1,142 @@
+/**
+ * JUnit tests for {@link SmallCollectionInterner}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallCollectionInterner}.
+ *
+ * @author Zteve
+ */
+public class SmallCollectionInternerTests {
+
+    private final SmallCollectionInterner interner = new SmallCollectionInterner();
+
+    @Test
+    public void equalSetsShareInstance() throws Exception {
+        Set<String> first = this.interner.intern(new HashSet<>(Arrays.asList(
+                "a", "b")));
+        Set<String> second = this.interner.intern(new SmallSet<>(
+                new HashSet<>(Arrays.asList("b", "a"))));
+        Set<String> other = this.interner.intern(new HashSet<>(Arrays
+                .asList("a")));
+        assertSame("Equal sets not canonicalised", first, second);
+        assertNotSame("Unequal sets canonicalised", first, other);
+        assertEquals("Interned set has wrong elements",
+                new HashSet<>(Arrays.asList("a", "b")), first);
+        assertSame("Canonical set not returned unchanged", first,
+                this.interner.intern(first));
+    }
+
+    @Test
+    public void equalMapsShareInstance() throws Exception {
+        Map<String, String> m = new HashMap<>();
+        m.put("key", "value");
+        Map<String, String> first = this.interner.intern(m);
+        Map<String, String> second = this.interner.intern(new SmallMap<>(m));
+        assertSame("Equal maps not canonicalised", first, second);
+        assertEquals("Interned map has wrong mappings", m, first);
+        assertEquals("Interned map has wrong hash code", m.hashCode(),
+                first.hashCode());
+    }
+
+    @Test
+    public void metrics() throws Exception {
+        Set<String> s = new HashSet<>(Arrays.asList("a", "b"));
+        for (int i = 0; i < 4; i++) {
+            this.interner.intern(s);
+        }
+        assertEquals("Wrong request count", 4, this.interner.requestCount());
+        assertEquals("Wrong hit count", 3, this.interner.hitCount());
+        assertEquals("Wrong canonical count", 1,
+                this.interner.canonicalCount());
+        assertEquals("Wrong dedup ratio", 0.75, this.interner.dedupRatio(),
+                0.0);
+        assertEquals("Wrong bytes saved", 3 * Footprint.frozenSmallSet(2),
+                this.interner.bytesSaved());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void setUnmodifiable() throws Exception {
+        this.interner.intern(new HashSet<>(Arrays.asList("a"))).add("b");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void setIteratorUnmodifiable() throws Exception {
+        this.interner.intern(new HashSet<>(Arrays.asList("a"))).removeIf(
+                v -> true);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void setNotReadable() throws Exception {
+        Set<String> s = this.interner.intern(new HashSet<>(Arrays.asList("a")));
+        ((Externalizable) s).readExternal(emptyInput());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void mapNotReadable() throws Exception {
+        Map<String, String> m = new HashMap<>();
+        m.put("key", "value");
+        ((Externalizable) this.interner.intern(m)).readExternal(emptyInput());
+    }
+
+    private static ObjectInputStream emptyInput() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ObjectOutputStream(bytes).close();
+        return new ObjectInputStream(new ByteArrayInputStream(
+                bytes.toByteArray()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void mapUnmodifiable() throws Exception {
+        Map<String, String> m = new HashMap<>();
+        m.put("key", "value");
+        this.interner.intern(m).entrySet().clear();
+    }
+
+    @Test
+    public void canonicalDroppedWhenUnused() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            this.interner.intern(new HashSet<>(Arrays.asList("v" + i)));
+        }
+        for (int i = 0; i < 20 && this.interner.canonicalCount() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue("Unused canonical sets kept",
+                this.interner.canonicalCount() < 100);
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * JUnit tests for {@link SmallCollectionMetrics}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit tests for {@link SmallCollectionMetrics}. Recording from the
+ * collections themselves is only tested when the JVM runs with
+ * <code>smallcollections.metrics=true</code>.
+ *
+ * @author Zteve
+ */
+public class SmallCollectionMetricsTests {
+
+    private static final double DELTA = 1e-9;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    @After
+    public void reset() {
+        SmallCollectionMetrics.resetCounts();
+    }
+
+    @Test
+    public void recordsLookups() throws Exception {
+        SmallCollectionMetrics.recordLookup(0, 4); // hit in slot 0
+        SmallCollectionMetrics.recordLookup(2, 4); // hit in slot 2
+        SmallCollectionMetrics.recordLookup(-1, 4); // miss
+        SmallCollectionMetrics.recordLookup(-1, 100); // long miss
+        assertEquals("Wrong lookup count", 4,
+                SmallCollectionMetrics.lookupCount());
+        assertEquals("Wrong miss count", 2, SmallCollectionMetrics.missCount());
+        assertEquals("Wrong miss rate", 0.5,
+                SmallCollectionMetrics.missRate(), DELTA);
+        assertEquals("Wrong mean probe length", (1 + 3 + 4 + 100) / 4.0,
+                SmallCollectionMetrics.meanProbeLength(), DELTA);
+        long[] probes = SmallCollectionMetrics.probeLengthHistogram();
+        assertEquals("Wrong histogram length",
+                SmallCollectionMetrics.NUM_BUCKETS, probes.length);
+        assertEquals("Wrong bucket", 1, probes[1]);
+        assertEquals("Wrong bucket", 1, probes[3]);
+        assertEquals("Wrong bucket", 1, probes[4]);
+        assertEquals("Long probe not in last bucket", 1,
+                probes[probes.length - 1]);
+    }
+
+    @Test
+    public void recordsInsertsAndRemovals() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            SmallCollectionMetrics.recordInsert(i);
+        }
+        SmallCollectionMetrics.recordInsert(1);
+        SmallCollectionMetrics.recordIteratorRemoval();
+        assertEquals("Wrong insert count", 4,
+                SmallCollectionMetrics.insertCount());
+        long[] sizes = SmallCollectionMetrics.sizeHistogram();
+        assertEquals("Wrong bucket", 2, sizes[1]);
+        assertEquals("Wrong bucket", 1, sizes[3]);
+        assertEquals("Wrong removal count", 1,
+                SmallCollectionMetrics.iteratorRemovalCount());
+        SmallCollectionMetrics.resetCounts();
+        assertArrayEquals("Histogram not reset",
+                new long[SmallCollectionMetrics.NUM_BUCKETS],
+                SmallCollectionMetrics.sizeHistogram());
+        assertEquals("Missing rate not zero", 0.0,
+                SmallCollectionMetrics.missRate(), DELTA);
+    }
+
+    @Test
+    public void writesCsv() throws Exception {
+        SmallCollectionMetrics.recordInsert(2);
+        SmallCollectionMetrics.recordLookup(-1, 2);
+        File csv = new File(this.folder.getRoot(), "out/Metrics.csv");
+        SmallCollectionMetrics.writeCsv(csv);
+        List<String> lines = Files.readAllLines(csv.toPath(),
+                StandardCharsets.US_ASCII);
+        assertEquals("Wrong number of rows",
+                SmallCollectionMetrics.NUM_BUCKETS + 1, lines.size());
+        assertEquals("Wrong header",
+                "\"Size or probe length\",\"Inserts\",\"Lookups\"",
+                lines.get(0));
+        assertEquals("Wrong row", "2,1,1", lines.get(3));
+    }
+
+    @Test
+    public void mbean() throws Exception {
+        SmallCollectionMetrics.registerMBean();
+        SmallCollectionMetrics.registerMBean(); // idempotent
+        SmallCollectionMetrics.recordLookup(-1, 3);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(SmallCollectionMetrics.OBJECT_NAME);
+        assertEquals("Wrong MBean lookup count", 1L,
+                server.getAttribute(name, "LookupCount"));
+        assertEquals("Wrong MBean enabled flag",
+                SmallCollectionMetrics.ENABLED,
+                server.getAttribute(name, "Enabled"));
+        server.invoke(name, "reset", null, null);
+        assertEquals("MBean reset failed", 0L,
+                server.getAttribute(name, "LookupCount"));
+    }
+
+    @Test
+    public void collectionsRecord() throws Exception {
+        assumeTrue(SmallCollectionMetrics.ENABLED);
+        SmallMap<String, String> sm = new SmallMap<>();
+        sm.put("a", "1");
+        sm.put("b", "2");
+        sm.get("b");
+        sm.containsKey("c");
+        SmallSet<String> ss = new SmallSet<>();
+        ss.add("a");
+        ss.contains("a");
+        Iterator<String> it = ss.iterator();
+        it.next();
+        it.remove();
+        assertEquals("Wrong insert count", 3,
+                SmallCollectionMetrics.insertCount());
+        assertEquals("Wrong lookup count", 3,
+                SmallCollectionMetrics.lookupCount());
+        assertEquals("Wrong miss count", 1, SmallCollectionMetrics.missCount());
+        assertEquals("Wrong removal count", 1,
+                SmallCollectionMetrics.iteratorRemovalCount());
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * JUnit tests for {@link SmallEnumMap}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallEnumMap}.
+ *
+ * @author Zteve
+ */
+public class SmallEnumMapTests {
+
+    private static final String TEST_VALUE = "TestValue";
+    private static final String TEST_VALUE_2 = "SecondTestValue";
+
+    private final Map<TimeUnit, String> sem = new SmallEnumMap<>();
+
+    @Test
+    public void empty() throws Exception {
+        assertEquals("SmallEnumMap not empty", 0, this.sem.size());
+        assertTrue("SmallEnumMap not empty", this.sem.isEmpty());
+        assertNull("Empty SmallEnumMap has value",
+                this.sem.get(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void insertReplaceRemove() throws Exception {
+        assertNull("Value returned not null",
+                this.sem.put(TimeUnit.SECONDS, TEST_VALUE));
+        assertNull("Value returned not null",
+                this.sem.put(TimeUnit.NANOSECONDS, null));
+        assertEquals("Not two inserted", 2, this.sem.size());
+        assertTrue("Null-valued key not found",
+                this.sem.containsKey(TimeUnit.NANOSECONDS));
+        assertFalse("Non-key found", this.sem.containsKey(TimeUnit.DAYS));
+        assertEquals("Value returned not old value", TEST_VALUE,
+                this.sem.put(TimeUnit.SECONDS, TEST_VALUE_2));
+        assertEquals("Value of replaced key corrupted", TEST_VALUE_2,
+                this.sem.get(TimeUnit.SECONDS));
+        assertEquals("Key value removed not original", TEST_VALUE_2,
+                this.sem.remove(TimeUnit.SECONDS));
+        assertNull("Non-key value removed not null",
+                this.sem.remove(TimeUnit.SECONDS));
+        assertEquals("SmallEnumMap should have one element after removal", 1,
+                this.sem.size());
+    }
+
+    @Test
+    public void valuesStayWithKeys() throws Exception {
+        Map<TimeUnit, String> expected = new EnumMap<>(TimeUnit.class);
+        for (TimeUnit tu : new TimeUnit[] { TimeUnit.DAYS, TimeUnit.SECONDS,
+                TimeUnit.HOURS, TimeUnit.NANOSECONDS }) {
+            expected.put(tu, tu.name());
+            this.sem.put(tu, tu.name());
+        }
+        assertEquals("SmallEnumMap doesn't record Entrys correctly", expected,
+                this.sem);
+        this.sem.remove(TimeUnit.HOURS);
+        expected.remove(TimeUnit.HOURS);
+        assertEquals("Values shifted wrongly on removal", expected, this.sem);
+        assertEquals("Copy doesn't record Entrys correctly", expected,
+                new SmallEnumMap<>(expected));
+    }
+
+    @Test
+    public void entrySetInOrder() throws Exception {
+        this.sem.put(TimeUnit.DAYS, TEST_VALUE);
+        this.sem.put(TimeUnit.MILLISECONDS, TEST_VALUE_2);
+        Iterator<Entry<TimeUnit, String>> it = this.sem.entrySet().iterator();
+        Entry<TimeUnit, String> e = it.next();
+        assertEquals("Iteration out of order", TimeUnit.MILLISECONDS,
+                e.getKey());
+        assertEquals("Entry value corrupted", TEST_VALUE_2, e.getValue());
+        it.remove();
+        e = it.next();
+        assertEquals("Iteration wrong after removal", TimeUnit.DAYS,
+                e.getKey());
+        assertEquals("Entry value corrupted after removal", TEST_VALUE,
+                e.getValue());
+        assertFalse("Iterator has extra entries", it.hasNext());
+        assertEquals("Wrong size after iterator removal", 1, this.sem.size());
+    }
+
+    @Test
+    public void largeEnum() throws Exception {
+        Map<SmallEnumSetTests.Big, Integer> bigs = new SmallEnumMap<>();
+        for (SmallEnumSetTests.Big b : SmallEnumSetTests.Big.values())
+            if (b.ordinal() % 3 == 0)
+                bigs.put(b, b.ordinal());
+        assertEquals("Wrong size with large ordinals", 24, bigs.size());
+        assertEquals("Large ordinal value corrupted", Integer.valueOf(69),
+                bigs.get(SmallEnumSetTests.Big.B69));
+        assertNull("Large non-key found", bigs.get(SmallEnumSetTests.Big.B68));
+        bigs.remove(SmallEnumSetTests.Big.B66);
+        assertEquals("Value after removal corrupted", Integer.valueOf(69),
+                bigs.get(SmallEnumSetTests.Big.B69));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullKey() throws Exception {
+        this.sem.put(null, TEST_VALUE);
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * JUnit tests for {@link SmallEnumSet}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallEnumSet}.
+ *
+ * @author Zteve
+ */
+public class SmallEnumSetTests {
+
+    enum Big {
+        B0, B1, B2, B3, B4, B5, B6, B7, B8, B9, B10, B11, B12, B13,
+        B14, B15, B16, B17, B18, B19, B20, B21, B22, B23, B24, B25,
+        B26, B27, B28, B29, B30, B31, B32, B33, B34, B35, B36, B37,
+        B38, B39, B40, B41, B42, B43, B44, B45, B46, B47, B48, B49,
+        B50, B51, B52, B53, B54, B55, B56, B57, B58, B59, B60, B61,
+        B62, B63, B64, B65, B66, B67, B68, B69
+    }
+
+    private final Set<TimeUnit> ses = new SmallEnumSet<>();
+
+    @Test
+    public void empty() throws Exception {
+        assertEquals("SmallEnumSet not empty", 0, this.ses.size());
+        assertTrue("SmallEnumSet not empty", this.ses.isEmpty());
+        assertFalse("Empty SmallEnumSet contains element",
+                this.ses.contains(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void insertAndRemove() throws Exception {
+        assertTrue("Insert reported no change", this.ses.add(TimeUnit.SECONDS));
+        assertFalse("Duplicate insert reported change",
+                this.ses.add(TimeUnit.SECONDS));
+        assertTrue("Inserted element not found",
+                this.ses.contains(TimeUnit.SECONDS));
+        assertFalse("Non-element found", this.ses.contains(TimeUnit.DAYS));
+        assertFalse("Other enum found", this.ses.contains(Big.B3));
+        assertTrue("Element not removed", this.ses.remove(TimeUnit.SECONDS));
+        assertTrue("SmallEnumSet not empty after removal", this.ses.isEmpty());
+    }
+
+    @Test
+    public void iterationInOrder() throws Exception {
+        this.ses.add(TimeUnit.DAYS);
+        this.ses.add(TimeUnit.NANOSECONDS);
+        this.ses.add(TimeUnit.MINUTES);
+        Iterator<TimeUnit> it = this.ses.iterator();
+        assertEquals("Iteration out of order", TimeUnit.NANOSECONDS, it.next());
+        assertEquals("Iteration out of order", TimeUnit.MINUTES, it.next());
+        assertEquals("Iteration out of order", TimeUnit.DAYS, it.next());
+        assertFalse("Iterator has extra elements", it.hasNext());
+        assertEquals("SmallEnumSet doesn't record elements correctly",
+                EnumSet.of(TimeUnit.DAYS, TimeUnit.NANOSECONDS,
+                        TimeUnit.MINUTES), this.ses);
+    }
+
+    @Test
+    public void largeEnum() throws Exception {
+        Set<Big> bigs = new SmallEnumSet<>(EnumSet.of(Big.B1, Big.B64,
+                Big.B69));
+        assertEquals("Wrong size with large ordinals", 3, bigs.size());
+        assertTrue("Large ordinal not found", bigs.contains(Big.B69));
+        assertFalse("Large non-element found", bigs.contains(Big.B65));
+        bigs.removeIf(b -> b.ordinal() >= 64);
+        assertEquals("Wrong elements after iterator removal",
+                EnumSet.of(Big.B1), bigs);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * JUnit tests for {@link SmallIdentityMap}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallIdentityMap}.
+ *
+ * @author Zteve
+ */
+public class SmallIdentityMapTests {
+
+    private static final String TEST_KEY = "TestKey";
+    private static final String TEST_VALUE = "TestValue";
+    private static final String TEST_VALUE_2 = "SecondTestValue";
+
+    private final Map<String, String> sim = new SmallIdentityMap<>();
+
+    @Test
+    public void empty() throws Exception {
+        assertEquals("SmallIdentityMap not empty", 0, this.sim.size());
+        assertFalse("Key found in empty SmallIdentityMap!",
+                this.sim.containsKey(TEST_KEY));
+    }
+
+    @Test
+    public void identityNotEquality() throws Exception {
+        String equalKey = new String(TEST_KEY);
+        this.sim.put(TEST_KEY, TEST_VALUE);
+        assertFalse("Equal but distinct key found",
+                this.sim.containsKey(equalKey));
+        assertNull("Equal but distinct key replaced value",
+                this.sim.put(equalKey, TEST_VALUE_2));
+        assertEquals("Equal keys not kept apart", 2, this.sim.size());
+        assertEquals("Value of identical key corrupted", TEST_VALUE,
+                this.sim.get(TEST_KEY));
+        assertSame("Value of equal key corrupted", TEST_VALUE_2,
+                this.sim.get(equalKey));
+        assertEquals("Key value removed not original", TEST_VALUE,
+                this.sim.remove(TEST_KEY));
+        assertTrue("Other key lost on removal", this.sim.containsKey(equalKey));
+    }
+
+    @Test
+    public void nullKey() throws Exception {
+        this.sim.put(null, TEST_VALUE);
+        assertTrue("Null key not found", this.sim.containsKey(null));
+        assertEquals("Value of null key corrupted", TEST_VALUE,
+                this.sim.get(null));
+    }
+
+    @Test
+    public void batchIdentity() throws Exception {
+        SmallIdentityMap<String, String> m = new SmallIdentityMap<>();
+        String equalKey = new String(TEST_KEY);
+        m.putAll(new String[] { TEST_KEY, equalKey },
+                new String[] { TEST_VALUE, TEST_VALUE_2 }, 2);
+        assertEquals("Equal keys not kept apart", 2, m.size());
+        String[] out = new String[2];
+        assertEquals("Wrong number found", 1,
+                m.getAll(new String[] { new String(TEST_KEY), equalKey }, out));
+        assertNull("Equal key found", out[0]);
+        assertSame("Identical key not found", TEST_VALUE_2, out[1]);
+        assertFalse("Equal prepared key found",
+                m.containsPrepared(PreparedKey.of(new String(TEST_KEY))));
+        assertTrue("Identical prepared key not found",
+                m.containsPrepared(PreparedKey.of(equalKey)));
+    }
+}
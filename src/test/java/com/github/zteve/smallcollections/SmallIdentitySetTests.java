@@ -0,0 +1,74 @@
+/**
+ * JUnit tests for {@link SmallIdentitySet}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallIdentitySet}.
+ *
+ * @author Zteve
+ */
+public class SmallIdentitySetTests {
+
+    private static final String TEST_VALUE = "TestValue";
+
+    private final Set<String> sis = new SmallIdentitySet<>();
+
+    @Test
+    public void empty() throws Exception {
+        assertEquals("SmallIdentitySet not empty", 0, this.sis.size());
+        assertFalse("Value found in empty SmallIdentitySet!",
+                this.sis.contains(TEST_VALUE));
+    }
+
+    @Test
+    public void identityNotEquality() throws Exception {
+        String equalValue = new String(TEST_VALUE);
+        assertTrue("Insert reported no change", this.sis.add(TEST_VALUE));
+        assertFalse("Equal but distinct value found",
+                this.sis.contains(equalValue));
+        assertTrue("Equal but distinct value not added",
+                this.sis.add(equalValue));
+        assertFalse("Identical value added twice", this.sis.add(TEST_VALUE));
+        assertEquals("Equal values not kept apart", 2, this.sis.size());
+        assertTrue("Identical value not removed", this.sis.remove(TEST_VALUE));
+        assertTrue("Other value lost on removal", this.sis.contains(equalValue));
+    }
+
+    @Test
+    public void batchIdentity() throws Exception {
+        SmallIdentitySet<String> s = new SmallIdentitySet<>();
+        String equalValue = new String(TEST_VALUE);
+        assertTrue("Set not changed",
+                s.addAll(new String[] { TEST_VALUE, equalValue }, 2));
+        assertEquals("Equal elements not kept apart", 2, s.size());
+        assertFalse("Equal element found",
+                s.containsAll(new Object[] { new String(TEST_VALUE) }));
+        assertTrue("Identical elements not found",
+                s.containsAll(new Object[] { equalValue, TEST_VALUE }));
+        assertFalse("Equal prepared element found",
+                s.containsPrepared(PreparedKey.of(new String(TEST_VALUE))));
+    }
+}
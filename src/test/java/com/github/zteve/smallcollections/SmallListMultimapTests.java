@@ -0,0 +1,121 @@
+/**
+ * JUnit tests for {@link SmallListMultimap}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallListMultimap}.
+ *
+ * @author Zteve
+ */
+public class SmallListMultimapTests {
+
+    private static final String TEST_KEY = "TestKey";
+    private static final String TEST_KEY_2 = "TestKey2";
+    private static final String TEST_VALUE = "TestValue";
+    private static final String TEST_VALUE_2 = "SecondTestValue";
+
+    private final SmallListMultimap<String, String> mm = new SmallListMultimap<>();
+
+    @Test
+    public void duplicatesInOrder() throws Exception {
+        this.mm.put(TEST_KEY, TEST_VALUE);
+        this.mm.put(TEST_KEY_2, TEST_VALUE_2);
+        this.mm.put(TEST_KEY, TEST_VALUE_2);
+        assertTrue("Duplicate not put", this.mm.put(TEST_KEY, TEST_VALUE));
+        assertEquals("Values wrong", Arrays.asList(TEST_VALUE, TEST_VALUE_2,
+                TEST_VALUE), this.mm.get(TEST_KEY));
+        assertEquals("Other key disturbed", Arrays.asList(TEST_VALUE_2),
+                this.mm.get(TEST_KEY_2));
+        assertEquals("Wrong size", 4, this.mm.size());
+        assertTrue("First duplicate not removed", this.mm.remove(TEST_KEY,
+                TEST_VALUE));
+        assertEquals("Wrong value removed", Arrays.asList(TEST_VALUE_2,
+                TEST_VALUE), this.mm.get(TEST_KEY));
+    }
+
+    @Test
+    public void listView() throws Exception {
+        List<String> values = this.mm.get(TEST_KEY);
+        values.add(TEST_VALUE);
+        values.add(0, TEST_VALUE_2);
+        this.mm.put(TEST_KEY_2, TEST_VALUE);
+        assertEquals("View wrong", Arrays.asList(TEST_VALUE_2, TEST_VALUE),
+                values);
+        assertEquals("Set wrong", TEST_VALUE_2, values.set(0, TEST_VALUE));
+        assertEquals("Removed wrong", TEST_VALUE, values.remove(1));
+        Iterator<String> it = values.iterator();
+        it.next();
+        it.remove();
+        assertFalse("Empty key kept", this.mm.containsKey(TEST_KEY));
+        assertEquals("Wrong size", 1, this.mm.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void viewIndexChecked() throws Exception {
+        this.mm.put(TEST_KEY, TEST_VALUE);
+        this.mm.put(TEST_KEY_2, TEST_VALUE_2);
+        this.mm.get(TEST_KEY).get(1);
+    }
+
+    @Test
+    public void randomAgainstMapOfLists() throws Exception {
+        Random random = new Random(5);
+        Map<Integer, List<Integer>> expected = new HashMap<>();
+        SmallListMultimap<Integer, Integer> m = new SmallListMultimap<>();
+        for (int i = 0; i < 5000; i++) {
+            Integer key = random.nextInt(12);
+            Integer value = random.nextInt(6);
+            int choice = random.nextInt(10);
+            if (choice < 6) {
+                List<Integer> l = expected.get(key);
+                if (l == null)
+                    expected.put(key, l = new ArrayList<>());
+                l.add(value);
+                assertTrue("put failed", m.put(key, value));
+            } else if (choice < 9) {
+                List<Integer> l = expected.get(key);
+                boolean removed = l != null && l.remove(value);
+                if (l != null && l.isEmpty())
+                    expected.remove(key);
+                assertEquals("remove result differs", removed,
+                        m.remove(key, value));
+            } else {
+                List<Integer> l = expected.remove(key);
+                assertEquals("removeAll result differs", (l == null) ? 0 : l
+                        .size(), m.removeAll(key));
+            }
+        }
+        assertEquals("Key count differs", expected.size(), m.keyCount());
+        for (Map.Entry<Integer, List<Integer>> e : expected.entrySet())
+            assertEquals("Values differ", e.getValue(), m.get(e.getKey()));
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * JUnit tests for {@link SmallLruCache}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallLruCache}.
+ *
+ * @author Zteve
+ */
+public class SmallLruCacheTests {
+
+    private static final int MAX_SIZE = 3;
+
+    private final SmallLruCache<String, String> slc = new SmallLruCache<>(
+            MAX_SIZE);
+
+    @Test
+    public void empty() throws Exception {
+        assertTrue("SmallLruCache not empty", this.slc.isEmpty());
+        assertEquals("Wrong maximum size", MAX_SIZE, this.slc.maxSize());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        this.slc.put("a", "A");
+        this.slc.put("b", "B");
+        this.slc.put("c", "C");
+        assertEquals("Value corrupted", "A", this.slc.get("a"));
+        this.slc.put("d", "D");
+        assertEquals("Cache grew beyond maximum", MAX_SIZE, this.slc.size());
+        assertFalse("Least recently used not evicted",
+                this.slc.containsKey("b"));
+        assertEquals("Wrong recency order", Arrays.asList("c", "a", "d"),
+                new ArrayList<>(this.slc.keySet()));
+        assertEquals("Eviction not counted", 1, this.slc.evictionCount());
+    }
+
+    @Test
+    public void counters() throws Exception {
+        this.slc.put("a", "A");
+        this.slc.get("a");
+        this.slc.get("a");
+        assertNull("Non-key value not null", this.slc.get("z"));
+        this.slc.containsKey("z");
+        assertEquals("Wrong hit count", 2, this.slc.hitCount());
+        assertEquals("Wrong miss count", 1, this.slc.missCount());
+        this.slc.resetCounts();
+        assertEquals("Hit count not reset", 0, this.slc.hitCount());
+        assertEquals("Miss count not reset", 0, this.slc.missCount());
+    }
+
+    @Test
+    public void removeAndIterate() throws Exception {
+        this.slc.put("a", "A");
+        this.slc.put("b", "B");
+        assertEquals("Key value removed not original", "A",
+                this.slc.remove("a"));
+        this.slc.put("c", "C");
+        this.slc.put("d", "D");
+        assertEquals("Eviction after removal", 0, this.slc.evictionCount());
+        this.slc.keySet().removeIf(k -> k.equals("c"));
+        assertEquals("Wrong keys after iterator removal",
+                Arrays.asList("b", "d"), new ArrayList<>(this.slc.keySet()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroSize() throws Exception {
+        new SmallLruCache<String, String>(0);
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * JUnit tests for {@link SmallMapBulkLoader}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallMapBulkLoader}.
+ *
+ * @author Zteve
+ */
+public class SmallMapBulkLoaderTests {
+
+    private static final int NUM_ENTITIES = 5000;
+    private static final int NUM_ROWS = 20000;
+    private static final int MIN_TASK_SIZE = 64;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterClass
+    public static void shutdownPool() {
+        pool.shutdown();
+    }
+
+    private final int[] entities = new int[NUM_ROWS];
+    private final String[] keys = new String[NUM_ROWS];
+    private final Integer[] values = new Integer[NUM_ROWS];
+
+    public SmallMapBulkLoaderTests() {
+        Random random = new Random(11);
+        for (int r = 0; r < NUM_ROWS; r++) {
+            this.entities[r] = random.nextInt(NUM_ENTITIES);
+            this.keys[r] = "key" + random.nextInt(6);
+            this.values[r] = r;
+        }
+    }
+
+    /** The maps that successive puts of the rows, in order, would build. */
+    private SmallMap<String, Integer>[] expected() {
+        @SuppressWarnings("unchecked")
+        SmallMap<String, Integer>[] maps = (SmallMap<String, Integer>[]) new SmallMap<?, ?>[NUM_ENTITIES];
+        for (int r = 0; r < NUM_ROWS; r++) {
+            int e = this.entities[r];
+            if (maps[e] == null)
+                maps[e] = new SmallMap<>();
+            maps[e].put(this.keys[r], this.values[r]);
+        }
+        return maps;
+    }
+
+    @Test
+    public void unsorted() throws Exception {
+        SmallMap<String, Integer>[] expected = expected();
+        SmallMap<String, Integer>[] maps = SmallMapBulkLoader.load(
+                this.entities, this.keys, this.values, NUM_ROWS,
+                NUM_ENTITIES, pool, MIN_TASK_SIZE);
+        for (int e = 0; e < NUM_ENTITIES; e++) {
+            assertEquals("Map of entity " + e + " differs", expected[e],
+                    maps[e]);
+            if (maps[e] != null)
+                assertEquals("Map of entity " + e + " not presized",
+                        maps[e].size(), maps[e].capacity());
+        }
+    }
+
+    @Test
+    public void sorted() throws Exception {
+        Integer[] byEntity = new Integer[NUM_ROWS];
+        for (int r = 0; r < NUM_ROWS; r++)
+            byEntity[r] = r;
+        Arrays.sort(byEntity, (a, b) -> Integer.compare(this.entities[a],
+                this.entities[b])); // stable, so rows keep their order
+        int[] sortedEntities = new int[NUM_ROWS];
+        String[] sortedKeys = new String[NUM_ROWS];
+        Integer[] sortedValues = new Integer[NUM_ROWS];
+        for (int i = 0; i < NUM_ROWS; i++) {
+            sortedEntities[i] = this.entities[byEntity[i]];
+            sortedKeys[i] = this.keys[byEntity[i]];
+            sortedValues[i] = this.values[byEntity[i]];
+        }
+        SmallMap<String, Integer>[] expected = expected();
+        SmallMap<String, Integer>[] maps = SmallMapBulkLoader.load(
+                sortedEntities, sortedKeys, sortedValues, NUM_ROWS,
+                NUM_ENTITIES, pool, MIN_TASK_SIZE);
+        for (int e = 0; e < NUM_ENTITIES; e++)
+            assertEquals("Map of entity " + e + " differs", expected[e],
+                    maps[e]);
+    }
+
+    @Test
+    public void entityWithoutRows() throws Exception {
+        SmallMap<String, Integer>[] maps = SmallMapBulkLoader.load(
+                new int[] { 2, 0 }, new String[] { "a", "b" }, new Integer[] {
+                        1, 2 }, 2, 4);
+        assertNull("Map made for entity without rows", maps[1]);
+        assertNull("Map made for entity without rows", maps[3]);
+        assertEquals("Wrong map", Integer.valueOf(1), maps[2].get("a"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void entityOutOfRange() throws Exception {
+        this.entities[NUM_ROWS / 2] = NUM_ENTITIES;
+        SmallMapBulkLoader.load(this.entities, this.keys, this.values,
+                NUM_ROWS, NUM_ENTITIES, pool, MIN_TASK_SIZE);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void columnTooShort() throws Exception {
+        SmallMapBulkLoader.load(this.entities, this.keys, new Integer[1],
+                NUM_ROWS, NUM_ENTITIES);
+    }
+}
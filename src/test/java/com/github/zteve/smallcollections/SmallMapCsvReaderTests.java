@@ -0,0 +1,155 @@
+/**
+ * JUnit tests for {@link SmallMapCsvReader}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallMapCsvReader}.
+ *
+ * @author Zteve
+ */
+public class SmallMapCsvReaderTests {
+
+    private static final int NUM_ENTITIES = 500;
+    private static final int KEYS_PER_ENTITY = 5;
+
+    private final SmallMapCsvReader<Integer, String, Long> reader = new SmallMapCsvReader<>(
+            FieldDecoder.INTEGER, FieldDecoder.interned(100), FieldDecoder.LONG);
+
+    private final List<Integer> entities = new ArrayList<>();
+    private final List<SmallMap<String, Long>> maps = new ArrayList<>();
+    private Path file = null;
+
+    @After
+    public void deleteFile() throws IOException {
+        if (this.file != null)
+            Files.delete(this.file);
+    }
+
+    private void collect(Integer entity, SmallMap<String, Long> map) {
+        this.entities.add(entity);
+        this.maps.add(map);
+    }
+
+    private static String rows() {
+        StringBuilder sb = new StringBuilder();
+        for (int e = 0; e < NUM_ENTITIES; e++)
+            for (int k = 0; k < KEYS_PER_ENTITY; k++)
+                sb.append(e).append(",key").append(k).append(',')
+                        .append((long) e * 1000000007L + k)
+                        .append((e % 2 == 0) ? "\r\n" : "\n");
+        return sb.toString();
+    }
+
+    private void checkMaps() {
+        assertEquals("Wrong number of groups", NUM_ENTITIES,
+                this.entities.size());
+        for (int e = 0; e < NUM_ENTITIES; e++) {
+            assertEquals("Wrong entity", Integer.valueOf(e),
+                    this.entities.get(e));
+            SmallMap<String, Long> m = this.maps.get(e);
+            assertEquals("Wrong map size", KEYS_PER_ENTITY, m.size());
+            assertEquals("Map not trimmed", KEYS_PER_ENTITY, m.capacity());
+            for (int k = 0; k < KEYS_PER_ENTITY; k++)
+                assertEquals("Wrong value", Long.valueOf((long) e
+                        * 1000000007L + k), m.get("key" + k));
+        }
+        assertSame("Keys not interned", this.maps.get(0).keyAt(0), this.maps
+                .get(NUM_ENTITIES - 1).keyAt(0));
+    }
+
+    private Path writeFile(String text) throws IOException {
+        this.file = Files.createTempFile("rows", ".csv");
+        Files.write(this.file, text.getBytes(StandardCharsets.UTF_8));
+        return this.file;
+    }
+
+    @Test
+    public void channelWithSmallBuffer() throws Exception {
+        long rows = this.reader.read(Channels.newChannel(new ByteArrayInputStream(
+                rows().getBytes(StandardCharsets.UTF_8))), 64, this::collect);
+        assertEquals("Wrong number of rows", NUM_ENTITIES * KEYS_PER_ENTITY,
+                rows);
+        checkMaps();
+    }
+
+    @Test
+    public void mappedWithSmallWindow() throws Exception {
+        try (FileChannel channel = FileChannel.open(writeFile(rows()))) {
+            long rows = this.reader.readMapped(channel, 100, this::collect);
+            assertEquals("Wrong number of rows", NUM_ENTITIES
+                    * KEYS_PER_ENTITY, rows);
+        }
+        checkMaps();
+    }
+
+    @Test
+    public void mappedWhole() throws Exception {
+        try (FileChannel channel = FileChannel.open(writeFile(rows()))) {
+            this.reader.readMapped(channel, this::collect);
+        }
+        checkMaps();
+    }
+
+    @Test
+    public void lastLineUnterminatedAndRepeatedKeys() throws Exception {
+        SmallMapCsvReader<String, String, String> r = new SmallMapCsvReader<>(
+                '\t', FieldDecoder.STRING, FieldDecoder.STRING,
+                FieldDecoder.STRING);
+        Map<String, Map<String, String>> groups = new LinkedHashMap<>();
+        String text = "a\tk\tv1\n\na\tk\tv2\tmore\nb\tk\tv3";
+        r.read(Channels.newChannel(new ByteArrayInputStream(text
+                .getBytes(StandardCharsets.UTF_8))), groups::put);
+        assertEquals("Wrong groups", 2, groups.size());
+        assertEquals("Last value not kept, or rest of line lost",
+                "v2\tmore", groups.get("a").get("k"));
+        assertEquals("Unterminated line lost", "v3", groups.get("b").get("k"));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void tooFewFields() throws Exception {
+        this.reader.read(Channels.newChannel(new ByteArrayInputStream(
+                "1,key,2\n1,key\n".getBytes(StandardCharsets.UTF_8))),
+                this::collect);
+    }
+
+    @Test(expected = IOException.class)
+    public void lineLongerThanBuffer() throws Exception {
+        this.reader.read(Channels.newChannel(new ByteArrayInputStream(
+                "1,key,2\n1,aVeryLongKeyIndeed,2\n"
+                        .getBytes(StandardCharsets.UTF_8))), 16, this::collect);
+    }
+}
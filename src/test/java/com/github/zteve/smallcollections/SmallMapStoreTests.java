@@ -0,0 +1,191 @@
+/**
+ * JUnit tests for {@link SmallMapStore}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit tests for {@link SmallMapStore}.
+ *
+ * @author Zteve
+ */
+public class SmallMapStoreTests {
+
+    private static final int NUM_MAPS = 500;
+    private static final int SMALL_CHUNK_SHIFT = 6; // 64 byte chunks
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws Exception {
+        Path path = writeStore();
+        try (SmallMapStore<String, Integer> store = SmallMapStore.open(path,
+                ElementCodec.STRING, ElementCodec.INTEGER)) {
+            checkStore(store);
+        }
+    }
+
+    @Test
+    public void roundTripAcrossChunks() throws Exception {
+        Path path = writeStore();
+        try (SmallMapStore<String, Integer> store = SmallMapStore.open(path,
+                ElementCodec.STRING, ElementCodec.INTEGER, SMALL_CHUNK_SHIFT)) {
+            checkStore(store);
+        }
+    }
+
+    @Test
+    public void viewLookups() throws Exception {
+        Path path = writeStore();
+        try (SmallMapStore<String, Integer> store = SmallMapStore.open(path,
+                ElementCodec.STRING, ElementCodec.INTEGER, SMALL_CHUNK_SHIFT)) {
+            Map<String, Integer> m = store.get(8);
+            assertEquals("Wrong view size", 8, m.size());
+            assertTrue("Key missing", m.containsKey("key6"));
+            assertEquals("Wrong value", Integer.valueOf(-6), m.get("key6"));
+            assertFalse("Extra key", m.containsKey("key8"));
+            assertNull("Value for absent key", m.get("key8"));
+            assertNull("Value for wrong key type", m.get(6));
+            try {
+                m.put("key8", 7);
+                fail("View was modifiable");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void emptyStore() throws Exception {
+        Path path = this.folder.newFile().toPath();
+        new SmallMapStore.Writer<String, Integer>(path, ElementCodec.STRING,
+                ElementCodec.INTEGER).close();
+        try (SmallMapStore<String, Integer> store = SmallMapStore.open(path,
+                ElementCodec.STRING, ElementCodec.INTEGER)) {
+            assertEquals("Empty store not empty", 0, store.size());
+            try {
+                store.get(0);
+                fail("Index out of range allowed");
+            } catch (IndexOutOfBoundsException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notAStore() throws Exception {
+        Path path = this.folder.newFile().toPath();
+        Files.write(path, new byte[100]);
+        SmallMapStore.open(path, ElementCodec.STRING, ElementCodec.INTEGER);
+    }
+
+    @Test
+    public void corruptIndexPosition() throws Exception {
+        Path path = writeStore();
+        byte[] bytes = Files.readAllBytes(path);
+        for (long indexPosition : new long[] { -8, 0, 16, Long.MAX_VALUE }) {
+            ByteBuffer.wrap(bytes).putLong(16, indexPosition);
+            Files.write(path, bytes);
+            try {
+                SmallMapStore.open(path, ElementCodec.STRING,
+                        ElementCodec.INTEGER);
+                fail("Index position " + indexPosition + " allowed");
+            } catch (StreamCorruptedException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void mappedInputLines() throws Exception {
+        MappedInput in = mappedInput("one\r\ntwo\rthree\n\nfour");
+        for (String line : new String[] { "one", "two", "three", "", "four" })
+            assertEquals("Wrong line", line, in.readLine());
+        assertNull("Line read at end", in.readLine());
+    }
+
+    @Test
+    public void mappedInputSkip() throws Exception {
+        MappedInput in = mappedInput("abcdefghij");
+        assertEquals("Negative skip moved", 0, in.skipBytes(-3));
+        assertEquals("Wrong byte after negative skip", 'a', in.readByte());
+        assertEquals("Wrong skip", 5, in.skipBytes(5));
+        assertEquals("Wrong byte after skip", 'g', in.readByte());
+        assertEquals("Skip past end", 3, in.skipBytes(10));
+        assertEquals("Skip at end", 0, in.skipBytes(1));
+    }
+
+    /** An input over <code>s</code> in chunks of four bytes. */
+    private static MappedInput mappedInput(String s) throws IOException {
+        byte[] bytes = s.getBytes("US-ASCII");
+        int chunkShift = 2;
+        ByteBuffer[] chunks = new ByteBuffer[(bytes.length + 3) >>> chunkShift];
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i] = ByteBuffer.wrap(bytes, i << chunkShift,
+                    Math.min(4, bytes.length - (i << chunkShift))).slice();
+        return new MappedInput(chunks, chunkShift, bytes.length, 0);
+    }
+
+    private Path writeStore() throws IOException {
+        Path path = this.folder.newFile().toPath();
+        try (SmallMapStore.Writer<String, Integer> writer = new SmallMapStore.Writer<>(
+                path, ElementCodec.STRING, ElementCodec.INTEGER)) {
+            for (int i = 0; i < NUM_MAPS; i++) {
+                assertEquals("Wrong index from add", i,
+                        writer.add(expected(i)));
+            }
+        }
+        return path;
+    }
+
+    private static void checkStore(SmallMapStore<String, Integer> store) {
+        assertEquals("Wrong store size", NUM_MAPS, store.size());
+        for (int i = 0; i < NUM_MAPS; i++) {
+            assertEquals("Map corrupted in store", expected(i), store.get(i));
+            assertEquals("Map corrupted in store", store.get(i), expected(i));
+        }
+    }
+
+    private static Map<String, Integer> expected(int i) {
+        Map<String, Integer> m = new HashMap<>();
+        for (int j = 0; j < i % 10; j++) {
+            m.put("key" + j, -j);
+        }
+        if (i % 7 == 0)
+            m.put("long key " + new String(new char[100]).replace('\0', 'x'),
+                    Integer.MAX_VALUE);
+        return m;
+    }
+}
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertArrayEquals;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -182,4 +183,91 @@ public class SmallMapTests {
         }
         return copyMap;
     }
+
+    @Test
+    public void getAll() throws Exception {
+        SmallMap<String, String> m = new SmallMap<>();
+        m.put(TEST_KEY, TEST_VALUE);
+        m.put(TEST_KEY_2, TEST_VALUE_2);
+        m.put(null, TEST_VALUE_3);
+        String[] keys = { new String(TEST_KEY_2), NOT_KEY, null, TEST_KEY,
+                TEST_KEY_2 };
+        String[] out = new String[keys.length];
+        assertEquals("Wrong number found", 4, m.getAll(keys, out));
+        assertArrayEquals("Wrong values", new String[] { TEST_VALUE_2, null,
+                TEST_VALUE_3, TEST_VALUE, TEST_VALUE_2 }, out);
+    }
+
+    @Test
+    public void getAllMany() throws Exception {
+        SmallMap<String, String> m = new SmallMap<>();
+        String[] keys = new String[POPULATION];
+        for (int i = 0; i < POPULATION; i++) {
+            keys[i] = "key" + i;
+            if (i % 3 != 0)
+                m.put(keys[i], "value" + i);
+        }
+        String[] out = new String[POPULATION];
+        int found = m.getAll(keys, out);
+        for (int i = 0; i < POPULATION; i++)
+            assertEquals("Wrong value for " + keys[i], m.get(keys[i]), out[i]);
+        assertEquals("Wrong number found", m.size(), found);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getAllShortOutput() throws Exception {
+        new SmallMap<String, String>().getAll(new String[2], new String[1]);
+    }
+
+    @Test
+    public void putAllArrays() throws Exception {
+        SmallMap<String, String> m = new SmallMap<>();
+        m.put(TEST_KEY, TEST_VALUE);
+        String[] keys = { TEST_KEY_2, new String(TEST_KEY), TEST_KEY_2, null,
+                "unused" };
+        String[] values = { TEST_VALUE, TEST_VALUE_2, TEST_VALUE_3,
+                TEST_VALUE, TEST_VALUE };
+        m.putAll(keys, values, 4);
+        Map<String, String> expected = new HashMap<>();
+        expected.put(TEST_KEY, TEST_VALUE);
+        for (int i = 0; i < 4; i++)
+            expected.put(keys[i], values[i]);
+        assertEquals("putAll not as successive puts", expected, m);
+        assertEquals("Wrong size", 3, m.size());
+    }
+
+    @Test
+    public void putAllArraysEmpty() throws Exception {
+        SmallMap<String, String> m = new SmallMap<>();
+        String[] keys = new String[POPULATION];
+        String[] values = new String[POPULATION];
+        for (int i = 0; i < POPULATION; i++) {
+            keys[i] = "key" + (i % 40);
+            values[i] = "value" + i;
+        }
+        m.putAll(keys, values, POPULATION);
+        assertEquals("Wrong size", 40, m.size());
+        assertEquals("Last value not kept", "value99", m.get("key19"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void putAllArraysTooShort() throws Exception {
+        new SmallMap<String, String>().putAll(new String[2], new String[1], 2);
+    }
+
+    @Test
+    public void prepared() throws Exception {
+        SmallMap<String, String> m = new SmallMap<>();
+        m.put(TEST_KEY, TEST_VALUE);
+        m.put(null, TEST_VALUE_2);
+        PreparedKey<String> key = PreparedKey.of(new String(TEST_KEY));
+        assertEquals("Prepared key not found", TEST_VALUE, m.getPrepared(key));
+        assertTrue("Prepared key not contained", m.containsPrepared(key));
+        assertEquals("Prepared null key not found", TEST_VALUE_2,
+                m.getPrepared(PreparedKey.of(null)));
+        assertFalse("Prepared non-key found",
+                m.containsPrepared(PreparedKey.of(NOT_KEY)));
+        assertNull("Prepared non-key has value",
+                m.getPrepared(PreparedKey.of(NOT_KEY)));
+    }
 }
@@ -0,0 +1,187 @@
+/**
+ * JUnit tests for {@link SmallMultimap}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallMultimap}.
+ *
+ * @author Zteve
+ */
+public class SmallMultimapTests {
+
+    private static final String TEST_KEY = "TestKey";
+    private static final String TEST_KEY_2 = "TestKey2";
+    private static final String TEST_VALUE = "TestValue";
+    private static final String TEST_VALUE_2 = "SecondTestValue";
+
+    private final SmallMultimap<String, String> mm = new SmallMultimap<>();
+
+    @Test
+    public void empty() throws Exception {
+        assertTrue("SmallMultimap not empty", this.mm.isEmpty());
+        assertTrue("Values of absent key not empty", this.mm.get(TEST_KEY)
+                .isEmpty());
+        assertFalse("Key found in empty SmallMultimap",
+                this.mm.containsKey(TEST_KEY));
+    }
+
+    @Test
+    public void distinctValues() throws Exception {
+        assertTrue("First put failed", this.mm.put(TEST_KEY, TEST_VALUE));
+        assertFalse("Duplicate put succeeded",
+                this.mm.put(TEST_KEY, new String(TEST_VALUE)));
+        assertTrue("Second value not put", this.mm.put(TEST_KEY, TEST_VALUE_2));
+        assertTrue("Other key not put", this.mm.put(TEST_KEY_2, TEST_VALUE));
+        assertEquals("Wrong size", 3, this.mm.size());
+        assertEquals("Wrong key count", 2, this.mm.keyCount());
+        assertTrue("Entry missing", this.mm.containsEntry(TEST_KEY_2,
+                TEST_VALUE));
+        assertFalse("Entry invented", this.mm.containsEntry(TEST_KEY_2,
+                TEST_VALUE_2));
+    }
+
+    @Test
+    public void lastValueRemovesKey() throws Exception {
+        this.mm.put(TEST_KEY, TEST_VALUE);
+        this.mm.put(TEST_KEY_2, TEST_VALUE);
+        assertTrue("Entry not removed", this.mm.remove(TEST_KEY, TEST_VALUE));
+        assertFalse("Empty key kept", this.mm.containsKey(TEST_KEY));
+        assertEquals("Other key disturbed", 1, this.mm.get(TEST_KEY_2).size());
+        assertEquals("Wrong number removed", 1, this.mm.removeAll(TEST_KEY_2));
+        assertTrue("Not empty", this.mm.isEmpty());
+    }
+
+    @Test
+    public void views() throws Exception {
+        Set<String> values = this.mm.get(TEST_KEY);
+        assertTrue("Add through view failed", values.add(TEST_VALUE));
+        values.add(TEST_VALUE_2);
+        this.mm.put(TEST_KEY_2, TEST_VALUE);
+        assertEquals("View not live", 2, values.size());
+        Iterator<String> it = values.iterator();
+        it.next();
+        it.remove();
+        assertEquals("Iterator removal failed", 1, this.mm.get(TEST_KEY)
+                .size());
+        this.mm.keySet().remove(TEST_KEY);
+        assertTrue("View of removed key not empty", values.isEmpty());
+        assertEquals("Key set wrong", 1, this.mm.keySet().size());
+    }
+
+    @Test
+    public void keySetIteratorRemoval() throws Exception {
+        this.mm.put(TEST_KEY, TEST_VALUE);
+        this.mm.put(TEST_KEY_2, TEST_VALUE);
+        Iterator<String> it = this.mm.keySet().iterator();
+        try {
+            it.remove();
+            fail("Removal before next allowed");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals("Wrong first key", TEST_KEY, it.next());
+        it.remove();
+        try {
+            it.remove();
+            fail("Second removal allowed");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals("Wrong next key", TEST_KEY_2, it.next());
+        assertFalse("Removed key present", this.mm.containsKey(TEST_KEY));
+        assertTrue("Other key removed", this.mm.containsKey(TEST_KEY_2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void valueIteratorRemovedTwice() throws Exception {
+        this.mm.put(TEST_KEY, TEST_VALUE);
+        this.mm.put(TEST_KEY, TEST_VALUE_2);
+        Iterator<String> it = this.mm.get(TEST_KEY).iterator();
+        it.next();
+        it.next();
+        it.remove();
+        it.remove();
+    }
+
+    @Test
+    public void equality() throws Exception {
+        SmallMultimap<String, String> other = new SmallMultimap<>();
+        this.mm.put(TEST_KEY, TEST_VALUE);
+        this.mm.put(TEST_KEY, TEST_VALUE_2);
+        other.put(TEST_KEY, TEST_VALUE_2);
+        other.put(TEST_KEY, TEST_VALUE);
+        assertEquals("Equal multimaps differ", this.mm, other);
+        assertEquals("Equal multimaps hash differently", this.mm.hashCode(),
+                other.hashCode());
+        SmallListMultimap<String, String> list = new SmallListMultimap<>();
+        list.put(TEST_KEY, TEST_VALUE);
+        list.put(TEST_KEY, TEST_VALUE_2);
+        assertFalse("Set and list multimaps equal", this.mm.equals(list));
+    }
+
+    @Test
+    public void randomAgainstMapOfSets() throws Exception {
+        Random random = new Random(3);
+        Map<Integer, Set<Integer>> expected = new HashMap<>();
+        SmallMultimap<Integer, Integer> m = new SmallMultimap<>();
+        for (int i = 0; i < 5000; i++) {
+            Integer key = random.nextInt(12);
+            Integer value = random.nextInt(10);
+            int choice = random.nextInt(10);
+            if (choice < 6) {
+                Set<Integer> s = expected.get(key);
+                if (s == null)
+                    expected.put(key, s = new LinkedHashSet<>());
+                assertEquals("put result differs", s.add(value),
+                        m.put(key, value));
+            } else if (choice < 9) {
+                Set<Integer> s = expected.get(key);
+                boolean removed = s != null && s.remove(value);
+                if (s != null && s.isEmpty())
+                    expected.remove(key);
+                assertEquals("remove result differs", removed,
+                        m.remove(key, value));
+            } else {
+                Set<Integer> s = expected.remove(key);
+                assertEquals("removeAll result differs", (s == null) ? 0 : s
+                        .size(), m.removeAll(key));
+            }
+            assertEquals("Key count differs", expected.size(), m.keyCount());
+        }
+        int size = 0;
+        for (Map.Entry<Integer, Set<Integer>> e : expected.entrySet()) {
+            assertEquals("Values differ", e.getValue(), m.get(e.getKey()));
+            size += e.getValue().size();
+        }
+        assertEquals("Size differs", size, m.size());
+    }
+}
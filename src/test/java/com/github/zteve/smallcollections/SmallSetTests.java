@@ -131,4 +131,41 @@ public class SmallSetTests {
         return copySet;
     }
 
+    @Test
+    public void addAllArray() throws Exception {
+        SmallSet<String> s = new SmallSet<>();
+        s.add(TEST_VALUE);
+        String[] values = { new String(TEST_VALUE), TEST_VALUE_2, null,
+                TEST_VALUE_2, NOT_VALUE };
+        assertTrue("Set not changed", s.addAll(values, 4));
+        assertEquals("Wrong size", 3, s.size());
+        assertFalse("Element beyond n added", s.contains(NOT_VALUE));
+        assertFalse("Set changed by duplicates", s.addAll(values, 4));
+        assertEquals("Wrong size after duplicates", 3, s.size());
+    }
+
+    @Test
+    public void containsAllArray() throws Exception {
+        SmallSet<String> s = new SmallSet<>();
+        s.add(TEST_VALUE);
+        s.add(null);
+        assertTrue("Elements not all found", s.containsAll(new Object[] {
+                null, new String(TEST_VALUE), TEST_VALUE }));
+        assertFalse("Missing element found", s.containsAll(new Object[] {
+                TEST_VALUE, NOT_VALUE }));
+        assertTrue("No elements not all found",
+                new SmallSet<String>().containsAll(new Object[0]));
+    }
+
+    @Test
+    public void containsPrepared() throws Exception {
+        SmallSet<String> s = new SmallSet<>();
+        s.add(TEST_VALUE);
+        assertTrue("Prepared element not found",
+                s.containsPrepared(PreparedKey.of(new String(TEST_VALUE))));
+        assertFalse("Prepared non-element found",
+                s.containsPrepared(PreparedKey.of(NOT_VALUE)));
+        assertFalse("Prepared null found",
+                s.containsPrepared(PreparedKey.of(null)));
+    }
 }
@@ -0,0 +1,145 @@
+/**
+ * JUnit tests for {@link SmallSets}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallSets}.
+ *
+ * @author Zteve
+ */
+public class SmallSetsTests {
+
+    private static final int[] SIZES = { 0, 1, 3, 8, 31, 40, 200 };
+
+    private static SmallSet<Integer> randomSet(Random r, int n, int range) {
+        SmallSet<Integer> s = new SmallSet<>();
+        while (s.size() < n)
+            s.add(r.nextInt(range));
+        return s;
+    }
+
+    @Test
+    public void matchHashSets() throws Exception {
+        Random r = new Random(47);
+        for (int na : SIZES) {
+            for (int nb : SIZES) {
+                int range = 2 * Math.max(1, Math.max(na, nb));
+                SmallSet<Integer> a = randomSet(r, na, range);
+                SmallSet<Integer> b = randomSet(r, nb, range);
+                String sizes = " of sizes " + na + " and " + nb;
+
+                Set<Integer> expected = new HashSet<>(a);
+                expected.addAll(b);
+                check("Wrong union" + sizes, expected, SmallSets.union(a, b));
+                expected = new HashSet<>(a);
+                expected.retainAll(b);
+                check("Wrong intersection" + sizes, expected,
+                        SmallSets.intersection(a, b));
+                assertEquals("Wrong intersection size" + sizes,
+                        expected.size(), SmallSets.intersectionSize(a, b));
+                assertEquals("Wrong intersects" + sizes, !expected.isEmpty(),
+                        SmallSets.intersects(a, b));
+                expected = new HashSet<>(a);
+                expected.removeAll(b);
+                check("Wrong difference" + sizes, expected,
+                        SmallSets.difference(a, b));
+                Set<Integer> onlyB = new HashSet<>(b);
+                onlyB.removeAll(a);
+                expected.addAll(onlyB);
+                check("Wrong symmetric difference" + sizes, expected,
+                        SmallSets.symmetricDifference(a, b));
+            }
+        }
+    }
+
+    private static void check(String message, Set<Integer> expected,
+            SmallSet<Integer> actual) {
+        assertEquals(message, expected, actual);
+        assertEquals(message + " not exactly sized", actual.size(),
+                actual.capacity());
+    }
+
+    @Test
+    public void keepOrder() throws Exception {
+        SmallSet<String> a = new SmallSet<>();
+        SmallSet<String> b = new SmallSet<>();
+        for (String e : new String[] { "c", "a", "d" })
+            a.add(e);
+        for (String e : new String[] { "e", "d", "b" })
+            b.add(e);
+        assertEquals("Wrong union order", "[c, a, d, e, b]",
+                SmallSets.union(a, b).toString());
+        assertEquals("Wrong symmetric difference order", "[c, a, e, b]",
+                SmallSets.symmetricDifference(a, b).toString());
+    }
+
+    @Test
+    public void nullElements() throws Exception {
+        SmallSet<String> a = new SmallSet<>();
+        SmallSet<String> b = new SmallSet<>();
+        a.add(null);
+        a.add("a");
+        b.add(null);
+        assertEquals("Null not in intersection", 1,
+                SmallSets.intersectionSize(a, b));
+        assertEquals("Null in difference", "[a]",
+                SmallSets.difference(a, b).toString());
+    }
+
+    @Test
+    public void identitySets() throws Exception {
+        String value = "TestValue";
+        String equalValue = new String(value);
+        SmallIdentitySet<String> a = new SmallIdentitySet<>();
+        SmallIdentitySet<String> b = new SmallIdentitySet<>();
+        a.add(value);
+        b.add(equalValue);
+        assertFalse("Equal but distinct elements intersect",
+                SmallSets.intersects(a, b));
+        SmallSet<String> union = SmallSets.union(a, b);
+        assertTrue("Union not an identity set",
+                union instanceof SmallIdentitySet);
+        assertEquals("Equal elements not kept apart", 2, union.size());
+        b.add(value);
+        assertEquals("Identical element not in intersection", 1,
+                SmallSets.intersection(a, b).size());
+    }
+
+    @Test
+    public void resultsAreModifiable() throws Exception {
+        SmallSet<Integer> a = new SmallSet<>();
+        a.add(1);
+        SmallSet<Integer> u = SmallSets.union(a, new SmallSet<Integer>());
+        assertTrue("Element not added", u.add(2));
+        assertEquals("Argument changed", 1, a.size());
+        SmallSet<Integer> empty = SmallSets.intersection(a,
+                new SmallSet<Integer>());
+        assertEquals("Empty result has an array", 0, empty.capacity());
+        assertTrue("Element not added to empty result", empty.add(3));
+    }
+}
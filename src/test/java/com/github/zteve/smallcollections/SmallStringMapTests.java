@@ -0,0 +1,138 @@
+/**
+ * JUnit tests for {@link SmallStringMap}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallStringMap}.
+ *
+ * @author Zteve
+ */
+public class SmallStringMapTests {
+
+    private static final int POPULATION = 50;
+    private static final String[] ODD_KEYS = { "", "a", "\u00e9t\u00e9",
+            "\u20ac100", "\ud83d\ude00", "\ud800", "a\u0000b" };
+
+    private final Map<String, Integer> ssm = new SmallStringMap<>();
+
+    @Test
+    public void empty() throws Exception {
+        assertEquals("SmallStringMap not empty", 0, this.ssm.size());
+        assertNull("Empty SmallStringMap has value", this.ssm.get("key"));
+        assertFalse("Empty SmallStringMap has key", this.ssm.containsKey(""));
+    }
+
+    @Test
+    public void insertReplaceRemove() throws Exception {
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < POPULATION; i++) {
+            assertNull("Value returned not null", this.ssm.put("key" + i, i));
+            expected.put("key" + i, i);
+        }
+        assertEquals("Value not replaced", Integer.valueOf(3),
+                this.ssm.put("key3", -3));
+        expected.put("key3", -3);
+        assertEquals("Wrong contents", expected, this.ssm);
+        assertEquals("Wrong contents", this.ssm, expected);
+        assertEquals("Wrong hash code", expected.hashCode(),
+                this.ssm.hashCode());
+        for (int i = 0; i < POPULATION; i += 3) {
+            assertEquals("Wrong value removed", expected.remove("key" + i),
+                    this.ssm.remove("key" + i));
+        }
+        assertNull("Removed absent key", this.ssm.remove("key0"));
+        assertEquals("Wrong contents after removal", expected, this.ssm);
+        for (int i = 0; i < POPULATION; i++) {
+            assertEquals("Wrong value for key", expected.get("key" + i),
+                    this.ssm.get("key" + i));
+        }
+    }
+
+    @Test
+    public void prefixesAreDistinct() throws Exception {
+        this.ssm.put("key1", 1);
+        this.ssm.put("key10", 10);
+        assertFalse("Prefix matched", this.ssm.containsKey("key"));
+        assertFalse("Extension matched", this.ssm.containsKey("key100"));
+        assertEquals("Wrong value", Integer.valueOf(10), this.ssm.get("key10"));
+        assertEquals("Wrong value", Integer.valueOf(1), this.ssm.get("key1"));
+    }
+
+    @Test
+    public void nonAsciiKeys() throws Exception {
+        for (int i = 0; i < ODD_KEYS.length; i++) {
+            this.ssm.put(ODD_KEYS[i], i);
+        }
+        for (int i = 0; i < ODD_KEYS.length; i++) {
+            assertEquals("Wrong value for odd key", Integer.valueOf(i),
+                    this.ssm.get(ODD_KEYS[i]));
+        }
+        Map<String, Integer> copy = new HashMap<>(this.ssm);
+        assertEquals("Odd keys not decoded", ODD_KEYS.length, copy.size());
+        for (int i = 0; i < ODD_KEYS.length; i++) {
+            assertEquals("Odd key not decoded", Integer.valueOf(i),
+                    copy.get(ODD_KEYS[i]));
+        }
+        assertFalse("Different encoding matched",
+                this.ssm.containsKey("\u00e9"));
+    }
+
+    @Test
+    public void nonStringKeys() throws Exception {
+        this.ssm.put("1", 1);
+        assertFalse("Non-string key found", this.ssm.containsKey(1));
+        assertNull("Non-string key found", this.ssm.get(null));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullKey() throws Exception {
+        this.ssm.put(null, 1);
+    }
+
+    @Test
+    public void iteratorRemove() throws Exception {
+        for (int i = 0; i < POPULATION; i++) {
+            this.ssm.put("key" + i, i);
+        }
+        Iterator<Entry<String, Integer>> it = this.ssm.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue() % 2 == 0)
+                it.remove();
+        }
+        assertEquals("Wrong size after iterator remove", POPULATION / 2,
+                this.ssm.size());
+        for (int i = 0; i < POPULATION; i++) {
+            assertEquals("Wrong key removed", i % 2 != 0,
+                    this.ssm.containsKey("key" + i));
+        }
+        this.ssm.keySet().clear();
+        assertTrue("Not empty after clear", this.ssm.isEmpty());
+    }
+}
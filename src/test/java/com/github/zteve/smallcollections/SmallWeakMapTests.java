@@ -0,0 +1,133 @@
+/**
+ * JUnit tests for {@link SmallWeakMap}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SmallWeakMap}.
+ *
+ * @author Zteve
+ */
+public class SmallWeakMapTests {
+
+    private static final String TEST_KEY = "TestKey";
+    private static final String TEST_KEY_2 = "TestKey2";
+    private static final String TEST_VALUE = "TestValue";
+    private static final String TEST_VALUE_2 = "SecondTestValue";
+
+    private final Map<Object, String> swm = new SmallWeakMap<>();
+
+    @Test
+    public void empty() throws Exception {
+        assertEquals("SmallWeakMap not empty", 0, this.swm.size());
+        assertTrue("SmallWeakMap not empty", this.swm.isEmpty());
+    }
+
+    @Test
+    public void insertReplaceRemove() throws Exception {
+        assertNull("Value returned not null", this.swm.put(TEST_KEY, TEST_VALUE));
+        assertNull("Value returned not null", this.swm.put(null, TEST_VALUE_2));
+        assertEquals("Not two inserted", 2, this.swm.size());
+        assertEquals("Value of equal key not found", TEST_VALUE,
+                this.swm.get(new String(TEST_KEY)));
+        assertEquals("Value of null key not found", TEST_VALUE_2,
+                this.swm.get(null));
+        assertFalse("Non-key found", this.swm.containsKey(TEST_KEY_2));
+        assertEquals("Value returned not old value", TEST_VALUE,
+                this.swm.put(TEST_KEY, TEST_VALUE_2));
+        assertEquals("Key value removed not original", TEST_VALUE_2,
+                this.swm.remove(TEST_KEY));
+        assertEquals("SmallWeakMap should have one element after removal", 1,
+                this.swm.size());
+    }
+
+    @Test
+    public void entrySet() throws Exception {
+        Map<Object, String> expected = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            expected.put("key" + i, "value" + i);
+        }
+        this.swm.putAll(expected);
+        assertEquals("SmallWeakMap doesn't record Entrys correctly", expected,
+                this.swm);
+    }
+
+    @Test
+    public void collectedKeysExpunged() throws Exception {
+        Object kept = new Object();
+        this.swm.put(kept, TEST_VALUE);
+        for (int i = 0; i < 100; i++) {
+            this.swm.put(new Object(), TEST_VALUE_2);
+        }
+        for (int i = 0; i < 20 && this.swm.size() > 1; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals("Collected keys not expunged", 1, this.swm.size());
+        assertEquals("Live key lost in expunge", TEST_VALUE,
+                this.swm.get(kept));
+    }
+
+    @Test
+    public void readsDoNotMoveMappings() throws Exception {
+        List<Object> garbage = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            garbage.add(new Object());
+            this.swm.put(garbage.get(i), TEST_VALUE_2);
+        }
+        Object first = new Object();
+        Object second = new Object();
+        this.swm.put(first, TEST_VALUE);
+        this.swm.put(second, TEST_VALUE);
+        Iterator<Map.Entry<Object, String>> it = this.swm.entrySet()
+                .iterator();
+        while (it.next().getKey() != first) {
+            // skip to the first kept key
+        }
+        garbage.clear();
+        for (int i = 0; i < 20 && this.swm.size() > 2; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals("Collected keys counted", 2, this.swm.size());
+        assertEquals("Live key not found", TEST_VALUE, this.swm.get(second));
+        assertTrue("Iteration ended early", it.hasNext());
+        assertTrue("Key skipped by iterator", it.next().getKey() == second);
+        it.remove();
+        assertFalse("Wrong key removed", this.swm.containsKey(second));
+        assertTrue("Wrong key removed", this.swm.containsKey(first));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void removeBeforeNext() throws Exception {
+        this.swm.put(TEST_KEY, TEST_VALUE);
+        this.swm.entrySet().iterator().remove();
+    }
+}
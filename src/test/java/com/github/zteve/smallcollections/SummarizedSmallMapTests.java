@@ -0,0 +1,129 @@
+/**
+ * JUnit tests for {@link SummarizedSmallMap}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SummarizedSmallMap}.
+ *
+ * @author Zteve
+ */
+public class SummarizedSmallMapTests {
+
+    private final SummarizedSmallMap<String, String> ssm = new SummarizedSmallMap<>();
+
+    @Test
+    public void hitsAndMisses() throws Exception {
+        assertNull("Value found in empty map", this.ssm.get("key0"));
+        for (int i = 0; i < 10; i++)
+            this.ssm.put("key" + i, "value" + i);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Key not found", "value" + i, this.ssm.get("key" + i));
+            assertFalse("Absent key found",
+                    this.ssm.containsKey("notAKey" + i));
+        }
+        assertEquals("Prepared key not found", "value3",
+                this.ssm.getPrepared(PreparedKey.of("key3")));
+        assertNull("Absent prepared key found",
+                this.ssm.getPrepared(PreparedKey.of("notAKey3")));
+    }
+
+    @Test
+    public void removalsRebuild() throws Exception {
+        for (int i = 0; i < 10; i++)
+            this.ssm.put("key" + i, "value" + i);
+        assertEquals("Wrong value removed", "value4", this.ssm.remove("key4"));
+        assertFalse("Removed key found", this.ssm.containsKey("key4"));
+        this.ssm.put("added", "value");
+        assertTrue("Key added after removal not found",
+                this.ssm.containsKey("added"));
+        assertTrue("Remaining key not found", this.ssm.containsKey("key9"));
+        this.ssm.clear();
+        assertFalse("Key found after clear", this.ssm.containsKey("key9"));
+        this.ssm.put("key9", "value");
+        assertTrue("Key added after clear not found",
+                this.ssm.containsKey("key9"));
+    }
+
+    @Test
+    public void nullKey() throws Exception {
+        assertFalse("Null key found", this.ssm.containsKey(null));
+        this.ssm.put(null, "value");
+        assertEquals("Null key not found", "value", this.ssm.get(null));
+    }
+
+    @Test
+    public void matchesHashMap() throws Exception {
+        Random r = new Random(48);
+        Map<Integer, Integer> expected = new HashMap<>();
+        SummarizedSmallMap<Integer, Integer> m = new SummarizedSmallMap<>();
+        for (int i = 0; i < 20000; i++) {
+            Integer k = r.nextInt(100);
+            switch (r.nextInt(4)) {
+            case 0:
+                assertEquals("Wrong removal", expected.remove(k), m.remove(k));
+                break;
+            case 1:
+                assertEquals("Wrong put", expected.put(k, i), m.put(k, i));
+                break;
+            default:
+                assertEquals("Wrong get", expected.get(k), m.get(k));
+            }
+        }
+        assertEquals("Maps differ", expected, m);
+    }
+
+    @Test
+    public void copyAndSerialise() throws Exception {
+        Map<String, String> source = new HashMap<>();
+        for (int i = 0; i < 5; i++)
+            source.put("key" + i, "value" + i);
+        SummarizedSmallMap<String, String> copy = new SummarizedSmallMap<>(source);
+        assertTrue("Copied key not found", copy.containsKey("key2"));
+        assertFalse("Absent key found in copy", copy.containsKey("key5"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(copy);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> read = (Map<String, String>) in.readObject();
+            assertTrue("Not read as a summarized map",
+                    read instanceof SummarizedSmallMap);
+            assertEquals("Read map differs", source, read);
+            assertEquals("Key not found in read map", "value4",
+                    read.get("key4"));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * JUnit tests for {@link SummarizedSmallSet}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SummarizedSmallSet}.
+ *
+ * @author Zteve
+ */
+public class SummarizedSmallSetTests {
+
+    private final SummarizedSmallSet<String> sss = new SummarizedSmallSet<>();
+
+    @Test
+    public void hitsAndMisses() throws Exception {
+        assertFalse("Value found in empty set", this.sss.contains("value0"));
+        this.sss.addAll(new String[] { "value0", "value1", "value2" }, 3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue("Value not found", this.sss.contains("value" + i));
+            assertFalse("Absent value found", this.sss.contains("other" + i));
+        }
+        assertFalse("Value added twice", this.sss.add("value1"));
+        assertTrue("Prepared value not found",
+                this.sss.containsPrepared(PreparedKey.of("value2")));
+        assertFalse("Absent prepared value found",
+                this.sss.containsPrepared(PreparedKey.of("other2")));
+    }
+
+    @Test
+    public void iteratorRemovalRebuilds() throws Exception {
+        for (int i = 0; i < 10; i++)
+            this.sss.add("value" + i);
+        for (Iterator<String> it = this.sss.iterator(); it.hasNext();)
+            if (it.next().endsWith("3"))
+                it.remove();
+        assertFalse("Removed value found", this.sss.contains("value3"));
+        assertTrue("Remaining value not found", this.sss.contains("value8"));
+        this.sss.add("value3");
+        assertTrue("Value added after removal not found",
+                this.sss.contains("value3"));
+    }
+
+    @Test
+    public void matchesHashSet() throws Exception {
+        Random r = new Random(48);
+        Set<Integer> expected = new HashSet<>();
+        SummarizedSmallSet<Integer> s = new SummarizedSmallSet<>();
+        for (int i = 0; i < 20000; i++) {
+            Integer e = r.nextInt(100);
+            switch (r.nextInt(4)) {
+            case 0:
+                assertEquals("Wrong removal", expected.remove(e), s.remove(e));
+                break;
+            case 1:
+                assertEquals("Wrong add", expected.add(e), s.add(e));
+                break;
+            default:
+                assertEquals("Wrong contains", expected.contains(e),
+                        s.contains(e));
+            }
+        }
+        assertEquals("Sets differ", expected, s);
+        assertEquals("Copy differs", expected, new SummarizedSmallSet<>(s));
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * JUnit-driven scaling tests for {@link SmallMapBulkLoader}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * JUnit-driven scaling tests for {@link SmallMapBulkLoader}.
+ * <p>
+ * Each row of the table <code>table</code> is a number of threads, from one up
+ * to (at least) the number of processors, and each unit test generates a
+ * (numbered) column: the milliseconds taken to build a map for each of
+ * {@value #NUM_ENTITIES} entities from {@value #ROWS_PER_ENTITY} rows each,
+ * sorted or unsorted by entity, or by successive <code>put</code>s on one
+ * thread for comparison. The unit test class outputs the table in csv format
+ * into <code>build/output/BulkLoadTable.csv</code>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class TableBulkLoaderTests {
+
+    private static final int NUM_ENTITIES = 250000;
+    private static final int ROWS_PER_ENTITY = 4;
+    private static final int NUM_ROWS = NUM_ENTITIES * ROWS_PER_ENTITY;
+    private static final int NUM_RUNS = 3;
+    private static final String TAB_FILE_PATH = "build/output/BulkLoadTable.csv";
+    private static final File tabOut = new File(TAB_FILE_PATH);
+
+    private static final int[] THREADS;
+    static {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int n = 1;
+        while ((1 << (n - 1)) < Math.max(processors, 4))
+            n++;
+        THREADS = new int[n];
+        for (int i = 0; i < n; i++) {
+            THREADS[i] = 1 << i;
+        }
+    }
+
+    private static final int NUM_TESTS = 3;
+    private static final String[] tableHdrs = new String[NUM_TESTS + 1];
+    private static final long[][] table = new long[THREADS.length][NUM_TESTS + 1];
+    static {
+        tableHdrs[0] = "Threads";
+        for (int i = 0; i < THREADS.length; ++i) {
+            table[i][0] = THREADS[i]; // x-axis
+        }
+    }
+
+    private static final int[] sortedEntities = new int[NUM_ROWS];
+    private static final int[] unsortedEntities = new int[NUM_ROWS];
+    private static final String[] keys = new String[NUM_ROWS];
+    private static final Integer[] values = new Integer[NUM_ROWS];
+    static {
+        Random random = new Random(1);
+        for (int r = 0; r < NUM_ROWS; r++) {
+            sortedEntities[r] = r / ROWS_PER_ENTITY;
+            keys[r] = "key" + r % ROWS_PER_ENTITY;
+            values[r] = r & 0x7F;
+        }
+        System.arraycopy(sortedEntities, 0, unsortedEntities, 0, NUM_ROWS);
+        for (int r = NUM_ROWS - 1; r > 0; r--) {
+            int s = random.nextInt(r + 1);
+            int e = unsortedEntities[r];
+            unsortedEntities[r] = unsortedEntities[s];
+            unsortedEntities[s] = e;
+        }
+    }
+
+    private static Object sink = null;
+
+    @BeforeClass
+    public static void beforeTimeTests() {
+        tabOut.delete();
+    }
+
+    @AfterClass
+    public static void outputTableFile() throws Exception {
+        sink = null;
+        FileOutputStream fos = new FileOutputStream(tabOut, true /* append */);
+
+        {
+            StringBuilder sb = new StringBuilder().append('\"')
+                    .append(tableHdrs[0]).append('\"');
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append('\"').append(tableHdrs[j]).append('\"');
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+
+        for (long[] aTable : table) {
+            StringBuilder sb = new StringBuilder().append(aTable[0]);
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append(aTable[j]);
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+        fos.close();
+    }
+
+    @Test
+    public void generateTimeColumnSorted() throws Exception {
+        generateTimeColumn(sortedEntities, 1, "SortedMillis");
+    }
+
+    @Test
+    public void generateTimeColumnUnsorted() throws Exception {
+        generateTimeColumn(unsortedEntities, 2, "UnsortedMillis");
+    }
+
+    @Test
+    public void generateTimeColumnSequentialPuts() throws Exception {
+        tableHdrs[3] = "SequentialPutMillis";
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run <= NUM_RUNS; run++) {
+            sink = null;
+            long start = System.nanoTime();
+            SmallMap<?, ?>[] maps = new SmallMap<?, ?>[NUM_ENTITIES];
+            for (int r = 0; r < NUM_ROWS; r++) {
+                int e = unsortedEntities[r];
+                @SuppressWarnings("unchecked")
+                SmallMap<String, Integer> m = (SmallMap<String, Integer>) maps[e];
+                if (m == null)
+                    maps[e] = m = new SmallMap<>();
+                m.put(keys[r], values[r]);
+            }
+            sink = maps;
+            if (run > 0) // the first run warms up
+                best = Math.min(best, System.nanoTime() - start);
+        }
+        for (int i = 0; i < THREADS.length; i++) {
+            table[i][3] = best / 1000000;
+        }
+    }
+
+    private static void generateTimeColumn(int[] entities, int testNum,
+            String hdr) throws Exception {
+        tableHdrs[testNum] = hdr;
+        for (int i = 0; i < THREADS.length; i++) {
+            ForkJoinPool pool = new ForkJoinPool(THREADS[i]);
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run <= NUM_RUNS; run++) {
+                sink = null;
+                long start = System.nanoTime();
+                sink = SmallMapBulkLoader.load(entities, keys, values,
+                        NUM_ROWS, NUM_ENTITIES, pool);
+                if (run > 0) // the first run warms up
+                    best = Math.min(best, System.nanoTime() - start);
+            }
+            pool.shutdown();
+            table[i][testNum] = best / 1000000;
+        }
+    }
+}
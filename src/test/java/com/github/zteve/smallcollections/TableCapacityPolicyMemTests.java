@@ -0,0 +1,181 @@
+/**
+ * JUnit-driven memory and time tests for {@link CapacityPolicy}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * JUnit-driven memory and time tests for {@link CapacityPolicy}.
+ * <p>
+ * Each row of the table <code>table</code> is a policy, and each unit test
+ * generates a (numbered) column: the bytes used per {@link SmallMap}, or the
+ * nanoseconds taken to populate one, for the map sizes used in
+ * {@link TableSmallMapMemTests}. The unit test class outputs the table in csv
+ * format into <code>build/output/MapPolicyTable.csv</code>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class TableCapacityPolicyMemTests {
+
+    private static final int NUM_MAPS = 100000;
+    private static final String TAB_FILE_PATH = "build/output/MapPolicyTable.csv";
+    private static final File tabOut = new File(TAB_FILE_PATH);
+
+    private static final CapacityPolicy[] policies = {
+            CapacityPolicy.EXACT_FIT, CapacityPolicy.PLUS_ONE,
+            CapacityPolicy.PLUS_TWO, CapacityPolicy.ONE_AND_A_HALF,
+            CapacityPolicy.EXACT_FIT.shrinkWhenUnused(0) };
+
+    private static final int NUM_TESTS = 7;
+    private static final String[] tableHdrs = new String[NUM_TESTS + 1];
+    private static final String[] rowHdrs = new String[policies.length];
+    private static final long[][] table = new long[policies.length][NUM_TESTS + 1];
+    static {
+        tableHdrs[0] = "Policy";
+        for (int i = 0; i < policies.length; ++i) {
+            rowHdrs[i] = policies[i].toString();
+        }
+    }
+
+    private final static MemSnapshot before = MemSnapshot.take();
+    private final static MemSnapshot after = MemSnapshot.take();
+
+    private static Map<?, ?>[] liveMaps = null;
+
+    @BeforeClass
+    public static void beforeMemTests() {
+        // delete the csv file and call the garbage collector (twice)
+        tabOut.delete();
+        before.retake();
+        after.retake();
+    }
+
+    @AfterClass
+    public static void outputTableFile() throws Exception {
+        FileOutputStream fos = new FileOutputStream(tabOut, true /* append */);
+
+        {
+            StringBuilder sb = new StringBuilder().append('\"')
+                    .append(tableHdrs[0]).append('\"');
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append('\"').append(tableHdrs[j]).append('\"');
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+
+        for (int i = 0; i < table.length; ++i) {
+            StringBuilder sb = new StringBuilder().append('\"')
+                    .append(rowHdrs[i]).append('\"');
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append(table[i][j]);
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+        fos.close();
+    }
+
+    @Test
+    public void generateMemColumnEmptySmallMaps() throws Exception {
+        generateMemColumn(0, 0, 1, "BytesEmpty");
+    }
+
+    @Test
+    public void generateMemColumnSingletonSmallMaps() throws Exception {
+        generateMemColumn(1, 0, 2, "BytesOne");
+    }
+
+    @Test
+    public void generateMemColumnPairSmallMaps() throws Exception {
+        generateMemColumn(2, 0, 3, "BytesPair");
+    }
+
+    @Test
+    public void generateMemColumnPairRemoveOneSmallMaps() throws Exception {
+        generateMemColumn(2, 1, 4, "BytesPairRemoveOne");
+    }
+
+    @Test
+    public void generateTimeColumnSingletonSmallMaps() throws Exception {
+        generateTimeColumn(1, 5, "NanosOne");
+    }
+
+    @Test
+    public void generateTimeColumnPairSmallMaps() throws Exception {
+        generateTimeColumn(2, 6, "NanosPair");
+    }
+
+    @Test
+    public void generateTimeColumnEightSmallMaps() throws Exception {
+        generateTimeColumn(8, 7, "NanosEight");
+    }
+
+    private static void generateMemColumn(int mapSize, int numRemoved,
+            int testNum, String hdr) throws Exception {
+        tableHdrs[testNum] = hdr;
+        for (int i = 0; i < policies.length; i++) {
+            liveMaps = null; // free the previous row before measuring
+            Map<?, ?>[] arrOfMaps = new Map<?, ?>[NUM_MAPS];
+            before.retake();
+            fillArrayMaps(arrOfMaps, policies[i], mapSize, numRemoved);
+            liveMaps = arrOfMaps;
+            after.retake();
+            table[i][testNum] = (before.getFree() - after.getFree())
+                    / NUM_MAPS;
+        }
+    }
+
+    private static void generateTimeColumn(int mapSize, int testNum,
+            String hdr) throws Exception {
+        tableHdrs[testNum] = hdr;
+        for (int i = 0; i < policies.length; i++) {
+            Map<?, ?>[] arrOfMaps = new Map<?, ?>[NUM_MAPS];
+            fillArrayMaps(arrOfMaps, policies[i], mapSize, 0); // warm up
+            long start = System.nanoTime();
+            fillArrayMaps(arrOfMaps, policies[i], mapSize, 0);
+            table[i][testNum] = (System.nanoTime() - start) / NUM_MAPS;
+        }
+    }
+
+    private static void fillArrayMaps(Map<?, ?>[] arr, CapacityPolicy policy,
+            int size, int numRemoved) {
+        for (int i = 0; i < arr.length; ++i) {
+            Map<String, String> m = populate(policy.<String, String> newMap(),
+                    size);
+            for (int j = 0; j < numRemoved; j++) {
+                m.remove("key" + j);
+            }
+            arr[i] = m;
+        }
+    }
+
+    private static Map<String, String> populate(Map<String, String> m, int num) {
+        for (int i = 0; i < num; i++) {
+            String key = "key" + i;
+            String value = "value" + i;
+            m.put(key, value);
+        }
+        return m;
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * JUnit-driven memory tests for {@link SmallCollectionInterner}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * JUnit-driven memory tests for {@link SmallCollectionInterner}.
+ * <p>
+ * Each unit test generates a (numbered) column of the table <code>table</code>
+ * : the memory used by sets of tags drawn from a few distinct combinations,
+ * with and without interning. Column zero is the number of sets created in
+ * each test. The unit test class outputs the table in csv format into
+ * <code>build/output/InternedSetMemTable.csv</code>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class TableInternedSetMemTests {
+
+    private static final int MAX_NUM_SETS = 100000;
+    private static final int NUM_INTERVAL = 1000;
+    private static final int NUM_IN_TABLE = MAX_NUM_SETS / NUM_INTERVAL;
+    private static final int NUM_TAGS = 6;
+    private static final String TAB_FILE_PATH = "build/output/InternedSetMemTable.csv";
+    private static final File tabOut = new File(TAB_FILE_PATH);
+
+    private static final int NUM_TESTS = 3;
+    private static final String[] tableHdrs = new String[NUM_TESTS + 1];
+    private static final long[][] table = new long[NUM_IN_TABLE][NUM_TESTS + 1];
+    private static final String[] tags = new String[NUM_TAGS];
+    static {
+        tableHdrs[0] = "Number of sets";
+        for (int i = 0; i < NUM_IN_TABLE; ++i) {
+            table[i][0] = (long) i * NUM_INTERVAL; // x-axis
+        }
+        for (int i = 0; i < NUM_TAGS; ++i) {
+            tags[i] = "tag" + i;
+        }
+    }
+
+    private interface SetFactory {
+        Set<String> generate(Set<String> content);
+    }
+
+    private final static SetFactory smallSetFactory = SmallSet::new;
+
+    private final static SetFactory hashSetFactory = HashSet::new;
+
+    private final static MemSnapshot before = MemSnapshot.take();
+    private final static MemSnapshot after = MemSnapshot.take();
+
+    private static Set<?>[] liveSets = null;
+
+    @BeforeClass
+    public static void beforeMemTests() {
+        // delete the csv file and call the garbage collector (twice)
+        tabOut.delete();
+        before.retake();
+        after.retake();
+    }
+
+    @AfterClass
+    public static void outputTableFile() throws Exception {
+        FileOutputStream fos = new FileOutputStream(tabOut, true /* append */);
+
+        {
+            StringBuilder sb = new StringBuilder().append('\"')
+                    .append(tableHdrs[0]).append('\"');
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append('\"').append(tableHdrs[j]).append('\"');
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+
+        for (long[] aTable : table) {
+            StringBuilder sb = new StringBuilder().append(aTable[0]);
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append(aTable[j]);
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+        fos.close();
+    }
+
+    @Test
+    public void generateMemTableRepeatedHashSets() throws Exception {
+        generateMemTable(hashSetFactory, 1, "RepeatedHashSets");
+    }
+
+    @Test
+    public void generateMemTableRepeatedSmallSets() throws Exception {
+        generateMemTable(smallSetFactory, 2, "RepeatedSmallSets");
+    }
+
+    @Test
+    public void generateMemTableInternedSmallSets() throws Exception {
+        SmallCollectionInterner interner = new SmallCollectionInterner();
+        generateMemTable(interner::intern, 3, "InternedSmallSets");
+    }
+
+    private static void generateMemTable(SetFactory factory, int testNum,
+            String hdr) throws Exception {
+        tableHdrs[testNum] = hdr;
+        for (int i = 0; i < NUM_IN_TABLE; i++) {
+            int tabSize = i * NUM_INTERVAL;
+            liveSets = null; // free the previous row before measuring
+            Set<?>[] arrOfSets = new Set<?>[tabSize];
+            before.retake();
+            fillArraySets(arrOfSets, tabSize, factory);
+            liveSets = arrOfSets;
+            after.retake();
+            table[i][testNum] = before.getFree() - after.getFree();
+        }
+    }
+
+    /** Fills with sets of two tags, of which there are few combinations. */
+    private static void fillArraySets(Set<?>[] arr, int num,
+            SetFactory setFactory) {
+        Set<String> content = new HashSet<>();
+        for (int i = 0; i < num; ++i) {
+            content.clear();
+            content.add(tags[i % NUM_TAGS]);
+            content.add(tags[(i / NUM_TAGS) % NUM_TAGS]);
+            arr[i] = setFactory.generate(content);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * JUnit-driven memory and time tests for {@link PersistentSmallMap}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * JUnit-driven memory and time tests for {@link PersistentSmallMap}.
+ * <p>
+ * Each row of the table <code>table</code> is a map size, and each unit test
+ * generates a (numbered) column: the bytes used, or the nanoseconds taken, by
+ * each new version of a map when every version is kept and each changes the
+ * value of one key. A version is either a copy of a {@link SmallMap} with one
+ * <code>put</code>, or one <code>with</code> on a {@link PersistentSmallMap}.
+ * The unit test class outputs the table in csv format into
+ * <code>build/output/PersistentMapTable.csv</code>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class TablePersistentMapMemTests {
+
+    private static final int[] MAP_SIZES = { 1, 2, 4, 8, 16, 32, 64, 256 };
+    private static final int NUM_VERSIONS = 50000;
+    private static final String TAB_FILE_PATH = "build/output/PersistentMapTable.csv";
+    private static final File tabOut = new File(TAB_FILE_PATH);
+
+    private static final int NUM_TESTS = 4;
+    private static final String[] tableHdrs = new String[NUM_TESTS + 1];
+    private static final long[][] table = new long[MAP_SIZES.length][NUM_TESTS + 1];
+    static {
+        tableHdrs[0] = "Map size";
+        for (int i = 0; i < MAP_SIZES.length; ++i) {
+            table[i][0] = MAP_SIZES[i]; // x-axis
+        }
+    }
+
+    private static final String[] VALUES = new String[NUM_VERSIONS];
+    static {
+        for (int i = 0; i < NUM_VERSIONS; i++) {
+            VALUES[i] = "value" + i;
+        }
+    }
+
+    private final static MemSnapshot before = MemSnapshot.take();
+    private final static MemSnapshot after = MemSnapshot.take();
+
+    private static Map<?, ?>[] liveVersions = null;
+
+    @BeforeClass
+    public static void beforeMemTests() {
+        tabOut.delete();
+        before.retake();
+        after.retake();
+    }
+
+    @AfterClass
+    public static void outputTableFile() throws Exception {
+        FileOutputStream fos = new FileOutputStream(tabOut, true /* append */);
+
+        {
+            StringBuilder sb = new StringBuilder().append('\"')
+                    .append(tableHdrs[0]).append('\"');
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append('\"').append(tableHdrs[j]).append('\"');
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+
+        for (long[] aTable : table) {
+            StringBuilder sb = new StringBuilder().append(aTable[0]);
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append(aTable[j]);
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+        fos.close();
+    }
+
+    @Test
+    public void generateMemColumnSmallMapCopies() throws Exception {
+        generateMemColumn(false, 1, "SmallMapCopyBytes");
+    }
+
+    @Test
+    public void generateMemColumnPersistentVersions() throws Exception {
+        generateMemColumn(true, 2, "PersistentBytes");
+    }
+
+    @Test
+    public void generateTimeColumnSmallMapCopies() throws Exception {
+        generateTimeColumn(false, 3, "SmallMapCopyNanos");
+    }
+
+    @Test
+    public void generateTimeColumnPersistentVersions() throws Exception {
+        generateTimeColumn(true, 4, "PersistentNanos");
+    }
+
+    private static void generateMemColumn(boolean persistent, int testNum,
+            String hdr) throws Exception {
+        tableHdrs[testNum] = hdr;
+        measureVersions(MAP_SIZES[0], persistent); // warm up
+        for (int i = 0; i < MAP_SIZES.length; i++) {
+            table[i][testNum] = measureVersions(MAP_SIZES[i], persistent);
+        }
+        liveVersions = null;
+    }
+
+    private static long measureVersions(int mapSize, boolean persistent) {
+        String[] keys = keys(mapSize);
+        liveVersions = null; // free the previous row before measuring
+        Map<?, ?> base = persistent ? persistentBase(keys) : smallMapBase(keys);
+        Map<?, ?>[] versions = new Map<?, ?>[NUM_VERSIONS];
+        before.retake();
+        fillVersions(versions, base, keys, persistent);
+        liveVersions = versions;
+        after.retake();
+        return (before.getFree() - after.getFree()) / NUM_VERSIONS;
+    }
+
+    private static void generateTimeColumn(boolean persistent, int testNum,
+            String hdr) throws Exception {
+        tableHdrs[testNum] = hdr;
+        for (int i = 0; i < MAP_SIZES.length; i++) {
+            String[] keys = keys(MAP_SIZES[i]);
+            Map<?, ?> base = persistent ? persistentBase(keys)
+                    : smallMapBase(keys);
+            Map<?, ?>[] versions = new Map<?, ?>[NUM_VERSIONS];
+            fillVersions(versions, base, keys, persistent); // warm up
+            long start = System.nanoTime();
+            fillVersions(versions, base, keys, persistent);
+            table[i][testNum] = (System.nanoTime() - start) / NUM_VERSIONS;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void fillVersions(Map<?, ?>[] versions, Map<?, ?> base,
+            String[] keys, boolean persistent) {
+        Map<String, String> previous = (Map<String, String>) base;
+        for (int v = 0; v < versions.length; v++) {
+            String key = keys[v % keys.length];
+            if (persistent) {
+                previous = ((PersistentSmallMap<String, String>) previous)
+                        .with(key, VALUES[v]);
+            } else {
+                previous = new SmallMap<>(previous);
+                previous.put(key, VALUES[v]);
+            }
+            versions[v] = previous;
+        }
+    }
+
+    private static Map<String, String> smallMapBase(String[] keys) {
+        Map<String, String> m = new SmallMap<>();
+        for (String key : keys) {
+            m.put(key, key);
+        }
+        return m;
+    }
+
+    private static Map<String, String> persistentBase(String[] keys) {
+        PersistentSmallMap<String, String> m = PersistentSmallMap.empty();
+        for (String key : keys) {
+            m = m.with(key, key);
+        }
+        return m;
+    }
+
+    private static String[] keys(int num) {
+        String[] keys = new String[num];
+        for (int i = 0; i < num; i++) {
+            keys[i] = "key" + i;
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * JUnit-driven time tests for {@link ScanKernels}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * JUnit-driven time tests for {@link ScanKernels}.
+ * <p>
+ * Each unit test generates a (numbered) column of the table <code>table</code>:
+ * the average nanoseconds taken by an identity scan, for hits or misses, of
+ * arrays of the size given in column zero. The scans compared are the plain
+ * loop the identity collections used before, the unrolled kernel, and
+ * <code>ArrayList.indexOf</code> (which, for elements without an
+ * <code>equals</code> method, finds the same index). The unit test class
+ * outputs the table in csv format into <code>build/output/ScanTimeTable.csv</code>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class TableScanTimeTests {
+
+    private static final int[] ARRAY_SIZES = { 1, 2, 4, 8, 16, 32, 64, 128, 256 };
+    private static final int NUM_ARRAYS = 1000;
+    private static final int NUM_PROBES = 20000;
+    private static final String TAB_FILE_PATH = "build/output/ScanTimeTable.csv";
+    private static final File tabOut = new File(TAB_FILE_PATH);
+
+    private static final int NUM_TESTS = 6;
+    private static final String[] tableHdrs = new String[NUM_TESTS + 1];
+    private static final long[][] table = new long[ARRAY_SIZES.length][NUM_TESTS + 1];
+    static {
+        tableHdrs[0] = "Array size";
+        for (int i = 0; i < ARRAY_SIZES.length; ++i) {
+            table[i][0] = ARRAY_SIZES[i]; // x-axis
+        }
+    }
+
+    /**
+     * Scans each array (or list) <code>rounds</code> times. Each scan has its
+     * own loop so that the JIT compiles every call site for one scan only.
+     */
+    @FunctionalInterface
+    private interface Scan {
+        void scanAll(Object[][] arrays, ArrayList<Object>[] lists,
+                boolean hits, Object miss, int rounds);
+    }
+
+    private final static Scan plainLoop = TableScanTimeTests::scanPlainLoop;
+
+    private final static Scan scanKernel = TableScanTimeTests::scanScanKernel;
+
+    private final static Scan arrayListIndexOf = TableScanTimeTests::scanArrayList;
+
+    private static long sink = 0;
+
+    @BeforeClass
+    public static void beforeTimeTests() {
+        tabOut.delete();
+    }
+
+    @AfterClass
+    public static void outputTableFile() throws Exception {
+        FileOutputStream fos = new FileOutputStream(tabOut, true /* append */);
+
+        {
+            StringBuilder sb = new StringBuilder().append('\"')
+                    .append(tableHdrs[0]).append('\"');
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append('\"').append(tableHdrs[j]).append('\"');
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+
+        for (long[] aTable : table) {
+            StringBuilder sb = new StringBuilder().append(aTable[0]);
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append(aTable[j]);
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+        fos.close();
+    }
+
+    @Test
+    public void generateTimeTablePlainLoopHits() throws Exception {
+        generateTimeTable(plainLoop, true, 1, "PlainLoopHit");
+    }
+
+    @Test
+    public void generateTimeTablePlainLoopMisses() throws Exception {
+        generateTimeTable(plainLoop, false, 2, "PlainLoopMiss");
+    }
+
+    @Test
+    public void generateTimeTableScanKernelHits() throws Exception {
+        generateTimeTable(scanKernel, true, 3, "ScanKernelHit");
+    }
+
+    @Test
+    public void generateTimeTableScanKernelMisses() throws Exception {
+        generateTimeTable(scanKernel, false, 4, "ScanKernelMiss");
+    }
+
+    @Test
+    public void generateTimeTableArrayListHits() throws Exception {
+        generateTimeTable(arrayListIndexOf, true, 5, "ArrayListIndexOfHit");
+    }
+
+    @Test
+    public void generateTimeTableArrayListMisses() throws Exception {
+        generateTimeTable(arrayListIndexOf, false, 6, "ArrayListIndexOfMiss");
+    }
+
+    private static void generateTimeTable(Scan scan, boolean hits,
+            int testNum, String hdr) throws Exception {
+        tableHdrs[testNum] = hdr;
+        for (int i = 0; i < ARRAY_SIZES.length; i++) {
+            int arraySize = ARRAY_SIZES[i];
+            Object[][] arrays = new Object[NUM_ARRAYS][];
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            ArrayList<Object>[] lists = new ArrayList[NUM_ARRAYS];
+            for (int j = 0; j < NUM_ARRAYS; ++j) {
+                arrays[j] = new Object[arraySize];
+                for (int k = 0; k < arraySize; k++) {
+                    arrays[j][k] = new Object();
+                }
+                lists[j] = new ArrayList<>(Arrays.asList(arrays[j]));
+            }
+            Object miss = new Object();
+            int rounds = Math.max(1, NUM_PROBES / arraySize);
+            scan.scanAll(arrays, lists, hits, miss, rounds); // warm up
+            long start = System.nanoTime();
+            scan.scanAll(arrays, lists, hits, miss, rounds);
+            table[i][testNum] = (System.nanoTime() - start)
+                    / ((long) rounds * NUM_ARRAYS);
+        }
+    }
+
+    // Hits probe elements spread over the array; misses an absent object.
+
+    private static void scanPlainLoop(Object[][] arrays,
+            ArrayList<Object>[] lists, boolean hits, Object miss, int rounds) {
+        for (int r = 0; r < rounds; ++r) {
+            for (Object[] array : arrays) {
+                Object key = hits ? array[(r * 37) % array.length] : miss;
+                int index = -1;
+                for (int i = 0; i < array.length; i++) {
+                    if (array[i] == key) {
+                        index = i;
+                        break;
+                    }
+                }
+                sink += index;
+            }
+        }
+    }
+
+    private static void scanScanKernel(Object[][] arrays,
+            ArrayList<Object>[] lists, boolean hits, Object miss, int rounds) {
+        for (int r = 0; r < rounds; ++r) {
+            for (Object[] array : arrays) {
+                Object key = hits ? array[(r * 37) % array.length] : miss;
+                sink += ScanKernels.indexOfIdentity(array, array.length, key);
+            }
+        }
+    }
+
+    private static void scanArrayList(Object[][] arrays,
+            ArrayList<Object>[] lists, boolean hits, Object miss, int rounds) {
+        for (int r = 0; r < rounds; ++r) {
+            for (int j = 0; j < lists.length; ++j) {
+                Object key = hits ? arrays[j][(r * 37) % arrays[j].length] : miss;
+                sink += lists[j].indexOf(key);
+            }
+        }
+    }
+}
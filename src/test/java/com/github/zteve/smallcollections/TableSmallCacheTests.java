@@ -0,0 +1,223 @@
+/**
+ * JUnit-driven memory and time tests for {@link SmallCache}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * JUnit-driven memory and time tests for {@link SmallCache}s, compared with
+ * an access-ordered <code>LinkedHashMap</code> using
+ * <code>removeEldestEntry</code>.
+ * <p>
+ * Each unit test generates a (numbered) column of the table <code>table</code>
+ * for caches of the maximum size given in column zero: the bytes used per full
+ * cache, or the average nanoseconds per access of a skewed random workload of
+ * <code>get</code>s, with a <code>put</code> after each miss. The unit test
+ * class outputs the table in csv format into
+ * <code>build/output/CacheTable.csv</code>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class TableSmallCacheTests {
+
+    private static final int[] CACHE_SIZES = { 4, 8, 12, 16 };
+    private static final int NUM_CACHES = 20000;
+    private static final int NUM_ACCESSES = 200;
+    private static final String TAB_FILE_PATH = "build/output/CacheTable.csv";
+    private static final File tabOut = new File(TAB_FILE_PATH);
+
+    private static final int NUM_TESTS = 6;
+    private static final String[] tableHdrs = new String[NUM_TESTS + 1];
+    private static final long[][] table = new long[CACHE_SIZES.length][NUM_TESTS + 1];
+    static {
+        tableHdrs[0] = "Cache size";
+        for (int i = 0; i < CACHE_SIZES.length; ++i) {
+            table[i][0] = CACHE_SIZES[i]; // x-axis
+        }
+    }
+
+    @FunctionalInterface
+    private interface CacheFactory {
+        Map<String, String> generate(int maxSize);
+    }
+
+    private final static CacheFactory smallLruCacheFactory = SmallLruCache::new;
+
+    private final static CacheFactory smallClockCacheFactory = SmallClockCache::new;
+
+    private final static CacheFactory linkedHashMapFactory = maxSize -> new LinkedHashMap<String, String>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    private final static MemSnapshot before = MemSnapshot.take();
+    private final static MemSnapshot after = MemSnapshot.take();
+
+    private static long sink = 0;
+    private static Map<?, ?>[] liveCaches = null;
+
+    @BeforeClass
+    public static void beforeMemTests() {
+        // delete the csv file and call the garbage collector (twice)
+        tabOut.delete();
+        before.retake();
+        after.retake();
+    }
+
+    @AfterClass
+    public static void outputTableFile() throws Exception {
+        FileOutputStream fos = new FileOutputStream(tabOut, true /* append */);
+
+        {
+            StringBuilder sb = new StringBuilder().append('\"')
+                    .append(tableHdrs[0]).append('\"');
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append('\"').append(tableHdrs[j]).append('\"');
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+
+        for (long[] aTable : table) {
+            StringBuilder sb = new StringBuilder().append(aTable[0]);
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append(aTable[j]);
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+        fos.close();
+    }
+
+    @Test
+    public void generateMemTableSmallLruCaches() throws Exception {
+        generateMemTable(smallLruCacheFactory, 1, "BytesSmallLruCache");
+    }
+
+    @Test
+    public void generateMemTableSmallClockCaches() throws Exception {
+        generateMemTable(smallClockCacheFactory, 2, "BytesSmallClockCache");
+    }
+
+    @Test
+    public void generateMemTableLinkedHashMaps() throws Exception {
+        generateMemTable(linkedHashMapFactory, 3, "BytesLinkedHashMap");
+    }
+
+    @Test
+    public void generateTimeTableSmallLruCaches() throws Exception {
+        generateTimeTable(smallLruCacheFactory, 4, "NanosSmallLruCache");
+    }
+
+    @Test
+    public void generateTimeTableSmallClockCaches() throws Exception {
+        generateTimeTable(smallClockCacheFactory, 5, "NanosSmallClockCache");
+    }
+
+    @Test
+    public void generateTimeTableLinkedHashMaps() throws Exception {
+        generateTimeTable(linkedHashMapFactory, 6, "NanosLinkedHashMap");
+    }
+
+    private static void generateMemTable(CacheFactory factory, int testNum,
+            String hdr) throws Exception {
+        tableHdrs[testNum] = hdr;
+        for (int i = 0; i < CACHE_SIZES.length; i++) {
+            int cacheSize = CACHE_SIZES[i];
+            String[] keys = keys(cacheSize);
+            liveCaches = null; // free the previous row before measuring
+            Map<?, ?>[] arrOfCaches = new Map<?, ?>[NUM_CACHES];
+            before.retake();
+            for (int j = 0; j < NUM_CACHES; ++j) {
+                Map<String, String> cache = factory.generate(cacheSize);
+                for (String key : keys) {
+                    cache.put(key, key);
+                }
+                arrOfCaches[j] = cache;
+            }
+            liveCaches = arrOfCaches;
+            after.retake();
+            table[i][testNum] = (before.getFree() - after.getFree())
+                    / NUM_CACHES;
+        }
+    }
+
+    private static void generateTimeTable(CacheFactory factory, int testNum,
+            String hdr) throws Exception {
+        tableHdrs[testNum] = hdr;
+        for (int i = 0; i < CACHE_SIZES.length; i++) {
+            int cacheSize = CACHE_SIZES[i];
+            String[] keys = keys(cacheSize * 2);
+            int[] workload = workload(keys.length);
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            Map<String, String>[] arrOfCaches = new Map[NUM_CACHES];
+            for (int j = 0; j < NUM_CACHES; ++j) {
+                arrOfCaches[j] = factory.generate(cacheSize);
+            }
+            access(arrOfCaches, keys, workload); // warm up
+            long start = System.nanoTime();
+            access(arrOfCaches, keys, workload);
+            table[i][testNum] = (System.nanoTime() - start)
+                    / ((long) NUM_CACHES * NUM_ACCESSES);
+        }
+    }
+
+    private static void access(Map<String, String>[] arrOfCaches,
+            String[] keys, int[] workload) {
+        for (Map<String, String> cache : arrOfCaches) {
+            for (int k : workload) {
+                String key = keys[k];
+                if (cache.get(key) == null)
+                    cache.put(key, key);
+                else
+                    ++sink;
+            }
+        }
+    }
+
+    /** Key indexes skewed towards the low end, like most cache workloads. */
+    private static int[] workload(int numKeys) {
+        Random random = new Random(numKeys);
+        int[] workload = new int[NUM_ACCESSES];
+        for (int i = 0; i < NUM_ACCESSES; i++) {
+            double r = random.nextDouble();
+            workload[i] = (int) (r * r * numKeys);
+        }
+        return workload;
+    }
+
+    private static String[] keys(int num) {
+        String[] keys = new String[num];
+        for (int i = 0; i < num; i++) {
+            keys[i] = "key" + i;
+        }
+        return keys;
+    }
+}
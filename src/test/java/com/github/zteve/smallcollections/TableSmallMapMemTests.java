@@ -50,7 +50,7 @@ public class TableSmallMapMemTests {
     private static final String TAB_FILE_PATH = "build/output/MapMemTable.csv";
     private static final File tabOut = new File(TAB_FILE_PATH);
 
-    private static final int NUM_TESTS = 6;
+    private static final int NUM_TESTS = 18;
     private static final String[] tableHdrs = new String[NUM_TESTS + 1];
     private static final long[][] table = new long[NUM_IN_TABLE][NUM_TESTS + 1];
     static {
@@ -69,6 +69,17 @@ public class TableSmallMapMemTests {
 
     private final static MapFactory hashMapFactory = HashMap::new;
 
+    private final static MapFactory smallIdentityMapFactory = SmallIdentityMap::new;
+
+    private final static MapFactory smallStringMapFactory = SmallStringMap::new;
+
+    private final static ValueDictionary<String> dictionary = ValueDictionary
+            .withByteCodes();
+
+    private final static MapFactory codedSmallMapFactory = dictionary::newMap;
+
+    private final static MapFactory summarizedSmallMapFactory = SummarizedSmallMap::new;
+
     private final static MemSnapshot before = MemSnapshot.take();
     private final static MemSnapshot after = MemSnapshot.take();
 
@@ -133,6 +144,69 @@ public class TableSmallMapMemTests {
         generateMemTable(hashMapFactory, 2, 6, "PairHashMaps");
     }
 
+    @Test
+    public void generateMemTableEmptySmallIdentityMaps() throws Exception {
+        generateMemTable(smallIdentityMapFactory, 0, 7, "EmptySmallIdentityMaps");
+    }
+
+    @Test
+    public void generateMemTableSingletonSmallIdentityMaps() throws Exception {
+        generateMemTable(smallIdentityMapFactory, 1, 8, "OneSmallIdentityMaps");
+    }
+
+    @Test
+    public void generateMemTablePairSmallIdentityMaps() throws Exception {
+        generateMemTable(smallIdentityMapFactory, 2, 9, "PairSmallIdentityMaps");
+    }
+
+    @Test
+    public void generateMemTableEmptySmallStringMaps() throws Exception {
+        generateMemTable(smallStringMapFactory, 0, 10, "EmptySmallStringMaps");
+    }
+
+    @Test
+    public void generateMemTableSingletonSmallStringMaps() throws Exception {
+        generateMemTable(smallStringMapFactory, 1, 11, "OneSmallStringMaps");
+    }
+
+    @Test
+    public void generateMemTablePairSmallStringMaps() throws Exception {
+        generateMemTable(smallStringMapFactory, 2, 12, "PairSmallStringMaps");
+    }
+
+    @Test
+    public void generateMemTableEmptyCodedSmallMaps() throws Exception {
+        generateMemTable(codedSmallMapFactory, 0, 13, "EmptyCodedSmallMaps");
+    }
+
+    @Test
+    public void generateMemTableSingletonCodedSmallMaps() throws Exception {
+        generateMemTable(codedSmallMapFactory, 1, 14, "OneCodedSmallMaps");
+    }
+
+    @Test
+    public void generateMemTablePairCodedSmallMaps() throws Exception {
+        generateMemTable(codedSmallMapFactory, 2, 15, "PairCodedSmallMaps");
+    }
+
+    @Test
+    public void generateMemTableEmptySummarizedSmallMaps() throws Exception {
+        generateMemTable(summarizedSmallMapFactory, 0, 16,
+                "EmptySummarizedSmallMaps");
+    }
+
+    @Test
+    public void generateMemTableSingletonSummarizedSmallMaps() throws Exception {
+        generateMemTable(summarizedSmallMapFactory, 1, 17,
+                "OneSummarizedSmallMaps");
+    }
+
+    @Test
+    public void generateMemTablePairSummarizedSmallMaps() throws Exception {
+        generateMemTable(summarizedSmallMapFactory, 2, 18,
+                "PairSummarizedSmallMaps");
+    }
+
     private static void generateMemTable(MapFactory factory, int setSize,
             int testNum, String hdr) throws Exception {
         tableHdrs[testNum] = hdr;
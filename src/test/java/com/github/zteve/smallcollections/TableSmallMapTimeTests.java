@@ -0,0 +1,205 @@
+/**
+ * JUnit-driven lookup time tests for {@link SmallMap}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * JUnit-driven lookup time tests for {@link SmallMap} and its variants.
+ * <p>
+ * Each unit test generates a (numbered) column of the table <code>table</code>:
+ * the average nanoseconds taken by <code>get</code>, for hits or misses, in
+ * maps of the size given in column zero. The unit test class outputs the table
+ * in csv format into <code>build/output/MapTimeTable.csv</code>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class TableSmallMapTimeTests {
+
+    private static final int[] MAP_SIZES = { 1, 2, 4, 8, 16, 32, 64 };
+    private static final int NUM_MAPS = 1000;
+    private static final int NUM_ROUNDS = 200;
+    private static final String TAB_FILE_PATH = "build/output/MapTimeTable.csv";
+    private static final File tabOut = new File(TAB_FILE_PATH);
+
+    private static final int NUM_TESTS = 10;
+    private static final String[] tableHdrs = new String[NUM_TESTS + 1];
+    private static final long[][] table = new long[MAP_SIZES.length][NUM_TESTS + 1];
+    static {
+        tableHdrs[0] = "Map size";
+        for (int i = 0; i < MAP_SIZES.length; ++i) {
+            table[i][0] = MAP_SIZES[i]; // x-axis
+        }
+    }
+
+    @FunctionalInterface
+    private interface MapFactory {
+        Map<String, String> generate();
+    }
+
+    private final static MapFactory smallMapFactory = SmallMap::new;
+
+    private final static MapFactory hashMapFactory = HashMap::new;
+
+    private final static MapFactory smallIdentityMapFactory = SmallIdentityMap::new;
+
+    private final static MapFactory identityHashMapFactory = IdentityHashMap::new;
+
+    private final static MapFactory summarizedSmallMapFactory = SummarizedSmallMap::new;
+
+    private static long sink = 0;
+
+    @BeforeClass
+    public static void beforeTimeTests() {
+        tabOut.delete();
+    }
+
+    @AfterClass
+    public static void outputTableFile() throws Exception {
+        FileOutputStream fos = new FileOutputStream(tabOut, true /* append */);
+
+        {
+            StringBuilder sb = new StringBuilder().append('\"')
+                    .append(tableHdrs[0]).append('\"');
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append('\"').append(tableHdrs[j]).append('\"');
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+
+        for (long[] aTable : table) {
+            StringBuilder sb = new StringBuilder().append(aTable[0]);
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append(aTable[j]);
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+        fos.close();
+    }
+
+    @Test
+    public void generateTimeTableSmallMapHits() throws Exception {
+        generateTimeTable(smallMapFactory, true, 1, "SmallMapHit");
+    }
+
+    @Test
+    public void generateTimeTableSmallMapMisses() throws Exception {
+        generateTimeTable(smallMapFactory, false, 2, "SmallMapMiss");
+    }
+
+    @Test
+    public void generateTimeTableHashMapHits() throws Exception {
+        generateTimeTable(hashMapFactory, true, 3, "HashMapHit");
+    }
+
+    @Test
+    public void generateTimeTableHashMapMisses() throws Exception {
+        generateTimeTable(hashMapFactory, false, 4, "HashMapMiss");
+    }
+
+    @Test
+    public void generateTimeTableSmallIdentityMapHits() throws Exception {
+        generateTimeTable(smallIdentityMapFactory, true, 5,
+                "SmallIdentityMapHit");
+    }
+
+    @Test
+    public void generateTimeTableSmallIdentityMapMisses() throws Exception {
+        generateTimeTable(smallIdentityMapFactory, false, 6,
+                "SmallIdentityMapMiss");
+    }
+
+    @Test
+    public void generateTimeTableIdentityHashMapHits() throws Exception {
+        generateTimeTable(identityHashMapFactory, true, 7,
+                "IdentityHashMapHit");
+    }
+
+    @Test
+    public void generateTimeTableIdentityHashMapMisses() throws Exception {
+        generateTimeTable(identityHashMapFactory, false, 8,
+                "IdentityHashMapMiss");
+    }
+
+    @Test
+    public void generateTimeTableSummarizedSmallMapHits() throws Exception {
+        generateTimeTable(summarizedSmallMapFactory, true, 9,
+                "SummarizedSmallMapHit");
+    }
+
+    @Test
+    public void generateTimeTableSummarizedSmallMapMisses() throws Exception {
+        generateTimeTable(summarizedSmallMapFactory, false, 10,
+                "SummarizedSmallMapMiss");
+    }
+
+    private static void generateTimeTable(MapFactory factory, boolean hits,
+            int testNum, String hdr) throws Exception {
+        tableHdrs[testNum] = hdr;
+        for (int i = 0; i < MAP_SIZES.length; i++) {
+            int mapSize = MAP_SIZES[i];
+            String[] keys = keys("key", mapSize);
+            String[] probes = hits ? keys : keys("notAKey", mapSize);
+            Map<?, ?>[] arrOfMaps = new Map<?, ?>[NUM_MAPS];
+            for (int j = 0; j < NUM_MAPS; ++j) {
+                arrOfMaps[j] = populate(factory.generate(), keys);
+            }
+            lookUp(arrOfMaps, probes); // warm up
+            long start = System.nanoTime();
+            lookUp(arrOfMaps, probes);
+            table[i][testNum] = (System.nanoTime() - start)
+                    / ((long) NUM_ROUNDS * NUM_MAPS * mapSize);
+        }
+    }
+
+    private static void lookUp(Map<?, ?>[] arrOfMaps, String[] probes) {
+        for (int r = 0; r < NUM_ROUNDS; ++r) {
+            for (Map<?, ?> m : arrOfMaps) {
+                for (String probe : probes) {
+                    if (m.get(probe) != null)
+                        ++sink;
+                }
+            }
+        }
+    }
+
+    private static String[] keys(String prefix, int num) {
+        String[] keys = new String[num];
+        for (int i = 0; i < num; i++) {
+            keys[i] = prefix + i;
+        }
+        return keys;
+    }
+
+    private static Map<String, String> populate(Map<String, String> m,
+            String[] keys) {
+        for (int i = 0; i < keys.length; i++) {
+            m.put(keys[i], "value" + i);
+        }
+        return m;
+    }
+}
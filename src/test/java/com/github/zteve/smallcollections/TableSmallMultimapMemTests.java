@@ -0,0 +1,199 @@
+/**
+ * JUnit-driven memory tests for {@link SmallMultimap} and {@link SmallListMultimap}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * JUnit-driven memory tests for {@link SmallMultimap} and
+ * {@link SmallListMultimap}.
+ * <p>
+ * Each row of the table <code>table</code> is a shape of multimap, a number of
+ * keys and a number of values for each key, and each unit test generates a
+ * (numbered) column: the bytes used per multimap, by a
+ * <code>SmallMultimap</code>, a <code>SmallListMultimap</code>, a
+ * <code>SmallMap</code> of <code>SmallSet</code>s, or a <code>HashMap</code>
+ * of <code>HashSet</code>s. The keys and values themselves are shared, and not
+ * counted. The unit test class outputs the table in csv format into
+ * <code>build/output/MultimapMemTable.csv</code>.
+ * </p>
+ *
+ * @author Zteve
+ */
+public class TableSmallMultimapMemTests {
+
+    private static final int[][] SHAPES = { { 1, 1 }, { 1, 4 }, { 2, 2 },
+            { 4, 1 }, { 4, 4 }, { 8, 2 }, { 8, 8 } };
+    private static final int NUM_MULTIMAPS = 20000;
+    private static final String TAB_FILE_PATH = "build/output/MultimapMemTable.csv";
+    private static final File tabOut = new File(TAB_FILE_PATH);
+
+    private static final int NUM_TESTS = 4;
+    private static final String[] tableHdrs = new String[NUM_TESTS + 1];
+    private static final String[] rowHdrs = new String[SHAPES.length];
+    private static final long[][] table = new long[SHAPES.length][NUM_TESTS + 1];
+    static {
+        tableHdrs[0] = "Keys x values";
+        for (int i = 0; i < SHAPES.length; ++i) {
+            rowHdrs[i] = SHAPES[i][0] + "x" + SHAPES[i][1];
+        }
+    }
+
+    private static final String[] KEYS = new String[8];
+    private static final String[] VALUES = new String[8];
+    static {
+        for (int i = 0; i < 8; i++) {
+            KEYS[i] = "key" + i;
+            VALUES[i] = "value" + i;
+        }
+    }
+
+    private interface MultimapFiller {
+        Object fill(int numKeys, int numValues);
+    }
+
+    private final static MultimapFiller smallMultimapFiller = (numKeys,
+            numValues) -> {
+        SmallMultimap<String, String> m = new SmallMultimap<>();
+        for (int k = 0; k < numKeys; k++)
+            for (int v = 0; v < numValues; v++)
+                m.put(KEYS[k], VALUES[v]);
+        return m;
+    };
+
+    private final static MultimapFiller smallListMultimapFiller = (numKeys,
+            numValues) -> {
+        SmallListMultimap<String, String> m = new SmallListMultimap<>();
+        for (int k = 0; k < numKeys; k++)
+            for (int v = 0; v < numValues; v++)
+                m.put(KEYS[k], VALUES[v]);
+        return m;
+    };
+
+    private final static MultimapFiller smallMapOfSmallSetsFiller = (numKeys,
+            numValues) -> {
+        Map<String, Set<String>> m = new SmallMap<>();
+        for (int k = 0; k < numKeys; k++) {
+            Set<String> s = new SmallSet<>();
+            for (int v = 0; v < numValues; v++)
+                s.add(VALUES[v]);
+            m.put(KEYS[k], s);
+        }
+        return m;
+    };
+
+    private final static MultimapFiller hashMapOfHashSetsFiller = (numKeys,
+            numValues) -> {
+        Map<String, Set<String>> m = new HashMap<>();
+        for (int k = 0; k < numKeys; k++) {
+            Set<String> s = new HashSet<>();
+            for (int v = 0; v < numValues; v++)
+                s.add(VALUES[v]);
+            m.put(KEYS[k], s);
+        }
+        return m;
+    };
+
+    private final static MemSnapshot before = MemSnapshot.take();
+    private final static MemSnapshot after = MemSnapshot.take();
+
+    private static Object[] liveMultimaps = null;
+
+    @BeforeClass
+    public static void beforeMemTests() {
+        tabOut.delete();
+        before.retake();
+        after.retake();
+    }
+
+    @AfterClass
+    public static void outputTableFile() throws Exception {
+        FileOutputStream fos = new FileOutputStream(tabOut, true /* append */);
+
+        {
+            StringBuilder sb = new StringBuilder().append('\"')
+                    .append(tableHdrs[0]).append('\"');
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append('\"').append(tableHdrs[j]).append('\"');
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+
+        for (int i = 0; i < table.length; ++i) {
+            StringBuilder sb = new StringBuilder().append('\"')
+                    .append(rowHdrs[i]).append('\"');
+            for (int j = 1; j <= NUM_TESTS; ++j) {
+                sb.append(',').append(table[i][j]);
+            }
+            fos.write(sb.append('\n').toString().getBytes("US-ASCII"));
+        }
+        fos.close();
+    }
+
+    @Test
+    public void generateMemColumnSmallMultimap() throws Exception {
+        generateMemColumn(smallMultimapFiller, 1, "SmallMultimap");
+    }
+
+    @Test
+    public void generateMemColumnSmallListMultimap() throws Exception {
+        generateMemColumn(smallListMultimapFiller, 2, "SmallListMultimap");
+    }
+
+    @Test
+    public void generateMemColumnSmallMapOfSmallSets() throws Exception {
+        generateMemColumn(smallMapOfSmallSetsFiller, 3, "SmallMapOfSmallSets");
+    }
+
+    @Test
+    public void generateMemColumnHashMapOfHashSets() throws Exception {
+        generateMemColumn(hashMapOfHashSetsFiller, 4, "HashMapOfHashSets");
+    }
+
+    private static void generateMemColumn(MultimapFiller filler, int testNum,
+            String hdr) throws Exception {
+        tableHdrs[testNum] = hdr;
+        measure(filler, SHAPES[0][0], SHAPES[0][1]); // warm up
+        for (int i = 0; i < SHAPES.length; i++) {
+            table[i][testNum] = measure(filler, SHAPES[i][0], SHAPES[i][1]);
+        }
+        liveMultimaps = null;
+    }
+
+    private static long measure(MultimapFiller filler, int numKeys,
+            int numValues) {
+        liveMultimaps = null; // free the previous row before measuring
+        Object[] multimaps = new Object[NUM_MULTIMAPS];
+        before.retake();
+        for (int i = 0; i < multimaps.length; i++) {
+            multimaps[i] = filler.fill(numKeys, numValues);
+        }
+        liveMultimaps = multimaps;
+        after.retake();
+        return (before.getFree() - after.getFree()) / NUM_MULTIMAPS;
+    }
+}
@@ -50,7 +50,7 @@ public class TableSmallSetMemTests {
     private static final String TAB_FILE_PATH = "build/output/SetMemTable.csv";
     private static final File tabOut = new File(TAB_FILE_PATH);
 
-    private static final int NUM_TESTS = 6;
+    private static final int NUM_TESTS = 12;
     private static final String[] tableHdrs = new String[NUM_TESTS + 1];
     private static final long[][] table = new long[NUM_IN_TABLE][NUM_TESTS + 1];
     static {
@@ -68,6 +68,10 @@ public class TableSmallSetMemTests {
 
     private final static SetFactory hashSetFactory = HashSet::new;
 
+    private final static SetFactory smallIdentitySetFactory = SmallIdentitySet::new;
+
+    private final static SetFactory summarizedSmallSetFactory = SummarizedSmallSet::new;
+
     private final static MemSnapshot before = MemSnapshot.take();
     private final static MemSnapshot after = MemSnapshot.take();
 
@@ -132,6 +136,39 @@ public class TableSmallSetMemTests {
         generateMemTable(hashSetFactory, 2, 6, "PairHashSets");
     }
 
+    @Test
+    public void generateMemTableEmptySmallIdentitySets() throws Exception {
+        generateMemTable(smallIdentitySetFactory, 0, 7, "EmptySmallIdentitySets");
+    }
+
+    @Test
+    public void generateMemTableSingletonSmallIdentitySets() throws Exception {
+        generateMemTable(smallIdentitySetFactory, 1, 8, "OneSmallIdentitySets");
+    }
+
+    @Test
+    public void generateMemTablePairSmallIdentitySets() throws Exception {
+        generateMemTable(smallIdentitySetFactory, 2, 9, "PairSmallIdentitySets");
+    }
+
+    @Test
+    public void generateMemTableEmptySummarizedSmallSets() throws Exception {
+        generateMemTable(summarizedSmallSetFactory, 0, 10,
+                "EmptySummarizedSmallSets");
+    }
+
+    @Test
+    public void generateMemTableSingletonSummarizedSmallSets() throws Exception {
+        generateMemTable(summarizedSmallSetFactory, 1, 11,
+                "OneSummarizedSmallSets");
+    }
+
+    @Test
+    public void generateMemTablePairSummarizedSmallSets() throws Exception {
+        generateMemTable(summarizedSmallSetFactory, 2, 12,
+                "PairSummarizedSmallSets");
+    }
+
     private static void generateMemTable(SetFactory factory, int setSize,
             int testNum, String hdr) throws Exception {
         tableHdrs[testNum] = hdr;
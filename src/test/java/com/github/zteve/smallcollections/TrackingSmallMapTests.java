@@ -0,0 +1,245 @@
+/**
+ * JUnit tests for {@link TrackingSmallMap}.
+ *
+ * Copyright 2012 Steve Powell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.zteve.smallcollections.TrackingSmallMap.Delta;
+
+/**
+ * JUnit tests for {@link TrackingSmallMap}.
+ *
+ * @author Zteve
+ */
+public class TrackingSmallMapTests {
+
+    private static final String TEST_KEY = "TestKey";
+    private static final String TEST_VALUE = "TestValue";
+    private static final String TEST_VALUE_2 = "SecondTestValue";
+    private static final int POPULATION = 100;
+
+    private final TrackingSmallMap<String, String> tm = new TrackingSmallMap<>();
+
+    private void populate() {
+        for (int i = 0; i < POPULATION; i++)
+            this.tm.put("key" + i, "value" + i);
+    }
+
+    @Test
+    public void empty() throws Exception {
+        assertFalse("New map has changes", this.tm.hasChanges());
+        assertTrue("Delta of new map not empty", this.tm.drainChanges()
+                .isEmpty());
+    }
+
+    @Test
+    public void drainAll() throws Exception {
+        populate();
+        assertTrue("Changes not recorded", this.tm.hasChanges());
+        Delta<String, String> delta = this.tm.drainChanges();
+        assertEquals("Wrong number changed", POPULATION, delta.numChanged());
+        assertEquals("Wrong size", POPULATION, delta.size());
+        assertFalse("Changes not drained", this.tm.hasChanges());
+        SmallMap<String, String> replica = new SmallMap<>();
+        delta.applyTo(replica);
+        assertEquals("Replica differs", this.tm, replica);
+    }
+
+    @Test
+    public void copyAllChanged() throws Exception {
+        Map<String, String> source = new HashMap<>();
+        for (int i = 0; i < POPULATION; i++)
+            source.put("key" + i, "value" + i);
+        TrackingSmallMap<String, String> copy = new TrackingSmallMap<>(source);
+        assertTrue("Copied mappings not changes", copy.hasChanges());
+        Delta<String, String> delta = copy.drainChanges();
+        assertEquals("Wrong number changed", POPULATION, delta.numChanged());
+        SmallMap<String, String> replica = new SmallMap<>();
+        delta.applyTo(replica);
+        assertEquals("Replica differs", source, replica);
+    }
+
+    @Test
+    public void oneValueOneSlot() throws Exception {
+        populate();
+        this.tm.drainChanges();
+        this.tm.put("key70", TEST_VALUE);
+        Delta<String, String> delta = this.tm.drainChanges();
+        assertEquals("Wrong number changed", 1, delta.numChanged());
+        assertEquals("Wrong slot", 70, delta.slot(0));
+        assertEquals("Wrong value", TEST_VALUE, delta.value(0));
+    }
+
+    @Test
+    public void removalOneSlot() throws Exception {
+        populate();
+        this.tm.drainChanges();
+        this.tm.remove("key3");
+        Delta<String, String> delta = this.tm.drainChanges();
+        assertEquals("Wrong number changed", 1, delta.numChanged());
+        assertEquals("Wrong slot", 3, delta.slot(0));
+        assertEquals("Last key not moved", "key99", delta.key(0));
+        assertEquals("Wrong size", POPULATION - 1, delta.size());
+        this.tm.remove("key98");
+        delta = this.tm.drainChanges();
+        assertEquals("Removing last slot changed a slot", 0,
+                delta.numChanged());
+        assertFalse("Shrinking delta empty", delta.isEmpty());
+    }
+
+    @Test
+    public void iteratorRemoval() throws Exception {
+        populate();
+        int n = 0;
+        for (Iterator<String> it = this.tm.keySet().iterator(); it
+                .hasNext(); n++) {
+            String key = it.next();
+            if (key.hashCode() % 2 == 0)
+                it.remove();
+        }
+        assertEquals("Iteration skipped keys", POPULATION, n);
+        for (int i = 0; i < POPULATION; i++) {
+            String key = "key" + i;
+            assertEquals("Wrong key removed", key.hashCode() % 2 != 0,
+                    this.tm.containsKey(key));
+        }
+    }
+
+    @Test
+    public void randomReplication() throws Exception {
+        Random random = new Random(7);
+        Map<String, String> expected = new HashMap<>();
+        SmallMap<String, String> replica = new SmallMap<>();
+        SmallMap<String, String> wireReplica = new SmallMap<>();
+        TrackingSmallMap<String, String> relay = new TrackingSmallMap<>();
+        SmallMap<String, String> relayReplica = new SmallMap<>();
+        for (int round = 0; round < 200; round++) {
+            int ops = random.nextInt(10);
+            for (int op = 0; op < ops; op++) {
+                String key = "key" + random.nextInt(150);
+                int choice = random.nextInt(10);
+                if (choice == 0) {
+                    this.tm.clear();
+                    expected.clear();
+                } else if (choice < 4) {
+                    this.tm.remove(key);
+                    expected.remove(key);
+                } else {
+                    this.tm.put(key, "value" + round);
+                    expected.put(key, "value" + round);
+                }
+            }
+            Delta<String, String> delta = this.tm.drainChanges();
+            delta.applyTo(replica);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            delta.writeTo(new DataOutputStream(bytes), ElementCodec.STRING,
+                    ElementCodec.STRING);
+            Delta.readFrom(
+                    new DataInputStream(new ByteArrayInputStream(bytes
+                            .toByteArray())), ElementCodec.STRING,
+                    ElementCodec.STRING).applyTo(wireReplica);
+
+            delta.applyTo(relay);
+            relay.drainChanges().applyTo(relayReplica);
+
+            assertEquals("Map differs", expected, this.tm);
+            assertEquals("Replica differs", expected, replica);
+            assertEquals("Replica from bytes differs", expected, wireReplica);
+            assertEquals("Relayed replica differs", expected, relayReplica);
+        }
+    }
+
+    @Test
+    public void summarizedReplica() throws Exception {
+        SummarizedSmallMap<String, String> replica = new SummarizedSmallMap<>();
+        this.tm.put(TEST_KEY, TEST_VALUE);
+        this.tm.drainChanges().applyTo(replica);
+        assertEquals("Key not found in replica", TEST_VALUE,
+                replica.get(TEST_KEY));
+        populate();
+        this.tm.remove(TEST_KEY);
+        this.tm.drainChanges().applyTo(replica);
+        assertEquals("Replica differs", this.tm, replica);
+        for (int i = 0; i < POPULATION; i++)
+            assertTrue("Key not found in replica",
+                    replica.containsKey("key" + i));
+        assertFalse("Removed key found in replica",
+                replica.containsKey(TEST_KEY));
+    }
+
+    @Test
+    public void corruptDeltaSizes() throws Exception {
+        int[][] headers = { { 0, Integer.MAX_VALUE, Integer.MAX_VALUE },
+                { 0, -1, 0 } };
+        for (int[] header : headers) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (int v : header)
+                SmallCollectionCodec.writeVarInt(out, v);
+            try {
+                Delta.readFrom(new DataInputStream(new ByteArrayInputStream(
+                        bytes.toByteArray())), ElementCodec.STRING,
+                        ElementCodec.STRING);
+                fail("Corrupt delta read");
+            } catch (IOException e) {
+                // expected: end of input, or corrupt
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void wrongBase() throws Exception {
+        this.tm.put(TEST_KEY, TEST_VALUE);
+        this.tm.drainChanges();
+        this.tm.put(TEST_KEY, TEST_VALUE_2);
+        this.tm.drainChanges().applyTo(new SmallMap<String, String>());
+    }
+
+    @Test
+    public void nullValues() throws Exception {
+        this.tm.put(TEST_KEY, null);
+        this.tm.put(null, TEST_VALUE);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        this.tm.drainChanges().writeTo(new DataOutputStream(bytes),
+                ElementCodec.nullable(ElementCodec.STRING),
+                ElementCodec.nullable(ElementCodec.STRING));
+        SmallMap<String, String> replica = new SmallMap<>();
+        Delta.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes
+                        .toByteArray())),
+                ElementCodec.nullable(ElementCodec.STRING),
+                ElementCodec.nullable(ElementCodec.STRING)).applyTo(replica);
+        assertEquals("Replica differs", this.tm, replica);
+    }
+}
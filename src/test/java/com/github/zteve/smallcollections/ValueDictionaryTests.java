@@ -0,0 +1,161 @@
+/**
+ * JUnit tests for {@link ValueDictionary}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link ValueDictionary} and the maps it codes.
+ *
+ * @author Zteve
+ */
+public class ValueDictionaryTests {
+
+    private static final int POPULATION = 20;
+
+    @Test
+    public void codedMapBehavesAsMap() throws Exception {
+        ValueDictionary<String> dict = ValueDictionary.withByteCodes();
+        SmallMap<Integer, String> sm = dict.newMap();
+        Map<Integer, String> expected = new HashMap<>();
+        for (int i = 0; i < POPULATION; i++) {
+            String value = (i % 5 == 0) ? null : "status" + (i % 3);
+            sm.put(i, value);
+            expected.put(i, value);
+        }
+        assertTrue("Map not coded", ((SmallMap.Coded<?, ?>) sm).isCoded());
+        assertEquals("Values not shared in dictionary", 3, dict.size());
+        assertEquals("Wrong contents", expected, sm);
+        assertEquals("Value not replaced", "status1", sm.put(1, "status2"));
+        expected.put(1, "status2");
+        for (int i = 0; i < POPULATION; i += 3) {
+            assertEquals("Wrong value removed", expected.remove(i),
+                    sm.remove(i));
+        }
+        assertEquals("Wrong contents after removal", expected, sm);
+        Iterator<Map.Entry<Integer, String>> it = sm.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue() == null)
+                it.remove();
+        }
+        assertFalse("Null value left", sm.containsValue(null));
+        sm.clear();
+        assertTrue("Not empty after clear", sm.isEmpty());
+    }
+
+    @Test
+    public void equalValuesShareOneInstance() throws Exception {
+        ValueDictionary<String> dict = ValueDictionary.withByteCodes();
+        SmallMap<String, String> sm1 = dict.newMap();
+        SmallMap<String, String> sm2 = dict.newMap();
+        sm1.put("a", new String("shared"));
+        sm2.put("b", new String("shared"));
+        assertSame("Equal values not shared", sm1.get("a"), sm2.get("b"));
+    }
+
+    @Test
+    public void overflowFallsBackToReferences() throws Exception {
+        ValueDictionary<Integer> dict = ValueDictionary.withByteCodes();
+        assertEquals("Wrong byte dictionary size", 255, dict.maxSize());
+        SmallMap<Integer, Integer> sm = dict.newMap();
+        for (int i = 0; i < 300; i++) {
+            sm.put(i, 1000 + i);
+        }
+        assertEquals("Dictionary overfilled", 255, dict.size());
+        assertFalse("Overflowed map still coded",
+                ((SmallMap.Coded<?, ?>) sm).isCoded());
+        for (int i = 0; i < 300; i++) {
+            assertEquals("Value lost in fallback", Integer.valueOf(1000 + i),
+                    sm.get(i));
+        }
+        SmallMap<Integer, Integer> other = dict.newMap();
+        other.put(1, 1001);
+        assertTrue("Map of coded values not coded",
+                ((SmallMap.Coded<?, ?>) other).isCoded());
+    }
+
+    @Test
+    public void emptiedMapCodedAgain() throws Exception {
+        ValueDictionary<Integer> dict = ValueDictionary.withByteCodes();
+        SmallMap<Integer, Integer> sm = dict.newMap();
+        for (int i = 0; i < 300; i++) {
+            sm.put(i, 1000 + i);
+        }
+        sm.clear();
+        assertTrue("Cleared map not coded",
+                ((SmallMap.Coded<?, ?>) sm).isCoded());
+        sm.put(1, 1001);
+        sm.put(2, 2000);
+        assertFalse("Map of new value coded",
+                ((SmallMap.Coded<?, ?>) sm).isCoded());
+        sm.remove(2);
+        sm.remove(1);
+        assertTrue("Emptied map not coded",
+                ((SmallMap.Coded<?, ?>) sm).isCoded());
+        sm.put(3, 1003);
+        assertEquals("Wrong value after recoding", Integer.valueOf(1003),
+                sm.get(3));
+        assertTrue("Map of coded values not coded",
+                ((SmallMap.Coded<?, ?>) sm).isCoded());
+    }
+
+    @Test
+    public void shortCodes() throws Exception {
+        ValueDictionary<Integer> dict = ValueDictionary.withShortCodes();
+        assertEquals("Wrong short dictionary size", 65535, dict.maxSize());
+        SmallMap<Integer, Integer> sm = dict.newMap();
+        for (int i = 0; i < 1000; i++) {
+            sm.put(i, i * 7);
+        }
+        assertTrue("Map not coded", ((SmallMap.Coded<?, ?>) sm).isCoded());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("Short code corrupted", Integer.valueOf(i * 7),
+                    sm.get(i));
+        }
+    }
+
+    @Test
+    public void serialisesAsPlainMap() throws Exception {
+        ValueDictionary<String> dict = ValueDictionary.withByteCodes();
+        SmallMap<String, String> sm = dict.newMap();
+        sm.put("key", "value");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(sm);
+        oos.close();
+        Object copy = new ObjectInputStream(new ByteArrayInputStream(
+                bytes.toByteArray())).readObject();
+        assertSame("Not a plain SmallMap", SmallMap.class, copy.getClass());
+        assertEquals("Map corrupted", sm, copy);
+        assertNull("Phantom key", ((Map<?, ?>) copy).get("value"));
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * JUnit tests for {@link Java11ByteKernels}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link Java11ByteKernels}. These need Java 11 or later.
+ *
+ * @author Zteve
+ */
+public class Java11ByteKernelsTests {
+
+    @Test
+    public void chosenByDispatcher() throws Exception {
+        if (!"portable".equals(System.getProperty("smallcollections.kernels")))
+            assertEquals("Java 11 kernels not chosen", Java11ByteKernels.class,
+                    ByteKernels.IMPL.getClass());
+    }
+
+    @Test
+    public void sameAsPortable() throws Exception {
+        ByteKernelsTests.checkImpl(new Java11ByteKernels());
+    }
+}
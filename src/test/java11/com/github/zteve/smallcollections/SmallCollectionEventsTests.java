@@ -0,0 +1,121 @@
+/**
+ * JUnit tests for {@link SmallCollectionEvents}.
+ * <p>
+ * Copyright 2012 Steve Powell
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.zteve.smallcollections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit tests for {@link SmallCollectionEvents}, recording the events with
+ * JFR. These need Java 11 or later.
+ *
+ * @author Zteve
+ */
+public class SmallCollectionEventsTests {
+
+    private static final String OVERSIZED = "com.github.zteve.smallcollections.Oversized";
+    private static final String SLOW_SCAN = "com.github.zteve.smallcollections.SlowScan";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void enabledWithJfr() throws Exception {
+        assertTrue("Events not enabled", SmallCollectionEvents.ENABLED);
+    }
+
+    @Test
+    public void oversizedAndSlowScanEvents() throws Exception {
+        int maxSize = SmallCollectionEvents.OVERSIZE - 1;
+        List<RecordedEvent> events = record(() -> {
+            SmallMap<Integer, String> sm = new SmallMap<>();
+            for (int i = 0; i < 2 * maxSize; i++) {
+                sm.put(i, "value");
+            }
+            sm.get(0); // short scan
+            sm.get(-1); // long miss
+            SmallSet<String> ss = new SmallSet<>();
+            ss.add("element");
+            ss.contains("element");
+        });
+        List<RecordedEvent> oversized = named(events, OVERSIZED);
+        assertEquals("Not one oversized event", 1, oversized.size());
+        RecordedEvent e = oversized.get(0);
+        assertEquals("Wrong size", maxSize + 1, e.getInt("size"));
+        assertEquals("Wrong collection class", SmallMap.class.getName(), e
+                .getClass("collectionClass").getName());
+        assertEquals("Wrong key class", Integer.class.getName(), e
+                .getClass("keyClass").getName());
+        assertTrue("No stack trace", e.getStackTrace() != null);
+
+        List<RecordedEvent> slow = named(events, SLOW_SCAN);
+        assertEquals("Not one slow scan event", 1, slow.size());
+        assertEquals("Wrong slots compared", 2 * maxSize,
+                slow.get(0).getInt("scanned"));
+    }
+
+    @Test
+    public void disabledEventsNotRecorded() throws Exception {
+        Path file = this.folder.newFile("off.jfr").toPath();
+        try (Recording recording = new Recording()) {
+            recording.enable(SLOW_SCAN);
+            recording.disable(OVERSIZED);
+            recording.start();
+            SmallSet<Integer> ss = new SmallSet<>();
+            for (int i = 0; i <= SmallCollectionEvents.OVERSIZE; i++) {
+                ss.add(i);
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+        assertEquals("Disabled event recorded", 0,
+                named(RecordingFile.readAllEvents(file), OVERSIZED).size());
+    }
+
+    private List<RecordedEvent> record(Runnable r) throws Exception {
+        Path file = this.folder.newFile().toPath();
+        try (Recording recording = new Recording()) {
+            recording.enable(OVERSIZED);
+            recording.enable(SLOW_SCAN);
+            recording.start();
+            r.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events,
+            String name) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+}